@@ -0,0 +1,67 @@
+package com.cvanbattum.api.srt;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Locale;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * 
+ * @author Casper van Battum
+ *
+ */
+public class LRCReaderTest {
+	
+	@Test
+	public void tagNamesDoNotDependOnLocale() throws IOException {
+		Locale locale = Locale.getDefault();
+		Locale.setDefault(new Locale("tr", "TR"));
+		try (LRCReader reader = new LRCReader(new StringReader("[TI:Twinkle]\n[OFFSET:+200]\n[00:12.00]Twinkle\n"))) {
+			SRTSubtitle subtitle = reader.readSubtitle();
+			
+			assertEquals("Twinkle", reader.getTags().get("ti"));
+			assertEquals(11800, subtitle.get(0).getStartTime());
+			
+		}
+		finally {
+			Locale.setDefault(locale);
+			
+		}
+		
+	}
+	
+	@Test
+	public void bareTimestampEndsLine() throws IOException {
+		SRTSubtitle subtitle = read("[00:12.00]Twinkle\n[00:15.00]\n[00:17.20]little star\n");
+		
+		assertEquals(2, subtitle.size());
+		assertEquals(15000, subtitle.get(0).getEndTime());
+		assertEquals(17200, subtitle.get(1).getStartTime());
+		
+	}
+	
+	@Test
+	public void wordTimestampWithoutTextIsEmptyLine() throws IOException {
+		SRTSubtitle subtitle = read("[00:12.00]Twinkle\n[00:15.00]<00:15.00>\n[00:17.20]little star\n");
+		
+		assertEquals(3, subtitle.size());
+		assertEquals(15000, subtitle.get(1).getStartTime());
+		assertEquals(17200, subtitle.get(1).getEndTime());
+		assertArrayEquals(new String[] { "" }, subtitle.get(1).getText());
+		
+	}
+	
+	/* Reads LRC lyrics from a string. */
+	private static SRTSubtitle read(String lrc) throws IOException {
+		try (LRCReader reader = new LRCReader(new StringReader(lrc))) {
+			return reader.readSubtitle();
+			
+		}
+		
+	}
+	
+}
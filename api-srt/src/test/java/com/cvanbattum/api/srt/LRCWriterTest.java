@@ -0,0 +1,82 @@
+package com.cvanbattum.api.srt;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * 
+ * @author Casper van Battum
+ *
+ */
+public class LRCWriterTest {
+	
+	@Test
+	public void entriesWithoutTextAreReadBack() throws IOException {
+		SRTSubtitle subtitle = new SRTSubtitle(new SRTEntry[] {
+			new SRTEntry(1000, 2000, "Twinkle, twinkle"),
+			new SRTEntry(2000, 3000, ""),
+			new SRTEntry(3000, 4000, (String[]) null),
+			new SRTEntry(4000, 5000, new String[0]),
+			new SRTEntry(5000, 6000, " ", null),
+			new SRTEntry(6000, 7000, "little star")
+		});
+		
+		String lrc = write(subtitle);
+		assertEquals("[00:01.00]Twinkle, twinkle\n[00:02.00]<00:02.00>\n[00:03.00]<00:03.00>\n[00:04.00]<00:04.00>\n"
+				+ "[00:05.00]<00:05.00>\n[00:06.00]little star\n[00:07.00]\n", lrc);
+		
+		SRTSubtitle read = read(lrc);
+		assertEquals(subtitle.size(), read.size());
+		for (int i = 0; i < read.size(); i++) {
+			assertEquals(subtitle.get(i).getStartTime(), read.get(i).getStartTime(), "start of " + i);
+			assertEquals(subtitle.get(i).getEndTime(), read.get(i).getEndTime(), "end of " + i);
+			
+		}
+		assertArrayEquals(new String[] { "" }, read.get(2).getText());
+		assertArrayEquals(new String[] { "little star" }, read.get(5).getText());
+		
+	}
+	
+	@Test
+	public void wordTimingIsReadBack() throws IOException {
+		SRTEntry entry = new SRTEntry(1000, 2000, "{\\k50}Twin{\\k50}kle");
+		SRTWordTiming.parseKaraoke(entry);
+		
+		SRTSubtitle read = read(write(new SRTSubtitle(new SRTEntry[] { entry })));
+		SRTWordTiming timing = read.get(0).getWordTiming();
+		
+		assertArrayEquals(new String[] { "Twinkle" }, read.get(0).getText());
+		assertEquals(2, timing.getWordCount());
+		assertEquals(500, timing.getStartTime(1));
+		assertEquals(1000, timing.getEndTime(1));
+		
+	}
+	
+	/* Writes a subtitle as LRC into a string. */
+	private static String write(SRTSubtitle subtitle) throws IOException {
+		StringWriter out = new StringWriter();
+		try (LRCWriter writer = new LRCWriter(out)) {
+			writer.writeSubtitle(subtitle);
+			
+		}
+		
+		return out.toString();
+		
+	}
+	
+	/* Reads LRC lyrics from a string. */
+	private static SRTSubtitle read(String lrc) throws IOException {
+		try (LRCReader reader = new LRCReader(new StringReader(lrc))) {
+			return reader.readSubtitle();
+			
+		}
+		
+	}
+	
+}
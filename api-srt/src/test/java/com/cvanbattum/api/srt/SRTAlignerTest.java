@@ -0,0 +1,154 @@
+package com.cvanbattum.api.srt;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * 
+ * @author Casper van Battum
+ *
+ */
+public class SRTAlignerTest {
+	
+	@Test
+	public void correctsOffset() {
+		SRTSubtitle reference = createReference(new Random(1), 1500);
+		SRTSubtitle subtitle = transform(reference, 1, 7300);
+		
+		SRTTimeMapping mapping = new SRTAligner().align(reference, subtitle);
+		mapping.apply(subtitle);
+		
+		assertTrue(medianError(reference, subtitle) <= 100, "median error " + medianError(reference, subtitle));
+		
+	}
+	
+	@Test
+	public void correctsFrameRateDrift() {
+		//A 25 fps subtitle shown on a 23.976 fps movie
+		SRTSubtitle reference = createReference(new Random(2), 1500);
+		SRTSubtitle subtitle = transform(reference, 23.976 / 25, -2000);
+		
+		//Over the length of a movie, the drift adds up to minutes
+		SRTAligner aligner = new SRTAligner();
+		aligner.setMaxOffset(300000);
+		SRTTimeMapping mapping = aligner.align(reference, subtitle);
+		mapping.apply(subtitle);
+		
+		assertTrue(medianError(reference, subtitle) <= 200, "median error " + medianError(reference, subtitle));
+		
+	}
+	
+	@Test
+	public void mappingKeepsOrderAcrossCuts() {
+		//The subtitle has 90 seconds of extra cues in the middle, that are cut
+		//from the reference, so the offset jumps back
+		Random random = new Random(3);
+		SRTSubtitle reference = createReference(random, 800);
+		long cut = reference.get(400).getStartTime();
+		
+		SRTSubtitle subtitle = new SRTSubtitle();
+		for (SRTEntry e : reference) {
+			long shift = (e.getStartTime() < cut) ? 0 : 90000;
+			subtitle.add(new SRTEntry(e.getStartTime() + shift, e.getEndTime() + shift, "cue"));
+			
+		}
+		for (long t = cut; t < cut + 88000; t += 2500 + random.nextInt(1000)) {
+			subtitle.add(new SRTEntry(t, t + 1500, "extra"));
+			
+		}
+		sortByStart(subtitle);
+		
+		SRTAligner aligner = new SRTAligner();
+		aligner.setMaxOffset(120000);
+		SRTTimeMapping mapping = aligner.align(reference, subtitle);
+		
+		long previous = -1;
+		for (long t = 0; t < subtitle.get(subtitle.size() - 1).getEndTime(); t += 100) {
+			long mapped = mapping.map(t);
+			assertTrue(mapped >= previous, "mapping goes back at " + t);
+			previous = mapped;
+			
+		}
+		
+		mapping.apply(subtitle);
+		for (int i = 1; i < subtitle.size(); i++) {
+			assertTrue(subtitle.get(i).getStartTime() >= subtitle.get(i - 1).getStartTime(), "entry " + i + " moved before entry " + (i - 1));
+			
+		}
+		
+		//The entries that are in the reference are still where they belong
+		SRTSubtitle kept = new SRTSubtitle();
+		for (SRTEntry e : subtitle) {
+			if (e.getText()[0].equals("cue")) {
+				kept.add(e);
+				
+			}
+			
+		}
+		assertTrue(medianError(reference, kept) <= 100, "median error " + medianError(reference, kept));
+		
+	}
+	
+	//Cues of one to four seconds, with pauses of up to three seconds
+	private static SRTSubtitle createReference(Random random, int count) {
+		SRTSubtitle subtitle = new SRTSubtitle();
+		long time = 5000;
+		for (int i = 0; i < count; i++) {
+			long duration = 1000 + random.nextInt(3000);
+			subtitle.add(new SRTEntry(time, time + duration, "cue " + i));
+			time += duration + 100 + random.nextInt(3000);
+			
+		}
+		
+		return subtitle;
+		
+	}
+	
+	//Copies the subtitle with every time t changed into t * scale + offset
+	private static SRTSubtitle transform(SRTSubtitle reference, double scale, long offset) {
+		SRTSubtitle subtitle = new SRTSubtitle();
+		for (SRTEntry e : reference) {
+			long start = Math.round(e.getStartTime() * scale) + offset;
+			long end = Math.round(e.getEndTime() * scale) + offset;
+			subtitle.add(new SRTEntry(start, end, e.getText()));
+			
+		}
+		
+		return subtitle;
+		
+	}
+	
+	private static long medianError(SRTSubtitle reference, SRTSubtitle subtitle) {
+		long[] errors = new long[reference.size()];
+		for (int i = 0; i < errors.length; i++) {
+			errors[i] = Math.abs(reference.get(i).getStartTime() - subtitle.get(i).getStartTime());
+			
+		}
+		Arrays.sort(errors);
+		
+		return errors[errors.length / 2];
+		
+	}
+	
+	private static void sortByStart(SRTSubtitle subtitle) {
+		SRTEntry[] entries = subtitle.toArray(new SRTEntry[subtitle.size()]);
+		Arrays.sort(entries, new Comparator<SRTEntry>() {
+			
+			@Override
+			public int compare(SRTEntry a, SRTEntry b) {
+				return Long.compare(a.getStartTime(), b.getStartTime());
+				
+			}
+			
+		});
+		subtitle.clear();
+		subtitle.addAll(Arrays.asList(entries));
+		
+	}
+	
+}
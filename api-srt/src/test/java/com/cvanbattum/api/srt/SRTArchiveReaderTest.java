@@ -0,0 +1,112 @@
+package com.cvanbattum.api.srt;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ *
+ * @author Casper van Battum
+ *
+ */
+public class SRTArchiveReaderTest {
+	
+	private static final String VALID = "1\n00:00:01,000 --> 00:00:02,000\nHello\n\n";
+	
+	@TempDir
+	Path directory;
+	
+	@Test
+	public void readsSRTMembersOfZip() throws IOException {
+		File archive = directory.resolve("archive.ZIP").toFile();
+		try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(archive))) {
+			out.putNextEntry(new ZipEntry("dir/"));
+			put(out, "dir/first.srt", VALID);
+			put(out, "SECOND.SRT", VALID.replace("Hello", "World"));
+			put(out, "notes.txt", "Not a subtitle");
+			
+		}
+		
+		Map<String, SRTSubtitle> subtitles = new SRTArchiveReader(2).readAll(archive);
+		assertArrayEquals(new String[] { "dir/first.srt", "SECOND.SRT" }, subtitles.keySet().toArray());
+		assertEquals("World", subtitles.get("SECOND.SRT").get(0).getText()[0]);
+		
+	}
+	
+	@Test
+	public void readsGzip() throws IOException {
+		File archive = directory.resolve("movie.srt.GZ").toFile();
+		try (OutputStream out = new GZIPOutputStream(new FileOutputStream(archive))) {
+			out.write(VALID.getBytes(StandardCharsets.UTF_8));
+			
+		}
+		
+		Map<String, SRTSubtitle> subtitles = new SRTArchiveReader(1).readAll(archive);
+		assertEquals("Hello", subtitles.get("movie.srt").get(0).getText()[0]);
+		
+	}
+	
+	@Test
+	public void invalidGzipThrowsIOException() throws IOException {
+		final File archive = directory.resolve("broken.srt.gz").toFile();
+		Files.write(archive.toPath(), VALID.getBytes(StandardCharsets.UTF_8));
+		
+		assertThrows(IOException.class, new Executable() {
+			
+			@Override
+			public void execute() throws IOException {
+				new SRTArchiveReader(1).readAll(archive);
+				
+			}
+			
+		});
+		
+	}
+	
+	@Test
+	public void invalidMemberIsNamed() throws IOException {
+		final File archive = directory.resolve("archive.zip").toFile();
+		try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(archive))) {
+			put(out, "good.srt", VALID);
+			put(out, "bad.srt", "1\nno time line\nHello\n\n");
+			
+		}
+		
+		IOException e = assertThrows(IOException.class, new Executable() {
+			
+			@Override
+			public void execute() throws IOException {
+				new SRTArchiveReader(2).readAll(archive);
+				
+			}
+			
+		});
+		assertTrue(e.getMessage().startsWith("bad.srt: "), e.getMessage());
+		
+	}
+	
+	private static void put(ZipOutputStream out, String name, String text) throws IOException {
+		out.putNextEntry(new ZipEntry(name));
+		out.write(text.getBytes(StandardCharsets.UTF_8));
+		out.closeEntry();
+		
+	}
+	
+}
@@ -0,0 +1,99 @@
+package com.cvanbattum.api.srt;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * 
+ * @author Casper van Battum
+ *
+ */
+public class SRTByteScannerTest {
+	
+	@Test
+	public void vectorScannerIsSelected() {
+		//The tests run with the incubator module
+		assertNotNull(SRTByteScanner.VECTOR);
+		assertEquals(SRTByteScanner.VECTOR, SRTByteScanner.get());
+		
+	}
+	
+	@Test
+	public void scannersAgreeWithScalar() {
+		Random random = new Random(7);
+		for (int round = 0; round < 200; round++) {
+			byte[] data = new byte[random.nextInt(300)];
+			for (int i = 0; i < data.length; i++) {
+				//Mostly text, some line breaks, arrows and high bytes
+				int r = random.nextInt(40);
+				data[i] = (byte) ((r == 0) ? '\n' : (r == 1) ? '\r' : (r == 2) ? '>' : (r < 5) ? '-' : (r == 5) ? 0xE9 : 'a' + r);
+				
+			}
+			
+			for (ByteBuffer b : buffers(data)) {
+				int from = (data.length == 0) ? 0 : random.nextInt(data.length);
+				int to = from + random.nextInt(data.length - from + 1);
+				for (SRTByteScanner scanner : scanners()) {
+					String message = scanner + " " + b + " from " + from + " to " + to;
+					assertEquals(SRTByteScanner.SCALAR.indexOf(b, (byte) '\n', from, to), scanner.indexOf(b, (byte) '\n', from, to), message);
+					assertEquals(SRTByteScanner.SCALAR.indexOf(b, (byte) 0xE9, from, to), scanner.indexOf(b, (byte) 0xE9, from, to), message);
+					assertEquals(SRTByteScanner.SCALAR.indexOfLineBreak(b, from, to), scanner.indexOfLineBreak(b, from, to), message);
+					assertEquals(SRTByteScanner.SCALAR.count(b, (byte) '-', from, to), scanner.count(b, (byte) '-', from, to), message);
+					assertEquals(SRTByteScanner.SCALAR.indexOfArrow(b, from, to), scanner.indexOfArrow(b, from, to), message);
+					
+				}
+				
+			}
+			
+		}
+		
+	}
+	
+	@Test
+	public void findsArrow() {
+		ByteBuffer b = ByteBuffer.wrap("00:00:01,000 ---> 00:00:02,000 -> -->".getBytes());
+		for (SRTByteScanner scanner : scanners()) {
+			assertEquals(14, scanner.indexOfArrow(b, 0, b.limit()), scanner.toString());
+			assertEquals(34, scanner.indexOfArrow(b, 15, b.limit()), scanner.toString());
+			assertEquals(-1, scanner.indexOfArrow(b, 15, b.limit() - 1), scanner.toString());
+			
+		}
+		
+	}
+	
+	/* The data in a heap buffer, a sliced heap buffer and a direct buffer in both byte orders. */
+	private static ByteBuffer[] buffers(byte[] data) {
+		byte[] padded = new byte[data.length + 3];
+		System.arraycopy(data, 0, padded, 3, data.length);
+		ByteBuffer sliced = ByteBuffer.wrap(padded);
+		sliced.position(3);
+		
+		ByteBuffer direct = ByteBuffer.allocateDirect(data.length);
+		direct.put(data).clear();
+		ByteBuffer little = ByteBuffer.allocateDirect(data.length).order(ByteOrder.LITTLE_ENDIAN);
+		little.put(data).clear();
+		
+		return new ByteBuffer[] { ByteBuffer.wrap(data), sliced.slice(), direct, little };
+		
+	}
+	
+	private static ArrayList<SRTByteScanner> scanners() {
+		ArrayList<SRTByteScanner> scanners = new ArrayList<>();
+		scanners.add(SRTByteScanner.SWAR);
+		if (SRTByteScanner.VECTOR != null) {
+			scanners.add(SRTByteScanner.VECTOR);
+			
+		}
+		
+		return scanners;
+		
+	}
+	
+}
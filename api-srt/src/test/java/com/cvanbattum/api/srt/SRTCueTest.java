@@ -0,0 +1,105 @@
+package com.cvanbattum.api.srt;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+import org.openjdk.jol.info.ClassLayout;
+import org.openjdk.jol.info.GraphLayout;
+
+/**
+ *
+ * @author Casper van Battum
+ *
+ */
+public class SRTCueTest {
+	
+	private static final int COUNT = 10000;
+	private static final String[] LINES = { "Where are you going?", "Home.", "[MUSIC]", "Come on, we have to go now.", "I don't know." };
+	
+	@Test
+	public void convertsToAndFromEntry() {
+		SRTEntry entry = new SRTEntry(61200, 63900, "First line", "", "Third line");
+		SRTCue cue = SRTCue.fromEntry(entry);
+		
+		assertEquals(61200, cue.getStartTime());
+		assertEquals(63900, cue.getEndTime());
+		assertEquals(3, cue.getLineCount());
+		assertArrayEquals(entry.getText(), cue.getText());
+		assertArrayEquals(entry.getText(), cue.toEntry().getText());
+		assertEquals(cue, SRTCue.fromEntry(cue.toEntry()));
+		assertEquals(cue.hashCode(), SRTCue.fromEntry(cue.toEntry()).hashCode());
+		assertNull(SRTCue.create(0, 1000).getText());
+		
+	}
+	
+	@Test
+	public void cueWithoutTextConvertsToEntryWithoutLines() {
+		SRTCue cue = SRTCue.create(0, 1000);
+		SRTEntry entry = cue.toEntry();
+		
+		assertArrayEquals(new String[0], entry.getText());
+		assertEquals(cue, SRTCue.fromEntry(entry));
+		
+	}
+	
+	@Test
+	public void nullLineIsRejected() {
+		assertThrows(IllegalArgumentException.class, new Executable() {
+			
+			@Override
+			public void execute() {
+				SRTCue.create(0, 1000, "Line", null);
+				
+			}
+			
+		});
+		
+	}
+	
+	//The text is shared by equal cues, but not put in the string table of the JVM
+	@Test
+	public void textIsPooledWithoutStringIntern() {
+		String literal = "Pooled line";
+		SRTCue first = SRTCue.create(0, 1000, new String(literal));
+		SRTCue second = SRTCue.create(2000, 3000, new String(literal));
+		
+		assertSame(first.getJoinedText(), second.getJoinedText());
+		assertNotSame(literal, first.getJoinedText());
+		
+	}
+	
+	/*
+	 * A cue itself is under 40 bytes, and so are many cues with repeating
+	 * text counted together with their shared strings, where an entry of the
+	 * same text takes over 100 bytes.
+	 */
+	@Test
+	public void cueIsSmallerThanEntry() {
+		long cueSize = ClassLayout.parseClass(SRTCue.class).instanceSize();
+		assertTrue(cueSize < 40, "cue: " + cueSize);
+		
+		SRTCue[] cues = new SRTCue[COUNT];
+		SRTEntry[] entries = new SRTEntry[COUNT];
+		for (int i = 0; i < COUNT; i++) {
+			//New strings every time, like read from a file
+			String[] text = { new String(LINES[i % LINES.length]), new String(LINES[(i / 3) % LINES.length]) };
+			cues[i] = SRTCue.create(i * 2000L, i * 2000L + 1500, text);
+			entries[i] = new SRTEntry(i * 2000L, i * 2000L + 1500, text);
+			
+		}
+		
+		long perCue = (GraphLayout.parseInstance((Object) cues).totalSize() - ClassLayout.parseInstance(cues).instanceSize()) / COUNT;
+		long perEntry = (GraphLayout.parseInstance((Object) entries).totalSize() - ClassLayout.parseInstance(entries).instanceSize()) / COUNT;
+		assertTrue(perCue < 40, "per cue: " + perCue);
+		assertTrue(perEntry > 100, "per entry: " + perEntry);
+		
+	}
+	
+}
@@ -0,0 +1,67 @@
+package com.cvanbattum.api.srt;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+
+/**
+ * 
+ * @author Casper van Battum
+ *
+ */
+public class SRTDiffTest {
+	
+	@Test
+	public void applyGivesTheRevisedSubtitle() {
+		SRTSubtitle original = new SRTSubtitle(
+				new SRTEntry(1000, 2000, "Hello there"),
+				new SRTEntry(3000, 4000, "How are you"),
+				new SRTEntry(5000, 6000, "Goodbye"));
+		SRTSubtitle revised = new SRTSubtitle(
+				new SRTEntry(1000, 2000, "Hello there"),
+				new SRTEntry(3200, 4200, "How are you doing"),
+				new SRTEntry(7000, 8000, "New line"));
+		
+		SRTDiff diff = SRTDiff.compute(original, revised);
+		
+		assertEquals(revised.toString(), diff.apply(original).toString());
+		
+	}
+	
+	@Test
+	public void entriesWithoutTextCanBeCompared() {
+		SRTSubtitle original = new SRTSubtitle(new SRTEntry(1000, 2000, (String[]) null), new SRTEntry(3000, 4000, "Text"));
+		SRTSubtitle revised = new SRTSubtitle(new SRTEntry(1000, 2500, (String[]) null), new SRTEntry(5000, 6000, (String[]) null));
+		
+		SRTDiff diff = SRTDiff.compute(original, revised);
+		SRTSubtitle applied = diff.apply(original);
+		
+		assertEquals(2, applied.size());
+		assertNull(applied.get(0).getText());
+		assertEquals(2500, applied.get(0).getEndTime());
+		
+	}
+	
+	@Test
+	public void applyChecksTheText() {
+		SRTSubtitle original = new SRTSubtitle(new SRTEntry(1000, 2000, "One"), new SRTEntry(3000, 4000, "Two"));
+		SRTSubtitle revised = new SRTSubtitle(new SRTEntry(1000, 2000, "One"), new SRTEntry(3000, 4500, "Two"));
+		final SRTDiff diff = SRTDiff.compute(original, revised);
+		
+		final SRTSubtitle changed = new SRTSubtitle(new SRTEntry(1000, 2000, "One"), new SRTEntry(3000, 4000, "Three"));
+		assertThrows(IllegalArgumentException.class, new Executable() {
+			
+			@Override
+			public void execute() {
+				diff.apply(changed);
+				
+			}
+			
+		});
+		
+	}
+	
+}
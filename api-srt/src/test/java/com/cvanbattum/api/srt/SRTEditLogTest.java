@@ -0,0 +1,97 @@
+package com.cvanbattum.api.srt;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+
+/**
+ * 
+ * @author Casper van Battum
+ *
+ */
+public class SRTEditLogTest {
+	
+	@Test
+	public void undoSetTextRestoresLinesChangedInPlace() {
+		SRTEntry entry = new SRTEntry(0, 1000, "one", "two");
+		SRTEditLog log = new SRTEditLog(new SRTSubtitle(entry));
+		
+		log.setText(entry, "three", "four");
+		//Changes the array of the entry itself, not through the log
+		entry.setTextAtLine(SRTEntry.LINE_1, "five");
+		log.undo();
+		
+		assertArrayEquals(new String[] { "one", "two" }, entry.getText());
+		
+	}
+	
+	@Test
+	public void emptyRemoveIsNotRecorded() {
+		SRTEditLog log = new SRTEditLog(new SRTSubtitle(new SRTEntry(0, 1000, "one")));
+		
+		assertEquals(0, log.remove(1, 0).length);
+		assertEquals(0, log.remove(0, 0).length);
+		log.insertAt(0);
+		
+		assertFalse(log.canUndo());
+		assertEquals(0, log.getSize());
+		
+	}
+	
+	@Test
+	public void undoRemoveRestoresEntries() {
+		SRTEntry first = new SRTEntry(0, 1000, "one");
+		SRTEntry second = new SRTEntry(2000, 3000, "two");
+		SRTSubtitle subtitle = new SRTSubtitle(first, second);
+		SRTEditLog log = new SRTEditLog(subtitle);
+		
+		log.remove(0, 1);
+		assertTrue(log.canUndo());
+		log.undo();
+		
+		assertEquals(2, subtitle.size());
+		assertEquals(first, subtitle.get(0));
+		
+	}
+	
+	@Test
+	public void undoInTransactionNamesTransaction() {
+		SRTEntry entry = new SRTEntry(0, 1000, "one");
+		final SRTEditLog log = new SRTEditLog(new SRTSubtitle(entry));
+		log.setText(entry, "two");
+		log.undo();
+		
+		log.beginTransaction();
+		IllegalStateException undo = assertThrows(IllegalStateException.class, new Executable() {
+			
+			@Override
+			public void execute() {
+				log.undo();
+				
+			}
+			
+		});
+		IllegalStateException redo = assertThrows(IllegalStateException.class, new Executable() {
+			
+			@Override
+			public void execute() {
+				log.redo();
+				
+			}
+			
+		});
+		log.endTransaction();
+		
+		assertEquals("Cannot undo while a transaction is running", undo.getMessage());
+		assertEquals("Cannot redo while a transaction is running", redo.getMessage());
+		log.redo();
+		assertArrayEquals(new String[] { "two" }, entry.getText());
+		
+	}
+	
+}
@@ -0,0 +1,111 @@
+package com.cvanbattum.api.srt;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+/**
+ * 
+ * @author Casper van Battum
+ *
+ */
+public class SRTEncodingTest {
+	
+	@ParameterizedTest
+	@CsvSource({
+		"ascii.srt, UTF-8, 0",
+		"utf-8.srt, UTF-8, 0",
+		"utf-8-cyrillic.srt, UTF-8, 0",
+		"utf-8-bom.srt, UTF-8, 3",
+		"utf-16le-bom.srt, UTF-16LE, 2",
+		"utf-16le.srt, UTF-16LE, 0",
+		"utf-16be.srt, UTF-16BE, 0",
+		"windows-1252-french.srt, windows-1252, 0",
+		"windows-1252-german.srt, windows-1252, 0",
+		"windows-1250-polish.srt, windows-1250, 0",
+		"windows-1250-czech.srt, windows-1250, 0",
+		"iso-8859-2-polish.srt, ISO-8859-2, 0"
+	})
+	public void detectsCorpus(String name, String charset, int bomLength) throws IOException {
+		SRTEncoding encoding = detect(name);
+		
+		assertEquals(charset, encoding.getCharset().name(), name);
+		assertEquals(bomLength, encoding.getBomLength(), name);
+		
+	}
+	
+	@Test
+	public void rejectsOverlongAndSurrogateCorpus() throws IOException {
+		assertNotEquals(StandardCharsets.UTF_8, detect("invalid-utf-8-overlong.srt").getCharset());
+		
+	}
+	
+	@Test
+	public void rejectsOverlongThreeByteSequence() {
+		//E0 80 80 would be an overlong U+0000
+		assertNotEquals(StandardCharsets.UTF_8, detect(0x41, 0xE0, 0x80, 0x80, 0x41));
+		assertNotEquals(StandardCharsets.UTF_8, detect(0x41, 0xE0, 0x9F, 0xBF, 0x41));
+		assertEquals(StandardCharsets.UTF_8, detect(0x41, 0xE0, 0xA0, 0x80, 0x41));
+		
+	}
+	
+	@Test
+	public void rejectsSurrogates() {
+		//ED A0 80 would be U+D800
+		assertNotEquals(StandardCharsets.UTF_8, detect(0x41, 0xED, 0xA0, 0x80, 0x41));
+		assertNotEquals(StandardCharsets.UTF_8, detect(0x41, 0xED, 0xBF, 0xBF, 0x41));
+		assertEquals(StandardCharsets.UTF_8, detect(0x41, 0xED, 0x9F, 0xBF, 0x41));
+		
+	}
+	
+	@Test
+	public void rejectsOverlongAndOutOfRangeFourByteSequences() {
+		//F0 80 80 80 would be an overlong U+0000, F4 90 80 80 would be U+110000
+		assertNotEquals(StandardCharsets.UTF_8, detect(0x41, 0xF0, 0x8F, 0xBF, 0xBF, 0x41));
+		assertNotEquals(StandardCharsets.UTF_8, detect(0x41, 0xF4, 0x90, 0x80, 0x80, 0x41));
+		assertEquals(StandardCharsets.UTF_8, detect(0x41, 0xF0, 0x90, 0x80, 0x80, 0x41));
+		assertEquals(StandardCharsets.UTF_8, detect(0x41, 0xF4, 0x8F, 0xBF, 0xBF, 0x41));
+		
+	}
+	
+	@Test
+	public void acceptsSequenceCutOffByTheSample() {
+		//The sample may end in the middle of a valid sequence
+		assertEquals(StandardCharsets.UTF_8, detect(0x41, 0xC3, 0xA9, 0x41, 0xE2, 0x82));
+		
+	}
+	
+	/* Detects the encoding of a fixture of the corpus. */
+	private static SRTEncoding detect(String name) throws IOException {
+		InputStream resource = SRTEncodingTest.class.getResourceAsStream("encoding/" + name);
+		assertNotNull(resource, name);
+		try (InputStream in = new BufferedInputStream(resource)) {
+			return SRTEncoding.detect(in);
+			
+		}
+		
+	}
+	
+	/* Detects the charset of the given bytes. */
+	private static Charset detect(int... bytes) {
+		byte[] data = new byte[bytes.length];
+		for (int i = 0; i < bytes.length; i++) {
+			data[i] = (byte) bytes[i];
+			
+		}
+		
+		return SRTEncoding.detect(data, 0, data.length).getCharset();
+		
+	}
+	
+}
@@ -0,0 +1,80 @@
+package com.cvanbattum.api.srt;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * 
+ * @author Casper van Battum
+ *
+ */
+public class SRTEntryTest {
+	
+	@Test
+	public void setTextWithPoolKeepsCallerArray() {
+		SRTTextPool pool = SRTTextPool.createBounded(16);
+		String pooled = pool.intern("Hello there");
+		
+		SRTEntry entry = new SRTEntry(0, 1000, "first");
+		entry.setTextPool(pool);
+		
+		String line = new String("Hello there");
+		String[] text = { line };
+		entry.setText(text);
+		
+		assertSame(line, text[0]);
+		assertNotSame(text, entry.getText());
+		assertSame(pooled, entry.getText()[0]);
+		
+	}
+	
+	@Test
+	public void setTextPoolKeepsConstructorArray() {
+		SRTTextPool pool = SRTTextPool.createBounded(16);
+		String pooled = pool.intern("General Kenobi");
+		
+		String line = new String("General Kenobi");
+		String[] text = { line, "second" };
+		SRTEntry entry = new SRTEntry(0, 1000, text);
+		entry.setTextPool(pool);
+		
+		assertSame(line, text[0]);
+		assertSame(pooled, entry.getText()[0]);
+		assertArrayEquals(text, entry.getText());
+		
+	}
+	
+	//The readers own the array, so it is pooled without a copy
+	@Test
+	public void setTextPoolInPlacePoolsOwnArray() {
+		SRTTextPool pool = SRTTextPool.createBounded(16);
+		String pooled = pool.intern("Hello there");
+		
+		String[] text = { new String("Hello there") };
+		SRTEntry entry = new SRTEntry(0, 1000, text);
+		entry.setTextPoolInPlace(pool);
+		
+		assertSame(text, entry.getText());
+		assertSame(pooled, text[0]);
+		assertSame(pool, entry.getTextPool());
+		
+	}
+	
+	@Test
+	public void readerPoolsLines() throws IOException {
+		SRTTextPool pool = SRTTextPool.createBounded(16);
+		String pooled = pool.intern("Hello there");
+		
+		SRTReader reader = new SRTReader(new StringReader("1\n00:00:01,000 --> 00:00:02,000\nHello there\n"), pool);
+		
+		assertSame(pooled, reader.readEntry().getText()[0]);
+		
+	}
+	
+}
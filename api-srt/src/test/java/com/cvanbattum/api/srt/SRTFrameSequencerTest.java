@@ -0,0 +1,119 @@
+package com.cvanbattum.api.srt;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * 
+ * @author Casper van Battum
+ *
+ */
+public class SRTFrameSequencerTest {
+	
+	@Test
+	public void ntscFramesDoNotDrift() {
+		SRTFrameSequencer sequencer = SRTFrameSequencer.FPS_29_97;
+		
+		//One hour is 107892.1 frames at 30000/1001 fps
+		assertEquals(107892, sequencer.frameAt(3_600_000));
+		assertEquals(107893, sequencer.firstFrameFrom(3_600_000));
+		assertEquals(3_599_996, sequencer.frameTime(107892));
+		assertEquals(1001, sequencer.frameTime(30));
+		assertEquals(30, sequencer.frameAt(1001));
+		assertEquals(29, sequencer.frameAt(1000));
+		
+	}
+	
+	@Test
+	public void shortEntryIsNotShown() {
+		//No frame of 25 fps starts between 1001 and 1039 ms
+		SRTSubtitle subtitle = new SRTSubtitle(new SRTEntry[] {
+			new SRTEntry(1001, 1039, "Too short"),
+			new SRTEntry(2000, 3000, "Shown")
+		});
+		
+		SRTFrameSequencer.Sequence sequence = SRTFrameSequencer.FPS_25.sequence(subtitle);
+		assertEquals(1, sequence.getRunCount());
+		assertEquals(50, sequence.getStartFrame(0));
+		assertEquals(75, sequence.getEndFrame(0));
+		assertArrayEquals(new int[] { 1 }, sequence.getEntries(0));
+		assertEquals(-1, sequence.runAt(49));
+		assertEquals(0, sequence.runAt(74));
+		assertEquals(-1, sequence.runAt(75));
+		
+	}
+	
+	@Test
+	public void overlappingEntriesMatchEveryFrame() {
+		int[][] rates = { { 24000, 1001 }, { 25, 1 }, { 30000, 1001 }, { 60, 1 } };
+		for (int[] rate : rates) {
+			SRTSubtitle subtitle = createOverlapping(400, rate[0]);
+			checkEveryFrame(new SRTFrameSequencer(rate[0], rate[1]), subtitle, rate[0], rate[1]);
+			
+		}
+		
+	}
+	
+	/* Compares the runs with the entries shown on every single frame. */
+	private static void checkEveryFrame(SRTFrameSequencer sequencer, SRTSubtitle subtitle, long numerator, long denominator) {
+		SRTFrameSequencer.Sequence sequence = sequencer.sequence(subtitle);
+		long last = 0;
+		for (SRTEntry entry : subtitle) {
+			last = Math.max(last, sequencer.frameAt(entry.getEndTime()) + 1);
+			
+		}
+		
+		for (long frame = 0; frame <= last; frame++) {
+			//The frame starts at frame * 1000 * denominator / numerator ms
+			long start = frame * 1000 * denominator;
+			ArrayList<Integer> expected = new ArrayList<>();
+			for (int i = 0; i < subtitle.size(); i++) {
+				SRTEntry entry = subtitle.get(i);
+				if (entry.getStartTime() * numerator <= start && start < entry.getEndTime() * numerator) {
+					expected.add(i);
+					
+				}
+				
+			}
+			
+			int run = sequence.runAt(frame);
+			String message = "frame " + frame + " at " + numerator + "/" + denominator;
+			if (expected.isEmpty()) {
+				assertEquals(-1, run, message);
+				
+			}
+			else {
+				int[] entries = new int[expected.size()];
+				for (int i = 0; i < entries.length; i++) {
+					entries[i] = expected.get(i);
+					
+				}
+				assertArrayEquals(entries, sequence.getEntries(run), message);
+				
+			}
+			
+		}
+		
+	}
+	
+	/* Entries with random times, many of which overlap. */
+	private static SRTSubtitle createOverlapping(int count, long seed) {
+		Random random = new Random(seed);
+		SRTEntry[] entries = new SRTEntry[count];
+		long time = 0;
+		for (int i = 0; i < count; i++) {
+			time += random.nextInt(700);
+			entries[i] = new SRTEntry(time, time + 1 + random.nextInt(2500), "Entry " + i);
+			
+		}
+		
+		return new SRTSubtitle(entries);
+		
+	}
+	
+}
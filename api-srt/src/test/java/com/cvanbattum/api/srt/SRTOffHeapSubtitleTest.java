@@ -0,0 +1,145 @@
+package com.cvanbattum.api.srt;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+
+/**
+ *
+ * @author Casper van Battum
+ *
+ */
+public class SRTOffHeapSubtitleTest {
+	
+	@Test
+	public void storesEntries() {
+		SRTSubtitle subtitle = new SRTSubtitle();
+		subtitle.add(new SRTEntry(1000, 2000, "First", "line"));
+		subtitle.add(new SRTEntry(3000, 4000, "été ♪"));
+		subtitle.add(new SRTEntry(5000, 6000, (String[]) null));
+		
+		try (SRTOffHeapSubtitle stored = SRTOffHeapSubtitle.create(subtitle)) {
+			assertEquals(3, stored.size());
+			assertArrayEquals(new String[] { "First", "line" }, stored.getText(0));
+			assertArrayEquals(new String[] { "été ♪" }, stored.getText(1));
+			assertNull(stored.getText(2));
+			assertEquals(1, stored.indexAt(3500));
+			assertEquals(-1, stored.indexAt(2500));
+			assertArrayEquals(subtitle.get(1).getText(), stored.toSubtitle().get(1).getText());
+			assertEquals(3000, stored.toSubtitle().get(1).getStartTime());
+			assertTrue(stored.getMemoryUsage() > 0);
+			
+		}
+		
+	}
+	
+	@Test
+	public void closedSubtitleCannotBeRead() {
+		final SRTOffHeapSubtitle stored = SRTOffHeapSubtitle.create(new SRTSubtitle(new SRTEntry(1000, 2000, "Text")));
+		stored.close();
+		stored.close();
+		
+		assertTrue(stored.isClosed());
+		assertEquals(0, stored.getMemoryUsage());
+		assertThrows(IllegalStateException.class, new Executable() {
+			
+			@Override
+			public void execute() {
+				stored.getText(0);
+				
+			}
+			
+		});
+		assertThrows(IllegalStateException.class, new Executable() {
+			
+			@Override
+			public void execute() {
+				stored.indexAt(1500);
+				
+			}
+			
+		});
+		
+	}
+	
+	//Reads that race with close either finish or fail with an
+	//IllegalStateException, they never read freed memory
+	@Test
+	public void closeDuringReads() throws Exception {
+		final int readers = 4;
+		ExecutorService executor = Executors.newFixedThreadPool(readers);
+		try {
+			for (int round = 0; round < 20; round++) {
+				final SRTOffHeapSubtitle stored = SRTOffHeapSubtitle.create(new SRTSubtitle(createEntries(2000)));
+				final CountDownLatch started = new CountDownLatch(readers);
+				List<Future<Integer>> futures = new ArrayList<Future<Integer>>();
+				for (int r = 0; r < readers; r++) {
+					futures.add(executor.submit(new Callable<Integer>() {
+						
+						@Override
+						public Integer call() {
+							started.countDown();
+							int reads = 0;
+							try {
+								while (true) {
+									int index = reads % stored.size();
+									assertEquals("Entry " + index, stored.getText(index)[0]);
+									assertEquals(index, stored.indexAt(stored.getStartTime(index)));
+									reads++;
+									
+								}
+								
+							}
+							catch (IllegalStateException e) {
+								return reads;
+								
+							}
+							
+						}
+						
+					}));
+					
+				}
+				
+				started.await();
+				stored.close();
+				for (Future<Integer> future : futures) {
+					assertTrue(future.get() >= 0);
+					
+				}
+				
+			}
+			
+		}
+		finally {
+			executor.shutdownNow();
+			
+		}
+		
+	}
+	
+	private static SRTEntry[] createEntries(int count) {
+		SRTEntry[] entries = new SRTEntry[count];
+		for (int i = 0; i < count; i++) {
+			entries[i] = new SRTEntry(i * 1000L, i * 1000L + 900, "Entry " + i, "second line");
+			
+		}
+		
+		return entries;
+		
+	}
+	
+}
@@ -0,0 +1,186 @@
+package com.cvanbattum.api.srt;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * 
+ * @author Casper van Battum
+ *
+ */
+public class SRTParallelReaderTest {
+	
+	@TempDir
+	Path directory;
+	
+	@Test
+	public void readsLikeSRTReader() throws IOException {
+		File file = write("utf8.srt", createSRT(40000, "\n", true, 1), StandardCharsets.UTF_8, true);
+		assertSame(SRTReader.read(file), new SRTParallelReader(4).read(file));
+		
+	}
+	
+	@Test
+	public void readsWindowsLineBreaksAndMissingIndexLines() throws IOException {
+		Charset windows = Charset.forName("windows-1252");
+		File file = write("windows.srt", createSRT(40000, "\r\n", false, 2), windows, false);
+		assertSame(SRTReader.read(file), new SRTParallelReader(3).read(file));
+		
+	}
+	
+	@Test
+	public void parsesChunkLikeSRTReader() throws IOException {
+		//Old Mac line breaks, blank lines with spaces and several blank lines
+		String srt = "1\r00:00:01,000 --> 00:00:02,000\rCaf\u00E9\r \t\r\r\r00:00:03,500 --> 00:00:04\r\r2\n00:00:05,000-->00:00:06,000 X:1\nA\r\nB";
+		byte[] bytes = srt.getBytes(StandardCharsets.UTF_8);
+		ArrayList<SRTEntry> entries = SRTParallelReader.parse(ByteBuffer.wrap(bytes), StandardCharsets.UTF_8, null);
+		
+		ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+		direct.put(bytes).clear();
+		assertSame(new SRTReader(new StringReader(srt)).readSubtitle(), new SRTSubtitle(entries.toArray(new SRTEntry[0])));
+		assertSame(new SRTSubtitle(entries.toArray(new SRTEntry[0])), new SRTSubtitle(SRTParallelReader.parse(direct, StandardCharsets.UTF_8, null).toArray(new SRTEntry[0])));
+		assertEquals(3, entries.size());
+		assertArrayEquals(new String[] { "A", "B" }, entries.get(2).getText());
+		
+	}
+	
+	@Test
+	public void parsesTimesFromBytesLikeCharacters() {
+		String[] times = {
+			"00:00:01,000", " 01:02:03,4", "02:03.45 X:1", "1:2:3,1234", "00:01", "00:00:01,",
+			"00:00", "12", ":01:02", "00:00:01,000x", "00:00:0\u00E9", "\t00:10:00.5\t"
+		};
+		for (String time : times) {
+			byte[] bytes = (">" + time + "<").getBytes(StandardCharsets.UTF_8);
+			long expected = SRTReader.parseTime(time, 0, time.length());
+			assertEquals(expected, SRTReader.parseTime(ByteBuffer.wrap(bytes), 1, bytes.length - 1), time);
+			
+		}
+		
+	}
+	
+	@Test
+	public void reportsLineOfTheFile() throws IOException {
+		String srt = createSRT(40000, "\n", true, 3);
+		int broken = srt.length() * 3 / 4;
+		broken = srt.indexOf(" --> ", broken);
+		srt = srt.substring(0, broken) + " -> " + srt.substring(broken + 5);
+		final File file = write("broken.srt", srt, StandardCharsets.UTF_8, false);
+		
+		int expected = 1;
+		for (int i = 0; i < broken; i++) {
+			if (srt.charAt(i) == '\n') {
+				expected++;
+				
+			}
+			
+		}
+		
+		SRTParseException e = assertThrows(SRTParseException.class, new Executable() {
+			
+			@Override
+			public void execute() throws IOException {
+				new SRTParallelReader(4).read(file);
+				
+			}
+			
+		});
+		assertEquals(expected, e.getLineNumber());
+		
+		e = assertThrows(SRTParseException.class, new Executable() {
+			
+			@Override
+			public void execute() throws IOException {
+				SRTReader.read(file);
+				
+			}
+			
+		});
+		assertEquals(expected, e.getLineNumber());
+		
+	}
+	
+	/* Checks that two subtitles have the same times and text. */
+	private static void assertSame(SRTSubtitle expected, SRTSubtitle actual) {
+		assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++) {
+			SRTEntry e = expected.get(i);
+			SRTEntry a = actual.get(i);
+			assertEquals(e.getStartTime(), a.getStartTime(), "start of " + i);
+			assertEquals(e.getEndTime(), a.getEndTime(), "end of " + i);
+			assertArrayEquals(e.getText(), a.getText(), "text of " + i);
+			
+		}
+		
+	}
+	
+	/* An SRT file of a few MB, with accents and lines looking like blocks. */
+	private static String createSRT(int entries, String lineBreak, boolean index, long seed) {
+		Random random = new Random(seed);
+		StringBuilder sb = new StringBuilder(entries * 80);
+		long time = 0;
+		for (int i = 0; i < entries; i++) {
+			if (index) {
+				sb.append(i + 1).append(lineBreak);
+				
+			}
+			time += 100 + random.nextInt(3000);
+			sb.append(SRTSubtitle.formatTime(time)).append(" --> ").append(SRTSubtitle.formatTime(time + 1500)).append(lineBreak);
+			int lines = 1 + random.nextInt(3);
+			for (int l = 0; l < lines; l++) {
+				switch (random.nextInt(6)) {
+				case 0:
+					sb.append("Cr\u00E8me br\u00FBl\u00E9e, s'il vous pla\u00EEt");
+					break;
+				case 1:
+					sb.append(random.nextInt(100));
+					break;
+				default:
+					sb.append("Line ").append(l).append(" of entry ").append(i);
+					
+				}
+				sb.append(lineBreak);
+				
+			}
+			sb.append(lineBreak);
+			
+		}
+		
+		return sb.toString();
+		
+	}
+	
+	private File write(String name, String srt, Charset charset, boolean bom) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(srt.length() + 3);
+		if (bom) {
+			out.write(0xEF);
+			out.write(0xBB);
+			out.write(0xBF);
+			
+		}
+		out.write(srt.getBytes(charset));
+		
+		File file = directory.resolve(name).toFile();
+		Files.write(file.toPath(), out.toByteArray());
+		return file;
+		
+	}
+	
+}
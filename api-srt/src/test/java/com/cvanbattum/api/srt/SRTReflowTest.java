@@ -0,0 +1,103 @@
+package com.cvanbattum.api.srt;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ *
+ * @author Casper van Battum
+ *
+ */
+public class SRTReflowTest {
+	
+	private static final String[] WORDS = { "I", "you", "never", "thought", "we", "would", "make", "it", "this", "far" };
+	
+	@Test
+	public void balancesLines() {
+		SRTReflow reflow = new SRTReflow(20, 1);
+		
+		assertArrayEquals(new String[] { "We made it." }, reflow.reflow("We made", "it."));
+		assertArrayEquals(new String[] { "I never thought we", "would make it here." }, reflow.reflow("I never thought we would make it here."));
+		
+		String[] wrapped = { "I never thought we", "would make it here." };
+		assertSame(wrapped, reflow.reflow(wrapped));
+		
+	}
+	
+	//The widths are counted with single spaces, so the lines have those
+	@Test
+	public void separatesWordsBySingleSpaces() {
+		SRTReflow reflow = new SRTReflow(12, 1);
+		
+		assertArrayEquals(new String[] { "Here we go." }, reflow.reflow("Here\t we  ", "  go."));
+		assertArrayEquals(new String[] { "A b c d e f", "g h i j k l" }, reflow.reflow("A   b   c   d   e   f   g   h   i   j   k   l"));
+		
+	}
+	
+	@Test
+	public void measuresWidth() {
+		SRTReflow reflow = new SRTReflow(12, 1);
+		assertArrayEquals(new String[] { "aa bb cc dd" }, reflow.reflow("aa bb cc dd"));
+		
+		//Every character two wide
+		reflow.setMeasure(new SRTReflow.Measure() {
+			
+			@Override
+			public long width(char[] chars, int offset, int length) {
+				return 2 * length;
+				
+			}
+			
+		});
+		assertArrayEquals(new String[] { "aa bb", "cc dd" }, reflow.reflow("aa bb cc dd"));
+		
+	}
+	
+	@Test
+	public void reflowsSubtitleLikeEntries() {
+		Random random = new Random(7);
+		SRTEntry[] entries = new SRTEntry[10000];
+		for (int i = 0; i < entries.length; i++) {
+			entries[i] = new SRTEntry(i * 2000L, i * 2000L + 1500, createLine(random), createLine(random));
+			
+		}
+		
+		SRTReflow single = new SRTReflow(32, 1);
+		String[][] expected = new String[entries.length][];
+		for (int i = 0; i < entries.length; i++) {
+			expected[i] = single.reflow(entries[i].getText());
+			
+		}
+		
+		SRTReflow parallel = new SRTReflow(32, 4);
+		SRTSubtitle subtitle = new SRTSubtitle(entries);
+		parallel.reflow(subtitle);
+		for (int i = 0; i < entries.length; i++) {
+			assertArrayEquals(expected[i], subtitle.get(i).getText());
+			
+		}
+		
+		//The threads are kept, and nothing changes the second time
+		assertEquals(0, parallel.reflow(subtitle));
+		
+	}
+	
+	private static String createLine(Random random) {
+		StringBuilder sb = new StringBuilder();
+		int words = 1 + random.nextInt(6);
+		for (int w = 0; w < words; w++) {
+			sb.append(WORDS[random.nextInt(WORDS.length)]);
+			sb.append((random.nextInt(4) == 0) ? "  " : " ");
+			
+		}
+		
+		return sb.toString();
+		
+	}
+	
+}
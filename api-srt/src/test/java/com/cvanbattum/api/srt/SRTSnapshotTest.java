@@ -0,0 +1,225 @@
+package com.cvanbattum.api.srt;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.lang.ref.WeakReference;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * 
+ * @author Casper van Battum
+ *
+ */
+public class SRTSnapshotTest {
+	
+	@Test
+	public void smallChunksAreMerged() {
+		SRTSubtitle subtitle = new SRTSubtitle(createEntries(SRTSnapshot.CHUNK_SIZE * 20));
+		
+		//Removing scattered entries splits the chunks around every edit
+		Random random = new Random(7);
+		while (subtitle.size() > 10) {
+			subtitle.remove(random.nextInt(subtitle.size()));
+			SRTSnapshot snapshot = subtitle.publish();
+			
+			//No two adjacent chunks fit in one, so at most two per CHUNK_SIZE
+			int maximum = 2 * (snapshot.size() / SRTSnapshot.CHUNK_SIZE) + 1;
+			assertTrue(snapshot.getChunkCount() <= maximum, snapshot.getChunkCount() + " chunks for " + snapshot.size() + " entries");
+			assertEquals(subtitle.toString(), snapshot.toString());
+			
+		}
+		
+	}
+	
+	@Test
+	public void unchangedChunksAreShared() {
+		SRTSubtitle subtitle = new SRTSubtitle(createEntries(SRTSnapshot.CHUNK_SIZE * 4));
+		SRTSnapshot first = subtitle.snapshot();
+		
+		subtitle.get(0).setText("changed");
+		SRTSnapshot second = subtitle.publish();
+		
+		assertEquals(first.getVersion() + 1, second.getVersion());
+		assertEquals(first.getChunkCount(), second.getChunkCount());
+		assertEquals("changed", second.getText(0)[0]);
+		assertEquals(subtitle.toString(), second.toString());
+		
+	}
+	
+	@Test
+	public void snapshotDoesNotKeepEntriesReachable() throws InterruptedException {
+		SRTSubtitle subtitle = new SRTSubtitle(createEntries(100));
+		WeakReference<SRTEntry> entry = new WeakReference<>(subtitle.get(50));
+		SRTSnapshot snapshot = subtitle.snapshot();
+		
+		subtitle = null;
+		for (int i = 0; i < 20 && entry.get() != null; i++) {
+			System.gc();
+			Thread.sleep(10);
+			
+		}
+		
+		assertNull(entry.get());
+		assertEquals(100, snapshot.size());
+		
+	}
+	
+	@Test
+	public void readSubtitleIsPublished() throws IOException {
+		String srt = "1\n00:00:01,000 --> 00:00:02,000\nHello\n\n2\n00:00:03,000 --> 00:00:04,000\nWorld\n\n";
+		try (SRTReader reader = new SRTReader(new StringReader(srt))) {
+			SRTSubtitle subtitle = reader.readSubtitle();
+			
+			assertEquals(2, subtitle.snapshot().size());
+			assertEquals(1, subtitle.snapshot().indexAt(3500));
+			
+		}
+		
+	}
+	
+	/*
+	 * One thread edits and publishes while others read the snapshots. Every
+	 * entry has its start time as text, and the entries stay sorted, so a
+	 * reader can check that a snapshot it got is consistent.
+	 */
+	@Test
+	public void readersSeeConsistentSnapshots() throws Exception {
+		final SRTSubtitle subtitle = new SRTSubtitle(createEntries(SRTSnapshot.CHUNK_SIZE * 8));
+		final AtomicBoolean done = new AtomicBoolean();
+		final AtomicReference<Throwable> failure = new AtomicReference<>();
+		
+		Thread[] readers = new Thread[3];
+		for (int r = 0; r < readers.length; r++) {
+			readers[r] = new Thread(new Runnable() {
+				
+				@Override
+				public void run() {
+					try {
+						long version = 0;
+						while (! done.get()) {
+							SRTSnapshot snapshot = subtitle.snapshot();
+							assertTrue(snapshot.getVersion() >= version);
+							version = snapshot.getVersion();
+							
+							long previous = -1;
+							for (int i = 0; i < snapshot.size(); i++) {
+								long start = snapshot.getStartTime(i);
+								assertTrue(start > previous);
+								assertEquals(String.valueOf(start), snapshot.getText(i)[0]);
+								assertEquals(i, snapshot.indexAt(start));
+								previous = start;
+								
+							}
+							
+						}
+						
+					}
+					catch (Throwable t) {
+						failure.compareAndSet(null, t);
+						
+					}
+					
+				}
+				
+			});
+			readers[r].start();
+			
+		}
+		
+		Random random = new Random(3);
+		for (int edit = 0; edit < 5000 && failure.get() == null; edit++) {
+			int i = random.nextInt(subtitle.size());
+			SRTEntry e = subtitle.get(i);
+			long low = (i == 0) ? 0 : subtitle.get(i - 1).getEndTime();
+			long high = (i == subtitle.size() - 1) ? e.getEndTime() + 1000 : subtitle.get(i + 1).getStartTime();
+			
+			if (random.nextBoolean() && subtitle.size() > SRTSnapshot.CHUNK_SIZE) {
+				subtitle.remove(i);
+				
+			}
+			else if (high - low >= 4) {
+				//Move the entry somewhere between its neighbours
+				long start = low + random.nextInt((int) Math.min(Integer.MAX_VALUE, high - low - 2));
+				e.setTimes(start, start + 1);
+				e.setText(String.valueOf(start));
+				
+			}
+			subtitle.publish();
+			
+		}
+		done.set(true);
+		for (Thread reader : readers) {
+			reader.join();
+			
+		}
+		
+		if (failure.get() != null) {
+			throw new AssertionError(failure.get());
+			
+		}
+		
+	}
+	
+	//Publishing only the range of every edit gives the same as publishing all
+	@Test
+	public void rangePublishMatchesSubtitle() {
+		SRTSubtitle subtitle = new SRTSubtitle(createEntries(SRTSnapshot.CHUNK_SIZE * 20));
+		Random random = new Random(11);
+		for (int edit = 0; edit < 500; edit++) {
+			int index = random.nextInt(subtitle.size());
+			int count = 1 + random.nextInt(100);
+			SRTSnapshot snapshot;
+			switch (random.nextInt(3)) {
+			case 0:
+				subtitle.get(index).setText("edit " + edit);
+				snapshot = subtitle.publish(index, index + 1);
+				break;
+			case 1:
+				subtitle.insertAt(index, createEntries(count));
+				snapshot = subtitle.publish(index, index + count);
+				break;
+			default:
+				count = Math.min(count, subtitle.size() - index - 1);
+				subtitle.subList(index, index + count).clear();
+				snapshot = subtitle.publish(index, index);
+				break;
+			}
+			
+			assertEquals(subtitle.toString(), snapshot.toString());
+			assertTrue(snapshot.getChunkCount() <= 2 * (snapshot.size() / SRTSnapshot.CHUNK_SIZE) + 1);
+			
+		}
+		
+	}
+	
+	//A range too small for the entries added is not trusted
+	@Test
+	public void rangePublishChecksTooSmallRange() {
+		SRTSubtitle subtitle = new SRTSubtitle(createEntries(SRTSnapshot.CHUNK_SIZE * 4));
+		subtitle.insertAt(100, createEntries(10));
+		
+		assertEquals(subtitle.toString(), subtitle.publish(100, 101).toString());
+		
+	}
+	
+	private static SRTEntry[] createEntries(int count) {
+		SRTEntry[] entries = new SRTEntry[count];
+		for (int i = 0; i < count; i++) {
+			long start = 1000L * (i + 1);
+			entries[i] = new SRTEntry(start, start + 500, String.valueOf(start));
+			
+		}
+		
+		return entries;
+		
+	}
+	
+}
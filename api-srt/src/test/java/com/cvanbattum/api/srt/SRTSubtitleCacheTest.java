@@ -0,0 +1,73 @@
+package com.cvanbattum.api.srt;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * 
+ * @author Casper van Battum
+ *
+ */
+public class SRTSubtitleCacheTest {
+	
+	private static final String OLD = "1\n00:00:01,000 --> 00:00:02,000\nOld\n\n";
+	private static final String NEW = "1\n00:00:01,000 --> 00:00:02,000\nNew version\n\n";
+	
+	@TempDir
+	Path directory;
+	
+	@Test
+	public void changedFileIsReadAgain() throws IOException {
+		File file = write(OLD, 1_000_000_000L);
+		SRTSubtitleCache cache = new SRTSubtitleCache(SRTSubtitleCache.DEFAULT_MAXIMUM_SIZE);
+		
+		SRTSnapshot old = cache.get(file);
+		assertSame(old, cache.get(file));
+		
+		write(NEW, 2_000_000_000L);
+		SRTSnapshot changed = cache.get(file);
+		assertEquals("New version", changed.getText(0)[0]);
+		assertEquals(1, cache.getFileCount());
+		assertSame(changed, cache.get(file));
+		
+	}
+	
+	@Test
+	public void olderVersionDoesNotEvictNewerVersion() throws IOException {
+		File file = write(NEW, 2_000_000_000L);
+		SRTSubtitleCache cache = new SRTSubtitleCache(SRTSubtitleCache.DEFAULT_MAXIMUM_SIZE);
+		SRTSnapshot newer = cache.get(file);
+		
+		//Like a slow read that started before the file changed and ends
+		//after the newer version was cached
+		write(OLD, 1_000_000_000L);
+		assertEquals("Old", cache.get(file).getText(0)[0]);
+		assertEquals(1, cache.getFileCount());
+		
+		write(NEW, 2_000_000_000L);
+		long hits = cache.getHits();
+		assertSame(newer, cache.get(file));
+		assertTrue(cache.getHits() > hits);
+		
+	}
+	
+	/* Writes the SRT file with the given modification time. */
+	private File write(String srt, long lastModified) throws IOException {
+		File file = directory.resolve("subtitle.srt").toFile();
+		Files.write(file.toPath(), srt.getBytes(StandardCharsets.UTF_8));
+		assertTrue(file.setLastModified(lastModified));
+		return file;
+		
+	}
+	
+}
@@ -0,0 +1,95 @@
+package com.cvanbattum.api.srt;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+
+/**
+ * 
+ * @author Casper van Battum
+ *
+ */
+public class SRTSubtitleTest {
+	
+	@Test
+	public void mergeKeepsStartOrderAndSubtitleOrder() {
+		SRTEntry a1 = new SRTEntry(1000, 2000, "a1");
+		SRTEntry a2 = new SRTEntry(5000, 6000, "a2");
+		SRTEntry b1 = new SRTEntry(1000, 1500, "b1");
+		SRTEntry b2 = new SRTEntry(3000, 4000, "b2");
+		SRTEntry c1 = new SRTEntry(500, 800, "c1");
+		
+		SRTSubtitle merged = SRTSubtitle.merge(new SRTSubtitle(a1, a2), new SRTSubtitle(b1, b2), new SRTSubtitle(c1), new SRTSubtitle());
+		
+		assertArrayEquals(new SRTEntry[] { c1, a1, b1, b2, a2 }, merged.toArray());
+		assertEquals(5, merged.snapshot().size());
+		
+	}
+	
+	@Test
+	public void stackCombinesOverlappingEntries() {
+		SRTEntry dialogue = new SRTEntry(1000, 4000, "Hello");
+		SRTEntry sign = new SRTEntry(2000, 3000, "EXIT");
+		SRTEntry alone = new SRTEntry(5000, 6000, "Bye");
+		
+		SRTSubtitle stacked = SRTSubtitle.merge(true, new SRTSubtitle(dialogue, alone), new SRTSubtitle(sign));
+		
+		assertEquals(4, stacked.size());
+		assertEquals(1000, stacked.get(0).getStartTime());
+		assertEquals(2000, stacked.get(0).getEndTime());
+		assertArrayEquals(new String[] { "Hello", "EXIT" }, stacked.get(1).getText());
+		assertEquals(3000, stacked.get(2).getStartTime());
+		assertEquals(4000, stacked.get(2).getEndTime());
+		assertSame(alone, stacked.get(3));
+		
+	}
+	
+	@Test
+	public void splitPutsEntriesWhereTheyStart() {
+		final SRTSubtitle subtitle = new SRTSubtitle(
+				new SRTEntry(1000, 2000, "one"),
+				new SRTEntry(1900, 3100, "two"),
+				new SRTEntry(3000, 4000, "three"),
+				new SRTEntry(6000, 7000, "four"));
+		
+		List<SRTSubtitle> parts = subtitle.split(1900, 3000, 5000);
+		
+		assertEquals(4, parts.size());
+		assertEquals(1, parts.get(0).size());
+		assertEquals(1, parts.get(1).size());
+		assertEquals(1, parts.get(2).size());
+		assertEquals(1, parts.get(3).size());
+		assertSame(subtitle.get(3), parts.get(3).get(0));
+		assertEquals(1, parts.get(3).snapshot().size());
+		
+		assertThrows(IllegalArgumentException.class, new Executable() {
+			
+			@Override
+			public void execute() {
+				subtitle.split(3000, 3000);
+				
+			}
+			
+		});
+		
+	}
+	
+	@Test
+	public void toStringWritesEntryWithoutTextAsNoLines() {
+		SRTSubtitle subtitle = new SRTSubtitle(
+				new SRTEntry(1000, 2000, (String[]) null),
+				new SRTEntry(3000, 4000, "two"));
+		
+		String expected = "1\n00:00:01,000 --> 00:00:02,000\n\n2\n00:00:03,000 --> 00:00:04,000\ntwo\n\n";
+		assertEquals(expected, subtitle.toString());
+		assertEquals(expected, subtitle.snapshot().toString());
+		
+	}
+	
+}
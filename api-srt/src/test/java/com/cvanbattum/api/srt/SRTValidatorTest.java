@@ -0,0 +1,81 @@
+package com.cvanbattum.api.srt;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * 
+ * @author Casper van Battum
+ *
+ */
+public class SRTValidatorTest {
+	
+	@Test
+	public void findsDuplicatesWithAnEntryInBetween() {
+		SRTSubtitle subtitle = new SRTSubtitle(
+				new SRTEntry(1000, 3000, "Hello"),
+				new SRTEntry(1000, 2000, "Other"),
+				new SRTEntry(1000, 3000, "Hello"));
+		
+		List<SRTDiagnostic> duplicates = ofType(new SRTValidator().validate(subtitle), SRTDiagnostic.DUPLICATE);
+		
+		assertEquals(1, duplicates.size());
+		assertEquals(2, duplicates.get(0).getIndex());
+		assertEquals(0, duplicates.get(0).getOtherIndex());
+		
+	}
+	
+	@Test
+	public void reportsTheEntryThatStartsLater() {
+		SRTSubtitle subtitle = new SRTSubtitle(
+				new SRTEntry(5000, 6000, "Late"),
+				new SRTEntry(2000, 3000, "Early"),
+				new SRTEntry(3000, 4000, "Also early"));
+		
+		List<SRTDiagnostic> order = ofType(new SRTValidator().validate(subtitle), SRTDiagnostic.OUT_OF_ORDER);
+		
+		assertEquals(2, order.size());
+		assertEquals(0, order.get(1).getOtherIndex());
+		assertEquals(2000, order.get(1).getValue());
+		
+	}
+	
+	@Test
+	public void clampSeparatesEntriesStartingTogether() {
+		SRTSubtitle subtitle = new SRTSubtitle(
+				new SRTEntry(1000, 5000, "First"),
+				new SRTEntry(1000, 4000, "Second"),
+				new SRTEntry(8000, 9000, "Third"));
+		
+		SRTValidator validator = new SRTValidator();
+		validator.setMinGap(100);
+		List<SRTDiagnostic> left = validator.fix(subtitle, SRTValidator.FIX_CLAMP);
+		
+		assertTrue(ofType(left, SRTDiagnostic.OVERLAP).isEmpty(), left.toString());
+		assertTrue(ofType(left, SRTDiagnostic.GAP_TOO_SMALL).isEmpty(), left.toString());
+		assertEquals(1000, subtitle.get(0).getStartTime());
+		assertEquals(3000, subtitle.get(1).getStartTime());
+		assertEquals(5000, subtitle.get(1).getEndTime());
+		
+	}
+	
+	private static List<SRTDiagnostic> ofType(List<SRTDiagnostic> diagnostics, int type) {
+		ArrayList<SRTDiagnostic> result = new ArrayList<>();
+		for (SRTDiagnostic d : diagnostics) {
+			if (d.getType() == type) {
+				result.add(d);
+				
+			}
+			
+		}
+		
+		return result;
+		
+	}
+	
+}
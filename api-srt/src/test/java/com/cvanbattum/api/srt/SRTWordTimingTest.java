@@ -0,0 +1,120 @@
+package com.cvanbattum.api.srt;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+
+/**
+ * 
+ * @author Casper van Battum
+ *
+ */
+public class SRTWordTimingTest {
+	
+	@Test
+	public void parseKaraokeOverLines() {
+		SRTEntry entry = new SRTEntry(1000, 3000, "{\\k50}Twin{\\k30}kle", "{\\kf40}lit{\\K20}tle");
+		SRTWordTiming timing = SRTWordTiming.parseKaraoke(entry);
+		
+		assertArrayEquals(new String[] { "Twinkle", "little" }, entry.getText());
+		assertSame(timing, entry.getWordTiming());
+		assertEquals(4, timing.getWordCount());
+		
+		//"Twin", "kle", then "lit" and "tle" after the line break
+		assertWord(timing, 0, 0, 4, 0, 500);
+		assertWord(timing, 1, 4, 7, 500, 800);
+		assertWord(timing, 2, 8, 11, 800, 1200);
+		assertWord(timing, 3, 11, 14, 1200, 1400);
+		
+	}
+	
+	@Test
+	public void parseKaraokeWithoutTags() {
+		SRTEntry entry = new SRTEntry(1000, 3000, "No {tags} here");
+		
+		assertNull(SRTWordTiming.parseKaraoke(entry));
+		assertArrayEquals(new String[] { "No {tags} here" }, entry.getText());
+		assertNull(entry.getWordTiming());
+		
+	}
+	
+	@Test
+	public void parseKaraokeWithoutText() {
+		SRTEntry entry = new SRTEntry(1000, 3000, (String[]) null);
+		assertNull(SRTWordTiming.parseKaraoke(entry));
+		
+		entry = new SRTEntry(1000, 3000, null, "{\\k10}la{\\k10}la");
+		SRTWordTiming timing = SRTWordTiming.parseKaraoke(entry);
+		assertArrayEquals(new String[] { null, "lala" }, entry.getText());
+		assertWord(timing, 0, 1, 3, 0, 100);
+		assertWord(timing, 1, 3, 5, 100, 200);
+		
+	}
+	
+	@Test
+	public void createEvenDividesByCharacters() {
+		SRTWordTiming timing = SRTWordTiming.createEven(1000, "ab  cdef", "ghij");
+		
+		assertEquals(3, timing.getWordCount());
+		assertWord(timing, 0, 0, 2, 0, 200);
+		assertWord(timing, 1, 4, 8, 200, 600);
+		assertWord(timing, 2, 9, 13, 600, 1000);
+		
+	}
+	
+	@Test
+	public void wordAtAndProgress() {
+		SRTWordTiming timing = new SRTWordTiming(new int[] { 0, 3, 4, 8 }, new int[] { 100, 300, 300, 700 });
+		
+		assertEquals(-1, timing.wordAt(99));
+		assertEquals(0, timing.wordAt(100));
+		assertEquals(0, timing.wordAt(299));
+		assertEquals(1, timing.wordAt(300));
+		assertEquals(1, timing.wordAt(10000));
+		
+		assertEquals(0f, timing.getProgress(0, 50));
+		assertEquals(0.5f, timing.getProgress(0, 200));
+		assertEquals(1f, timing.getProgress(0, 300));
+		assertEquals(0.25f, timing.getProgress(1, 400));
+		
+	}
+	
+	@Test
+	public void rejectsInvalidArrays() {
+		assertThrows(IllegalArgumentException.class, new Executable() {
+			
+			@Override
+			public void execute() {
+				new SRTWordTiming(new int[] { 0, 3 }, new int[] { 0, 100, 100, 200 });
+				
+			}
+			
+		});
+		assertThrows(IllegalArgumentException.class, new Executable() {
+			
+			@Override
+			public void execute() {
+				//The second word starts before the first
+				new SRTWordTiming(new int[] { 0, 3, 4, 8 }, new int[] { 300, 400, 100, 200 });
+				
+			}
+			
+		});
+		
+	}
+	
+	/* Checks the characters and times of a word. */
+	private static void assertWord(SRTWordTiming timing, int word, int begin, int end, int start, int stop) {
+		assertEquals(begin, timing.getBegin(word), "begin of word " + word);
+		assertEquals(end, timing.getEnd(word), "end of word " + word);
+		assertEquals(start, timing.getStartTime(word), "start of word " + word);
+		assertEquals(stop, timing.getEndTime(word), "end time of word " + word);
+		
+	}
+	
+}
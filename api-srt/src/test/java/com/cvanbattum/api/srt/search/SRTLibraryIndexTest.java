@@ -0,0 +1,121 @@
+package com.cvanbattum.api.srt.search;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.cvanbattum.api.srt.search.SRTLibraryIndex.Hit;
+
+/**
+ * 
+ * @author Casper van Battum
+ *
+ */
+public class SRTLibraryIndexTest {
+	
+	@TempDir
+	Path directory;
+	
+	@Test
+	public void entriesWithTheSameTimesAreFoundSeparately() throws IOException {
+		File a = write("a.srt",
+				"1\n00:00:01,000 --> 00:00:02,000\nthe ship is home\n\n"
+				+ "2\n00:00:01,000 --> 00:00:02,000\nthe ship again\n\n"
+				+ "3\n00:00:03,000 --> 00:00:04,000\nno ship here\n\n");
+		
+		try (SRTLibraryIndex index = new SRTLibraryIndex(directory.resolve("index").toFile(), 1)) {
+			index.update(Arrays.asList(a));
+			
+			List<Hit> hits = index.search("the ship");
+			assertEquals(2, hits.size());
+			assertEquals(0, hits.get(0).getEntry());
+			assertEquals(1, hits.get(1).getEntry());
+			assertEquals(3, index.search("ship").size());
+			assertEquals(1, index.search("ship home the").size());
+			assertEquals(0, index.search("ship station").size());
+			
+		}
+		
+	}
+	
+	@Test
+	public void searchesAcrossSegmentsAndMerges() throws IOException {
+		File indexDirectory = directory.resolve("index").toFile();
+		ArrayList<File> library = new ArrayList<>();
+		
+		try (SRTLibraryIndex index = new SRTLibraryIndex(indexDirectory, 2)) {
+			//One segment per update
+			for (int i = 0; i <= SRTLibraryIndex.MAX_SEGMENTS; i++) {
+				library.add(write("f" + i + ".srt", createFile(i)));
+				index.update(library);
+				
+			}
+			
+			//The last update merged all segments into one
+			assertEquals(1, index.getSegmentCount());
+			assertEquals(library.size(), index.search("listen").size());
+			assertEquals(library.size(), index.search("station listen").size());
+			assertEquals(1, index.search("number3").size());
+			
+		}
+		
+		//The merged segments are deleted when the index is opened again
+		try (SRTLibraryIndex reopened = new SRTLibraryIndex(indexDirectory, 1)) {
+			assertEquals(library.size(), reopened.search("listen").size());
+			
+			File[] segments = indexDirectory.listFiles();
+			int count = 0;
+			for (File f : segments) {
+				count += f.getName().startsWith("segment-") ? 1 : 0;
+				
+			}
+			assertEquals(1, count);
+			
+		}
+		
+	}
+	
+	@Test
+	public void changedFilesReplaceOldEntries() throws IOException {
+		File a = write("a.srt", "1\n00:00:01,000 --> 00:00:02,000\nold words\n\n");
+		
+		try (SRTLibraryIndex index = new SRTLibraryIndex(directory.resolve("index").toFile(), 1)) {
+			index.update(Arrays.asList(a));
+			assertTrue(a.setLastModified(a.lastModified() - 10000));
+			Files.write(a.toPath(), "1\n00:00:01,000 --> 00:00:02,000\nnew words here\n\n".getBytes(StandardCharsets.UTF_8));
+			index.update(Arrays.asList(a));
+			
+			assertEquals(0, index.search("old").size());
+			assertEquals(1, index.search("words new").size());
+			assertFalse(index.search("words").isEmpty());
+			
+		}
+		
+	}
+	
+	private File write(String name, String content) throws IOException {
+		Path p = directory.resolve(name);
+		Files.write(p, content.getBytes(StandardCharsets.UTF_8));
+		return p.toFile();
+		
+	}
+	
+	private static String createFile(int number) {
+		return "1\n00:00:01,000 --> 00:00:02,000\nlisten to the station\n\n"
+				+ "2\n00:00:03,000 --> 00:00:04,000\nfile number" + number + "\n\n";
+		
+	}
+	
+}
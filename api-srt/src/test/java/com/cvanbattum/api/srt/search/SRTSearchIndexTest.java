@@ -0,0 +1,129 @@
+package com.cvanbattum.api.srt.search;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import com.cvanbattum.api.srt.SRTEntry;
+import com.cvanbattum.api.srt.SRTSubtitle;
+
+/**
+ * 
+ * @author Casper van Battum
+ *
+ */
+public class SRTSearchIndexTest {
+	
+	private static final String[] WORDS = { "the", "ship", "station", "captain", "home", "listen", "never", "again" };
+	
+	@Test
+	public void timeRangesMatchAllEntries() {
+		Random random = new Random(11);
+		SRTSubtitle subtitle = createSubtitle(random, 2000);
+		SRTSearchIndex index = new SRTSearchIndex(subtitle);
+		
+		for (int q = 0; q < 200; q++) {
+			long from = random.nextInt(4000000);
+			long to = from + random.nextInt((q % 2 == 0) ? 20000 : 2000000);
+			String word = WORDS[random.nextInt(WORDS.length)];
+			String second = WORDS[random.nextInt(WORDS.length)];
+			
+			assertEquals(expected(subtitle, from, to, word), index.search(word, from, to));
+			assertEquals(expected(subtitle, from, to, word, second), index.search(word + " " + second, from, to));
+			assertEquals(expected(subtitle, from, to, word), index.searchPrefix(word, from, to));
+			
+		}
+		
+	}
+	
+	@Test
+	public void refreshFindsChangedTimes() {
+		SRTEntry entry = new SRTEntry(1000, 2000, "the ship");
+		SRTSubtitle subtitle = new SRTSubtitle(entry, new SRTEntry(5000, 6000, "home"));
+		SRTSearchIndex index = new SRTSearchIndex(subtitle);
+		
+		assertEquals(1, index.search("ship", 0, 3000).size());
+		entry.setTimes(10000, 11000);
+		index.refresh();
+		
+		assertEquals(0, index.search("ship", 0, 3000).size());
+		assertEquals(1, index.search("ship", 10500, 10600).size());
+		
+	}
+	
+	@Test
+	public void phraseInTimeRange() {
+		SRTSubtitle subtitle = new SRTSubtitle(
+				new SRTEntry(1000, 2000, "listen to the captain"),
+				new SRTEntry(3000, 4000, "the captain listens"),
+				new SRTEntry(5000, 6000, "captain the"));
+		SRTSearchIndex index = new SRTSearchIndex(subtitle);
+		
+		assertEquals(2, index.searchPhrase("the captain").size());
+		assertEquals(1, index.searchPhrase("the captain", 2500, 7000).size());
+		assertEquals(0, index.searchPhrase("the captain", 4000, 7000).size());
+		
+	}
+	
+	private static SRTSubtitle createSubtitle(Random random, int count) {
+		SRTSubtitle subtitle = new SRTSubtitle();
+		long time = 0;
+		for (int i = 0; i < count; i++) {
+			long duration = 500 + random.nextInt(3000);
+			StringBuilder sb = new StringBuilder();
+			for (int w = 0, n = 1 + random.nextInt(5); w < n; w++) {
+				sb.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+				
+			}
+			subtitle.add(new SRTEntry(time, time + duration, sb.toString().trim()));
+			time += 1 + random.nextInt(2500);
+			
+		}
+		
+		return subtitle;
+		
+	}
+	
+	//Goes through every entry, in the order of the subtitle
+	private static List<SRTEntry> expected(SRTSubtitle subtitle, long from, long to, String... words) {
+		ArrayList<SRTEntry> result = new ArrayList<>();
+		for (SRTEntry e : subtitle) {
+			List<String> tokens = SRTTokenizer.tokenize(e.getText());
+			boolean all = true;
+			for (String w : words) {
+				all &= tokens.contains(w);
+				
+			}
+			if (all && e.getStartTime() < to && e.getEndTime() > from) {
+				result.add(e);
+				
+			}
+			
+		}
+		
+		return sortedByStart(result);
+		
+	}
+	
+	private static List<SRTEntry> sortedByStart(List<SRTEntry> entries) {
+		Collections.sort(entries, new Comparator<SRTEntry>() {
+			
+			@Override
+			public int compare(SRTEntry a, SRTEntry b) {
+				return Long.compare(a.getStartTime(), b.getStartTime());
+				
+			}
+			
+		});
+		
+		return entries;
+		
+	}
+	
+}
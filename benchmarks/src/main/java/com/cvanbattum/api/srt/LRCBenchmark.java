@@ -0,0 +1,99 @@
+package com.cvanbattum.api.srt;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * <p>Reading and writing a lyric corpus of 200000 lines, about the lyrics of
+ * 5000 songs, with {@link LRCReader} and {@link LRCWriter}. The corpus is
+ * read from and written to memory, so only the parsing and formatting is
+ * measured. 200000 lines divided by the time is the throughput.</p>
+ *
+ * <ul>
+ * <li><code>plain</code>: a timestamp per line.</li>
+ * <li><code>enhanced</code>: also a timestamp per word, as enhanced LRC
+ * writes karaoke.</li>
+ * </ul>
+ *
+ * @author Casper van Battum
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class LRCBenchmark {
+	
+	private static final int LINES = 200000;
+	
+	@Param({ "plain", "enhanced" })
+	private String format;
+	
+	private SRTSubtitle subtitle;
+	private String lyrics;
+	
+	@Setup
+	public void setUp() throws IOException {
+		//Lyrics have one line per entry
+		subtitle = new SRTSubtitle();
+		for (SRTEntry e : Subtitles.createEntries(LINES, 1)) {
+			SRTEntry line = new SRTEntry(e.getStartTime(), e.getEndTime(), e.getText()[0]);
+			if (format.equals("enhanced")) {
+				line.setWordTiming(SRTWordTiming.createEven(line.getDuration(), line.getText()));
+				
+			}
+			subtitle.add(line);
+			
+		}
+		
+		StringWriter out = new StringWriter();
+		write(out);
+		lyrics = out.toString();
+		
+	}
+	
+	@Benchmark
+	public SRTSubtitle read() throws IOException {
+		try (LRCReader reader = new LRCReader(new StringReader(lyrics))) {
+			return reader.readSubtitle();
+			
+		}
+		
+	}
+	
+	//Into a writer of the size of the lyrics, so it does not grow
+	@Benchmark
+	public int write() throws IOException {
+		StringWriter out = new StringWriter(lyrics.length());
+		write(out);
+		return out.getBuffer().length();
+		
+	}
+	
+	private void write(Writer out) throws IOException {
+		try (LRCWriter writer = new LRCWriter(out)) {
+			writer.writeTag("ti", "Corpus");
+			writer.writeSubtitle(subtitle);
+			
+		}
+		
+	}
+	
+}
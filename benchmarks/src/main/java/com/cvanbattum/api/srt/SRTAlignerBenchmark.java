@@ -0,0 +1,74 @@
+package com.cvanbattum.api.srt;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * <p>Aligning a subtitle of 10000 cues to a reference of 10000 cues with
+ * {@link SRTAligner}. The subtitle is the reference shifted by seven
+ * seconds, or also played at 25 instead of 23.976 frames per second, which
+ * drifts by minutes over the length of the subtitle. The drift needs a
+ * maximum offset of about 17 minutes instead of the default minute, so every
+ * window is scored at 17 times as many offsets.</p>
+ *
+ * @author Casper van Battum
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class SRTAlignerBenchmark {
+	
+	private static final int CUES = 10000;
+	
+	@Param({ "offset", "drift" })
+	private String shift;
+	
+	private SRTAligner aligner;
+	private SRTSubtitle reference;
+	private SRTSubtitle subtitle;
+	
+	@Setup
+	public void setUp() {
+		reference = Subtitles.createSubtitle(CUES, 1);
+		double scale = shift.equals("drift") ? 23.976 / 25 : 1;
+		
+		subtitle = new SRTSubtitle();
+		for (SRTEntry e : reference) {
+			long start = (long) (e.getStartTime() * scale) + 7300;
+			long end = (long) (e.getEndTime() * scale) + 7300;
+			subtitle.add(new SRTEntry(start, end, e.getText()));
+			
+		}
+		
+		//The default settings, with a maximum offset enough for the drift at
+		//the end of the subtitle
+		aligner = new SRTAligner();
+		if (scale != 1) {
+			aligner.setMaxOffset((long) (reference.get(CUES - 1).getEndTime() * (1 - scale)) + 60000);
+			
+		}
+		
+	}
+	
+	@Benchmark
+	public SRTTimeMapping align() {
+		return aligner.align(reference, subtitle);
+		
+	}
+	
+}
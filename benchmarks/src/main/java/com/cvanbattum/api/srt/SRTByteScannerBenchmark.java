@@ -0,0 +1,111 @@
+package com.cvanbattum.api.srt;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * <p>The scanners of {@link SRTByteScanner} on 50000 entries of SRT (about
+ * 3 MB) in a direct buffer, like a mapped chunk: splitting it into lines and
+ * counting its line breaks. Also parsing the entries from the bytes, as
+ * {@link SRTParallelReader} does for every chunk, against decoding them and
+ * reading them with {@link SRTReader}.</p>
+ *
+ * @author Casper van Battum
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class SRTByteScannerBenchmark {
+	
+	@Param({ "scalar", "swar", "vector" })
+	private String scanner;
+	
+	private SRTByteScanner kernel;
+	private String srt;
+	private ByteBuffer bytes;
+	
+	@Setup
+	public void setUp() {
+		if (scanner.equals("scalar")) {
+			kernel = SRTByteScanner.SCALAR;
+			
+		}
+		else if (scanner.equals("swar")) {
+			kernel = SRTByteScanner.SWAR;
+			
+		}
+		else if (SRTByteScanner.VECTOR != null) {
+			kernel = SRTByteScanner.VECTOR;
+			
+		}
+		else {
+			throw new IllegalStateException("the Vector API is not available");
+			
+		}
+		
+		srt = Subtitles.createSubtitle(50000, 1).toString();
+		byte[] data = srt.getBytes(StandardCharsets.UTF_8);
+		bytes = ByteBuffer.allocateDirect(data.length);
+		bytes.put(data).clear();
+		
+	}
+	
+	@Benchmark
+	public int splitLines() {
+		final int limit = bytes.limit();
+		int lines = 0;
+		int i = kernel.indexOfLineBreak(bytes, 0, limit);
+		while (i >= 0) {
+			lines++;
+			i = kernel.indexOfLineBreak(bytes, i + 1, limit);
+			
+		}
+		
+		return lines;
+		
+	}
+	
+	@Benchmark
+	public int countLines() {
+		return kernel.count(bytes, (byte) '\n', 0, bytes.limit());
+		
+	}
+	
+	//Uses the selected scanner, so only the result of vector is meaningful
+	@Benchmark
+	public ArrayList<SRTEntry> parseBytes() throws IOException {
+		return SRTParallelReader.parse(bytes, StandardCharsets.UTF_8, null);
+		
+	}
+	
+	//Does not use a scanner, the same for every scanner
+	@Benchmark
+	public SRTSubtitle readDecoded() throws IOException {
+		try (SRTReader reader = new SRTReader(new StringReader(srt))) {
+			return reader.readSubtitle();
+			
+		}
+		
+	}
+	
+}
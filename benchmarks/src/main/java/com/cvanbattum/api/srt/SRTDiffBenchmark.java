@@ -0,0 +1,92 @@
+package com.cvanbattum.api.srt;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * <p>Comparing two versions of a subtitle of 50000 cues with
+ * {@link SRTDiff}. The revised version is shifted by 300 ms, a tenth of the
+ * cues are reworded, and one in a hundred is deleted and one in a hundred
+ * is inserted.</p>
+ *
+ * <ul>
+ * <li><code>compute</code>: computes the differences.</li>
+ * <li><code>apply</code>: applies them to the original again.</li>
+ * </ul>
+ *
+ * @author Casper van Battum
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class SRTDiffBenchmark {
+	
+	private static final int CUES = 50000;
+	private static final long SHIFT = 300;
+	
+	private SRTSubtitle original;
+	private SRTSubtitle revised;
+	private SRTDiff diff;
+	
+	@Setup
+	public void setUp() {
+		original = Subtitles.createSubtitle(CUES, 1);
+		revised = new SRTSubtitle();
+		
+		Random random = new Random(42);
+		for (int i = 0; i < CUES; i++) {
+			SRTEntry e = original.get(i);
+			String[] text = e.getText().clone();
+			int change = random.nextInt(100);
+			if (change == 0) {
+				continue;
+				
+			}
+			else if (change == 1) {
+				//Shown for the first half of the original
+				long middle = (e.getStartTime() + e.getEndTime()) / 2;
+				revised.add(new SRTEntry(e.getStartTime() + SHIFT, middle + SHIFT, Subtitles.createLine(random)));
+				revised.add(new SRTEntry(middle + SHIFT, e.getEndTime() + SHIFT, text));
+				continue;
+				
+			}
+			else if (change < 12) {
+				text[0] = text[0] + " again";
+				
+			}
+			revised.add(new SRTEntry(e.getStartTime() + SHIFT, e.getEndTime() + SHIFT, text));
+			
+		}
+		
+		diff = SRTDiff.compute(original, revised);
+		
+	}
+	
+	@Benchmark
+	public SRTDiff compute() {
+		return SRTDiff.compute(original, revised);
+		
+	}
+	
+	@Benchmark
+	public SRTSubtitle apply() {
+		return diff.apply(original);
+		
+	}
+	
+}
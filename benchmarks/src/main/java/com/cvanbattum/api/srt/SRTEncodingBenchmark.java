@@ -0,0 +1,119 @@
+package com.cvanbattum.api.srt;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * <p>Detecting the encoding of the fixture corpus of the
+ * <code>SRTEncoding</code> tests with {@link SRTEncoding#detect(byte[], int, int)}:
+ * UTF-8 and UTF-16 with and without byte order mark, and Czech, Polish,
+ * German and French text in the legacy code pages.</p>
+ *
+ * <ul>
+ * <li><code>corpus</code>: every fixture as it is, 3 KB in total.</li>
+ * <li><code>samples</code>: every fixture repeated to a whole sample of
+ * {@link SRTEncoding#SAMPLE_SIZE} bytes, like the start of a real file.
+ * The corpus size divided by the time is the throughput.</li>
+ * </ul>
+ *
+ * @author Casper van Battum
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class SRTEncodingBenchmark {
+	
+	private static final String[] FIXTURES = {
+		"ascii.srt", "invalid-utf-8-overlong.srt", "iso-8859-2-polish.srt", "utf-16be.srt",
+		"utf-16le-bom.srt", "utf-16le.srt", "utf-8-bom.srt", "utf-8-cyrillic.srt", "utf-8.srt",
+		"windows-1250-czech.srt", "windows-1250-polish.srt", "windows-1252-french.srt", "windows-1252-german.srt"
+	};
+	
+	private byte[][] corpus;
+	private byte[][] samples;
+	
+	@Setup
+	public void setUp() throws IOException {
+		corpus = new byte[FIXTURES.length][];
+		samples = new byte[FIXTURES.length][];
+		for (int f = 0; f < FIXTURES.length; f++) {
+			corpus[f] = read(FIXTURES[f]);
+			
+			samples[f] = new byte[SRTEncoding.SAMPLE_SIZE];
+			for (int i = 0; i < samples[f].length; i += corpus[f].length) {
+				System.arraycopy(corpus[f], 0, samples[f], i, Math.min(corpus[f].length, samples[f].length - i));
+				
+			}
+			
+		}
+		
+	}
+	
+	@Benchmark
+	public double corpus() {
+		return detect(corpus);
+		
+	}
+	
+	@Benchmark
+	public double samples() {
+		return detect(samples);
+		
+	}
+	
+	//The sum of the confidences, so no detection is left out
+	private static double detect(byte[][] files) {
+		double confidence = 0;
+		for (byte[] data : files) {
+			confidence += SRTEncoding.detect(data, 0, data.length).getConfidence();
+			
+		}
+		
+		return confidence;
+		
+	}
+	
+	private static byte[] read(String name) throws IOException {
+		InputStream in = SRTEncodingBenchmark.class.getResourceAsStream("encoding/" + name);
+		if (in == null) {
+			throw new IOException("missing fixture " + name);
+			
+		}
+		
+		try {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buffer = new byte[4096];
+			int read;
+			while ((read = in.read(buffer)) > 0) {
+				out.write(buffer, 0, read);
+				
+			}
+			
+			return out.toByteArray();
+			
+		}
+		finally {
+			in.close();
+			
+		}
+		
+	}
+	
+}
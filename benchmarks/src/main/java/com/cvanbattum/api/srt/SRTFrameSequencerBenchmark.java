@@ -0,0 +1,67 @@
+package com.cvanbattum.api.srt;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * <p>{@link SRTFrameSequencer} against a lookup for every frame, for every
+ * frame of a subtitle at 29.97 fps. A 50000 entry subtitle is about 28
+ * hours, or 3 million frames: divide the frames by the time of an operation
+ * for the frames per second.</p>
+ *
+ * @author Casper van Battum
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class SRTFrameSequencerBenchmark {
+	
+	@Param({ "1000", "50000" })
+	private int size;
+	
+	private SRTSnapshot snapshot;
+	private long frames;
+	
+	@Setup
+	public void setUp() {
+		snapshot = Subtitles.createSubtitle(size, 1).publish();
+		frames = SRTFrameSequencer.FPS_29_97.frameAt(snapshot.getEndTime(size - 1)) + 1;
+		
+	}
+	
+	@Benchmark
+	public SRTFrameSequencer.Sequence sequence() {
+		return SRTFrameSequencer.FPS_29_97.sequence(snapshot);
+		
+	}
+	
+	//What the sequencer replaces: looking up the entry of every frame
+	@Benchmark
+	public long indexAtEveryFrame() {
+		SRTFrameSequencer sequencer = SRTFrameSequencer.FPS_29_97;
+		long sum = 0;
+		for (long frame = 0; frame < frames; frame++) {
+			sum += snapshot.indexAt(sequencer.frameTime(frame));
+			
+		}
+		
+		return sum;
+		
+	}
+	
+}
@@ -0,0 +1,91 @@
+package com.cvanbattum.api.srt;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * <p>Merging and splitting a million cues with
+ * {@link SRTSubtitle#merge(boolean, SRTSubtitle...)} and
+ * {@link SRTSubtitle#split(long...)}.</p>
+ *
+ * <ul>
+ * <li><code>merge</code>: merges the million cues divided over 2 or 16
+ * tracks, which all start at the same time and overlap each other
+ * everywhere.</li>
+ * <li><code>mergeStacked</code>: the same, stacking the overlapping
+ * entries into about two million new entries, each with the lines of all
+ * tracks shown at that time.</li>
+ * <li><code>split</code>: splits a subtitle of a million cues into 100
+ * parts of equal length. It does not depend on the tracks.</li>
+ * </ul>
+ *
+ * @author Casper van Battum
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class SRTMergeBenchmark {
+	
+	private static final int CUES = 1000000;
+	private static final int PARTS = 100;
+	
+	@Param({ "2", "16" })
+	private int tracks;
+	
+	private SRTSubtitle[] subtitles;
+	private SRTSubtitle subtitle;
+	private long[] times;
+	
+	@Setup
+	public void setUp() {
+		subtitles = new SRTSubtitle[tracks];
+		for (int t = 0; t < tracks; t++) {
+			subtitles[t] = Subtitles.createSubtitle(CUES / tracks, t);
+			
+		}
+		
+		subtitle = Subtitles.createSubtitle(CUES, 1);
+		long end = subtitle.get(CUES - 1).getEndTime();
+		times = new long[PARTS - 1];
+		for (int p = 1; p < PARTS; p++) {
+			times[p - 1] = end / PARTS * p;
+			
+		}
+		
+	}
+	
+	@Benchmark
+	public SRTSubtitle merge() {
+		return SRTSubtitle.merge(false, subtitles);
+		
+	}
+	
+	@Benchmark
+	public SRTSubtitle mergeStacked() {
+		return SRTSubtitle.merge(true, subtitles);
+		
+	}
+	
+	@Benchmark
+	public List<SRTSubtitle> split() {
+		return subtitle.split(times);
+		
+	}
+	
+}
@@ -0,0 +1,165 @@
+package com.cvanbattum.api.srt;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * <p>A server holding a library of 1000 subtitles of 1000 cues each, stored
+ * as {@link SRTSnapshot}s on the heap or as {@link SRTOffHeapSubtitle}s,
+ * under sustained load. Every request looks up the entry shown at a random
+ * time in a random subtitle and encodes its text as UTF-8, and every 1000th
+ * request also replaces a subtitle of the library by a new one, like a
+ * server reloading files.</p>
+ *
+ * <p>The latency is given in percentiles, so the high ones show the
+ * garbage collection pauses. Run with <code>-prof gc</code> for the
+ * collections and their time, and with <code>-jvmArgsAppend "-Xmx2g
+ * -XX:+UseG1GC -Xlog:gc:file=gc-%p.log"</code> for every pause and the heap
+ * after it; these options replace the ones of this class. The heap used by
+ * the library after loading it is printed during setup.</p>
+ *
+ * <p>G1 is used like on a server, also on machines too small for the JVM
+ * to choose it. The library is read and reloaded by one thread, so run this
+ * benchmark with one thread only.</p>
+ *
+ * @author Casper van Battum
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx2g", "-XX:+UseG1GC" })
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+public class SRTOffHeapSubtitleBenchmark {
+	
+	private static final int SUBTITLES = 1000;
+	private static final int CUES = 1000;
+	private static final int RELOAD = 1000;
+	
+	@Param({ "heap", "offheap" })
+	private String store;
+	
+	private SRTSnapshot[] snapshots;
+	private SRTOffHeapSubtitle[] stored;
+	private long[] ends;
+	private Random random;
+	private int requests;
+	private int reloads;
+	
+	@Setup
+	public void setUp() {
+		snapshots = new SRTSnapshot[SUBTITLES];
+		stored = new SRTOffHeapSubtitle[SUBTITLES];
+		ends = new long[SUBTITLES];
+		random = new Random(42);
+		
+		long before = usedHeap();
+		for (int s = 0; s < SUBTITLES; s++) {
+			load(s, s);
+			
+		}
+		System.out.println("Heap used by the library: " + (usedHeap() - before) / (1024 * 1024) + " MB");
+		
+	}
+	
+	@TearDown
+	public void tearDown() {
+		for (SRTOffHeapSubtitle s : stored) {
+			if (s != null) {
+				s.close();
+				
+			}
+			
+		}
+		
+	}
+	
+	@Benchmark
+	public byte[] serve() {
+		if (++requests % RELOAD == 0) {
+			load(reloads % SUBTITLES, SUBTITLES + reloads);
+			reloads++;
+			
+		}
+		
+		int s = random.nextInt(SUBTITLES);
+		long time = (long) (random.nextDouble() * ends[s]);
+		String[] text;
+		if (stored[s] != null) {
+			int index = stored[s].indexAt(time);
+			text = (index < 0) ? null : stored[s].getText(index);
+			
+		}
+		else {
+			int index = snapshots[s].indexAt(time);
+			text = (index < 0) ? null : snapshots[s].getText(index);
+			
+		}
+		
+		return encode(text);
+		
+	}
+	
+	//Replaces a subtitle of the library by a new one, freeing the old one
+	private void load(int s, long seed) {
+		SRTSubtitle subtitle = Subtitles.createSubtitle(CUES, seed);
+		ends[s] = subtitle.get(CUES - 1).getEndTime();
+		if (store.equals("offheap")) {
+			SRTOffHeapSubtitle old = stored[s];
+			stored[s] = SRTOffHeapSubtitle.create(subtitle);
+			if (old != null) {
+				old.close();
+				
+			}
+			
+		}
+		else {
+			snapshots[s] = subtitle.snapshot();
+			
+		}
+		
+	}
+	
+	private static byte[] encode(String[] text) {
+		if (text == null) {
+			return new byte[0];
+			
+		}
+		
+		StringBuilder sb = new StringBuilder(80);
+		for (String line : text) {
+			sb.append(line).append('\n');
+			
+		}
+		
+		return sb.toString().getBytes(StandardCharsets.UTF_8);
+		
+	}
+	
+	private static long usedHeap() {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+			
+		}
+		
+		return runtime.totalMemory() - runtime.freeMemory();
+		
+	}
+	
+}
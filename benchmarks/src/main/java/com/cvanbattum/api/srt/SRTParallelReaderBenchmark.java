@@ -0,0 +1,65 @@
+package com.cvanbattum.api.srt;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * <p>How {@link SRTParallelReader} scales with its threads, reading a file
+ * of 500000 entries (about 35 MB). With one thread the file is read by
+ * {@link SRTReader}. The scaling is limited by the processors of the
+ * machine, so compare runs on the same machine only.</p>
+ *
+ * @author Casper van Battum
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = { "--add-modules=jdk.incubator.vector", "-Xmx2g" })
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class SRTParallelReaderBenchmark {
+	
+	@Param({ "1", "2", "4", "8", "16" })
+	private int threads;
+	
+	private File file;
+	private SRTParallelReader reader;
+	
+	@Setup
+	public void setUp() throws IOException {
+		file = File.createTempFile("benchmark", ".srt");
+		Files.write(file.toPath(), Subtitles.createSubtitle(500000, 1).toString().getBytes(StandardCharsets.UTF_8));
+		reader = new SRTParallelReader(threads);
+		
+	}
+	
+	@TearDown
+	public void tearDown() {
+		file.delete();
+		
+	}
+	
+	@Benchmark
+	public SRTSubtitle read() throws IOException {
+		return reader.read(file);
+		
+	}
+	
+}
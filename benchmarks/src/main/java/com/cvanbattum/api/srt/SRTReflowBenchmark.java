@@ -0,0 +1,139 @@
+package com.cvanbattum.api.srt;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * <p>Reflowing a subtitle of a million cues with {@link SRTReflow} into two
+ * lines of at most 32 characters, or the width of 32 average characters of
+ * a proportional font.</p>
+ *
+ * <ul>
+ * <li><code>reflow</code>: the text as created, of which most entries
+ * change.</li>
+ * <li><code>reflowWrapped</code>: the text reflowed before, so only the
+ * breaks are chosen and compared, and no entry changes.</li>
+ * </ul>
+ *
+ * <p>The scaling is limited by the processors of the machine, so compare
+ * runs on the same machine only.</p>
+ *
+ * @author Casper van Battum
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class SRTReflowBenchmark {
+	
+	private static final int CUES = 1000000;
+	private static final int WIDTH = 32;
+	
+	//The average width of a character of the proportional font
+	private static final int AVERAGE = 7;
+	
+	@Param({ "1", "4" })
+	private int threads;
+	
+	@Param({ "chars", "font" })
+	private String measure;
+	
+	private SRTReflow reflow;
+	private String[][] source;
+	private SRTSubtitle subtitle;
+	private SRTSubtitle wrapped;
+	
+	@Setup
+	public void setUp() {
+		if (measure.equals("font")) {
+			reflow = new SRTReflow(WIDTH * AVERAGE, threads);
+			reflow.setMeasure(new ProportionalMeasure());
+			
+		}
+		else {
+			reflow = new SRTReflow(WIDTH, threads);
+			
+		}
+		
+		subtitle = Subtitles.createSubtitle(CUES, 1);
+		source = new String[CUES][];
+		for (int i = 0; i < CUES; i++) {
+			source[i] = subtitle.get(i).getText();
+			
+		}
+		
+		wrapped = Subtitles.createSubtitle(CUES, 1);
+		reflow.reflow(wrapped);
+		
+	}
+	
+	//Every iteration reflows the text as created
+	@Setup(Level.Iteration)
+	public void restore() {
+		for (int i = 0; i < CUES; i++) {
+			subtitle.get(i).setText(source[i]);
+			
+		}
+		
+	}
+	
+	@Benchmark
+	public int reflow() {
+		return reflow.reflow(subtitle);
+		
+	}
+	
+	@Benchmark
+	public int reflowWrapped() {
+		return reflow.reflow(wrapped);
+		
+	}
+	
+	/*
+	 * Narrow punctuation and letters, wide capitals and the rest in between,
+	 * about as a proportional font measures them.
+	 */
+	private static final class ProportionalMeasure implements SRTReflow.Measure {
+		
+		@Override
+		public long width(char[] chars, int offset, int length) {
+			long width = 0;
+			for (int i = offset; i < offset + length; i++) {
+				char c = chars[i];
+				if (c == ' ' || c == 'i' || c == 'l' || c == 'j' || c == 't' || c == 'f' || c == '.' || c == ',' || c == '\'' || c == '!') {
+					width += 3;
+					
+				}
+				else if (Character.isUpperCase(c) || c == 'm' || c == 'w') {
+					width += 10;
+					
+				}
+				else {
+					width += AVERAGE;
+					
+				}
+				
+			}
+			
+			return width;
+			
+		}
+		
+	}
+	
+}
@@ -0,0 +1,109 @@
+package com.cvanbattum.api.srt;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * <p>Readers of {@link SRTSnapshot}s while a subtitle is edited
+ * continuously. One thread changes the text of an entry and publishes it,
+ * over and over, while two threads look up the entry shown at a time in the
+ * last snapshot and read its text.</p>
+ *
+ * <ul>
+ * <li><code>edit:editor</code>: the time to change an entry and publish
+ * it, with {@link SRTSubtitle#publish()} comparing every entry, or with
+ * {@link SRTSubtitle#publish(int, int)} given the entry changed.</li>
+ * <li><code>edit:reader</code>: the time of a lookup while the snapshots
+ * are published, in percentiles.</li>
+ * </ul>
+ *
+ * @author Casper van Battum
+ *
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class SRTSnapshotBenchmark {
+	
+	//Edited entries and looked up times, used in turn
+	private static final int POSITIONS = 1024;
+	
+	@Param({ "10000", "1000000" })
+	private int size;
+	
+	@Param({ "all", "range" })
+	private String publish;
+	
+	private SRTSubtitle subtitle;
+	private int[] indexes;
+	private long[] times;
+	private String[][] texts;
+	private int edits;
+	
+	@Setup
+	public void setUp() {
+		subtitle = Subtitles.createSubtitle(size, 1);
+		
+		Random random = new Random(42);
+		long end = subtitle.get(size - 1).getEndTime();
+		indexes = new int[POSITIONS];
+		times = new long[POSITIONS];
+		texts = new String[POSITIONS][];
+		for (int i = 0; i < POSITIONS; i++) {
+			indexes[i] = random.nextInt(size);
+			times[i] = (long) (random.nextDouble() * end);
+			texts[i] = new String[] { Subtitles.createLine(random) };
+			
+		}
+		
+	}
+	
+	@Benchmark
+	@Group("edit")
+	@GroupThreads(1)
+	public SRTSnapshot editor() {
+		int i = edits++ & (POSITIONS - 1);
+		int index = indexes[i];
+		subtitle.get(index).setText(texts[i]);
+		return publish.equals("range") ? subtitle.publish(index, index + 1) : subtitle.publish();
+		
+	}
+	
+	@Benchmark
+	@Group("edit")
+	@GroupThreads(2)
+	public String[] reader(Lookups lookups) {
+		SRTSnapshot snapshot = subtitle.snapshot();
+		int index = snapshot.indexAt(times[lookups.next++ & (POSITIONS - 1)]);
+		return (index < 0) ? null : snapshot.getText(index);
+		
+	}
+	
+	/**
+	 * The position of a reader in the looked up times.
+	 */
+	@State(Scope.Thread)
+	public static class Lookups {
+		
+		private int next;
+		
+	}
+	
+}
@@ -0,0 +1,123 @@
+package com.cvanbattum.api.srt;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * <p>The hot paths of {@link SRTSubtitle}: building a subtitle, inserting
+ * into it, writing it as SRT, formatting times and looking up the entry
+ * shown at a time.</p>
+ *
+ * @author Casper van Battum
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class SRTSubtitleBenchmark {
+	
+	//Lookups per invocation of a lookup benchmark
+	private static final int LOOKUPS = 1024;
+	
+	@Param({ "1000", "50000" })
+	private int size;
+	
+	private SRTEntry[] entries;
+	private SRTSubtitle subtitle;
+	private SRTSnapshot snapshot;
+	private SRTEntry inserted;
+	private long[] times;
+	
+	@Setup
+	public void setUp() {
+		entries = Subtitles.createEntries(size, 1);
+		subtitle = new SRTSubtitle(entries);
+		snapshot = subtitle.publish();
+		inserted = new SRTEntry(1000, 2000, "Inserted", "entry");
+		
+		Random random = new Random(42);
+		long end = entries[size - 1].getEndTime();
+		times = new long[LOOKUPS];
+		for (int i = 0; i < LOOKUPS; i++) {
+			times[i] = (long) (random.nextDouble() * end);
+			
+		}
+		
+	}
+	
+	@Benchmark
+	public SRTSubtitle construct() {
+		return new SRTSubtitle(entries);
+		
+	}
+	
+	//Inserts in the middle and removes again, so the size stays the same
+	@Benchmark
+	public SRTEntry insertAt() {
+		int middle = size / 2;
+		subtitle.insertAt(middle, inserted);
+		return subtitle.remove(middle);
+		
+	}
+	
+	@Benchmark
+	public String toSRT() {
+		return subtitle.toString();
+		
+	}
+	
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.NANOSECONDS)
+	public int formatTime() {
+		int length = 0;
+		for (int i = 0; i < LOOKUPS; i++) {
+			length += SRTSubtitle.formatTime(times[i]).length();
+			
+		}
+		
+		return length;
+		
+	}
+	
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.NANOSECONDS)
+	public int indexAt() {
+		int sum = 0;
+		for (int i = 0; i < LOOKUPS; i++) {
+			sum += snapshot.indexAt(times[i]);
+			
+		}
+		
+		return sum;
+		
+	}
+	
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.NANOSECONDS)
+	public int nextIndex() {
+		int sum = 0;
+		for (int i = 0; i < LOOKUPS; i++) {
+			sum += snapshot.nextIndex(times[i]);
+			
+		}
+		
+		return sum;
+		
+	}
+	
+}
@@ -0,0 +1,82 @@
+package com.cvanbattum.api.srt;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * <p>Validating a subtitle of a million cues with {@link SRTValidator}. A
+ * million divided by the time is the throughput in cues per second, so less
+ * than 100 ms is more than ten million cues per second.</p>
+ *
+ * <ul>
+ * <li><code>validate</code>: the subtitle as created, of which about half
+ * of the cues have too much text to read in time.</li>
+ * <li><code>validateDuplicates</code>: every tenth cue is shown twice, and
+ * every cue after a duplicate starts at the same time as the one before
+ * it, so runs of entries with the same start time are compared.</li>
+ * </ul>
+ *
+ * @author Casper van Battum
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class SRTValidatorBenchmark {
+	
+	private static final int CUES = 1000000;
+	
+	private SRTValidator validator;
+	private SRTSubtitle subtitle;
+	private SRTSubtitle duplicates;
+	
+	@Setup
+	public void setUp() {
+		validator = new SRTValidator();
+		subtitle = Subtitles.createSubtitle(CUES, 1);
+		
+		duplicates = new SRTSubtitle();
+		SRTEntry[] entries = Subtitles.createEntries(CUES, 1);
+		for (int i = 0; i < CUES; i++) {
+			SRTEntry e = entries[i];
+			duplicates.add(e);
+			if (i % 10 == 0) {
+				duplicates.add(new SRTEntry(e.getStartTime(), e.getEndTime(), e.getText()));
+				if (i + 1 < CUES) {
+					entries[i + 1].setTimes(e.getStartTime(), entries[i + 1].getEndTime());
+					
+				}
+				
+			}
+			
+		}
+		
+	}
+	
+	@Benchmark
+	public List<SRTDiagnostic> validate() {
+		return validator.validate(subtitle);
+		
+	}
+	
+	@Benchmark
+	public List<SRTDiagnostic> validateDuplicates() {
+		return validator.validate(duplicates);
+		
+	}
+	
+}
@@ -0,0 +1,90 @@
+package com.cvanbattum.api.srt;
+
+import java.util.Random;
+
+/**
+ * <p>Creates synthetic subtitles for the benchmarks. The cues follow each
+ * other with small gaps, like dialogue, and have one or two lines of words
+ * from a small vocabulary, so words and lines repeat like they do in real
+ * subtitles.</p>
+ *
+ * @author Casper van Battum
+ *
+ */
+public final class Subtitles {
+	
+	private static final String[] WORDS = {
+		"the", "you", "I", "to", "a", "what", "is", "it", "that", "we",
+		"know", "don't", "here", "this", "go", "come", "on", "right", "no", "yes",
+		"okay", "think", "want", "just", "get", "me", "your", "now", "there", "with",
+		"time", "never", "please", "again", "tonight", "listen", "nothing", "everyone", "somebody", "remember",
+		"[MUSIC]", "\u266A", "Captain", "doctor", "Sarah", "home", "ship", "station", "tomorrow", "why"
+	};
+	
+	private Subtitles() {
+		super();
+		
+	}
+	
+	/**
+	 * Creates entries of one or two lines, one every two seconds on average.
+	 *
+	 * @param count
+	 * 			The amount of entries.
+	 * @param seed
+	 * 			The seed of the random text and times.
+	 * @return The entries, sorted by start time.
+	 */
+	public static SRTEntry[] createEntries(int count, long seed) {
+		Random random = new Random(seed);
+		SRTEntry[] entries = new SRTEntry[count];
+		long time = 1000;
+		for (int i = 0; i < count; i++) {
+			long duration = 800 + random.nextInt(2400);
+			String[] text = (random.nextInt(3) == 0) ? new String[] { createLine(random) } : new String[] { createLine(random), createLine(random) };
+			entries[i] = new SRTEntry(time, time + duration, text);
+			time += duration + 50 + random.nextInt(600);
+			
+		}
+		
+		return entries;
+		
+	}
+	
+	/**
+	 * @param count
+	 * 			The amount of entries.
+	 * @param seed
+	 * 			The seed of the random text and times.
+	 * @return A new subtitle with the entries of
+	 * 			{@link #createEntries(int, long)}.
+	 */
+	public static SRTSubtitle createSubtitle(int count, long seed) {
+		return new SRTSubtitle(createEntries(count, seed));
+		
+	}
+	
+	/**
+	 * Creates a line of two to eight words.
+	 *
+	 * @param random
+	 * 			The source of the words.
+	 * @return The line.
+	 */
+	public static String createLine(Random random) {
+		StringBuilder sb = new StringBuilder(48);
+		int words = 2 + random.nextInt(7);
+		for (int w = 0; w < words; w++) {
+			if (w > 0) {
+				sb.append(' ');
+				
+			}
+			sb.append(WORDS[random.nextInt(WORDS.length)]);
+			
+		}
+		
+		return sb.toString();
+		
+	}
+	
+}
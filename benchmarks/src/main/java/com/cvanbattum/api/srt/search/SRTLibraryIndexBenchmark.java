@@ -0,0 +1,132 @@
+package com.cvanbattum.api.srt.search;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.cvanbattum.api.srt.Subtitles;
+
+/**
+ * <p>Indexing and searching a library of 200 SRT files of 1000 cues each
+ * (about 14 MB) with {@link SRTLibraryIndex}.</p>
+ *
+ * <ul>
+ * <li><code>index</code>: indexes the whole library into a new index, so
+ * every file is parsed and written to one segment. 200000 cues divided by
+ * the time is the indexing throughput.</li>
+ * <li><code>search</code>: the latency of a two word query on the indexed
+ * library, about 5000 hits, in percentiles.</li>
+ * </ul>
+ *
+ * <p>The scaling is limited by the processors of the machine, so compare
+ * runs on the same machine only.</p>
+ *
+ * @author Casper van Battum
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class SRTLibraryIndexBenchmark {
+	
+	private static final int FILES = 200;
+	private static final int CUES = 1000;
+	
+	@Param({ "1", "4" })
+	private int threads;
+	
+	private File library;
+	private List<File> files;
+	private File directory;
+	private SRTLibraryIndex index;
+	private SRTLibraryIndex searched;
+	
+	@Setup
+	public void setUp() throws IOException {
+		library = Files.createTempDirectory("library").toFile();
+		files = new ArrayList<>(FILES);
+		for (int i = 0; i < FILES; i++) {
+			File file = new File(library, "file" + i + ".srt");
+			Files.write(file.toPath(), Subtitles.createSubtitle(CUES, i).toString().getBytes(StandardCharsets.UTF_8));
+			files.add(file);
+			
+		}
+		
+		searched = new SRTLibraryIndex(new File(library, "searched"), threads);
+		searched.update(files);
+		
+	}
+	
+	@TearDown
+	public void tearDown() {
+		searched.close();
+		delete(library);
+		
+	}
+	
+	//Every iteration indexes into a new, empty index
+	@Setup(Level.Iteration)
+	public void open() throws IOException {
+		directory = Files.createTempDirectory(library.toPath(), "index").toFile();
+		index = new SRTLibraryIndex(directory, threads);
+		
+	}
+	
+	@TearDown(Level.Iteration)
+	public void close() {
+		index.close();
+		delete(directory);
+		
+	}
+	
+	@Benchmark
+	public int index() throws IOException {
+		return index.update(files);
+		
+	}
+	
+	@Benchmark
+	@BenchmarkMode(Mode.SampleTime)
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	@Warmup(iterations = 3, time = 1)
+	@Measurement(iterations = 5, time = 1)
+	public List<SRTLibraryIndex.Hit> search() {
+		return searched.search("Captain doctor");
+		
+	}
+	
+	private static void delete(File file) {
+		File[] children = file.listFiles();
+		if (children != null) {
+			for (File child : children) {
+				delete(child);
+				
+			}
+			
+		}
+		file.delete();
+		
+	}
+	
+}
@@ -0,0 +1,95 @@
+package com.cvanbattum.api.srt.search;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.cvanbattum.api.srt.SRTEntry;
+import com.cvanbattum.api.srt.SRTSubtitle;
+import com.cvanbattum.api.srt.Subtitles;
+
+/**
+ * <p>The latency of queries on an {@link SRTSearchIndex} of a subtitle of a
+ * million cues, in percentiles. Every word of the synthetic subtitles is in
+ * about a tenth of the cues, so the results are large: about 24000 cues
+ * for two words, 3000 for a phrase and 150000 for the prefix. The time
+ * filtered queries look in ten minutes in the middle of the subtitle, about
+ * 230 cues of which up to 40 match.</p>
+ *
+ * @author Casper van Battum
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class SRTSearchIndexBenchmark {
+	
+	private static final int CUES = 1000000;
+	
+	//Ten minutes
+	private static final long RANGE = 10 * 60 * 1000;
+	
+	private SRTSearchIndex index;
+	private long from;
+	private long to;
+	
+	@Setup
+	public void setUp() {
+		SRTSubtitle subtitle = Subtitles.createSubtitle(CUES, 1);
+		index = new SRTSearchIndex(subtitle);
+		
+		from = subtitle.get(CUES / 2).getStartTime();
+		to = from + RANGE;
+		
+	}
+	
+	@Benchmark
+	public List<SRTEntry> term() {
+		return index.search("Captain doctor");
+		
+	}
+	
+	@Benchmark
+	public List<SRTEntry> phrase() {
+		return index.searchPhrase("come on");
+		
+	}
+	
+	@Benchmark
+	public List<SRTEntry> prefix() {
+		return index.searchPrefix("tom");
+		
+	}
+	
+	@Benchmark
+	public List<SRTEntry> termInRange() {
+		return index.search("Captain doctor", from, to);
+		
+	}
+	
+	@Benchmark
+	public List<SRTEntry> phraseInRange() {
+		return index.searchPhrase("come on", from, to);
+		
+	}
+	
+	@Benchmark
+	public List<SRTEntry> prefixInRange() {
+		return index.searchPrefix("tom", from, to);
+		
+	}
+	
+}
@@ -0,0 +1,94 @@
+package com.cvanbattum.subreader.gui;
+
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * <p>The hot paths of the player window, run off-screen without a display:
+ * changing the text of a {@link SubtitlePanel}, and painting a
+ * {@link SubtitleButton} into an image.</p>
+ *
+ * @author Casper van Battum
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class SubtitleGuiBenchmark {
+	
+	private static final String[][] TEXTS = {
+		{ "I told you I would come back for you." },
+		{ "Captain, the station is not answering.", "Somebody has to go down there." },
+		{ "[MUSIC]" },
+		{ "Listen to me.", "Nothing happened here tonight." }
+	};
+	
+	private SubtitlePanel panel;
+	private SubtitleButton textButton;
+	private SubtitleButton playButton;
+	private BufferedImage image;
+	private Graphics2D graphics;
+	private int next;
+	
+	@Setup
+	public void setUp() {
+		panel = new SubtitlePanel(null, TEXTS[0]);
+		
+		Dimension size = new Dimension(80, 24);
+		textButton = new SubtitleButton("Open");
+		textButton.setSize(size);
+		//The icon needs a square of at least 40 pixels to fit its grid
+		Dimension iconSize = new Dimension(48, 48);
+		playButton = SubtitleButton.createPlayButton(iconSize);
+		playButton.setSize(iconSize);
+		
+		image = new BufferedImage(iconSize.width, iconSize.height, BufferedImage.TYPE_INT_ARGB);
+		graphics = image.createGraphics();
+		
+	}
+	
+	@TearDown
+	public void tearDown() {
+		graphics.dispose();
+		
+	}
+	
+	@Benchmark
+	public SubtitlePanel setText() {
+		panel.setText(TEXTS[next++ & (TEXTS.length - 1)]);
+		return panel;
+		
+	}
+	
+	@Benchmark
+	public BufferedImage paintTextButton() {
+		textButton.paint(graphics);
+		return image;
+		
+	}
+	
+	@Benchmark
+	public BufferedImage paintPlayButton() {
+		playButton.paint(graphics);
+		return image;
+		
+	}
+	
+}
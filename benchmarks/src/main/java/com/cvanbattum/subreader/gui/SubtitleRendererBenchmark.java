@@ -0,0 +1,103 @@
+package com.cvanbattum.subreader.gui;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.cvanbattum.api.srt.SRTSnapshot;
+import com.cvanbattum.api.srt.SRTSubtitle;
+import com.cvanbattum.api.srt.Subtitles;
+
+/**
+ * <p>Rendering frames of 1280 by 160 pixels with
+ * {@link SubtitleRenderer#renderFrames(SRTSnapshot, long[], SubtitleRenderer.FrameHandler)},
+ * run off-screen without a display. Every call renders 1000 frames, so the
+ * frames per second are a million divided by the time in microseconds.</p>
+ *
+ * <ul>
+ * <li><code>playback</code>: 40 seconds at 25 frames per second, so an
+ * entry is shown in about 50 frames and drawn once.</li>
+ * <li><code>seek</code>: every frame shows another entry, so every frame
+ * is drawn.</li>
+ * </ul>
+ *
+ * <p>The scaling is limited by the processors of the machine, so compare
+ * runs on the same machine only.</p>
+ *
+ * @author Casper van Battum
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class SubtitleRendererBenchmark {
+	
+	private static final int WIDTH = 1280;
+	private static final int HEIGHT = 160;
+	private static final int FRAMES = 1000;
+	
+	//25 frames per second
+	private static final long FRAME_TIME = 40;
+	
+	@Param({ "1", "4" })
+	private int threads;
+	
+	@Param({ "playback", "seek" })
+	private String frames;
+	
+	private SubtitleRenderer renderer;
+	private SRTSnapshot snapshot;
+	private long[] times;
+	
+	@Setup
+	public void setUp() {
+		renderer = new SubtitleRenderer(WIDTH, HEIGHT, threads);
+		SRTSubtitle subtitle = Subtitles.createSubtitle(FRAMES, 1);
+		snapshot = subtitle.publish();
+		
+		times = new long[FRAMES];
+		for (int i = 0; i < FRAMES; i++) {
+			times[i] = frames.equals("seek") ? subtitle.get(i).getStartTime() : subtitle.get(0).getStartTime() + i * FRAME_TIME;
+			
+		}
+		
+	}
+	
+	@TearDown
+	public void tearDown() {
+		renderer.shutdown();
+		
+	}
+	
+	@Benchmark
+	public void renderFrames(final Blackhole blackhole) {
+		//A pixel of the middle line, as copying the frames would be
+		//measured instead of rendering them
+		renderer.renderFrames(snapshot, times, new SubtitleRenderer.FrameHandler() {
+			
+			@Override
+			public void frame(int frame, int[] pixels) {
+				blackhole.consume(pixels[HEIGHT / 2 * WIDTH + WIDTH / 2]);
+				
+			}
+			
+		});
+		
+	}
+	
+}
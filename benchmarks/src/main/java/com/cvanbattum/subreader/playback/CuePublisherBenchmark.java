@@ -0,0 +1,180 @@
+package com.cvanbattum.subreader.playback;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.cvanbattum.api.srt.SRTSnapshot;
+import com.cvanbattum.api.srt.SRTSubtitle;
+import com.cvanbattum.api.srt.Subtitles;
+
+/**
+ * <p>Publishing cue events to several subscribers of a {@link CuePublisher},
+ * delivered on a pool of four threads.</p>
+ *
+ * <ul>
+ * <li><code>latency</code>: the time from a seek until every subscriber got
+ * the cue shown at the new position, sampled for percentiles.</li>
+ * <li><code>throughput</code>: seeks while every subscriber requests as many
+ * events as it gets, in seeks per millisecond. Each seek publishes two
+ * events to every subscriber.</li>
+ * <li><code>slowSubscribers</code>: seeks while no subscriber requests
+ * anything, so every event is dropped or coalesced by the policy. The
+ * playback must not slow down because of them.</li>
+ * </ul>
+ *
+ * @author Casper van Battum
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class CuePublisherBenchmark {
+	
+	//Positions seeked to, in turn
+	private static final int POSITIONS = 1024;
+	
+	@Param({ "1", "16", "256" })
+	private int subscribers;
+	
+	@Param({ "0", "1" })
+	private int policy;
+	
+	private ExecutorService executor;
+	private CuePublisher publisher;
+	private CuePublisher slowPublisher;
+	private long[] positions;
+	private int next;
+	
+	private volatile CountDownLatch shown;
+	
+	@Setup
+	public void setUp() {
+		SRTSubtitle subtitle = Subtitles.createSubtitle(2000, 1);
+		//The middle of cues all over the subtitle, each shows a cue
+		SRTSnapshot snapshot = subtitle.publish();
+		positions = new long[POSITIONS];
+		for (int i = 0; i < POSITIONS; i++) {
+			int index = (int) ((i * 7919L) % snapshot.size());
+			positions[i] = (snapshot.getStartTime(index) + snapshot.getEndTime(index)) / 2;
+			
+		}
+		
+		executor = Executors.newFixedThreadPool(4);
+		
+		publisher = new CuePublisher(subtitle, null, executor);
+		slowPublisher = new CuePublisher(subtitle, null, executor);
+		for (int i = 0; i < subscribers; i++) {
+			publisher.subscribe(new Counter(true), policy, CuePublisher.DEFAULT_BUFFER_SIZE);
+			slowPublisher.subscribe(new Counter(false), policy, CuePublisher.DEFAULT_BUFFER_SIZE);
+			
+		}
+		
+	}
+	
+	@TearDown
+	public void tearDown() {
+		publisher.close();
+		slowPublisher.close();
+		executor.shutdownNow();
+		
+	}
+	
+	@Benchmark
+	@BenchmarkMode(Mode.SampleTime)
+	public void latency() throws InterruptedException {
+		CountDownLatch latch = new CountDownLatch(subscribers);
+		shown = latch;
+		publisher.seek(nextPosition());
+		latch.await();
+		
+	}
+	
+	@Benchmark
+	@BenchmarkMode(Mode.Throughput)
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public void throughput() {
+		shown = null;
+		publisher.seek(nextPosition());
+		
+	}
+	
+	@Benchmark
+	public void slowSubscribers() {
+		slowPublisher.seek(nextPosition());
+		
+	}
+	
+	private long nextPosition() {
+		next = (next + 1) & (POSITIONS - 1);
+		return positions[next];
+		
+	}
+	
+	/*
+	 * Counts down the latch of a latency measurement at every cue shown.
+	 */
+	private final class Counter implements Flow.Subscriber<CueEvent> {
+		
+		private final boolean requesting;
+		private Flow.Subscription subscription;
+		
+		private Counter(boolean requesting) {
+			this.requesting = requesting;
+			
+		}
+		
+		@Override
+		public void onSubscribe(Flow.Subscription subscription) {
+			this.subscription = subscription;
+			if (requesting) {
+				subscription.request(1);
+				
+			}
+			
+		}
+		
+		@Override
+		public void onNext(CueEvent event) {
+			CountDownLatch latch = shown;
+			if (latch != null && event.getType() == CueEvent.SHOWN) {
+				latch.countDown();
+				
+			}
+			subscription.request(1);
+			
+		}
+		
+		@Override
+		public void onError(Throwable throwable) {
+			throw new IllegalStateException(throwable);
+			
+		}
+		
+		@Override
+		public void onComplete() {
+			//Closed after the benchmark
+			
+		}
+		
+	}
+	
+}
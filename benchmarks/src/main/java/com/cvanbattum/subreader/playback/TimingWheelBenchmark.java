@@ -0,0 +1,171 @@
+package com.cvanbattum.subreader.playback;
+
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * <p>A {@link TimingWheel} against a <code>ScheduledThreadPoolExecutor</code>
+ * with as many pending timers as a server with that many sessions has. Both
+ * run the timers on a single thread.</p>
+ *
+ * <ul>
+ * <li><code>scheduleCancel</code>: schedules the timers one second to a
+ * minute ahead, then cancels them before any is due, like sessions that seek or pause before their
+ * cue changes.</li>
+ * <li><code>fire</code>: schedules the timers within 100 ms and waits until
+ * all of them ran.</li>
+ * </ul>
+ *
+ * @author Casper van Battum
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class TimingWheelBenchmark {
+	
+	//The time within which the timers of fire are due
+	private static final int FIRE_WITHIN = 100;
+	
+	@Param({ "100000" })
+	private int timers;
+	
+	private TimingWheel wheel;
+	private ScheduledThreadPoolExecutor executor;
+	private long[] cancelDelays;
+	private long[] fireDelays;
+	
+	private TimingWheel.Timeout[] timeouts;
+	private ScheduledFuture<?>[] futures;
+	private CountDownLatch fired;
+	private Runnable task;
+	private Runnable idle;
+	
+	@Setup
+	public void setUp() {
+		wheel = new TimingWheel(1, TimeUnit.MILLISECONDS, null);
+		executor = new ScheduledThreadPoolExecutor(1);
+		//Cancelled timers are removed from the queue, like from the wheel
+		executor.setRemoveOnCancelPolicy(true);
+		
+		Random random = new Random(42);
+		cancelDelays = new long[timers];
+		fireDelays = new long[timers];
+		for (int i = 0; i < timers; i++) {
+			cancelDelays[i] = 1000 + random.nextInt(59000);
+			fireDelays[i] = random.nextInt(FIRE_WITHIN);
+			
+		}
+		
+		timeouts = new TimingWheel.Timeout[timers];
+		futures = new ScheduledFuture<?>[timers];
+		task = new Runnable() {
+			
+			@Override
+			public void run() {
+				fired.countDown();
+				
+			}
+			
+		};
+		idle = new Runnable() {
+			
+			@Override
+			public void run() {
+				//Cancelled before it is due
+				
+			}
+			
+		};
+		
+	}
+	
+	@TearDown
+	public void tearDown() {
+		wheel.close();
+		executor.shutdownNow();
+		
+	}
+	
+	@Benchmark
+	public int wheelScheduleCancel() {
+		for (int i = 0; i < timers; i++) {
+			timeouts[i] = wheel.schedule(idle, cancelDelays[i], TimeUnit.MILLISECONDS);
+			
+		}
+		
+		int cancelled = 0;
+		for (int i = 0; i < timers; i++) {
+			if (timeouts[i].cancel()) {
+				cancelled++;
+				
+			}
+			
+		}
+		
+		return cancelled;
+		
+	}
+	
+	@Benchmark
+	public int executorScheduleCancel() {
+		for (int i = 0; i < timers; i++) {
+			futures[i] = executor.schedule(idle, cancelDelays[i], TimeUnit.MILLISECONDS);
+			
+		}
+		
+		int cancelled = 0;
+		for (int i = 0; i < timers; i++) {
+			if (futures[i].cancel(false)) {
+				cancelled++;
+				
+			}
+			
+		}
+		
+		return cancelled;
+		
+	}
+	
+	@Benchmark
+	public void wheelFire() throws InterruptedException {
+		fired = new CountDownLatch(timers);
+		for (int i = 0; i < timers; i++) {
+			wheel.schedule(task, fireDelays[i], TimeUnit.MILLISECONDS);
+			
+		}
+		fired.await();
+		
+	}
+	
+	@Benchmark
+	public void executorFire() throws InterruptedException {
+		fired = new CountDownLatch(timers);
+		for (int i = 0; i < timers; i++) {
+			executor.schedule(task, fireDelays[i], TimeUnit.MILLISECONDS);
+			
+		}
+		fired.await();
+		
+	}
+	
+}
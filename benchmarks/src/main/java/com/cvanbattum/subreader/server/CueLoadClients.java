@@ -0,0 +1,389 @@
+package com.cvanbattum.subreader.server;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+
+/**
+ * <p>The clients of {@link CueServerBenchmark}, run in a process of their
+ * own so the client and the server sockets of ten thousand sessions do not
+ * count against the open file limit of a single process. All connections are
+ * handled by one thread with a selector, like a load generator, so the
+ * clients hardly take processor time from the server.</p>
+ *
+ * <p>Reads one command per line from the standard input, and answers each
+ * with one line when it is done:</p>
+ *
+ * <pre>
+ * open PORT N        opens N sessions, done when each received its first cue or clear
+ * seek POSITION      seeks every session, done when each received the seek event
+ * close              closes all sessions
+ * </pre>
+ *
+ * @author Casper van Battum
+ *
+ */
+public final class CueLoadClients {
+	
+	//Connections opened but not yet streaming, more overflow the accept queue
+	private static final int OPENING = 512;
+	//Connections sending the control requests of a seek
+	private static final int CONTROLLERS = 16;
+	private static final byte[] EVENT = "event: ".getBytes(StandardCharsets.US_ASCII);
+	private static final byte[] STATUS = "HTTP/1.1 ".getBytes(StandardCharsets.US_ASCII);
+	
+	private final Selector selector;
+	private final ArrayList<Client> clients = new ArrayList<>();
+	private InetSocketAddress address;
+	
+	private CueLoadClients() throws IOException {
+		this.selector = Selector.open();
+		
+	}
+	
+	public static void main(String[] args) throws IOException {
+		CueLoadClients load = new CueLoadClients();
+		BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+		String line;
+		while ((line = in.readLine()) != null) {
+			String[] command = line.trim().split(" ");
+			if (command[0].equals("open")) {
+				load.open(Integer.parseInt(command[1]), Integer.parseInt(command[2]));
+				System.out.println("opened " + load.clients.size());
+				
+			}
+			else if (command[0].equals("seek")) {
+				load.seek(Long.parseLong(command[1]));
+				System.out.println("seeked");
+				
+			}
+			else if (command[0].equals("close")) {
+				load.close();
+				System.out.println("closed");
+				
+			}
+			else {
+				System.out.println("unknown command: " + line);
+				
+			}
+			System.out.flush();
+			
+		}
+		
+	}
+	
+	private void open(int port, int sessions) throws IOException {
+		address = new InetSocketAddress(InetAddress.getLoopbackAddress(), port);
+		byte[] request = ("GET /events?position=0 HTTP/1.1\r\nHost: localhost\r\n\r\n").getBytes(StandardCharsets.US_ASCII);
+		
+		int opened = 0;
+		int streaming = 0;
+		while (streaming < sessions) {
+			while (opened < sessions && opened - streaming < OPENING) {
+				Client client = new Client(connect(request));
+				clients.add(client);
+				opened++;
+				
+			}
+			
+			streaming += select();
+			
+		}
+		
+	}
+	
+	/*
+	 * Sends the seeks over a few keep-alive connections, one request at a
+	 * time on each, and waits until every session received its seek event.
+	 */
+	private void seek(long position) throws IOException {
+		for (Client client : clients) {
+			client.seekTarget = client.seeks + 1;
+			
+		}
+		
+		ArrayList<Controller> controllers = new ArrayList<>();
+		for (int c = 0; c < CONTROLLERS; c++) {
+			Controller controller = new Controller(connect(null));
+			for (int i = c; i < clients.size(); i += CONTROLLERS) {
+				controller.requests.add("GET /control?session=" + clients.get(i).id + "&seek=" + position + " HTTP/1.1\r\nHost: localhost\r\n\r\n");
+				
+			}
+			controller.key.attach(controller);
+			controllers.add(controller);
+			
+		}
+		
+		//A seek event can arrive before the response to its request
+		int seeked = 0;
+		int answered = 0;
+		while (seeked < clients.size() || answered < CONTROLLERS) {
+			seeked += select();
+			answered = 0;
+			for (Controller controller : controllers) {
+				if (controller.responses == controller.requests.size()) {
+					answered++;
+					
+				}
+				
+			}
+			
+		}
+		
+		for (Controller controller : controllers) {
+			controller.key.channel().close();
+			
+		}
+		
+	}
+	
+	private void close() throws IOException {
+		for (Client client : clients) {
+			client.key.channel().close();
+			
+		}
+		clients.clear();
+		selector.selectNow();
+		
+	}
+	
+	private SelectionKey connect(byte[] request) throws IOException {
+		SocketChannel channel = SocketChannel.open();
+		channel.configureBlocking(false);
+		channel.connect(address);
+		SelectionKey key = channel.register(selector, SelectionKey.OP_CONNECT);
+		key.attach(request);
+		return key;
+		
+	}
+	
+	//Handles the ready connections, returns the amount of sessions that got done
+	private int select() throws IOException {
+		selector.select(1000);
+		int done = 0;
+		Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+		while (keys.hasNext()) {
+			SelectionKey key = keys.next();
+			keys.remove();
+			Connection connection = (Connection) key.attachment();
+			if (key.isConnectable()) {
+				((SocketChannel) key.channel()).finishConnect();
+				key.interestOps(SelectionKey.OP_READ);
+				connection.connected();
+				
+			}
+			if (key.isValid() && key.isReadable()) {
+				done += connection.read();
+				
+			}
+			
+		}
+		
+		return done;
+		
+	}
+	
+	/*
+	 * A connection reading the bytes it receives through a state machine,
+	 * so nothing is buffered or decoded.
+	 */
+	private abstract static class Connection {
+		
+		final SelectionKey key;
+		private final ByteBuffer buffer = ByteBuffer.allocate(4096);
+		
+		Connection(SelectionKey key) {
+			this.key = key;
+			
+		}
+		
+		abstract void connected() throws IOException;
+		
+		abstract int accept(byte b) throws IOException;
+		
+		//The amount of sessions that got done by the bytes read
+		final int read() throws IOException {
+			buffer.clear();
+			int n = ((SocketChannel) key.channel()).read(buffer);
+			if (n < 0) {
+				throw new IOException("server closed a connection");
+				
+			}
+			
+			int done = 0;
+			for (int i = 0; i < n; i++) {
+				done += accept(buffer.get(i));
+				
+			}
+			
+			return done;
+			
+		}
+		
+		final void write(byte[] bytes) throws IOException {
+			ByteBuffer out = ByteBuffer.wrap(bytes);
+			while (out.hasRemaining()) {
+				((SocketChannel) key.channel()).write(out);
+				
+			}
+			
+		}
+		
+		//The next matched length of a pattern, after a mismatch only its first byte can restart it
+		static int match(byte[] pattern, int matched, byte b) {
+			if (pattern[matched] == b) {
+				return matched + 1;
+				
+			}
+			
+			return (pattern[0] == b) ? 1 : 0;
+			
+		}
+		
+	}
+	
+	/*
+	 * A session streaming events, counting the events it receives.
+	 */
+	private final class Client extends Connection {
+		
+		private final byte[] request;
+		private final StringBuilder name = new StringBuilder();
+		private final StringBuilder data = new StringBuilder();
+		private int matched;
+		//0 matching "event: ", 1 the name, 2 the data line of a session event
+		private int state;
+		
+		private String id;
+		private int shown;
+		private int seeks;
+		private int seekTarget;
+		
+		Client(SelectionKey key) {
+			super(key);
+			this.request = (byte[]) key.attachment();
+			key.attach(this);
+			
+		}
+		
+		@Override
+		void connected() throws IOException {
+			write(request);
+			
+		}
+		
+		@Override
+		int accept(byte b) {
+			if (state == 0) {
+				matched = match(EVENT, matched, b);
+				if (matched == EVENT.length) {
+					matched = 0;
+					state = 1;
+					name.setLength(0);
+					
+				}
+				return 0;
+				
+			}
+			if (state == 1) {
+				if (b != '\n') {
+					name.append((char) b);
+					return 0;
+					
+				}
+				if (name.toString().equals("session")) {
+					state = 2;
+					data.setLength(0);
+					return 0;
+					
+				}
+				
+				state = 0;
+				return event(name.toString());
+				
+			}
+			
+			//The data line of the session event, "data: id"
+			if (b != '\n') {
+				data.append((char) b);
+				return 0;
+				
+			}
+			id = data.substring("data: ".length());
+			state = 0;
+			return 0;
+			
+		}
+		
+		private int event(String event) {
+			if (event.equals("seek")) {
+				seeks++;
+				return (seeks == seekTarget) ? 1 : 0;
+				
+			}
+			if (event.equals("cue") || event.equals("clear")) {
+				shown++;
+				return (shown == 1 && id != null) ? 1 : 0;
+				
+			}
+			
+			return 0;
+			
+		}
+		
+	}
+	
+	/*
+	 * A keep-alive connection sending control requests one at a time.
+	 */
+	private final class Controller extends Connection {
+		
+		private final ArrayList<String> requests = new ArrayList<>();
+		private int matched;
+		private int responses;
+		
+		Controller(SelectionKey key) {
+			super(key);
+			
+		}
+		
+		@Override
+		void connected() throws IOException {
+			sendNext();
+			
+		}
+		
+		@Override
+		int accept(byte b) throws IOException {
+			matched = match(STATUS, matched, b);
+			if (matched == STATUS.length) {
+				matched = 0;
+				responses++;
+				sendNext();
+				
+			}
+			
+			return 0;
+			
+		}
+		
+		private void sendNext() throws IOException {
+			if (responses < requests.size()) {
+				write(requests.get(responses).getBytes(StandardCharsets.US_ASCII));
+				
+			}
+			
+		}
+		
+	}
+	
+}
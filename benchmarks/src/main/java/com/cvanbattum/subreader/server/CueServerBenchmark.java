@@ -0,0 +1,147 @@
+package com.cvanbattum.subreader.server;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.cvanbattum.api.srt.SRTSubtitle;
+import com.cvanbattum.api.srt.Subtitles;
+
+/**
+ * <p>Loads a {@link CueServer} with up to ten thousand concurrent sessions.
+ * The sessions are opened and read by {@link CueLoadClients} in a process of
+ * its own, over the loopback address.</p>
+ *
+ * <ul>
+ * <li><code>open</code>: the time until all sessions are open and received
+ * their first event.</li>
+ * <li><code>seek</code>: the time until all open sessions are seeked through
+ * <code>/control</code> and received the seek event, which is the time the
+ * server takes to answer a control request and push the events, times the
+ * amount of sessions.</li>
+ * </ul>
+ *
+ * <p>The server uses virtual threads on Java 21 and later, so run the
+ * benchmark on such a JVM to measure those.</p>
+ *
+ * @author Casper van Battum
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+public class CueServerBenchmark {
+	
+	@Param({ "1000", "10000" })
+	private int sessions;
+	
+	private SRTSubtitle subtitle;
+	private Process clients;
+	private Writer commands;
+	private BufferedReader replies;
+	
+	private CueServer server;
+	private long position;
+	
+	@Setup
+	public void setUp() throws IOException {
+		subtitle = Subtitles.createSubtitle(2000, 1);
+		
+		String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+		ProcessBuilder builder = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"), CueLoadClients.class.getName());
+		builder.redirectError(ProcessBuilder.Redirect.INHERIT);
+		clients = builder.start();
+		commands = new OutputStreamWriter(clients.getOutputStream(), StandardCharsets.UTF_8);
+		replies = new BufferedReader(new InputStreamReader(clients.getInputStream(), StandardCharsets.UTF_8));
+		
+	}
+	
+	@TearDown
+	public void tearDown() throws IOException, InterruptedException {
+		commands.close();
+		if (! clients.waitFor(10, TimeUnit.SECONDS)) {
+			clients.destroy();
+			
+		}
+		
+	}
+	
+	@Setup(Level.Iteration)
+	public void startServer() throws IOException {
+		server = new CueServer(subtitle, 0);
+		server.start();
+		
+	}
+	
+	@TearDown(Level.Iteration)
+	public void stopServer() throws IOException {
+		command("close", "closed");
+		server.stop();
+		
+	}
+	
+	@Benchmark
+	public String open() throws IOException {
+		return command("open " + server.getPort() + " " + sessions, "opened");
+		
+	}
+	
+	@Benchmark
+	public String seek(Opened opened) throws IOException {
+		//Somewhere else every time, so every session sends a new cue
+		position = (position + 600000) % subtitle.get(subtitle.size() - 1).getEndTime();
+		return command("seek " + position, "seeked");
+		
+	}
+	
+	/**
+	 * Opens the sessions before a <code>seek</code> is measured.
+	 */
+	@State(Scope.Benchmark)
+	public static class Opened {
+		
+		@Setup(Level.Iteration)
+		public void setUp(CueServerBenchmark benchmark) throws IOException {
+			benchmark.open();
+			
+		}
+		
+	}
+	
+	//Sends a command to the clients and waits for its reply
+	private String command(String command, String reply) throws IOException {
+		commands.write(command + "\n");
+		commands.flush();
+		String line = replies.readLine();
+		if (line == null || ! line.startsWith(reply)) {
+			throw new IllegalStateException("clients answered " + line + " to " + command);
+			
+		}
+		
+		return line;
+		
+	}
+	
+}
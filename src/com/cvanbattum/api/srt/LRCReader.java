@@ -0,0 +1,571 @@
+package com.cvanbattum.api.srt;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * <p>Reads LRC lyrics into {@link SRTEntry} and {@link SRTSubtitle} objects,
+ * so lyrics can be shown like any subtitle. Every line of an LRC file starts
+ * with one or more timestamps and is followed by the lyric:</p>
+ *
+ * <pre>
+ * [ti:Twinkle, Twinkle]
+ * [offset:+200]
+ * [00:12.00]Twinkle, twinkle, little star
+ * [00:17.20][01:02.40]How I wonder what you are
+ * [00:22.00]
+ * </pre>
+ *
+ * <p>A line with several timestamps is shown at each of them. An entry ends
+ * when the next timestamp of the file starts, so a timestamp without text
+ * (like the last line above) ends the previous line without showing a new
+ * one. A timestamp followed only by a word timestamp, like
+ * <code>[00:22.00]&lt;00:22.00&gt;</code>, is an entry with an empty line,
+ * as {@link LRCWriter} writes entries without text. The last line of the
+ * file is shown until the <code>[length:]</code> tag, or for
+ * {@link #LAST_LINE_DURATION} milliseconds.</p>
+ *
+ * <p>The <code>[offset:]</code> tag moves all following timestamps: a
+ * positive offset in milliseconds shows the lines earlier. The other tags,
+ * like <code>[ar:]</code> and <code>[ti:]</code>, can be retrieved using
+ * {@link #getTags()}.</p>
+ *
+ * <p>Enhanced LRC word timestamps (<code>&lt;00:12.50&gt;</code>) within a
+ * line are removed from the text and become the {@link SRTWordTiming} of the
+ * entry.</p>
+ *
+ * <p>Like {@link SRTReader}, the input is read as a stream. An entry is
+ * returned by {@link #readEntry()} as soon as the timestamp after it has
+ * been read, assuming the lines of the file are in time order, as they
+ * practically always are. Extra timestamps of a line (like the chorus above)
+ * wait until their time comes. {@link #readSubtitle()} sorts the entries of
+ * a file that is not in time order.</p>
+ *
+ * @author Casper van Battum
+ *
+ */
+public class LRCReader implements Closeable {
+	
+	/**
+	 * The time in milliseconds the last line is shown when the file has no
+	 * <code>[length:]</code> tag.
+	 */
+	public static final long LAST_LINE_DURATION = 5000;
+	
+	//Orders entries by start time, then by the order they were read in
+	private static final Comparator<Pending> PENDING_ORDER = new Comparator<Pending>() {
+		
+		@Override
+		public int compare(Pending p1, Pending p2) {
+			int c = Long.compare(p1.time, p2.time);
+			return (c != 0) ? c : Long.compare(p1.sequence, p2.sequence);
+			
+		}
+		
+	};
+	
+	private static final Comparator<SRTEntry> START_ORDER = new Comparator<SRTEntry>() {
+		
+		@Override
+		public int compare(SRTEntry e1, SRTEntry e2) {
+			return Long.compare(e1.getStartTime(), e2.getStartTime());
+			
+		}
+		
+	};
+	
+	private final BufferedReader in;
+	private final SRTTextPool textPool;
+	private final LinkedHashMap<String, String> tags = new LinkedHashMap<>();
+	
+	//Timestamps read but not returned yet, including those without text
+	private final PriorityQueue<Pending> pending = new PriorityQueue<>(16, PENDING_ORDER);
+	private long sequence;
+	//The first timestamp of the last line read, no earlier timestamp is
+	//expected after it
+	private long frontier = -1;
+	private boolean endOfInput;
+	
+	private long offset;
+	private long length = -1;
+	private int lineNumber;
+	
+	//Reused while reading a line
+	private long[] lineTimes = new long[4];
+	private int[] wordBegins = new int[16];
+	private long[] wordTimes = new long[16];
+	//The word timestamps of the line, including those without a word
+	private int wordTimestamps;
+	private final StringBuilder sb = new StringBuilder();
+	
+	/**
+	 * Creates a new <code>LRCReader</code> reading from the given
+	 * <code>Reader</code>, without pooling the text of the entries.
+	 *
+	 * @param in The <code>Reader</code> to read the LRC data from.
+	 */
+	public LRCReader(Reader in) {
+		this(in, null);
+		
+	}
+	
+	/**
+	 * Creates a new <code>LRCReader</code> reading from the given
+	 * <code>Reader</code>. All entries read will use the given
+	 * {@link SRTTextPool}.
+	 *
+	 * @param in
+	 * 			The <code>Reader</code> to read the LRC data from.
+	 * @param textPool
+	 * 			The pool for the text of the entries, or <code>null</code>
+	 * 			for no pooling.
+	 */
+	public LRCReader(Reader in, SRTTextPool textPool) {
+		this.in = (in instanceof BufferedReader) ? (BufferedReader) in : new BufferedReader(in);
+		this.textPool = textPool;
+		
+	}
+	
+	/**
+	 * Creates a new <code>LRCReader</code> reading from the given
+	 * <code>InputStream</code>. The character encoding is detected from the
+	 * first bytes of the stream, see {@link SRTEncoding}. All entries read
+	 * will use the given {@link SRTTextPool}.
+	 *
+	 * @param in
+	 * 			The <code>InputStream</code> to read the LRC data from.
+	 * @param textPool
+	 * 			The pool for the text of the entries, or <code>null</code>
+	 * 			for no pooling.
+	 * @throws IOException When reading the start of the stream fails.
+	 */
+	public LRCReader(InputStream in, SRTTextPool textPool) throws IOException {
+		this(decode(new BufferedInputStream(in, SRTEncoding.SAMPLE_SIZE)), textPool);
+		
+	}
+	
+	private static Reader decode(BufferedInputStream in) throws IOException {
+		CharsetDecoder decoder = SRTEncoding.detect(in).getCharset().newDecoder();
+		decoder.onMalformedInput(CodingErrorAction.REPLACE);
+		decoder.onUnmappableCharacter(CodingErrorAction.REPLACE);
+		return new InputStreamReader(in, decoder);
+		
+	}
+	
+	/**
+	 * Reads the next entry from the input.
+	 *
+	 * @return The next entry, or <code>null</code> if the end of the input
+	 * 			has been reached.
+	 * @throws SRTParseException When the word timestamps of a line are not
+	 * 			in order.
+	 * @throws IOException When reading from the input fails.
+	 */
+	public SRTEntry readEntry() throws IOException {
+		while (true) {
+			Pending head = pending.peek();
+			if (head != null && (endOfInput || frontier > head.time)) {
+				pending.poll();
+				if (head.text == null) {
+					//A timestamp only ending the line before it
+					continue;
+					
+				}
+				
+				long end = nextTime(head.time);
+				if (end <= head.time) {
+					end = (length > head.time) ? length : head.time + LAST_LINE_DURATION;
+					
+				}
+				return createEntry(head, end);
+				
+			}
+			if (endOfInput) {
+				return null;
+				
+			}
+			
+			String line = in.readLine();
+			if (line == null) {
+				endOfInput = true;
+				
+			}
+			else {
+				readLine(line);
+				
+			}
+			
+		}
+		
+	}
+	
+	/**
+	 * Reads all remaining entries from the input into a new
+	 * {@link SRTSubtitle}, ordered by start time.
+	 *
+	 * @return A new subtitle containing all entries that were read.
+	 * @throws SRTParseException When the word timestamps of a line are not
+	 * 			in order.
+	 * @throws IOException When reading from the input fails.
+	 */
+	public SRTSubtitle readSubtitle() throws IOException {
+		SRTSubtitle subtitle = new SRTSubtitle();
+		
+		boolean sorted = true;
+		SRTEntry entry;
+		while ((entry = readEntry()) != null) {
+			sorted &= subtitle.isEmpty() || subtitle.get(subtitle.size() - 1).getStartTime() <= entry.getStartTime();
+			subtitle.add(entry);
+			
+		}
+		if (! sorted) {
+			Collections.sort(subtitle, START_ORDER);
+			
+		}
+		subtitle.publish();
+		
+		return subtitle;
+		
+	}
+	
+	/**
+	 * Returns the tags read so far, like <code>ti</code> (title) and
+	 * <code>ar</code> (artist), by their name in lower case.
+	 *
+	 * @return The tags of the input.
+	 */
+	public Map<String, String> getTags() {
+		return Collections.unmodifiableMap(tags);
+		
+	}
+	
+	/**
+	 * @return The number of the last line that was read, starting at 1.
+	 */
+	public int getLineNumber() {
+		return this.lineNumber;
+		
+	}
+	
+	@Override
+	public void close() throws IOException {
+		in.close();
+		
+	}
+	
+	/**
+	 * Reads an LRC file, detecting its character encoding.
+	 *
+	 * @param file The file to read.
+	 * @return A new subtitle containing all lines of the file.
+	 * @throws IOException When the file cannot be read or is not valid LRC.
+	 */
+	public static SRTSubtitle read(File file) throws IOException {
+		//The file is closed even when detecting the encoding fails
+		try (InputStream fileIn = new FileInputStream(file);
+				LRCReader reader = new LRCReader(fileIn, null)) {
+			return reader.readSubtitle();
+			
+		}
+		
+	}
+	
+	//The first time after the given time of any pending timestamp
+	private long nextTime(long time) {
+		Pending next = pending.peek();
+		if (next == null || next.time > time) {
+			return (next == null) ? -1 : next.time;
+			
+		}
+		
+		//Several lines at the same time, rare enough to search
+		long min = -1;
+		Iterator<Pending> it = pending.iterator();
+		while (it.hasNext()) {
+			long t = it.next().time;
+			if (t > time && (min < 0 || t < min)) {
+				min = t;
+				
+			}
+			
+		}
+		
+		return min;
+		
+	}
+	
+	/*
+	 * Reads the timestamps and tags at the start of a line, and adds the text
+	 * after them as pending at each timestamp. Lines without timestamps or
+	 * tags are ignored.
+	 */
+	private void readLine(String line) throws SRTParseException {
+		lineNumber++;
+		int i = 0;
+		if (lineNumber == 1 && line.length() > 0 && line.charAt(0) == '\uFEFF') {
+			i++;
+			
+		}
+		
+		int times = 0;
+		while (true) {
+			while (i < line.length() && line.charAt(i) <= ' ') {
+				i++;
+				
+			}
+			if (i == line.length() || line.charAt(i) != '[') {
+				break;
+				
+			}
+			int close = line.indexOf(']', i + 1);
+			if (close < 0) {
+				break;
+				
+			}
+			
+			long time = SRTReader.parseTime(line, i + 1, close);
+			if (time >= 0) {
+				if (times == lineTimes.length) {
+					lineTimes = Arrays.copyOf(lineTimes, times * 2);
+					
+				}
+				lineTimes[times++] = time;
+				
+			}
+			else {
+				readTag(line, i + 1, close);
+				
+			}
+			i = close + 1;
+			
+		}
+		if (times == 0) {
+			return;
+			
+		}
+		
+		//Word timestamps are relative to the first timestamp of the line
+		Words words = readText(line, i, lineTimes[0]);
+		String text;
+		if (sb.length() > 0) {
+			text = sb.toString();
+			
+		}
+		else {
+			//A line of only word timestamps is an entry without text written
+			//by LRCWriter, not the end of the line before it
+			text = (wordTimestamps > 0) ? "" : null;
+			
+		}
+		
+		long first = Long.MAX_VALUE;
+		for (int t = 0; t < times; t++) {
+			long time = Math.max(0, lineTimes[t] - offset);
+			pending.add(new Pending(time, text, words, lineNumber, sequence++));
+			first = Math.min(first, time);
+			
+		}
+		frontier = first;
+		
+	}
+	
+	private void readTag(String line, int from, int to) {
+		int colon = line.indexOf(':', from);
+		if (colon < 0 || colon >= to) {
+			return;
+			
+		}
+		
+		String name = line.substring(from, colon).trim().toLowerCase(Locale.ROOT);
+		String value = line.substring(colon + 1, to).trim();
+		tags.put(name, value);
+		
+		if (name.equals("offset")) {
+			try {
+				offset = Long.parseLong(value.startsWith("+") ? value.substring(1) : value);
+				
+			}
+			catch (NumberFormatException e) {
+				//An invalid offset is ignored, like unknown tags
+				
+			}
+			
+		}
+		else if (name.equals("length")) {
+			length = SRTReader.parseTime(value, 0, value.length());
+			
+		}
+		
+	}
+	
+	/*
+	 * Copies the text of a line from the given index into sb, without the
+	 * word timestamps and trailing whitespace. Returns the words, or null if
+	 * the line has no word timestamps.
+	 */
+	private Words readText(String line, int from, long lineTime) {
+		sb.setLength(0);
+		int words = 0;
+		
+		int i = from;
+		while (i < line.length()) {
+			char c = line.charAt(i);
+			if (c == '<') {
+				int close = line.indexOf('>', i + 1);
+				long time = (close < 0) ? -1 : SRTReader.parseTime(line, i + 1, close);
+				if (time >= 0) {
+					if (words == wordBegins.length) {
+						wordBegins = Arrays.copyOf(wordBegins, words * 2);
+						wordTimes = Arrays.copyOf(wordTimes, words * 2);
+						
+					}
+					wordBegins[words] = sb.length();
+					wordTimes[words] = time - lineTime;
+					words++;
+					i = close + 1;
+					continue;
+					
+				}
+				
+			}
+			sb.append(c);
+			i++;
+			
+		}
+		
+		int end = sb.length();
+		while (end > 0 && sb.charAt(end - 1) <= ' ') {
+			end--;
+			
+		}
+		sb.setLength(end);
+		
+		wordTimestamps = words;
+		if (words == 0) {
+			return null;
+			
+		}
+		
+		//Every word lasts until the next timestamp, so a timestamp without text
+		//after it only ends the word before it
+		int[] offsets = new int[2 * words];
+		long[] times = new long[2 * words];
+		int count = 0;
+		for (int w = 0; w < words; w++) {
+			int begin = Math.min(wordBegins[w], end);
+			int wordEnd = (w + 1 < words) ? Math.min(wordBegins[w + 1], end) : end;
+			if (isBlank(sb, begin, wordEnd)) {
+				continue;
+				
+			}
+			
+			offsets[2 * count] = begin;
+			offsets[2 * count + 1] = wordEnd;
+			times[2 * count] = wordTimes[w];
+			times[2 * count + 1] = (w + 1 < words) ? wordTimes[w + 1] : -1;
+			count++;
+			
+		}
+		
+		return (count == 0) ? null : new Words(Arrays.copyOf(offsets, 2 * count), Arrays.copyOf(times, 2 * count));
+		
+	}
+	
+	private static boolean isBlank(CharSequence s, int from, int to) {
+		for (int i = from; i < to; i++) {
+			if (s.charAt(i) > ' ') {
+				return false;
+				
+			}
+			
+		}
+		
+		return true;
+		
+	}
+	
+	private SRTEntry createEntry(Pending p, long end) throws SRTParseException {
+		SRTEntry entry = new SRTEntry(p.time, end, p.text);
+		entry.setTextPoolInPlace(textPool);
+		
+		if (p.words != null) {
+			long duration = end - p.time;
+			int[] times = new int[p.words.times.length];
+			for (int t = 0; t < times.length; t++) {
+				long time = p.words.times[t];
+				if (time < 0) {
+					//The last word lasts until the end of the line
+					time = duration;
+					
+				}
+				times[t] = (int) Math.max(0, Math.min(time, duration));
+				
+			}
+			
+			try {
+				entry.setWordTiming(new SRTWordTiming(p.words.offsets, times));
+				
+			}
+			catch (IllegalArgumentException e) {
+				throw new SRTParseException("word timestamps are not in order", p.lineNumber, e);
+				
+			}
+			
+		}
+		
+		return entry;
+		
+	}
+	
+	//The words of a line, with times relative to the line and -1 for the end
+	//of the line
+	private static final class Words {
+		
+		private final int[] offsets;
+		private final long[] times;
+		
+		private Words(int[] offsets, long[] times) {
+			this.offsets = offsets;
+			this.times = times;
+			
+		}
+		
+	}
+	
+	private static final class Pending {
+		
+		private final long time;
+		private final String text;
+		private final Words words;
+		private final int lineNumber;
+		private final long sequence;
+		
+		private Pending(long time, String text, Words words, int lineNumber, long sequence) {
+			this.time = time;
+			this.text = text;
+			this.words = words;
+			this.lineNumber = lineNumber;
+			this.sequence = sequence;
+			
+		}
+		
+	}
+	
+}
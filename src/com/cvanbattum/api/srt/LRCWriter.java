@@ -0,0 +1,277 @@
+package com.cvanbattum.api.srt;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * <p>Writes {@link SRTEntry} and {@link SRTSubtitle} objects as LRC lyrics,
+ * the format read by {@link LRCReader}. Every entry becomes one line, with
+ * the lines of its text joined by a space.</p>
+ *
+ * <p>LRC has no end times: a line is shown until the next one starts. When
+ * an entry ends before the next entry starts, a timestamp without text is
+ * written at its end time, so the lyrics are read back with the same
+ * timing. Overlapping entries cannot be written, an entry ends when the next
+ * one starts. An entry without text is written as its timestamp followed by
+ * a word timestamp, so it is not read back as the end of the previous
+ * entry.</p>
+ *
+ * <p>The {@link SRTWordTiming} of an entry is written as enhanced LRC word
+ * timestamps. Times are written in hundredths of seconds.</p>
+ *
+ * @author Casper van Battum
+ *
+ */
+public class LRCWriter implements Closeable {
+	
+	private final Writer out;
+	private final StringBuilder sb = new StringBuilder(128);
+	
+	//The start and end time of the entry written last, or -1
+	private long previousStart = -1;
+	private long lastEnd = -1;
+	
+	/**
+	 * Creates a new <code>LRCWriter</code> writing to the given
+	 * <code>Writer</code>.
+	 *
+	 * @param out The <code>Writer</code> to write the LRC data to.
+	 */
+	public LRCWriter(Writer out) {
+		this.out = (out instanceof BufferedWriter) ? out : new BufferedWriter(out);
+		
+	}
+	
+	/**
+	 * Writes a tag like <code>[ti:Title]</code>. Tags should be written
+	 * before the first entry.
+	 *
+	 * @param name
+	 * 			The name of the tag, like <code>ti</code> or <code>ar</code>.
+	 * @param value
+	 * 			The value of the tag.
+	 * @throws IOException When writing to the output fails.
+	 */
+	public void writeTag(String name, String value) throws IOException {
+		if (name.indexOf(':') >= 0 || name.indexOf(']') >= 0 || value.indexOf(']') >= 0) {
+			throw new IllegalArgumentException("tag cannot contain ':' in its name or ']'");
+			
+		}
+		
+		out.write('[');
+		out.write(name);
+		out.write(':');
+		out.write(value);
+		out.write(']');
+		out.write('\n');
+		
+	}
+	
+	/**
+	 * Writes an entry as a line of lyrics. Entries have to be written in
+	 * order of start time.
+	 *
+	 * @param entry The entry to write.
+	 * @throws IOException When writing to the output fails.
+	 */
+	public void writeEntry(SRTEntry entry) throws IOException {
+		final long start = entry.getStartTime();
+		if (start < previousStart) {
+			throw new IllegalArgumentException("entries have to be written in order of start time");
+			
+		}
+		writeEnd(start);
+		
+		sb.setLength(0);
+		appendTime(sb, '[', start, ']');
+		final int textStart = sb.length();
+		appendText(sb, entry);
+		if (isBlank(sb, textStart)) {
+			//A bare timestamp would be read as the end of the previous entry
+			sb.setLength(textStart);
+			appendTime(sb, '<', start, '>');
+			
+		}
+		sb.append('\n');
+		out.append(sb);
+		
+		previousStart = start;
+		lastEnd = entry.getEndTime();
+		
+	}
+	
+	/**
+	 * Writes all entries of a subtitle, see {@link #writeEntry(SRTEntry)}.
+	 *
+	 * @param subtitle The subtitle to write.
+	 * @throws IOException When writing to the output fails.
+	 */
+	public void writeSubtitle(SRTSubtitle subtitle) throws IOException {
+		for (SRTEntry entry : subtitle) {
+			writeEntry(entry);
+			
+		}
+		
+	}
+	
+	/**
+	 * Flushes the output. The end time of the last entry is only written
+	 * when this writer is closed.
+	 *
+	 * @throws IOException When writing to the output fails.
+	 */
+	public void flush() throws IOException {
+		out.flush();
+		
+	}
+	
+	/**
+	 * Writes the end time of the last entry and closes the output.
+	 *
+	 * @throws IOException When writing to the output fails.
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			writeEnd(Long.MAX_VALUE);
+			
+		}
+		finally {
+			out.close();
+			
+		}
+		
+	}
+	
+	/**
+	 * Writes a subtitle to an LRC file in UTF-8.
+	 *
+	 * @param subtitle
+	 * 			The subtitle to write.
+	 * @param file
+	 * 			The file to write to.
+	 * @throws IOException When the file cannot be written.
+	 */
+	public static void write(SRTSubtitle subtitle, File file) throws IOException {
+		try (LRCWriter writer = new LRCWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8))) {
+			writer.writeSubtitle(subtitle);
+			
+		}
+		
+	}
+	
+	//Writes the end of the last entry if it ends before the next start
+	private void writeEnd(long nextStart) throws IOException {
+		if (lastEnd >= 0 && lastEnd < nextStart) {
+			sb.setLength(0);
+			appendTime(sb, '[', lastEnd, ']');
+			sb.append('\n');
+			out.append(sb);
+			
+		}
+		lastEnd = -1;
+		
+	}
+	
+	/*
+	 * Appends the lines of the entry joined by spaces, with a timestamp
+	 * before every timed word. Joining by a single space keeps the character
+	 * offsets of the word timing valid.
+	 */
+	private static void appendText(StringBuilder sb, SRTEntry entry) {
+		String[] text = entry.getText();
+		if (text == null) {
+			return;
+			
+		}
+		
+		SRTWordTiming timing = entry.getWordTiming();
+		final int textStart = sb.length();
+		for (int l = 0; l < text.length; l++) {
+			if (l > 0) {
+				sb.append(' ');
+				
+			}
+			if (text[l] != null) {
+				sb.append(text[l]);
+				
+			}
+			
+		}
+		if (timing == null || timing.getWordCount() == 0) {
+			return;
+			
+		}
+		
+		//Insert the timestamps from the back, so earlier offsets stay valid
+		final long start = entry.getStartTime();
+		final int length = sb.length() - textStart;
+		StringBuilder tag = new StringBuilder(12);
+		int position = length + 1;
+		for (int w = timing.getWordCount() - 1; w >= 0; w--) {
+			int begin = timing.getBegin(w);
+			int end = Math.min(timing.getEnd(w), length);
+			if (end > position || begin > end) {
+				//Words out of order cannot be written
+				continue;
+				
+			}
+			
+			//The end of the word, unless the next word starts right there
+			boolean nextFollows = w + 1 < timing.getWordCount() && timing.getBegin(w + 1) == end && timing.getStartTime(w + 1) == timing.getEndTime(w);
+			boolean lastUntilEnd = w + 1 == timing.getWordCount() && start + timing.getEndTime(w) >= entry.getEndTime();
+			if (! nextFollows && ! lastUntilEnd) {
+				tag.setLength(0);
+				appendTime(tag, '<', start + timing.getEndTime(w), '>');
+				sb.insert(textStart + end, tag);
+				
+			}
+			
+			tag.setLength(0);
+			appendTime(tag, '<', start + timing.getStartTime(w), '>');
+			sb.insert(textStart + begin, tag);
+			position = begin;
+			
+		}
+		
+	}
+	
+	private static boolean isBlank(CharSequence s, int from) {
+		for (int i = from; i < s.length(); i++) {
+			if (s.charAt(i) > ' ') {
+				return false;
+				
+			}
+			
+		}
+		
+		return true;
+		
+	}
+	
+	//Appends a time as mm:ss.xx between the given brackets
+	private static void appendTime(StringBuilder sb, char open, long time, char close) {
+		long centiseconds = time / 10;
+		long minutes = centiseconds / 6000;
+		int seconds = (int) (centiseconds / 100 % 60);
+		int hundredths = (int) (centiseconds % 100);
+		
+		sb.append(open);
+		if (minutes < 10) {
+			sb.append('0');
+			
+		}
+		sb.append(minutes).append(':');
+		sb.append((char) ('0' + seconds / 10)).append((char) ('0' + seconds % 10)).append('.');
+		sb.append((char) ('0' + hundredths / 10)).append((char) ('0' + hundredths % 10));
+		sb.append(close);
+		
+	}
+	
+}
@@ -0,0 +1,454 @@
+package com.cvanbattum.api.srt;
+
+import java.util.Arrays;
+
+/**
+ * <p>Computes the {@link SRTTimeMapping} that corrects the timing of a
+ * subtitle, by aligning it with a correctly timed reference subtitle (for
+ * example a subtitle in another language for the same movie). Only the times
+ * of the entries are used, not their text.</p>
+ *
+ * <p>Both subtitles are turned into a signal of time bins in which a cue is
+ * shown. For every window of the subtitle (by default 1 minute, every 30
+ * seconds) the overlap with the reference is computed for every possible
+ * offset, using prefix sums over the reference so each cue costs a constant
+ * amount of work per offset. A dynamic programming pass then chooses one
+ * offset per window, maximizing the total overlap while only allowing the
+ * offset to drift slowly between windows (or to jump, at a cost, for cuts
+ * like removed commercial breaks). The chosen offsets become the points of a
+ * piecewise linear mapping, which also corrects a steady drift like a frame
+ * rate mismatch.</p>
+ *
+ * @author Casper van Battum
+ *
+ */
+public class SRTAligner {
+	
+	//Score lost when the offset jumps instead of drifting between windows
+	private static final float JUMP_PENALTY = 1f;
+	
+	private int binSize = 100;
+	private long maxOffset = 60000;
+	private long windowSize = 60000;
+	private double maxDrift = 0.05;
+	
+	/**
+	 * Creates a new <code>SRTAligner</code> with the default settings: bins
+	 * of 100 ms, offsets up to 60 seconds, windows of 1 minute and a drift of
+	 * at most 5%.
+	 */
+	public SRTAligner() {
+		super();
+		
+	}
+	
+	/**
+	 * Sets the size of the time bins. Smaller bins are more precise, larger
+	 * bins are faster.
+	 *
+	 * @param binSize The size of a bin in milliseconds.
+	 */
+	public void setBinSize(int binSize) {
+		if (binSize < 1) {
+			throw new IllegalArgumentException("bin size must be at least 1 ms");
+			
+		}
+		this.binSize = binSize;
+		
+	}
+	
+	/**
+	 * Sets the largest offset (earlier or later) that will be searched for.
+	 *
+	 * @param maxOffset The maximum offset in milliseconds.
+	 */
+	public void setMaxOffset(long maxOffset) {
+		if (maxOffset < 0) {
+			throw new IllegalArgumentException("maximum offset cannot be smaller than zero");
+			
+		}
+		this.maxOffset = maxOffset;
+		
+	}
+	
+	/**
+	 * Sets the size of the windows for which an offset is computed. Smaller
+	 * windows follow changes in the offset more closely, but need more cues
+	 * per window to give a reliable offset.
+	 *
+	 * @param windowSize The size of a window in milliseconds.
+	 */
+	public void setWindowSize(long windowSize) {
+		if (windowSize < 1) {
+			throw new IllegalArgumentException("window size must be at least 1 ms");
+			
+		}
+		this.windowSize = windowSize;
+		
+	}
+	
+	/**
+	 * Sets how fast the offset may change without counting as a jump, as a
+	 * fraction of the time passed. A subtitle for 25 fps shown on a 23.976 fps
+	 * movie drifts about 4%.
+	 *
+	 * @param maxDrift The maximum drift, for example <code>0.05</code>.
+	 */
+	public void setMaxDrift(double maxDrift) {
+		if (maxDrift < 0) {
+			throw new IllegalArgumentException("maximum drift cannot be smaller than zero");
+			
+		}
+		this.maxDrift = maxDrift;
+		
+	}
+	
+	/**
+	 * Computes the mapping that aligns <code>subtitle</code> with
+	 * <code>reference</code>. Neither subtitle is changed; use
+	 * {@link SRTTimeMapping#apply(SRTSubtitle)} to correct the subtitle.
+	 *
+	 * @param reference
+	 * 			The correctly timed subtitle.
+	 * @param subtitle
+	 * 			The subtitle to correct.
+	 * @return The mapping from the times of <code>subtitle</code> to the
+	 * 			times of <code>reference</code>.
+	 */
+	public SRTTimeMapping align(SRTSubtitle reference, SRTSubtitle subtitle) {
+		//Cues of the subtitle as bins, sorted by start: start << 32 | end
+		long[] cues = new long[subtitle.size()];
+		int lastBin = 0;
+		for (int i = 0; i < cues.length; i++) {
+			SRTEntry e = subtitle.get(i);
+			int start = (int) (e.getStartTime() / binSize);
+			int end = (int) Math.max(start + 1, (e.getEndTime() + binSize - 1) / binSize);
+			cues[i] = ((long) start << 32) | end;
+			lastBin = Math.max(lastBin, end);
+			
+		}
+		Arrays.sort(cues);
+		
+		if (cues.length == 0 || reference.isEmpty()) {
+			return new SRTTimeMapping(new long[0], new long[0], 0);
+			
+		}
+		
+		final int maxLag = (int) (maxOffset / binSize);
+		final int lags = 2 * maxLag + 1;
+		final int window = (int) Math.max(1, windowSize / binSize);
+		final int step = Math.max(1, window / 2);
+		final int windows = lastBin / step + 1;
+		final int maxStep = (int) Math.ceil(step * maxDrift);
+		
+		//Long enough to read every cue of the subtitle at every lag
+		int[] prefix = activityPrefix(reference, maxLag, lastBin + lags);
+		
+		//Each window is scored and then chosen for right away (Viterbi), so
+		//only one window of scores is kept. A window of two steps is made of
+		//the cues starting in its two halves, and its second half is the first
+		//half of the next window, so every half is scored once
+		final boolean halves = window == 2 * step;
+		int[] firstCue = new int[windows];
+		int[] active = new int[windows];
+		int[] overlap = new int[lags];
+		int[] half = halves ? new int[lags] : null;
+		int[] nextHalf = halves ? new int[lags] : null;
+		int halfTotal = 0;
+		float[] score = new float[lags];
+		float[] previous = new float[lags];
+		float[] current = new float[lags];
+		//Lag in the previous window that lead to each lag in a window
+		int[] from = new int[windows * lags];
+		int[] deque = new int[lags];
+		int first = 0;
+		for (int w = 0; w < windows; w++) {
+			final int start = w * step;
+			while (first < cues.length && (int) (cues[first] >>> 32) < start) {
+				first++;
+				
+			}
+			
+			firstCue[w] = first;
+			if (halves) {
+				if (w == 0) {
+					halfTotal = addOverlap(cues, first, start + step, prefix, half);
+					
+				}
+				int second = first;
+				while (second < cues.length && (int) (cues[second] >>> 32) < start + step) {
+					second++;
+					
+				}
+				
+				Arrays.fill(nextHalf, 0);
+				int nextTotal = addOverlap(cues, second, start + window, prefix, nextHalf);
+				for (int l = 0; l < lags; l++) {
+					overlap[l] = half[l] + nextHalf[l];
+					
+				}
+				active[w] = halfTotal + nextTotal;
+				
+				int[] t = half;
+				half = nextHalf;
+				nextHalf = t;
+				halfTotal = nextTotal;
+				
+			}
+			else {
+				Arrays.fill(overlap, 0);
+				active[w] = addOverlap(cues, first, start + window, prefix, overlap);
+				
+			}
+			normalize(overlap, active[w], score);
+			if (w == 0) {
+				System.arraycopy(score, 0, previous, 0, lags);
+				
+			}
+			else {
+				chooseFrom(previous, score, current, from, w * lags, maxStep, deque);
+				float[] t = previous;
+				previous = current;
+				current = t;
+				
+			}
+			
+		}
+		
+		//Follow the choices back from the best lag in the last window
+		int[] chosen = new int[windows];
+		int l = 0;
+		for (int k = 1; k < lags; k++) {
+			if (previous[k] > previous[l]) {
+				l = k;
+				
+			}
+			
+		}
+		for (int w = windows - 1; w >= 0; w--) {
+			chosen[w] = l;
+			l = from[w * lags + l];
+			
+		}
+		
+		//Every window with cues becomes a point of the mapping
+		int points = 0;
+		double confidence = 0;
+		for (int w = 0; w < windows; w++) {
+			if (active[w] > 0) {
+				points++;
+				confidence += scoreAt(cues, firstCue[w], w * step + window, prefix, chosen[w]) / active[w];
+				
+			}
+			
+		}
+		
+		long[] mapFrom = new long[points];
+		long[] mapTo = new long[points];
+		int p = 0;
+		for (int w = 0; w < windows; w++) {
+			if (active[w] > 0) {
+				long center = ((long) w * step + window / 2) * binSize;
+				mapFrom[p] = center;
+				mapTo[p] = center + (long) (chosen[w] - maxLag) * binSize;
+				p++;
+				
+			}
+			
+		}
+		int count = makeMonotonic(mapFrom, mapTo);
+		
+		return new SRTTimeMapping(Arrays.copyOf(mapFrom, count), Arrays.copyOf(mapTo, count), confidence / points);
+		
+	}
+	
+	/*
+	 * Changes the points so the mapping never goes back in time, which would
+	 * change the order of the entries. When the offset jumps back by more
+	 * than the time between two points (a part of the subtitle that is cut
+	 * from the reference), the mapping stays at the last time until the new
+	 * offset catches up: the point is moved forward along its offset to
+	 * that time. Points that end up after the next point are left out.
+	 * Returns the new amount of points, which are moved to the front.
+	 */
+	private static int makeMonotonic(long[] from, long[] to) {
+		int count = 0;
+		for (int p = 0; p < from.length; p++) {
+			long f = from[p];
+			long t = to[p];
+			if (count > 0 && t < to[count - 1]) {
+				f += to[count - 1] - t;
+				t = to[count - 1];
+				if (p + 1 < from.length && f >= from[p + 1]) {
+					continue;
+					
+				}
+				
+			}
+			
+			from[count] = f;
+			to[count] = t;
+			count++;
+			
+		}
+		
+		return count;
+		
+	}
+	
+	/*
+	 * Builds the prefix sums of the bins in which the reference shows a cue.
+	 * The bins are shifted by maxLag, so prefix[b + maxLag] - prefix[a + maxLag]
+	 * is the amount of active bins in [a, b). The sums are at least the given
+	 * length, past the last cue they stay the same.
+	 */
+	private int[] activityPrefix(SRTSubtitle reference, int maxLag, int minLength) {
+		int lastBin = 0;
+		for (SRTEntry e : reference) {
+			lastBin = (int) Math.max(lastBin, (e.getEndTime() + binSize - 1) / binSize);
+			
+		}
+		
+		int length = Math.max(minLength, lastBin + 2 * maxLag + 1);
+		int[] coverage = new int[length + 1];
+		for (SRTEntry e : reference) {
+			int start = (int) (e.getStartTime() / binSize);
+			int end = (int) Math.max(start + 1, (e.getEndTime() + binSize - 1) / binSize);
+			coverage[start + maxLag]++;
+			coverage[end + maxLag]--;
+			
+		}
+		
+		int[] prefix = new int[length + 1];
+		int running = 0;
+		for (int b = 0; b < length; b++) {
+			running += coverage[b];
+			prefix[b + 1] = prefix[b] + (running > 0 ? 1 : 0);
+			
+		}
+		
+		return prefix;
+		
+	}
+	
+	/*
+	 * Adds the overlap with the reference at every lag of the cues from the
+	 * given cue up to the first cue starting at or after the given bin.
+	 * Returns the amount of bins these cues are shown.
+	 */
+	private static int addOverlap(long[] cues, int first, int to, int[] prefix, int[] overlap) {
+		final int lags = overlap.length;
+		int total = 0;
+		for (int c = first; c < cues.length; c++) {
+			int start = (int) (cues[c] >>> 32);
+			if (start >= to) {
+				break;
+				
+			}
+			int end = (int) cues[c];
+			total += end - start;
+			
+			//The reference prefix is shifted by maxLag, so lag l reads at
+			//index bin + l without going below zero
+			for (int l = 0; l < lags; l++) {
+				overlap[l] += prefix[end + l] - prefix[start + l];
+				
+			}
+			
+		}
+		
+		return total;
+		
+	}
+	
+	/*
+	 * Scores a window: the overlap at every lag relative to the amount of
+	 * bins its cues are shown, or zero without any.
+	 */
+	private static void normalize(int[] overlap, int total, float[] score) {
+		final int lags = overlap.length;
+		if (total == 0) {
+			Arrays.fill(score, 0f);
+			
+		}
+		else {
+			for (int l = 0; l < lags; l++) {
+				score[l] = (float) overlap[l] / total;
+				
+			}
+			
+		}
+		
+	}
+	
+	//The overlap of the cues of a window at one lag, like addOverlap
+	private static float scoreAt(long[] cues, int first, int to, int[] prefix, int lag) {
+		int overlap = 0;
+		for (int c = first; c < cues.length && (int) (cues[c] >>> 32) < to; c++) {
+			overlap += prefix[(int) cues[c] + lag] - prefix[(int) (cues[c] >>> 32) + lag];
+			
+		}
+		
+		return overlap;
+		
+	}
+	
+	/*
+	 * One step of choosing the lags (Viterbi): the best total score of every
+	 * lag in this window, where the lag may change by at most maxStep from
+	 * the previous window, or by any amount at the cost of JUMP_PENALTY. The
+	 * lag of the previous window that lead to each lag is put in from. The
+	 * best previous lag within maxStep is found with a sliding maximum: the
+	 * deque holds the lags of decreasing scores, the earliest of equal
+	 * scores first.
+	 */
+	private static void chooseFrom(float[] previous, float[] score, float[] current, int[] from, int base, int maxStep, int[] deque) {
+		final int lags = previous.length;
+		int bestAll = 0;
+		for (int l = 1; l < lags; l++) {
+			if (previous[l] > previous[bestAll]) {
+				bestAll = l;
+				
+			}
+			
+		}
+		final float jump = previous[bestAll] - JUMP_PENALTY;
+		
+		int head = 0;
+		int tail = 0;
+		int next = 0;
+		for (int l = 0; l < lags; l++) {
+			final int hi = Math.min(lags - 1, l + maxStep);
+			while (next <= hi) {
+				while (tail > head && previous[deque[tail - 1]] < previous[next]) {
+					tail--;
+					
+				}
+				deque[tail++] = next++;
+				
+			}
+			while (deque[head] < l - maxStep) {
+				head++;
+				
+			}
+			
+			//Prefer staying at the same lag when scores are equal
+			final float max = previous[deque[head]];
+			int best;
+			if (max > jump) {
+				best = (previous[l] == max) ? l : deque[head];
+				
+			}
+			else {
+				best = (previous[l] == jump) ? l : bestAll;
+				
+			}
+			
+			current[l] = Math.max(max, jump) + score[l];
+			from[base + l] = best;
+			
+		}
+		
+	}
+	
+}
@@ -0,0 +1,456 @@
+package com.cvanbattum.api.srt;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.AbstractMap;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * <p>Reads the SRT files in a <code>.zip</code> archive, or a single
+ * gzipped <code>.srt.gz</code> file, without extracting them to disk. The
+ * members of a zip archive are decompressed and parsed on several threads
+ * at once.</p>
+ *
+ * <p>{@link #readAll(File)} reads all SRT files of an archive into a map.
+ * {@link #open(File)} reads them one by one while they are iterated, with
+ * only a few members parsed ahead, so archives with more subtitles than fit
+ * in memory can be processed.</p>
+ *
+ * <p>The reader keeps statistics of all archives it read: the time spent
+ * decompressing and the time spent parsing, summed over all threads, and the
+ * amount of files read per second.</p>
+ *
+ * @author Casper van Battum
+ *
+ */
+public class SRTArchiveReader {
+	
+	private final int threads;
+	private SRTTextPool textPool;
+	
+	private long files;
+	private long bytes;
+	private long decompressTime;
+	private long parseTime;
+	private long wallTime;
+	
+	/**
+	 * Creates a new <code>SRTArchiveReader</code> using as many threads as
+	 * there are processors.
+	 */
+	public SRTArchiveReader() {
+		this(Runtime.getRuntime().availableProcessors());
+		
+	}
+	
+	/**
+	 * Creates a new <code>SRTArchiveReader</code>.
+	 *
+	 * @param threads
+	 * 			The amount of threads used to read the members of an archive.
+	 */
+	public SRTArchiveReader(int threads) {
+		if (threads < 1) {
+			throw new IllegalArgumentException("threads must be at least 1");
+			
+		}
+		
+		this.threads = threads;
+		
+	}
+	
+	/**
+	 * Sets the {@link SRTTextPool} used by all entries read.
+	 *
+	 * @param textPool
+	 * 			The pool for the text of the entries, or <code>null</code>
+	 * 			for no pooling.
+	 */
+	public void setTextPool(SRTTextPool textPool) {
+		this.textPool = textPool;
+		
+	}
+	
+	/**
+	 * @return The pool for the text of the entries, or <code>null</code>.
+	 */
+	public SRTTextPool getTextPool() {
+		return this.textPool;
+		
+	}
+	
+	/**
+	 * Reads all SRT files of an archive.
+	 *
+	 * @param archive
+	 * 			A <code>.zip</code> archive, or a <code>.gz</code> file.
+	 * @return The subtitles by the name of their member, in the order of the
+	 * 			archive.
+	 * @throws IOException When the archive or one of its SRT files cannot be
+	 * 			read.
+	 */
+	public Map<String, SRTSubtitle> readAll(File archive) throws IOException {
+		LinkedHashMap<String, SRTSubtitle> result = new LinkedHashMap<>();
+		try (Members members = open(archive)) {
+			while (members.hasNext()) {
+				Map.Entry<String, SRTSubtitle> member = members.next();
+				result.put(member.getKey(), member.getValue());
+				
+			}
+			
+		}
+		catch (UncheckedIOException e) {
+			throw e.getCause();
+			
+		}
+		
+		return result;
+		
+	}
+	
+	/**
+	 * Opens an archive to read its SRT files one by one. The members are
+	 * returned in the order of the archive, while the next few are already
+	 * being read on other threads. The archive has to be closed after
+	 * use.
+	 *
+	 * @param archive
+	 * 			A <code>.zip</code> archive, or a <code>.gz</code> file.
+	 * @return The members of the archive.
+	 * @throws IOException When the archive cannot be opened.
+	 */
+	public Members open(File archive) throws IOException {
+		if (archive.getName().toLowerCase(Locale.ROOT).endsWith(".gz")) {
+			String name = archive.getName();
+			return new Members(null, archive, new String[] { name.substring(0, name.length() - 3) });
+			
+		}
+		
+		ZipFile zip = new ZipFile(archive);
+		try {
+			ArrayList<String> names = new ArrayList<>();
+			Enumeration<? extends ZipEntry> entries = zip.entries();
+			while (entries.hasMoreElements()) {
+				ZipEntry entry = entries.nextElement();
+				if (! entry.isDirectory() && entry.getName().toLowerCase(Locale.ROOT).endsWith(".srt")) {
+					names.add(entry.getName());
+					
+				}
+				
+			}
+			
+			return new Members(zip, archive, names.toArray(new String[names.size()]));
+			
+		}
+		catch (RuntimeException | Error e) {
+			//The members never got the archive to close
+			try {
+				zip.close();
+				
+			}
+			catch (IOException suppressed) {
+				e.addSuppressed(suppressed);
+				
+			}
+			throw e;
+			
+		}
+		
+	}
+	
+	/**
+	 * @return The amount of SRT files read.
+	 */
+	public synchronized long getFileCount() {
+		return this.files;
+		
+	}
+	
+	/**
+	 * @return The amount of decompressed bytes read.
+	 */
+	public synchronized long getByteCount() {
+		return this.bytes;
+		
+	}
+	
+	/**
+	 * @return The time spent decompressing, summed over all threads, in
+	 * 			nanoseconds.
+	 */
+	public synchronized long getDecompressTime() {
+		return this.decompressTime;
+		
+	}
+	
+	/**
+	 * @return The time spent parsing the decompressed text, summed over all
+	 * 			threads, in nanoseconds.
+	 */
+	public synchronized long getParseTime() {
+		return this.parseTime;
+		
+	}
+	
+	/**
+	 * @return The time archives were open, in nanoseconds.
+	 */
+	public synchronized long getWallTime() {
+		return this.wallTime;
+		
+	}
+	
+	/**
+	 * @return The amount of SRT files read per second the archives were
+	 * 			open.
+	 */
+	public synchronized double getFilesPerSecond() {
+		return (wallTime == 0) ? 0 : files * 1e9 / wallTime;
+		
+	}
+	
+	@Override
+	public synchronized String toString() {
+		return "SRTArchiveReader[files=" + files + ", decompress=" + (decompressTime / 1000000) + " ms, parse=" + (parseTime / 1000000) + " ms, files/s=" + Math.round(getFilesPerSecond()) + "]";
+		
+	}
+	
+	private synchronized void addStatistics(long bytes, long decompressTime, long totalTime) {
+		this.files++;
+		this.bytes += bytes;
+		this.decompressTime += decompressTime;
+		this.parseTime += totalTime - decompressTime;
+		
+	}
+	
+	private synchronized void addWallTime(long time) {
+		this.wallTime += time;
+		
+	}
+	
+	/*
+	 * Reads one member. The time spent in the decompressing stream is
+	 * measured separately, the rest of the time is parsing.
+	 */
+	private SRTSubtitle readMember(InputStream compressed) throws IOException {
+		final long start = System.nanoTime();
+		TimedInputStream in = new TimedInputStream(compressed);
+		try (SRTReader reader = new SRTReader(in, textPool)) {
+			SRTSubtitle subtitle = reader.readSubtitle();
+			addStatistics(in.bytes, in.time, System.nanoTime() - start);
+			return subtitle;
+			
+		}
+		
+	}
+	
+	/**
+	 * The SRT files of an archive, read while they are iterated. Reading a
+	 * member that is not valid SRT, or failing to read it in any other way,
+	 * throws an <code>UncheckedIOException</code> naming the member.
+	 *
+	 * @author Casper van Battum
+	 *
+	 */
+	public final class Members implements Iterator<Map.Entry<String, SRTSubtitle>>, Closeable {
+		
+		private final ZipFile zip;
+		private final File file;
+		private final String[] names;
+		private final ExecutorService executor;
+		private final ArrayDeque<Future<SRTSubtitle>> ahead = new ArrayDeque<>();
+		private final long openTime = System.nanoTime();
+		
+		private int submitted;
+		private int returned;
+		private boolean closed;
+		
+		private Members(ZipFile zip, File file, String[] names) {
+			this.zip = zip;
+			this.file = file;
+			this.names = names;
+			this.executor = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, names.length)));
+			
+			//Keep every thread busy, with one member waiting for each
+			while (submitted < names.length && ahead.size() < 2 * threads) {
+				submit();
+				
+			}
+			
+		}
+		
+		private void submit() {
+			final String name = names[submitted++];
+			ahead.add(executor.submit(new Callable<SRTSubtitle>() {
+				
+				@Override
+				public SRTSubtitle call() throws IOException {
+					if (zip == null) {
+						//The file is closed separately, GZIPInputStream fails on an
+						//invalid header before it can close it
+						try (InputStream fileIn = new FileInputStream(file); InputStream in = new GZIPInputStream(fileIn, 64 * 1024)) {
+							return readMember(in);
+							
+						}
+						
+					}
+					
+					try (InputStream in = zip.getInputStream(zip.getEntry(name))) {
+						return readMember(in);
+						
+					}
+					
+				}
+				
+			}));
+			
+		}
+		
+		/**
+		 * @return The amount of SRT files in the archive.
+		 */
+		public int size() {
+			return names.length;
+			
+		}
+		
+		@Override
+		public boolean hasNext() {
+			return returned < names.length;
+			
+		}
+		
+		@Override
+		public Map.Entry<String, SRTSubtitle> next() {
+			if (! hasNext()) {
+				throw new NoSuchElementException();
+				
+			}
+			if (closed) {
+				throw new IllegalStateException("archive is closed");
+				
+			}
+			
+			String name = names[returned++];
+			Future<SRTSubtitle> future = ahead.poll();
+			if (submitted < names.length) {
+				submit();
+				
+			}
+			
+			try {
+				return new AbstractMap.SimpleImmutableEntry<>(name, future.get());
+				
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new UncheckedIOException(new IOException("Interrupted while reading " + name, e));
+				
+			}
+			catch (ExecutionException e) {
+				Throwable cause = e.getCause();
+				throw new UncheckedIOException(new IOException(name + ": " + cause.getMessage(), cause));
+				
+			}
+			
+		}
+		
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+			
+		}
+		
+		/**
+		 * Stops reading ahead and closes the archive.
+		 *
+		 * @throws IOException When closing the archive fails.
+		 */
+		@Override
+		public void close() throws IOException {
+			if (closed) {
+				return;
+				
+			}
+			
+			closed = true;
+			executor.shutdownNow();
+			addWallTime(System.nanoTime() - openTime);
+			if (zip != null) {
+				zip.close();
+				
+			}
+			
+		}
+		
+	}
+	
+	//Measures the time spent in and the bytes read from another stream
+	private static final class TimedInputStream extends FilterInputStream {
+		
+		private long time;
+		private long bytes;
+		
+		private TimedInputStream(InputStream in) {
+			super(in);
+			
+		}
+		
+		@Override
+		public int read() throws IOException {
+			long start = System.nanoTime();
+			int b = in.read();
+			time += System.nanoTime() - start;
+			if (b >= 0) {
+				bytes++;
+				
+			}
+			return b;
+			
+		}
+		
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			long start = System.nanoTime();
+			int n = in.read(b, off, len);
+			time += System.nanoTime() - start;
+			if (n > 0) {
+				bytes += n;
+				
+			}
+			return n;
+			
+		}
+		
+		@Override
+		public long skip(long n) throws IOException {
+			long start = System.nanoTime();
+			long skipped = in.skip(n);
+			time += System.nanoTime() - start;
+			return skipped;
+			
+		}
+		
+	}
+	
+}
@@ -0,0 +1,317 @@
+package com.cvanbattum.api.srt;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * <p>Finds line breaks and time arrows in the bytes of an SRT file, many
+ * bytes at a time. Used by {@link SRTParallelReader} to divide a file into
+ * chunks and to split the chunks into the lines of their blocks. Only works
+ * for encodings in which the searched characters are single bytes, like
+ * UTF-8 and the windows and ISO-8859 code pages.</p>
+ *
+ * <p>There are three implementations, of which {@link #get()} returns the
+ * fastest one available:</p>
+ *
+ * <ul>
+ * <li>{@link #VECTOR}: compares 16 to 64 bytes at a time using the Vector
+ * API, when the JVM runs with <code>--add-modules
+ * jdk.incubator.vector</code>.</li>
+ * <li>{@link #SWAR}: reads every eight bytes as one <code>long</code>, and
+ * compares all of its bytes at once using arithmetic on the whole word
+ * (SIMD within a register).</li>
+ * <li>{@link #SCALAR}: compares byte by byte, for comparison.</li>
+ * </ul>
+ *
+ * @author Casper van Battum
+ *
+ */
+abstract class SRTByteScanner {
+	
+	/**
+	 * Compares byte by byte.
+	 */
+	static final SRTByteScanner SCALAR = new Scalar();
+	
+	/**
+	 * Compares eight bytes at a time within a <code>long</code>.
+	 */
+	static final SRTByteScanner SWAR = new Swar();
+	
+	/**
+	 * Compares a vector of bytes at a time, or <code>null</code> when the
+	 * Vector API is not available.
+	 */
+	static final SRTByteScanner VECTOR = loadVector();
+	
+	private static final SRTByteScanner SELECTED = (VECTOR != null) ? VECTOR : SWAR;
+	
+	/**
+	 * @return The fastest scanner available.
+	 */
+	static SRTByteScanner get() {
+		return SELECTED;
+		
+	}
+	
+	/**
+	 * Finds the first occurrence of a byte.
+	 *
+	 * @param b
+	 * 			The bytes to search, in either byte order.
+	 * @param value
+	 * 			The byte to find.
+	 * @param from
+	 * 			The index to start at.
+	 * @param to
+	 * 			The index to stop before.
+	 * @return The index of the byte, or <code>-1</code> if it was not found.
+	 */
+	abstract int indexOf(ByteBuffer b, byte value, int from, int to);
+	
+	/**
+	 * Finds the first line break, a <code>\n</code> or a <code>\r</code>.
+	 *
+	 * @param b
+	 * 			The bytes to search, in either byte order.
+	 * @param from
+	 * 			The index to start at.
+	 * @param to
+	 * 			The index to stop before.
+	 * @return The index of the line break, or <code>-1</code> if there is
+	 * 			none.
+	 */
+	abstract int indexOfLineBreak(ByteBuffer b, int from, int to);
+	
+	/**
+	 * Counts the occurrences of a byte, like the line breaks before a
+	 * position to find its line number.
+	 *
+	 * @param b
+	 * 			The bytes to search.
+	 * @param value
+	 * 			The byte to count.
+	 * @param from
+	 * 			The index to start at.
+	 * @param to
+	 * 			The index to stop before.
+	 * @return The amount of times the byte occurs.
+	 */
+	abstract int count(ByteBuffer b, byte value, int from, int to);
+	
+	/**
+	 * Finds the first time arrow <code>--&gt;</code> in a range, usually a
+	 * single line.
+	 *
+	 * @param b
+	 * 			The bytes to search.
+	 * @param from
+	 * 			The index to start at.
+	 * @param to
+	 * 			The index to stop before.
+	 * @return The index of the first <code>-</code> of the arrow, or
+	 * 			<code>-1</code> if the range does not contain it.
+	 */
+	final int indexOfArrow(ByteBuffer b, int from, int to) {
+		//Find the '>' and look back, it is rarer than '-'
+		int i = indexOf(b, (byte) '>', from + 2, to);
+		while (i >= 0) {
+			if (b.get(i - 1) == '-' && b.get(i - 2) == '-') {
+				return i - 2;
+				
+			}
+			i = indexOf(b, (byte) '>', i + 1, to);
+			
+		}
+		
+		return -1;
+		
+	}
+	
+	/*
+	 * The Vector API is an incubator module, so its scanner is only loaded
+	 * when the module is there, and only used when it works on this JDK.
+	 */
+	private static SRTByteScanner loadVector() {
+		if (! ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+			return null;
+			
+		}
+		
+		try {
+			SRTByteScanner vector = (SRTByteScanner) Class.forName("com.cvanbattum.api.srt.SRTVectorScanner").getDeclaredConstructor().newInstance();
+			
+			byte[] probe = new byte[200];
+			probe[150] = '\n';
+			probe[170] = '\r';
+			ByteBuffer heap = ByteBuffer.wrap(probe);
+			ByteBuffer direct = ByteBuffer.allocateDirect(probe.length);
+			direct.put(probe).clear();
+			if (vector.indexOf(heap, (byte) '\n', 0, probe.length) == 150 && vector.indexOfLineBreak(direct, 151, probe.length) == 170
+					&& vector.count(direct, (byte) 0, 0, probe.length) == probe.length - 2) {
+				return vector;
+				
+			}
+			
+		}
+		catch (ReflectiveOperationException | LinkageError e) {
+			//An API of another JDK version, use the other scanners
+			
+		}
+		
+		return null;
+		
+	}
+	
+	/*
+	 * Compares byte by byte.
+	 */
+	private static final class Scalar extends SRTByteScanner {
+		
+		@Override
+		int indexOf(ByteBuffer b, byte value, int from, int to) {
+			for (int i = from; i < to; i++) {
+				if (b.get(i) == value) {
+					return i;
+					
+				}
+				
+			}
+			
+			return -1;
+			
+		}
+		
+		@Override
+		int indexOfLineBreak(ByteBuffer b, int from, int to) {
+			for (int i = from; i < to; i++) {
+				byte c = b.get(i);
+				if (c == '\n' || c == '\r') {
+					return i;
+					
+				}
+				
+			}
+			
+			return -1;
+			
+		}
+		
+		@Override
+		int count(ByteBuffer b, byte value, int from, int to) {
+			int count = 0;
+			for (int i = from; i < to; i++) {
+				if (b.get(i) == value) {
+					count++;
+					
+				}
+				
+			}
+			
+			return count;
+			
+		}
+		
+		@Override
+		public String toString() {
+			return "scalar";
+			
+		}
+		
+	}
+	
+	/*
+	 * Reads every eight bytes as one long, and compares all of its bytes at
+	 * once.
+	 */
+	private static final class Swar extends SRTByteScanner {
+		
+		private static final long LOW_BITS = 0x7F7F7F7F7F7F7F7FL;
+		private static final long ONES = 0x0101010101010101L;
+		private static final long NEW_LINES = '\n' * ONES;
+		private static final long RETURNS = '\r' * ONES;
+		
+		//Below this many bytes, the plain loop is faster
+		private static final int WORD_SCAN_MINIMUM = 16;
+		
+		@Override
+		int indexOf(ByteBuffer b, byte value, int from, int to) {
+			int i = from;
+			if (to - from >= WORD_SCAN_MINIMUM) {
+				final long pattern = (value & 0xFFL) * ONES;
+				for (; i + 8 <= to; i += 8) {
+					long found = matches(b.getLong(i), pattern);
+					if (found != 0) {
+						return i + firstByte(b, found);
+						
+					}
+					
+				}
+				
+			}
+			
+			return SCALAR.indexOf(b, value, i, to);
+			
+		}
+		
+		@Override
+		int indexOfLineBreak(ByteBuffer b, int from, int to) {
+			int i = from;
+			if (to - from >= WORD_SCAN_MINIMUM) {
+				for (; i + 8 <= to; i += 8) {
+					long word = b.getLong(i);
+					long found = matches(word, NEW_LINES) | matches(word, RETURNS);
+					if (found != 0) {
+						return i + firstByte(b, found);
+						
+					}
+					
+				}
+				
+			}
+			
+			return SCALAR.indexOfLineBreak(b, i, to);
+			
+		}
+		
+		@Override
+		int count(ByteBuffer b, byte value, int from, int to) {
+			final long pattern = (value & 0xFFL) * ONES;
+			int count = 0;
+			int i = from;
+			for (; i + 8 <= to; i += 8) {
+				count += Long.bitCount(matches(b.getLong(i), pattern));
+				
+			}
+			
+			return count + SCALAR.count(b, value, i, to);
+			
+		}
+		
+		@Override
+		public String toString() {
+			return "swar";
+			
+		}
+		
+		/*
+		 * Sets the high bit of every byte of the word that equals the byte of
+		 * the pattern, and clears all other bits. Unlike the shorter
+		 * (x - 0x01..) & ~x & 0x80.. this is exact for every byte, so it works
+		 * in both byte orders and can be counted.
+		 */
+		private static long matches(long word, long pattern) {
+			long x = word ^ pattern;
+			return ~(((x & LOW_BITS) + LOW_BITS) | x | LOW_BITS);
+			
+		}
+		
+		//The index within the word of the first matching byte in memory order
+		private static int firstByte(ByteBuffer b, long found) {
+			return ((b.order() == ByteOrder.BIG_ENDIAN) ? Long.numberOfLeadingZeros(found) : Long.numberOfTrailingZeros(found)) >>> 3;
+			
+		}
+		
+	}
+	
+}
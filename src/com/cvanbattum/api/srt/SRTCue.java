@@ -0,0 +1,302 @@
+package com.cvanbattum.api.srt;
+
+/**
+ * <p>An immutable, compact version of an {@link SRTEntry}, for keeping very
+ * many cues in memory, or for using them as keys of a map or in a cache.
+ * The start time and the duration are stored as <code>int</code>
+ * milliseconds, which covers times up to about 24 days, and all lines of
+ * text are stored in a single string, separated by <code>'\n'</code>.</p>
+ *
+ * <p>The text is interned, in the {@link SRTTextPool} given, or in a weak
+ * pool of all cues if there is none, so cues with the same text share one
+ * string. Text no cue uses anymore is left to the garbage collector, unlike
+ * text interned with {@link String#intern()}. A cue then takes 24 bytes of
+ * its own on a 64 bit JVM with compressed references, where an entry takes
+ * its object, an array and a string for every line.</p>
+ *
+ * <p>A cue cannot have a word timing; converting an entry with one to a cue
+ * loses it. An entry without text, or without lines, becomes a cue without
+ * text. A line cannot be <code>null</code>, as the joined text could not
+ * tell it from an empty line.</p>
+ *
+ * @author Casper van Battum
+ *
+ */
+public final class SRTCue {
+	
+	/**
+	 * The latest time a cue can end at in milliseconds, about 24 days.
+	 */
+	public static final long MAX_TIME = Integer.MAX_VALUE;
+	
+	//The pool of the cues created without one
+	private static final SRTTextPool TEXT_POOL = SRTTextPool.createWeak();
+	
+	private final int startTime;
+	private final int duration;
+	private final String text;
+	
+	private SRTCue(int startTime, int duration, String text) {
+		this.startTime = startTime;
+		this.duration = duration;
+		this.text = text;
+		
+	}
+	
+	/**
+	 * Creates a new <code>SRTCue</code>, interning its text in the pool of
+	 * all cues.
+	 *
+	 * @param startTime
+	 * 			The time to start the cue in milliseconds.
+	 * @param endTime
+	 * 			The time the cue ends in milliseconds.
+	 * @param text
+	 * 			The lines of text of the cue, or <code>null</code>.
+	 * @return The new cue.
+	 * @throws IllegalArgumentException
+	 * 			When the start time is not smaller than the end time, when it
+	 * 			is smaller than zero, when the end time is after
+	 * 			{@link #MAX_TIME}, or when a line is <code>null</code>.
+	 */
+	public static SRTCue create(long startTime, long endTime, String... text) {
+		return create(startTime, endTime, text, null);
+		
+	}
+	
+	/**
+	 * Creates a new <code>SRTCue</code>.
+	 *
+	 * @param startTime
+	 * 			The time to start the cue in milliseconds.
+	 * @param endTime
+	 * 			The time the cue ends in milliseconds.
+	 * @param text
+	 * 			The lines of text of the cue, or <code>null</code>.
+	 * @param textPool
+	 * 			The pool to intern the text in, or <code>null</code> for the
+	 * 			pool of all cues.
+	 * @return The new cue.
+	 * @throws IllegalArgumentException
+	 * 			When the start time is not smaller than the end time, when it
+	 * 			is smaller than zero, when the end time is after
+	 * 			{@link #MAX_TIME}, or when a line is <code>null</code>.
+	 */
+	public static SRTCue create(long startTime, long endTime, String[] text, SRTTextPool textPool) {
+		if (startTime < 0 || startTime >= endTime) {
+			throw new IllegalArgumentException("Starting time cannot be greater than ending time or smaller than zero.");
+			
+		}
+		if (endTime > MAX_TIME) {
+			throw new IllegalArgumentException("Ending time cannot be after " + MAX_TIME + " ms");
+			
+		}
+		
+		String joined = join(text);
+		return new SRTCue((int) startTime, (int) (endTime - startTime), ((textPool == null) ? TEXT_POOL : textPool).intern(joined));
+		
+	}
+	
+	/**
+	 * Creates a cue with the times and text of an entry. The text is interned
+	 * in the pool of the entry, if it has one.
+	 *
+	 * @param entry The entry to convert.
+	 * @return The new cue.
+	 * @throws IllegalArgumentException When the entry ends after
+	 * 			{@link #MAX_TIME}, or has a <code>null</code> line.
+	 */
+	public static SRTCue fromEntry(SRTEntry entry) {
+		return create(entry.getStartTime(), entry.getEndTime(), entry.getText(), entry.getTextPool());
+		
+	}
+	
+	/**
+	 * Converts all entries of a subtitle to cues.
+	 *
+	 * @param subtitle
+	 * 			The subtitle to convert.
+	 * @param textPool
+	 * 			The pool to intern the text in, or <code>null</code> for the
+	 * 			pool of all cues.
+	 * @return The cues, in the order of the subtitle.
+	 * @throws IllegalArgumentException When an entry ends after
+	 * 			{@link #MAX_TIME}, or has a <code>null</code> line.
+	 */
+	public static SRTCue[] fromSubtitle(SRTSubtitle subtitle, SRTTextPool textPool) {
+		SRTCue[] cues = new SRTCue[subtitle.size()];
+		for (int i = 0; i < cues.length; i++) {
+			SRTEntry e = subtitle.get(i);
+			cues[i] = create(e.getStartTime(), e.getEndTime(), e.getText(), textPool);
+			
+		}
+		
+		return cues;
+		
+	}
+	
+	//The lines separated by '\n', or null for no lines
+	private static String join(String[] text) {
+		if (text == null || text.length == 0) {
+			return null;
+			
+		}
+		
+		int length = text.length - 1;
+		for (String line : text) {
+			if (line == null) {
+				throw new IllegalArgumentException("A line of text cannot be null.");
+				
+			}
+			length += line.length();
+			
+		}
+		if (text.length == 1) {
+			return text[0];
+			
+		}
+		
+		StringBuilder sb = new StringBuilder(length);
+		for (int l = 0; l < text.length; l++) {
+			if (l > 0) {
+				sb.append('\n');
+				
+			}
+			sb.append(text[l]);
+			
+		}
+		
+		return sb.toString();
+		
+	}
+	
+	/**
+	 * Creates a new {@link SRTEntry} with the times and text of this cue.
+	 *
+	 * @return A new entry equal to this cue, without lines if it has no text.
+	 */
+	public SRTEntry toEntry() {
+		String[] text = getText();
+		return new SRTEntry(getStartTime(), getEndTime(), (text == null) ? new String[0] : text);
+		
+	}
+	
+	/**
+	 * @return The starting time of this cue in milliseconds.
+	 */
+	public long getStartTime() {
+		return this.startTime;
+		
+	}
+	
+	/**
+	 * @return The end time of this cue in milliseconds.
+	 */
+	public long getEndTime() {
+		return (long) this.startTime + this.duration;
+		
+	}
+	
+	/**
+	 * @return The duration of this cue in milliseconds.
+	 */
+	public long getDuration() {
+		return this.duration;
+		
+	}
+	
+	/**
+	 * Returns the lines of text of this cue, split into a new array.
+	 *
+	 * @return The lines of this cue, or <code>null</code> if it has no text.
+	 */
+	public String[] getText() {
+		if (text == null) {
+			return null;
+			
+		}
+		
+		String[] lines = new String[getLineCount()];
+		int start = 0;
+		for (int l = 0; l < lines.length - 1; l++) {
+			int end = text.indexOf('\n', start);
+			lines[l] = text.substring(start, end);
+			start = end + 1;
+			
+		}
+		lines[lines.length - 1] = text.substring(start);
+		
+		return lines;
+		
+	}
+	
+	/**
+	 * Returns the text of this cue as a single string, without splitting it
+	 * into lines.
+	 *
+	 * @return The lines of this cue separated by <code>'\n'</code>, or
+	 * 			<code>null</code> if it has no text.
+	 */
+	public String getJoinedText() {
+		return this.text;
+		
+	}
+	
+	/**
+	 * @return The amount of lines of text of this cue.
+	 */
+	public int getLineCount() {
+		if (text == null) {
+			return 0;
+			
+		}
+		
+		int count = 1;
+		for (int i = text.indexOf('\n'); i >= 0; i = text.indexOf('\n', i + 1)) {
+			count++;
+			
+		}
+		
+		return count;
+		
+	}
+	
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+			
+		}
+		if (! (obj instanceof SRTCue)) {
+			return false;
+			
+		}
+		
+		SRTCue other = (SRTCue) obj;
+		return startTime == other.startTime && duration == other.duration && (text == other.text || (text != null && text.equals(other.text)));
+		
+	}
+	
+	@Override
+	public int hashCode() {
+		int hash = 31 * startTime + duration;
+		return 31 * hash + ((text == null) ? 0 : text.hashCode());
+		
+	}
+	
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder(32 + ((text == null) ? 0 : text.length()));
+		SRTSubtitle.appendTime(sb, getStartTime());
+		sb.append(" --> ");
+		SRTSubtitle.appendTime(sb, getEndTime());
+		if (text != null) {
+			sb.append('\n').append(text);
+			
+		}
+		
+		return sb.toString();
+		
+	}
+	
+}
@@ -0,0 +1,119 @@
+package com.cvanbattum.api.srt;
+
+/**
+ * A problem found in a subtitle by {@link SRTValidator}. A diagnostic has a
+ * type (one of the constants in this class), the index of the entry with the
+ * problem, optionally the index of a second entry involved (like the entry it
+ * overlaps with) and a value giving the size of the problem.
+ *
+ * @author Casper van Battum
+ *
+ */
+public final class SRTDiagnostic {
+	
+	/**
+	 * The entry starts before an earlier entry has ended. The value is the
+	 * overlap in milliseconds, the other index is the overlapped entry.
+	 */
+	public static final int OVERLAP = 1;
+	/**
+	 * The entry starts before an entry in front of it. The value is the
+	 * difference in milliseconds, the other index is the entry in front
+	 * that starts the latest.
+	 */
+	public static final int OUT_OF_ORDER = 2;
+	/**
+	 * The entry is shown shorter than the minimum duration. The value is the
+	 * duration in milliseconds.
+	 */
+	public static final int TOO_SHORT = 3;
+	/**
+	 * The entry has more characters per second than can be read. The value
+	 * is the amount of characters per second.
+	 */
+	public static final int READING_SPEED = 4;
+	/**
+	 * The entry has the same times and text as the entry in front of it,
+	 * which is the other index.
+	 */
+	public static final int DUPLICATE = 5;
+	/**
+	 * The entry starts too shortly after the previous entry ends, so the
+	 * viewer cannot see a new subtitle has appeared. The value is the gap in
+	 * milliseconds, the other index is the previous entry.
+	 */
+	public static final int GAP_TOO_SMALL = 6;
+	
+	private final int type;
+	private final int index;
+	private final int otherIndex;
+	private final long value;
+	
+	SRTDiagnostic(int type, int index, int otherIndex, long value) {
+		this.type = type;
+		this.index = index;
+		this.otherIndex = otherIndex;
+		this.value = value;
+		
+	}
+	
+	/**
+	 * @return The type of this problem, one of the constants in
+	 * 			<code>SRTDiagnostic</code>.
+	 */
+	public int getType() {
+		return this.type;
+		
+	}
+	
+	/**
+	 * @return The index of the entry with the problem.
+	 */
+	public int getIndex() {
+		return this.index;
+		
+	}
+	
+	/**
+	 * @return The index of the other entry involved, or <code>-1</code> if
+	 * 			the problem is about one entry only.
+	 */
+	public int getOtherIndex() {
+		return this.otherIndex;
+		
+	}
+	
+	/**
+	 * @return The size of the problem, see the type constants for its
+	 * 			meaning.
+	 */
+	public long getValue() {
+		return this.value;
+		
+	}
+	
+	@Override
+	public String toString() {
+		//Entries are numbered from 1, like in an SRT file
+		int n = index + 1;
+		int other = otherIndex + 1;
+		switch (type) {
+		case OVERLAP:
+			return "entry " + n + " overlaps entry " + other + " by " + value + " ms";
+		case OUT_OF_ORDER:
+			return "entry " + n + " starts " + value + " ms before entry " + other;
+		case TOO_SHORT:
+			return "entry " + n + " is shown for only " + value + " ms";
+		case READING_SPEED:
+			return "entry " + n + " has " + value + " characters per second";
+		case DUPLICATE:
+			return "entry " + n + " is a duplicate of entry " + other;
+		case GAP_TOO_SMALL:
+			return "entry " + n + " starts " + value + " ms after entry " + other + " ends";
+		default:
+			return "entry " + n + ": unknown problem " + type;
+		}
+		
+	}
+	
+}
@@ -0,0 +1,527 @@
+package com.cvanbattum.api.srt;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * <p>The differences between two versions of a subtitle, as a list of
+ * {@link Edit}s. Every entry of the original is either kept (possibly
+ * retimed or reworded) or deleted, and every entry of the revised version
+ * that was not matched is inserted. The edits can be applied to the original
+ * again using {@link #apply(SRTSubtitle)}, like a patch.</p>
+ *
+ * <p>Entries are matched when they start close to each other and their text
+ * is similar. Of all possible matches, the largest set that keeps the order
+ * of both subtitles is chosen (a longest common subsequence). Because only
+ * entries within the time window are compared, this takes
+ * <code>O(n log n)</code> time for subtitles of normal density instead of
+ * the <code>O(n&sup2;)</code> of a full comparison.</p>
+ *
+ * @author Casper van Battum
+ *
+ */
+public final class SRTDiff {
+	
+	/**
+	 * The default time window, 2 seconds.
+	 */
+	public static final long DEFAULT_TIME_WINDOW = 2000;
+	/**
+	 * The default minimum text similarity.
+	 */
+	public static final double DEFAULT_MIN_SIMILARITY = 0.5;
+	
+	private final List<Edit> edits;
+	private final int originalSize;
+	private final int changeCount;
+	
+	private SRTDiff(List<Edit> edits, int originalSize) {
+		this.edits = Collections.unmodifiableList(edits);
+		this.originalSize = originalSize;
+		
+		int changes = 0;
+		for (Edit e : edits) {
+			if (e.getType() != Edit.UNCHANGED) {
+				changes++;
+				
+			}
+			
+		}
+		this.changeCount = changes;
+		
+	}
+	
+	/**
+	 * Computes the differences between two subtitles using the default time
+	 * window and minimum similarity.
+	 *
+	 * @param original
+	 * 			The original subtitle.
+	 * @param revised
+	 * 			The revised subtitle.
+	 * @return The differences.
+	 */
+	public static SRTDiff compute(SRTSubtitle original, SRTSubtitle revised) {
+		return compute(original, revised, DEFAULT_TIME_WINDOW, DEFAULT_MIN_SIMILARITY);
+		
+	}
+	
+	/**
+	 * Computes the differences between two subtitles. Both subtitles should
+	 * be sorted by start time.
+	 *
+	 * @param original
+	 * 			The original subtitle.
+	 * @param revised
+	 * 			The revised subtitle.
+	 * @param timeWindow
+	 * 			The largest difference in start time, in milliseconds, for
+	 * 			two entries to match.
+	 * @param minSimilarity
+	 * 			The minimum similarity of the text for two entries to match,
+	 * 			between 0 (any text) and 1 (the same text).
+	 * @return The differences.
+	 */
+	public static SRTDiff compute(SRTSubtitle original, SRTSubtitle revised, long timeWindow, double minSimilarity) {
+		final int n = original.size();
+		final int m = revised.size();
+		
+		//Character pairs of every text, for the similarity
+		int[][] originalPairs = new int[n][];
+		int[][] revisedPairs = new int[m][];
+		for (int i = 0; i < n; i++) {
+			originalPairs[i] = characterPairs(original.get(i).getText());
+			
+		}
+		for (int j = 0; j < m; j++) {
+			revisedPairs[j] = characterPairs(revised.get(j).getText());
+			
+		}
+		
+		//Hunt-Szymanski: for every original entry, the matching revised
+		//entries are visited in decreasing order, and the longest chain
+		//ending at each match is found by binary search over the smallest
+		//revised index ending a chain of every length
+		int[] chainEnd = new int[Math.min(n, m) + 1];
+		int[] chainEndMatch = new int[chainEnd.length];
+		int length = 0;
+		
+		//All matches found, with the match before it in its chain
+		int[] matchI = new int[16];
+		int[] matchJ = new int[16];
+		int[] matchPrevious = new int[16];
+		int matches = 0;
+		
+		int windowStart = 0;
+		for (int i = 0; i < n; i++) {
+			final SRTEntry o = original.get(i);
+			final long start = o.getStartTime();
+			while (windowStart < m && revised.get(windowStart).getStartTime() < start - timeWindow) {
+				windowStart++;
+				
+			}
+			int windowEnd = windowStart;
+			while (windowEnd < m && revised.get(windowEnd).getStartTime() <= start + timeWindow) {
+				windowEnd++;
+				
+			}
+			
+			for (int j = windowEnd - 1; j >= windowStart; j--) {
+				if (similarity(originalPairs[i], revisedPairs[j]) < minSimilarity) {
+					continue;
+					
+				}
+				
+				//The longest chain this match can extend
+				int lo = 0;
+				int hi = length;
+				while (lo < hi) {
+					int mid = (lo + hi) >>> 1;
+					if (chainEnd[mid] < j) {
+						lo = mid + 1;
+						
+					}
+					else {
+						hi = mid;
+						
+					}
+					
+				}
+				
+				if (matches == matchI.length) {
+					matchI = Arrays.copyOf(matchI, matches * 2);
+					matchJ = Arrays.copyOf(matchJ, matches * 2);
+					matchPrevious = Arrays.copyOf(matchPrevious, matches * 2);
+					
+				}
+				matchI[matches] = i;
+				matchJ[matches] = j;
+				matchPrevious[matches] = (lo > 0) ? chainEndMatch[lo - 1] : -1;
+				
+				if (lo == length || j < chainEnd[lo]) {
+					chainEnd[lo] = j;
+					chainEndMatch[lo] = matches;
+					if (lo == length) {
+						length++;
+						
+					}
+					
+				}
+				matches++;
+				
+			}
+			
+		}
+		
+		//Follow the longest chain back to get the matched pairs
+		int[] pairI = new int[length];
+		int[] pairJ = new int[length];
+		int k = (length > 0) ? chainEndMatch[length - 1] : -1;
+		for (int p = length - 1; p >= 0; p--) {
+			pairI[p] = matchI[k];
+			pairJ[p] = matchJ[k];
+			k = matchPrevious[k];
+			
+		}
+		
+		//Turn the pairs into edits, deleting and inserting the entries
+		//between two pairs
+		ArrayList<Edit> edits = new ArrayList<>(Math.max(n, m));
+		int i = 0;
+		int j = 0;
+		for (int p = 0; p <= length; p++) {
+			int nextI = (p < length) ? pairI[p] : n;
+			int nextJ = (p < length) ? pairJ[p] : m;
+			for (; i < nextI; i++) {
+				edits.add(new Edit(Edit.DELETED, i, -1, original.get(i), null));
+				
+			}
+			for (; j < nextJ; j++) {
+				edits.add(new Edit(Edit.INSERTED, -1, j, null, revised.get(j)));
+				
+			}
+			
+			if (p < length) {
+				SRTEntry o = original.get(i);
+				SRTEntry r = revised.get(j);
+				int type = Edit.UNCHANGED;
+				if (o.getStartTime() != r.getStartTime() || o.getEndTime() != r.getEndTime()) {
+					type |= Edit.RETIMED;
+					
+				}
+				if (! Arrays.equals(o.getText(), r.getText())) {
+					type |= Edit.REWORDED;
+					
+				}
+				edits.add(new Edit(type, i++, j++, o, r));
+				
+			}
+			
+		}
+		
+		return new SRTDiff(edits, n);
+		
+	}
+	
+	/**
+	 * Applies these differences to the original subtitle, giving the revised
+	 * subtitle. Unchanged entries are shared with the original, all other
+	 * entries are new.
+	 *
+	 * @param original
+	 * 			The subtitle these differences were computed from.
+	 * @return The revised subtitle.
+	 * @throws IllegalArgumentException
+	 * 			When the subtitle does not match the original these
+	 * 			differences were computed from: it has another amount of
+	 * 			entries, or an entry with other times or text.
+	 */
+	public SRTSubtitle apply(SRTSubtitle original) {
+		if (original.size() != originalSize) {
+			throw new IllegalArgumentException("subtitle has " + original.size() + " entries, expected " + originalSize);
+			
+		}
+		
+		SRTSubtitle revised = new SRTSubtitle();
+		for (Edit e : edits) {
+			if (e.getOriginalIndex() >= 0) {
+				SRTEntry o = original.get(e.getOriginalIndex());
+				if (o.getStartTime() != e.originalStart || o.getEndTime() != e.originalEnd || ! Arrays.equals(o.getText(), e.originalText)) {
+					throw new IllegalArgumentException("entry " + (e.getOriginalIndex() + 1) + " does not match the original");
+					
+				}
+				
+				if (e.getType() == Edit.UNCHANGED) {
+					revised.add(o);
+					continue;
+					
+				}
+				
+			}
+			
+			if (e.getRevisedIndex() >= 0) {
+				revised.add(new SRTEntry(e.revisedStart, e.revisedEnd, copy(e.revisedText)));
+				
+			}
+			
+		}
+		revised.publish();
+		
+		return revised;
+		
+	}
+	
+	/**
+	 * @return The edits, in the order of both subtitles.
+	 */
+	public List<Edit> getEdits() {
+		return this.edits;
+		
+	}
+	
+	/**
+	 * @return The amount of edits that are not {@link Edit#UNCHANGED}.
+	 */
+	public int getChangeCount() {
+		return this.changeCount;
+		
+	}
+	
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		for (Edit e : edits) {
+			if (e.getType() != Edit.UNCHANGED) {
+				sb.append(e).append('\n');
+				
+			}
+			
+		}
+		
+		return sb.toString();
+		
+	}
+	
+	//Copies the lines of an entry, which may be null
+	private static String[] copy(String[] text) {
+		return (text == null) ? null : text.clone();
+		
+	}
+	
+	/*
+	 * The sorted hashes of all pairs of adjacent characters in the text,
+	 * ignoring case and line breaks.
+	 */
+	private static int[] characterPairs(String[] text) {
+		if (text == null) {
+			return new int[0];
+			
+		}
+		
+		int total = 0;
+		for (String line : text) {
+			if (line != null) {
+				total += line.length() + 1;
+				
+			}
+			
+		}
+		
+		int[] pairs = new int[total];
+		int count = 0;
+		char previous = ' ';
+		for (String line : text) {
+			if (line == null) {
+				continue;
+				
+			}
+			
+			for (int c = 0; c <= line.length(); c++) {
+				char current = (c < line.length()) ? Character.toLowerCase(line.charAt(c)) : ' ';
+				if (! (current == ' ' && previous == ' ')) {
+					pairs[count++] = (previous << 16) | current;
+					
+				}
+				previous = current;
+				
+			}
+			
+		}
+		
+		pairs = Arrays.copyOf(pairs, count);
+		Arrays.sort(pairs);
+		return pairs;
+		
+	}
+	
+	//The Dice coefficient of two sorted arrays of character pairs
+	private static double similarity(int[] a, int[] b) {
+		if (a.length == 0 && b.length == 0) {
+			return 1;
+			
+		}
+		
+		int common = 0;
+		int i = 0;
+		int j = 0;
+		while (i < a.length && j < b.length) {
+			if (a[i] == b[j]) {
+				common++;
+				i++;
+				j++;
+				
+			}
+			else if (a[i] < b[j]) {
+				i++;
+				
+			}
+			else {
+				j++;
+				
+			}
+			
+		}
+		
+		return 2.0 * common / (a.length + b.length);
+		
+	}
+	
+	/**
+	 * One step of an {@link SRTDiff}: an entry that was kept, changed,
+	 * inserted or deleted. The times and text of both entries are copied, so
+	 * an edit does not change when the subtitles are edited afterwards.
+	 *
+	 * @author Casper van Battum
+	 *
+	 */
+	public static final class Edit {
+		
+		/**
+		 * The entry was kept as it is.
+		 */
+		public static final int UNCHANGED = 0;
+		/**
+		 * The start or end time of the entry changed. Can be combined with
+		 * {@link #REWORDED}.
+		 */
+		public static final int RETIMED = 0b0001;
+		/**
+		 * The text of the entry changed. Can be combined with
+		 * {@link #RETIMED}.
+		 */
+		public static final int REWORDED = 0b0010;
+		/**
+		 * The entry only exists in the revised subtitle.
+		 */
+		public static final int INSERTED = 0b0100;
+		/**
+		 * The entry only exists in the original subtitle.
+		 */
+		public static final int DELETED = 0b1000;
+		
+		private final int type;
+		private final int originalIndex;
+		private final int revisedIndex;
+		private final long originalStart;
+		private final long originalEnd;
+		private final String[] originalText;
+		private final long revisedStart;
+		private final long revisedEnd;
+		private final String[] revisedText;
+		
+		private Edit(int type, int originalIndex, int revisedIndex, SRTEntry original, SRTEntry revised) {
+			this.type = type;
+			this.originalIndex = originalIndex;
+			this.revisedIndex = revisedIndex;
+			
+			this.originalStart = (original == null) ? -1 : original.getStartTime();
+			this.originalEnd = (original == null) ? -1 : original.getEndTime();
+			this.originalText = (original == null) ? null : copy(original.getText());
+			this.revisedStart = (revised == null) ? -1 : revised.getStartTime();
+			this.revisedEnd = (revised == null) ? -1 : revised.getEndTime();
+			this.revisedText = (revised == null || type == UNCHANGED) ? null : copy(revised.getText());
+			
+		}
+		
+		/**
+		 * @return The type of this edit: {@link #UNCHANGED},
+		 * 			{@link #INSERTED}, {@link #DELETED}, or {@link #RETIMED}
+		 * 			and/or {@link #REWORDED}.
+		 */
+		public int getType() {
+			return this.type;
+			
+		}
+		
+		/**
+		 * @return The index of the entry in the original subtitle, or
+		 * 			<code>-1</code> for an inserted entry.
+		 */
+		public int getOriginalIndex() {
+			return this.originalIndex;
+			
+		}
+		
+		/**
+		 * @return The index of the entry in the revised subtitle, or
+		 * 			<code>-1</code> for a deleted entry.
+		 */
+		public int getRevisedIndex() {
+			return this.revisedIndex;
+			
+		}
+		
+		/**
+		 * @return A copy of the original entry, or <code>null</code> for an
+		 * 			inserted entry.
+		 */
+		public SRTEntry getOriginal() {
+			return (originalIndex < 0) ? null : new SRTEntry(originalStart, originalEnd, copy(originalText));
+			
+		}
+		
+		/**
+		 * @return A copy of the revised entry, or <code>null</code> for a
+		 * 			deleted entry.
+		 */
+		public SRTEntry getRevised() {
+			if (revisedIndex < 0) {
+				return null;
+				
+			}
+			
+			//Unchanged edits do not keep a second copy of the text
+			String[] text = (type == UNCHANGED) ? originalText : revisedText;
+			return new SRTEntry(revisedStart, revisedEnd, copy(text));
+			
+		}
+		
+		@Override
+		public String toString() {
+			switch (type) {
+			case UNCHANGED:
+				return "  " + (originalIndex + 1);
+			case INSERTED:
+				return "+ " + (revisedIndex + 1) + " " + SRTSubtitle.formatTime(revisedStart) + " " + Arrays.toString(revisedText);
+			case DELETED:
+				return "- " + (originalIndex + 1) + " " + SRTSubtitle.formatTime(originalStart) + " " + Arrays.toString(originalText);
+			default:
+				StringBuilder sb = new StringBuilder("~ ").append(originalIndex + 1).append(" -> ").append(revisedIndex + 1);
+				if ((type & RETIMED) != 0) {
+					sb.append(' ').append(SRTSubtitle.formatTime(originalStart)).append(" -> ").append(SRTSubtitle.formatTime(revisedStart));
+					
+				}
+				if ((type & REWORDED) != 0) {
+					sb.append(' ').append(Arrays.toString(originalText)).append(" -> ").append(Arrays.toString(revisedText));
+					
+				}
+				return sb.toString();
+			}
+			
+		}
+		
+	}
+	
+}
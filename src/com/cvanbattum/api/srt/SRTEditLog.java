@@ -0,0 +1,650 @@
+package com.cvanbattum.api.srt;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * <p>Edits a {@link SRTSubtitle} and keeps track of the edits, so they can
+ * be undone and redone. Instead of copying the subtitle for every edit, the
+ * log only records what is needed to reverse the edit: undoing or redoing an
+ * edit costs as much as the edit itself, no matter how large the subtitle
+ * is. Shifting the times of many entries at once is recorded as a single
+ * edit.</p>
+ *
+ * <p>Edits can be grouped using {@link #beginTransaction()} and
+ * {@link #endTransaction()}, and are then undone and redone as one. The log
+ * estimates the memory used by its edits, and forgets the oldest edits when
+ * the maximum size is reached.</p>
+ *
+ * <p>The log only works when all edits to the subtitle and its entries are
+ * done through the log. Edits done directly on the subtitle are not
+ * recorded, and will make undoing the recorded edits give wrong results.</p>
+ *
+ * @author Casper van Battum
+ *
+ */
+public class SRTEditLog {
+	
+	/**
+	 * The default maximum size of a log in bytes (4 MB).
+	 */
+	public static final long DEFAULT_MAXIMUM_SIZE = 4L * 1024 * 1024;
+	
+	private final SRTSubtitle subtitle;
+	private final long maximumSize;
+	
+	private final ArrayDeque<Edit> undoStack = new ArrayDeque<>();
+	private final ArrayDeque<Edit> redoStack = new ArrayDeque<>();
+	private long size;
+	
+	private ArrayList<Edit> transaction;
+	private int transactionDepth;
+	
+	/**
+	 * Creates a new, empty <code>SRTEditLog</code> for the given subtitle
+	 * with the default maximum size.
+	 *
+	 * @param subtitle The subtitle to edit.
+	 */
+	public SRTEditLog(SRTSubtitle subtitle) {
+		this(subtitle, DEFAULT_MAXIMUM_SIZE);
+		
+	}
+	
+	/**
+	 * Creates a new, empty <code>SRTEditLog</code> for the given subtitle.
+	 *
+	 * @param subtitle
+	 * 			The subtitle to edit.
+	 * @param maximumSize
+	 * 			The maximum estimated size in bytes of the recorded edits.
+	 */
+	public SRTEditLog(SRTSubtitle subtitle, long maximumSize) {
+		if (maximumSize < 0) {
+			throw new IllegalArgumentException("maximum size cannot be smaller than zero");
+			
+		}
+		
+		this.subtitle = subtitle;
+		this.maximumSize = maximumSize;
+		
+	}
+	
+	//-----\\
+	//EDITS\\
+	
+	/**
+	 * Adds an entry at the end of the subtitle.
+	 *
+	 * @param entry The entry to add.
+	 */
+	public void add(SRTEntry entry) {
+		insertAt(subtitle.size(), entry);
+		
+	}
+	
+	/**
+	 * Inserts entries at the given index, see
+	 * {@link SRTSubtitle#insertAt(int, SRTEntry...)}.
+	 *
+	 * @param index
+	 * 			The index to insert the entries.
+	 * @param entries
+	 * 			The entries to insert.
+	 */
+	public void insertAt(int index, SRTEntry... entries) {
+		subtitle.insertAt(index, entries);
+		if (entries.length == 0) {
+			return;
+			
+		}
+		record(new InsertEdit(index, entries.clone()));
+		
+	}
+	
+	/**
+	 * Removes <code>count</code> entries, starting at the given index. 
+	 * Removing no entries is not recorded as an edit.
+	 *
+	 * @param index
+	 * 			The index of the first entry to remove.
+	 * @param count
+	 * 			The amount of entries to remove.
+	 * @return The removed entries.
+	 */
+	public SRTEntry[] remove(int index, int count) {
+		SRTEntry[] removed = subtitle.subList(index, index + count).toArray(new SRTEntry[count]);
+		if (count == 0) {
+			return removed;
+			
+		}
+		subtitle.subList(index, index + count).clear();
+		record(new RemoveEdit(index, removed));
+		return removed;
+		
+	}
+	
+	/**
+	 * Changes the text of an entry, see {@link SRTEntry#setText(String...)}.
+	 *
+	 * @param entry
+	 * 			The entry to change.
+	 * @param text
+	 * 			The new text of the entry.
+	 */
+	public void setText(SRTEntry entry, String... text) {
+		String[] old = copy(entry.getText());
+		SRTWordTiming oldTiming = entry.getWordTiming();
+		entry.setText(text);
+		record(new TextEdit(entry, old, copy(entry.getText()), oldTiming));
+		
+	}
+	
+	/**
+	 * Changes one line of an entry, see
+	 * {@link SRTEntry#setTextAtLine(int, String)}.
+	 *
+	 * @param entry
+	 * 			The entry to change.
+	 * @param line
+	 * 			The line to change, one of the line constants in
+	 * 			{@link SRTEntry}.
+	 * @param text
+	 * 			The new text on this line.
+	 */
+	public void setTextAtLine(SRTEntry entry, int line, String text) {
+		String[] old = copy(entry.getText());
+		SRTWordTiming oldTiming = entry.getWordTiming();
+		entry.setTextAtLine(line, text);
+		record(new TextEdit(entry, old, copy(entry.getText()), oldTiming));
+		
+	}
+	
+	/**
+	 * Changes the start time of an entry, see
+	 * {@link SRTEntry#setStartTime(long)}.
+	 *
+	 * @param entry
+	 * 			The entry to change.
+	 * @param startTime
+	 * 			The new start time in milliseconds.
+	 */
+	public void setStartTime(SRTEntry entry, long startTime) {
+		setTimes(entry, startTime, entry.getEndTime());
+		
+	}
+	
+	/**
+	 * Changes the end time of an entry, see {@link SRTEntry#setEndTime(long)}.
+	 *
+	 * @param entry
+	 * 			The entry to change.
+	 * @param endTime
+	 * 			The new end time in milliseconds.
+	 */
+	public void setEndTime(SRTEntry entry, long endTime) {
+		setTimes(entry, entry.getStartTime(), endTime);
+		
+	}
+	
+	/**
+	 * Changes both the start and end time of an entry, see
+	 * {@link SRTEntry#setTimes(long, long)}.
+	 *
+	 * @param entry
+	 * 			The entry to change.
+	 * @param startTime
+	 * 			The new start time in milliseconds.
+	 * @param endTime
+	 * 			The new end time in milliseconds.
+	 */
+	public void setTimes(SRTEntry entry, long startTime, long endTime) {
+		long oldStart = entry.getStartTime();
+		long oldEnd = entry.getEndTime();
+		entry.setTimes(startTime, endTime);
+		record(new TimeEdit(entry, oldStart, oldEnd, startTime, endTime));
+		
+	}
+	
+	/**
+	 * Shifts the times of a range of entries, see
+	 * {@link SRTSubtitle#shiftTimes(int, int, long)}. The shift is recorded
+	 * as a single edit.
+	 *
+	 * @param fromIndex
+	 * 			The index of the first entry to shift.
+	 * @param toIndex
+	 * 			The index after the last entry to shift.
+	 * @param offset
+	 * 			The offset in milliseconds.
+	 */
+	public void shiftTimes(int fromIndex, int toIndex, long offset) {
+		subtitle.shiftTimes(fromIndex, toIndex, offset);
+		record(new ShiftEdit(fromIndex, toIndex, offset));
+		
+	}
+	
+	//------------\\
+	//TRANSACTIONS\\
+	
+	/**
+	 * Starts a transaction. All edits until the matching call to
+	 * {@link #endTransaction()} are recorded as a single edit. Transactions
+	 * can be nested, the edits are then grouped by the outermost transaction.
+	 */
+	public void beginTransaction() {
+		if (transactionDepth == 0) {
+			transaction = new ArrayList<>();
+			
+		}
+		transactionDepth++;
+		
+	}
+	
+	/**
+	 * Ends the transaction started by {@link #beginTransaction()}.
+	 *
+	 * @throws IllegalStateException When no transaction was started.
+	 */
+	public void endTransaction() {
+		if (transactionDepth == 0) {
+			throw new IllegalStateException("No transaction to end");
+			
+		}
+		
+		transactionDepth--;
+		if (transactionDepth == 0) {
+			ArrayList<Edit> edits = transaction;
+			transaction = null;
+			
+			if (edits.size() == 1) {
+				record(edits.get(0));
+				
+			}
+			else if (! edits.isEmpty()) {
+				record(new CompoundEdit(edits.toArray(new Edit[edits.size()])));
+				
+			}
+			
+		}
+		
+	}
+	
+	//-------------\\
+	//UNDO AND REDO\\
+	
+	/**
+	 * @return <code>true</code> if there is an edit to undo.
+	 */
+	public boolean canUndo() {
+		return transactionDepth == 0 && ! undoStack.isEmpty();
+		
+	}
+	
+	/**
+	 * @return <code>true</code> if there is an edit to redo.
+	 */
+	public boolean canRedo() {
+		return transactionDepth == 0 && ! redoStack.isEmpty();
+		
+	}
+	
+	/**
+	 * Undoes the last edit (or transaction).
+	 *
+	 * @throws IllegalStateException
+	 * 			When there is nothing to undo or a transaction is running.
+	 */
+	public void undo() {
+		if (transactionDepth > 0) {
+			throw new IllegalStateException("Cannot undo while a transaction is running");
+			
+		}
+		if (! canUndo()) {
+			throw new IllegalStateException("Nothing to undo");
+			
+		}
+		
+		Edit edit = undoStack.pollLast();
+		edit.undo(subtitle);
+		redoStack.addLast(edit);
+		
+	}
+	
+	/**
+	 * Redoes the last undone edit (or transaction).
+	 *
+	 * @throws IllegalStateException
+	 * 			When there is nothing to redo or a transaction is running.
+	 */
+	public void redo() {
+		if (transactionDepth > 0) {
+			throw new IllegalStateException("Cannot redo while a transaction is running");
+			
+		}
+		if (! canRedo()) {
+			throw new IllegalStateException("Nothing to redo");
+			
+		}
+		
+		Edit edit = redoStack.pollLast();
+		edit.redo(subtitle);
+		undoStack.addLast(edit);
+		
+	}
+	
+	/**
+	 * Forgets all recorded edits.
+	 */
+	public void clear() {
+		undoStack.clear();
+		redoStack.clear();
+		size = 0;
+		
+	}
+	
+	/**
+	 * Returns the estimated amount of memory in bytes used by the recorded
+	 * edits. This never exceeds the maximum size, except for a single edit
+	 * larger than the maximum size, which is kept until the next edit.
+	 *
+	 * @return The estimated size of this log in bytes.
+	 */
+	public long getSize() {
+		return this.size;
+		
+	}
+	
+	/**
+	 * @return The subtitle edited by this log.
+	 */
+	public SRTSubtitle getSubtitle() {
+		return this.subtitle;
+		
+	}
+	
+	//Records an edit that was just done
+	private void record(Edit edit) {
+		if (transactionDepth > 0) {
+			transaction.add(edit);
+			return;
+			
+		}
+		
+		//A new edit makes the undone edits unreachable
+		for (Edit e : redoStack) {
+			size -= e.size();
+			
+		}
+		redoStack.clear();
+		
+		undoStack.addLast(edit);
+		size += edit.size();
+		
+		//Forget the oldest edits, but always keep the last one
+		while (size > maximumSize && undoStack.size() > 1) {
+			size -= undoStack.pollFirst().size();
+			
+		}
+		
+	}
+	
+	//--------------\\
+	//RECORDED EDITS\\
+	
+	private static abstract class Edit {
+		
+		abstract void undo(SRTSubtitle subtitle);
+		
+		abstract void redo(SRTSubtitle subtitle);
+		
+		//Estimated size in bytes
+		abstract long size();
+		
+	}
+	
+	private static class InsertEdit extends Edit {
+		
+		private final int index;
+		private final SRTEntry[] entries;
+		
+		InsertEdit(int index, SRTEntry[] entries) {
+			this.index = index;
+			this.entries = entries;
+			
+		}
+		
+		@Override
+		void undo(SRTSubtitle subtitle) {
+			subtitle.subList(index, index + entries.length).clear();
+			
+		}
+		
+		@Override
+		void redo(SRTSubtitle subtitle) {
+			subtitle.addAll(index, Arrays.asList(entries));
+			
+		}
+		
+		@Override
+		long size() {
+			//The entries themselves are still referenced by the subtitle
+			return 40 + 4L * entries.length;
+			
+		}
+		
+	}
+	
+	private static class RemoveEdit extends InsertEdit {
+		
+		private final SRTEntry[] removed;
+		
+		RemoveEdit(int index, SRTEntry[] removed) {
+			super(index, removed);
+			
+			this.removed = removed;
+			
+		}
+		
+		@Override
+		void undo(SRTSubtitle subtitle) {
+			super.redo(subtitle);
+			
+		}
+		
+		@Override
+		void redo(SRTSubtitle subtitle) {
+			super.undo(subtitle);
+			
+		}
+		
+		@Override
+		long size() {
+			//The removed entries are only referenced by this edit
+			long s = super.size();
+			for (SRTEntry e : removed) {
+				s += 40 + textSize(e.getText());
+				
+			}
+			return s;
+			
+		}
+		
+	}
+	
+	private static class TextEdit extends Edit {
+		
+		private final SRTEntry entry;
+		private final String[] oldText;
+		private final String[] newText;
+		//Changing the text drops the word timing, undoing brings it back
+		private final SRTWordTiming oldTiming;
+		
+		TextEdit(SRTEntry entry, String[] oldText, String[] newText, SRTWordTiming oldTiming) {
+			this.entry = entry;
+			this.oldText = oldText;
+			this.newText = newText;
+			this.oldTiming = oldTiming;
+			
+		}
+		
+		@Override
+		void undo(SRTSubtitle subtitle) {
+			entry.setText(copy(oldText));
+			entry.setWordTiming(oldTiming);
+			
+		}
+		
+		@Override
+		void redo(SRTSubtitle subtitle) {
+			entry.setText(copy(newText));
+			
+		}
+		
+		@Override
+		long size() {
+			return 24 + textSize(oldText) + textSize(newText);
+			
+		}
+		
+	}
+	
+	private static class TimeEdit extends Edit {
+		
+		private final SRTEntry entry;
+		private final long oldStart;
+		private final long oldEnd;
+		private final long newStart;
+		private final long newEnd;
+		
+		TimeEdit(SRTEntry entry, long oldStart, long oldEnd, long newStart, long newEnd) {
+			this.entry = entry;
+			this.oldStart = oldStart;
+			this.oldEnd = oldEnd;
+			this.newStart = newStart;
+			this.newEnd = newEnd;
+			
+		}
+		
+		@Override
+		void undo(SRTSubtitle subtitle) {
+			entry.setTimes(oldStart, oldEnd);
+			
+		}
+		
+		@Override
+		void redo(SRTSubtitle subtitle) {
+			entry.setTimes(newStart, newEnd);
+			
+		}
+		
+		@Override
+		long size() {
+			return 48;
+			
+		}
+		
+	}
+	
+	private static class ShiftEdit extends Edit {
+		
+		private final int fromIndex;
+		private final int toIndex;
+		private final long offset;
+		
+		ShiftEdit(int fromIndex, int toIndex, long offset) {
+			this.fromIndex = fromIndex;
+			this.toIndex = toIndex;
+			this.offset = offset;
+			
+		}
+		
+		@Override
+		void undo(SRTSubtitle subtitle) {
+			subtitle.shiftTimes(fromIndex, toIndex, -offset);
+			
+		}
+		
+		@Override
+		void redo(SRTSubtitle subtitle) {
+			subtitle.shiftTimes(fromIndex, toIndex, offset);
+			
+		}
+		
+		@Override
+		long size() {
+			return 32;
+			
+		}
+		
+	}
+	
+	private static class CompoundEdit extends Edit {
+		
+		private final Edit[] edits;
+		
+		CompoundEdit(Edit[] edits) {
+			this.edits = edits;
+			
+		}
+		
+		@Override
+		void undo(SRTSubtitle subtitle) {
+			for (int i = edits.length - 1; i >= 0; i--) {
+				edits[i].undo(subtitle);
+				
+			}
+			
+		}
+		
+		@Override
+		void redo(SRTSubtitle subtitle) {
+			for (Edit e : edits) {
+				e.redo(subtitle);
+				
+			}
+			
+		}
+		
+		@Override
+		long size() {
+			long s = 16 + 4L * edits.length;
+			for (Edit e : edits) {
+				s += e.size();
+				
+			}
+			return s;
+			
+		}
+		
+	}
+	
+	//The arrays of the recorded edits are never given to an entry directly,
+	//as setTextAtLine would change them
+	private static String[] copy(String[] text) {
+		return (text == null) ? null : text.clone();
+		
+	}
+	
+	//Estimated size of the lines of text, the Strings may be shared with the
+	//entry or a text pool, so this is an upper bound
+	private static long textSize(String[] text) {
+		if (text == null) {
+			return 0;
+			
+		}
+		
+		long s = 16 + 4L * text.length;
+		for (String line : text) {
+			if (line != null) {
+				s += SRTTextPool.estimateSize(line);
+				
+			}
+			
+		}
+		return s;
+		
+	}
+	
+}
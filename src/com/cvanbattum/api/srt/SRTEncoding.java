@@ -0,0 +1,373 @@
+package com.cvanbattum.api.srt;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * <p>The character encoding of an SRT file, as detected from its first
+ * bytes. Subtitle files come in many encodings, and reading one with the
+ * wrong encoding garbles every accented character.</p>
+ *
+ * <p>A byte order mark decides the encoding on its own. Without one, the
+ * bytes are checked for zero bytes (UTF-16 text has a zero byte in almost
+ * every ASCII character), then for valid UTF-8. If the bytes are not valid
+ * UTF-8, the single byte encodings windows-1252 (western European, a
+ * superset of ISO-8859-1), windows-1250 and ISO-8859-2 (central European)
+ * are tried, and the one in which the most non-ASCII bytes decode to letters
+ * inside words wins. {@link #getConfidence()} tells how clear the choice
+ * was.</p>
+ *
+ * @author Casper van Battum
+ *
+ */
+public final class SRTEncoding {
+	
+	/**
+	 * The amount of bytes read by {@link #detect(InputStream)}.
+	 */
+	public static final int SAMPLE_SIZE = 8192;
+	
+	private static final Charset WINDOWS_1252 = Charset.forName("windows-1252");
+	private static final Charset WINDOWS_1250 = Charset.forName("windows-1250");
+	private static final Charset ISO_8859_2 = Charset.forName("ISO-8859-2");
+	
+	//The single byte candidates in order of preference, with the characters
+	//their bytes 0x80 to 0xFF decode to
+	private static final Charset[] SINGLE_BYTE = {WINDOWS_1252, WINDOWS_1250, ISO_8859_2};
+	//What every byte decodes to in every single byte candidate, a letter, an
+	//invalid character or zero for anything else, so the characters are not
+	//classified again for every byte
+	private static final byte LETTER = 1;
+	private static final byte INVALID = 2;
+	private static final byte[][] CLASSES = new byte[SINGLE_BYTE.length][256];
+	static {
+		byte[] high = new byte[128];
+		for (int i = 0; i < high.length; i++) {
+			high[i] = (byte) (0x80 + i);
+			
+		}
+		for (int c = 0; c < SINGLE_BYTE.length; c++) {
+			for (int b = 'A'; b <= 'z'; b++) {
+				if (b <= 'Z' || b >= 'a') {
+					CLASSES[c][b] = LETTER;
+					
+				}
+				
+			}
+			
+			char[] chars = new String(high, SINGLE_BYTE[c]).toCharArray();
+			for (int i = 0; i < chars.length; i++) {
+				char ch = chars[i];
+				if (Character.isLetter(ch)) {
+					CLASSES[c][0x80 + i] = LETTER;
+					
+				}
+				else if (ch == '\uFFFD' || Character.isISOControl(ch)) {
+					CLASSES[c][0x80 + i] = INVALID;
+					
+				}
+				
+			}
+			
+		}
+		
+	}
+	
+	private final Charset charset;
+	private final double confidence;
+	private final int bomLength;
+	
+	private SRTEncoding(Charset charset, double confidence, int bomLength) {
+		this.charset = charset;
+		this.confidence = confidence;
+		this.bomLength = bomLength;
+		
+	}
+	
+	/**
+	 * Detects the encoding of a stream from its first {@link #SAMPLE_SIZE}
+	 * bytes. The stream has to support <code>mark</code> and
+	 * <code>reset</code>; afterwards it is positioned after the byte order
+	 * mark, if there is one.
+	 *
+	 * @param in
+	 * 			The stream to detect the encoding of.
+	 * @return The detected encoding.
+	 * @throws IOException When reading from the stream fails.
+	 */
+	public static SRTEncoding detect(InputStream in) throws IOException {
+		if (! in.markSupported()) {
+			throw new IllegalArgumentException("stream does not support mark and reset");
+			
+		}
+		
+		byte[] sample = new byte[SAMPLE_SIZE];
+		in.mark(SAMPLE_SIZE);
+		int length = 0;
+		int read;
+		while (length < sample.length && (read = in.read(sample, length, sample.length - length)) > 0) {
+			length += read;
+			
+		}
+		in.reset();
+		
+		SRTEncoding encoding = detect(sample, 0, length);
+		long skipped = 0;
+		while (skipped < encoding.bomLength) {
+			skipped += in.skip(encoding.bomLength - skipped);
+			
+		}
+		
+		return encoding;
+		
+	}
+	
+	/**
+	 * Detects the encoding of the given bytes, usually the start of a file.
+	 *
+	 * @param data
+	 * 			The array containing the bytes.
+	 * @param offset
+	 * 			The index of the first byte.
+	 * @param length
+	 * 			The amount of bytes.
+	 * @return The detected encoding.
+	 */
+	public static SRTEncoding detect(byte[] data, int offset, int length) {
+		final int end = offset + length;
+		
+		//A byte order mark is certain
+		if (length >= 3 && (data[offset] & 0xFF) == 0xEF && (data[offset + 1] & 0xFF) == 0xBB && (data[offset + 2] & 0xFF) == 0xBF) {
+			return new SRTEncoding(StandardCharsets.UTF_8, 1, 3);
+			
+		}
+		if (length >= 2 && (data[offset] & 0xFF) == 0xFF && (data[offset + 1] & 0xFF) == 0xFE) {
+			return new SRTEncoding(StandardCharsets.UTF_16LE, 1, 2);
+			
+		}
+		if (length >= 2 && (data[offset] & 0xFF) == 0xFE && (data[offset + 1] & 0xFF) == 0xFF) {
+			return new SRTEncoding(StandardCharsets.UTF_16BE, 1, 2);
+			
+		}
+		
+		//UTF-16 without a byte order mark: ASCII characters have a zero high
+		//byte, so half the bytes are zero on one side only
+		int evenZeros = 0;
+		int oddZeros = 0;
+		for (int i = offset; i < end; i++) {
+			if (data[i] == 0) {
+				if (((i - offset) & 1) == 0) {
+					evenZeros++;
+					
+				}
+				else {
+					oddZeros++;
+					
+				}
+				
+			}
+			
+		}
+		int pairs = length / 2;
+		if (pairs > 0 && Math.max(evenZeros, oddZeros) > pairs / 4) {
+			double share = (double) Math.abs(evenZeros - oddZeros) / pairs;
+			return new SRTEncoding(evenZeros > oddZeros ? StandardCharsets.UTF_16BE : StandardCharsets.UTF_16LE, Math.min(1, share * 1.25), 0);
+			
+		}
+		
+		int utf8 = countUTF8Sequences(data, offset, end);
+		if (utf8 == 0) {
+			//Plain ASCII reads the same in any of the encodings
+			return new SRTEncoding(StandardCharsets.UTF_8, 1, 0);
+			
+		}
+		if (utf8 > 0) {
+			//Random bytes are rarely valid UTF-8, even less so with more of them
+			return new SRTEncoding(StandardCharsets.UTF_8, 1 - 0.5 / (1 + utf8), 0);
+			
+		}
+		
+		return detectSingleByte(data, offset, end);
+		
+	}
+	
+	/*
+	 * Returns the amount of multibyte sequences if the bytes are valid UTF-8,
+	 * or -1 if they are not. A sequence cut off by the end of the sample is
+	 * allowed. Overlong sequences, surrogates and code points above U+10FFFF
+	 * are not valid, which shows in the range of the second byte.
+	 */
+	private static int countUTF8Sequences(byte[] data, int offset, int end) {
+		int sequences = 0;
+		int i = offset;
+		while (i < end) {
+			int b = data[i] & 0xFF;
+			if (b < 0x80) {
+				i++;
+				continue;
+				
+			}
+			
+			//The amount of continuation bytes, and the range of the first
+			int following;
+			int low = 0x80;
+			int high = 0xBF;
+			if (b >= 0xC2 && b <= 0xDF) {
+				following = 1;
+				
+			}
+			else if (b >= 0xE0 && b <= 0xEF) {
+				following = 2;
+				if (b == 0xE0) {
+					//Overlong, would fit in two bytes
+					low = 0xA0;
+					
+				}
+				else if (b == 0xED) {
+					//Surrogates U+D800 to U+DFFF
+					high = 0x9F;
+					
+				}
+				
+			}
+			else if (b >= 0xF0 && b <= 0xF4) {
+				following = 3;
+				if (b == 0xF0) {
+					//Overlong, would fit in three bytes
+					low = 0x90;
+					
+				}
+				else if (b == 0xF4) {
+					//Above U+10FFFF
+					high = 0x8F;
+					
+				}
+				
+			}
+			else {
+				return -1;
+				
+			}
+			
+			for (int f = 1; f <= following; f++) {
+				if (i + f >= end) {
+					return sequences;
+					
+				}
+				int c = data[i + f] & 0xFF;
+				if (f == 1 ? (c < low || c > high) : (c & 0xC0) != 0x80) {
+					return -1;
+					
+				}
+				
+			}
+			sequences++;
+			i += following + 1;
+			
+		}
+		
+		return sequences;
+		
+	}
+	
+	/*
+	 * Scores every single byte candidate by how its non-ASCII bytes decode:
+	 * a letter next to another letter is what text looks like, a control
+	 * character or a symbol in the middle of a word is not.
+	 */
+	private static SRTEncoding detectSingleByte(byte[] data, int offset, int end) {
+		int[] scores = new int[SINGLE_BYTE.length];
+		int high = 0;
+		for (int i = offset; i < end; i++) {
+			int b = data[i] & 0xFF;
+			if (b < 0x80) {
+				continue;
+				
+			}
+			high++;
+			
+			int before = (i > offset) ? data[i - 1] & 0xFF : ' ';
+			int after = (i + 1 < end) ? data[i + 1] & 0xFF : ' ';
+			for (int c = 0; c < SINGLE_BYTE.length; c++) {
+				byte[] classes = CLASSES[c];
+				boolean inWord = classes[before] == LETTER || classes[after] == LETTER;
+				if (classes[b] == LETTER) {
+					scores[c] += inWord ? 2 : 1;
+					
+				}
+				else if (classes[b] == INVALID) {
+					scores[c] -= 10;
+					
+				}
+				else if (inWord) {
+					scores[c] -= 2;
+					
+				}
+				
+			}
+			
+		}
+		
+		int best = 0;
+		for (int c = 1; c < scores.length; c++) {
+			if (scores[c] > scores[best]) {
+				best = c;
+				
+			}
+			
+		}
+		int second = Integer.MIN_VALUE;
+		for (int c = 0; c < scores.length; c++) {
+			if (c != best) {
+				second = Math.max(second, scores[c]);
+				
+			}
+			
+		}
+		
+		//Every byte can score at most 2, so this is the share of the
+		//difference the winner made
+		double margin = (double) (scores[best] - second) / (2 * high);
+		return new SRTEncoding(SINGLE_BYTE[best], Math.min(1, 0.5 + margin), 0);
+		
+	}
+	
+	/**
+	 * @return The detected character encoding.
+	 */
+	public Charset getCharset() {
+		return this.charset;
+		
+	}
+	
+	/**
+	 * Returns how sure the detection is, between 0 and 1. An encoding found
+	 * by a byte order mark or plain ASCII text has a confidence of 1; a
+	 * single byte encoding chosen from several that decode the text equally
+	 * well has a confidence of 0.5.
+	 *
+	 * @return The confidence of the detection.
+	 */
+	public double getConfidence() {
+		return this.confidence;
+		
+	}
+	
+	/**
+	 * @return The length of the byte order mark in bytes, or zero if there
+	 * 			is none.
+	 */
+	public int getBomLength() {
+		return this.bomLength;
+		
+	}
+	
+	@Override
+	public String toString() {
+		return charset.name() + " (" + Math.round(confidence * 100) + "%)";
+		
+	}
+	
+}
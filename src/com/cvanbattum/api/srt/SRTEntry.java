@@ -27,6 +27,8 @@ public class SRTEntry {
 	private long startTime;
 	private long endTime;
 	private String[] text;
+	private SRTTextPool textPool;
+	private SRTWordTiming wordTiming;
 	
 	/**
 	 * <p>Creates a new instance of <code>SRTEntry</code> with a start time, 
@@ -111,24 +113,54 @@ public class SRTEntry {
 		
 	}
 	
+	/**
+	 * Sets both the start and end time of this subtitle at once. Unlike 
+	 * calling {@link #setStartTime(long)} and {@link #setEndTime(long)} after 
+	 * each other, this method only checks the new times against each other, 
+	 * so an entry can be moved to any new position in one call.
+	 * 
+	 * @param startTime the new start time of this subtitle.
+	 * @param endTime the new end time of this subtitle.
+	 * @throws IllegalArgumentException 
+	 * 			When the starting time is not smaller than the ending time or 
+	 * 			when it is smaller than zero.
+	 */
+	public void setTimes(long startTime, long endTime) {
+		if (startTime < endTime && startTime >= 0) {
+			this.startTime = startTime;
+			this.endTime = endTime;
+			
+		}
+		else {
+			throw new IllegalArgumentException("Starting time cannot be greater than ending time or smaller than zero.");
+			
+		}
+		
+	}
+	
 	/**
 	 * Changes all the text in this subtitle to the new, given text. Differs 
 	 * from {@link #setTextAtLine(int, String)} as the whole array of lines 
 	 * is overwritten with a new one, not only one line. Also, if you replace 
 	 * the array with one with less entries, the difference in line will also
-	 * be overwritten.
+	 * be overwritten. The word timing of this entry is removed, as it 
+	 * belongs to the old text. If this entry uses a {@link SRTTextPool}, the
+	 * pooled lines are stored in a copy of the array, the given array is not
+	 * changed.
 	 * 
 	 * @param text The new text of this subtitle.
 	 */
 	public void setText(String... text) {
-		this.text = text;
+		this.text = (textPool == null) ? text : textPool.intern(copy(text));
+		this.wordTiming = null;
 		
 	}
 	
 	/**
 	 * Sets the text of the subtitle at a specific line. The line numbers are 
 	 * the lines given in in {@link SRTEntry}, and can either be 1, 2, 3 or 4.
-	 * However, most subtitles only have a maximum of two lines.
+	 * However, most subtitles only have a maximum of two lines. The word 
+	 * timing of this entry is removed, as it belongs to the old text.
 	 * 
 	 * @param line 
 	 * 			The line of the text that will be replaced
@@ -137,13 +169,86 @@ public class SRTEntry {
 	 */
 	public void setTextAtLine(int line, String text) {
 		int i = getCorrespondingLineNumber(line);
-		this.text[i] = text;
+		this.text[i] = (textPool == null) ? text : textPool.intern(text);
+		this.wordTiming = null;
+		
+	}
+	
+	/**
+	 * Sets the timing of the separate words of this entry, for karaoke style
+	 * lyrics. The timing is removed again when the text of this entry is 
+	 * changed.
+	 * 
+	 * @param wordTiming 
+	 * 			The timing of the words, or <code>null</code> for none.
+	 */
+	public void setWordTiming(SRTWordTiming wordTiming) {
+		this.wordTiming = wordTiming;
+		
+	}
+	
+	/**
+	 * @return The timing of the separate words of this entry, or 
+	 * 			<code>null</code> if only the entry as a whole is timed.
+	 */
+	public SRTWordTiming getWordTiming() {
+		return this.wordTiming;
+		
+	}
+	
+	/**
+	 * Sets the {@link SRTTextPool} used by this entry. All current lines of 
+	 * this entry are replaced by their pooled instances, and every line set 
+	 * later on using {@link #setText(String...)} or 
+	 * {@link #setTextAtLine(int, String)} will be looked up in the pool as 
+	 * well. The pooled lines are stored in a copy of the current array, as 
+	 * the array may still be in use by the caller that set it. Setting the 
+	 * pool to <code>null</code> stops the pooling, but does not change the 
+	 * current lines.
+	 * 
+	 * @param textPool 
+	 * 			The pool to use, or <code>null</code> for no pooling.
+	 */
+	public void setTextPool(SRTTextPool textPool) {
+		this.textPool = textPool;
+		if (textPool != null) {
+			this.text = textPool.intern(copy(this.text));
+			
+		}
+		
+	}
+	
+	/**
+	 * @return The {@link SRTTextPool} used by this entry, or 
+	 * 			<code>null</code> if the lines of this entry are not pooled.
+	 */
+	public SRTTextPool getTextPool() {
+		return this.textPool;
+		
+	}
+	
+	/* Sets the pool like setTextPool, but pools the current lines in their
+	 * own array. Only for the readers, which create the array of lines and
+	 * do not keep it, so it need not be copied again. */
+	void setTextPoolInPlace(SRTTextPool textPool) {
+		this.textPool = textPool;
+		if (textPool != null) {
+			textPool.intern(this.text);
+			
+		}
+		
+	}
+	
+	/* Copies the array of lines, so pooling does not change an array that is
+	 * owned by the caller. */
+	private static String[] copy(String[] text) {
+		return (text == null) ? null : text.clone();
 		
 	}
 	
 	// Gives the corresponding index to the line number constant in this class
 	private int getCorrespondingLineNumber(int line) {
-		if (line != LINE_1 || line != LINE_2 /*|| line != LINE_3 || line != LINE_4*/) { //TODO WARNING: potential problem  //TODO WARNING: commented out
+		if (line != LINE_1 && line != LINE_2 /*&& line != LINE_3 && line != LINE_4*/) {
 			throw new IllegalArgumentException("Line number invalid: choose from constants in SRTEntry class");
 			
 		}
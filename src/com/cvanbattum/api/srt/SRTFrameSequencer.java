@@ -0,0 +1,403 @@
+package com.cvanbattum.api.srt;
+
+import java.util.Arrays;
+
+/**
+ * <p>Converts the times of a subtitle to the frames of a video with a fixed
+ * frame rate. The frame rate is a fraction, so NTSC rates like 29.97 fps
+ * (30000/1001) are exact and frames do not drift over a long video.</p>
+ *
+ * <p>A frame shows an entry when the time the frame starts falls within the
+ * entry. {@link #sequence(SRTSubtitle)} gives the frames of a whole subtitle
+ * as runs of frames showing the same entries, in one pass over the entries
+ * rather than a lookup for every frame.</p>
+ *
+ * @author Casper van Battum
+ *
+ */
+public final class SRTFrameSequencer {
+	
+	/**
+	 * 23.976 fps (24000/1001), film on NTSC video.
+	 */
+	public static final SRTFrameSequencer FPS_23_976 = new SRTFrameSequencer(24000, 1001);
+	/**
+	 * 24 fps, film.
+	 */
+	public static final SRTFrameSequencer FPS_24 = new SRTFrameSequencer(24, 1);
+	/**
+	 * 25 fps, PAL video.
+	 */
+	public static final SRTFrameSequencer FPS_25 = new SRTFrameSequencer(25, 1);
+	/**
+	 * 29.97 fps (30000/1001), NTSC video.
+	 */
+	public static final SRTFrameSequencer FPS_29_97 = new SRTFrameSequencer(30000, 1001);
+	/**
+	 * 30 fps.
+	 */
+	public static final SRTFrameSequencer FPS_30 = new SRTFrameSequencer(30, 1);
+	/**
+	 * 50 fps.
+	 */
+	public static final SRTFrameSequencer FPS_50 = new SRTFrameSequencer(50, 1);
+	/**
+	 * 59.94 fps (60000/1001).
+	 */
+	public static final SRTFrameSequencer FPS_59_94 = new SRTFrameSequencer(60000, 1001);
+	/**
+	 * 60 fps.
+	 */
+	public static final SRTFrameSequencer FPS_60 = new SRTFrameSequencer(60, 1);
+	
+	private final long numerator;
+	private final long denominator;
+	//Milliseconds per frame is millisDenominator / numerator
+	private final long millisDenominator;
+	
+	/**
+	 * Creates a new <code>SRTFrameSequencer</code> for a frame rate of
+	 * <code>numerator / denominator</code> frames per second.
+	 *
+	 * @param numerator
+	 * 			The numerator of the frame rate, like 30000.
+	 * @param denominator
+	 * 			The denominator of the frame rate, like 1001.
+	 */
+	public SRTFrameSequencer(int numerator, int denominator) {
+		if (numerator < 1 || denominator < 1) {
+			throw new IllegalArgumentException("numerator and denominator must be at least 1");
+			
+		}
+		
+		this.numerator = numerator;
+		this.denominator = denominator;
+		this.millisDenominator = 1000L * denominator;
+		
+	}
+	
+	/**
+	 * Returns the frame shown at the given time: the last frame starting at
+	 * or before the time.
+	 *
+	 * @param time The time in milliseconds.
+	 * @return The number of the frame, starting at 0.
+	 */
+	public long frameAt(long time) {
+		return Math.floorDiv(time * numerator, millisDenominator);
+		
+	}
+	
+	/**
+	 * Returns the first frame starting at or after the given time.
+	 *
+	 * @param time The time in milliseconds.
+	 * @return The number of the frame, starting at 0.
+	 */
+	public long firstFrameFrom(long time) {
+		return Math.floorDiv(time * numerator + millisDenominator - 1, millisDenominator);
+		
+	}
+	
+	/**
+	 * Returns the time a frame starts, rounded down to whole milliseconds.
+	 *
+	 * @param frame The number of the frame, starting at 0.
+	 * @return The start time of the frame in milliseconds.
+	 */
+	public long frameTime(long frame) {
+		return Math.floorDiv(frame * millisDenominator, numerator);
+		
+	}
+	
+	/**
+	 * @return The frame rate in frames per second.
+	 */
+	public double getFrameRate() {
+		return (double) numerator / denominator;
+		
+	}
+	
+	/**
+	 * Sequences the frames of a subtitle. See
+	 * {@link #sequence(SRTSnapshot)}.
+	 *
+	 * @param subtitle The subtitle to sequence.
+	 * @return The runs of frames showing the same entries.
+	 */
+	public Sequence sequence(SRTSubtitle subtitle) {
+		final int size = subtitle.size();
+		long[] starts = new long[size];
+		long[] ends = new long[size];
+		for (int i = 0; i < size; i++) {
+			SRTEntry e = subtitle.get(i);
+			starts[i] = e.getStartTime();
+			ends[i] = e.getEndTime();
+			
+		}
+		
+		return sequence(starts, ends);
+		
+	}
+	
+	/**
+	 * <p>Sequences the frames of a subtitle. The result is a list of runs: a
+	 * range of frames, and the indices of the entries shown on all frames of
+	 * that range. A new run starts every time an entry starts or ends, so
+	 * overlapping entries give runs with several entries. Frames showing no
+	 * entry are not part of any run.</p>
+	 *
+	 * <p>Entries too short to contain the start of any frame are never
+	 * shown, and are not part of any run.</p>
+	 *
+	 * @param snapshot The subtitle to sequence.
+	 * @return The runs of frames showing the same entries.
+	 */
+	public Sequence sequence(SRTSnapshot snapshot) {
+		final int size = snapshot.size();
+		long[] starts = new long[size];
+		long[] ends = new long[size];
+		for (int i = 0; i < size; i++) {
+			starts[i] = snapshot.getStartTime(i);
+			ends[i] = snapshot.getEndTime(i);
+			
+		}
+		
+		return sequence(starts, ends);
+		
+	}
+	
+	/*
+	 * Converts the times to frames, orders the entries by first frame and
+	 * sweeps over them: every time an entry starts or ends, the frames since
+	 * the previous change become a run of the entries shown.
+	 */
+	private Sequence sequence(long[] starts, long[] ends) {
+		final int size = starts.length;
+		
+		//First frame and frame after the last of every entry, packed with
+		//the index of the entry so sorting keeps them together
+		long[] order = new long[size];
+		long[] endFrames = new long[size];
+		int shown = 0;
+		boolean sorted = true;
+		for (int i = 0; i < size; i++) {
+			long first = firstFrameFrom(starts[i]);
+			long end = firstFrameFrom(ends[i]);
+			if (first >= end) {
+				continue;
+				
+			}
+			if (first > Integer.MAX_VALUE) {
+				throw new IllegalArgumentException("entry " + (i + 1) + " starts after the last supported frame");
+				
+			}
+			
+			long key = (first << 32) | i;
+			sorted &= (shown == 0 || key > order[shown - 1]);
+			order[shown++] = key;
+			endFrames[i] = end;
+			
+		}
+		if (! sorted) {
+			Arrays.sort(order, 0, shown);
+			
+		}
+		
+		Sequence sequence = new Sequence(Math.max(16, shown + shown / 2));
+		int[] active = new int[8];
+		int activeCount = 0;
+		int next = 0;
+		long frame = 0;
+		while (next < shown || activeCount > 0) {
+			if (activeCount == 0) {
+				frame = order[next] >>> 32;
+				
+			}
+			while (next < shown && (order[next] >>> 32) <= frame) {
+				if (activeCount == active.length) {
+					active = Arrays.copyOf(active, activeCount * 2);
+					
+				}
+				active[activeCount++] = (int) order[next++];
+				
+			}
+			
+			long change = (next < shown) ? order[next] >>> 32 : Long.MAX_VALUE;
+			for (int a = 0; a < activeCount; a++) {
+				change = Math.min(change, endFrames[active[a]]);
+				
+			}
+			
+			sequence.add(frame, change, active, activeCount);
+			frame = change;
+			
+			//Remove the entries that ended, keeping the order of the others
+			int kept = 0;
+			for (int a = 0; a < activeCount; a++) {
+				if (endFrames[active[a]] > frame) {
+					active[kept++] = active[a];
+					
+				}
+				
+			}
+			activeCount = kept;
+			
+		}
+		
+		return sequence;
+		
+	}
+	
+	@Override
+	public String toString() {
+		return "SRTFrameSequencer[" + numerator + "/" + denominator + " fps]";
+		
+	}
+	
+	/**
+	 * The runs of frames of a subtitle, made by
+	 * {@link SRTFrameSequencer#sequence(SRTSubtitle)}. Runs are ordered by
+	 * frame and do not overlap.
+	 *
+	 * @author Casper van Battum
+	 *
+	 */
+	public static final class Sequence {
+		
+		private long[] startFrames;
+		private long[] endFrames;
+		//The entries of run r are entries[offsets[r]] to entries[offsets[r + 1]]
+		private int[] offsets;
+		private int[] entries;
+		private int runs;
+		
+		private Sequence(int capacity) {
+			this.startFrames = new long[capacity];
+			this.endFrames = new long[capacity];
+			this.offsets = new int[capacity + 1];
+			this.entries = new int[capacity];
+			
+		}
+		
+		private void add(long start, long end, int[] active, int count) {
+			if (runs == startFrames.length) {
+				startFrames = Arrays.copyOf(startFrames, runs * 2);
+				endFrames = Arrays.copyOf(endFrames, runs * 2);
+				offsets = Arrays.copyOf(offsets, runs * 2 + 1);
+				
+			}
+			int offset = offsets[runs];
+			if (offset + count > entries.length) {
+				entries = Arrays.copyOf(entries, Math.max(entries.length * 2, offset + count));
+				
+			}
+			
+			startFrames[runs] = start;
+			endFrames[runs] = end;
+			System.arraycopy(active, 0, entries, offset, count);
+			//Entry indices in increasing order, whatever order they started in
+			Arrays.sort(entries, offset, offset + count);
+			offsets[++runs] = offset + count;
+			
+		}
+		
+		/**
+		 * @return The amount of runs.
+		 */
+		public int getRunCount() {
+			return this.runs;
+			
+		}
+		
+		/**
+		 * @param run The index of the run.
+		 * @return The first frame of the run.
+		 */
+		public long getStartFrame(int run) {
+			checkRun(run);
+			return startFrames[run];
+			
+		}
+		
+		/**
+		 * @param run The index of the run.
+		 * @return The frame after the last frame of the run.
+		 */
+		public long getEndFrame(int run) {
+			checkRun(run);
+			return endFrames[run];
+			
+		}
+		
+		/**
+		 * @param run The index of the run.
+		 * @return The indices of the entries shown during the run, in
+		 * 			increasing order.
+		 */
+		public int[] getEntries(int run) {
+			checkRun(run);
+			return Arrays.copyOfRange(entries, offsets[run], offsets[run + 1]);
+			
+		}
+		
+		/**
+		 * @param run The index of the run.
+		 * @return The amount of entries shown during the run.
+		 */
+		public int getEntryCount(int run) {
+			checkRun(run);
+			return offsets[run + 1] - offsets[run];
+			
+		}
+		
+		/**
+		 * Returns the index of the entry shown during a run, without
+		 * copying the entries like {@link #getEntries(int)}.
+		 *
+		 * @param run
+		 * 			The index of the run.
+		 * @param i
+		 * 			The index of the entry within the run.
+		 * @return The index of the entry in the subtitle.
+		 */
+		public int getEntry(int run, int i) {
+			checkRun(run);
+			if (i < 0 || i >= offsets[run + 1] - offsets[run]) {
+				throw new IndexOutOfBoundsException("entry " + i + " of run " + run);
+				
+			}
+			return entries[offsets[run] + i];
+			
+		}
+		
+		/**
+		 * Finds the run containing a frame.
+		 *
+		 * @param frame The number of the frame.
+		 * @return The index of the run, or <code>-1</code> if the frame
+		 * 			shows no entry.
+		 */
+		public int runAt(long frame) {
+			int i = Arrays.binarySearch(startFrames, 0, runs, frame);
+			if (i < 0) {
+				//The last run starting before the frame
+				i = -i - 2;
+				
+			}
+			
+			return (i >= 0 && frame < endFrames[i]) ? i : -1;
+			
+		}
+		
+		private void checkRun(int run) {
+			if (run < 0 || run >= runs) {
+				throw new IndexOutOfBoundsException("run: " + run + ", runs: " + runs);
+				
+			}
+			
+		}
+		
+	}
+	
+}
@@ -0,0 +1,516 @@
+package com.cvanbattum.api.srt;
+
+import java.io.Closeable;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * <p>An immutable copy of a subtitle stored outside of the Java heap, for
+ * processes holding so many subtitles that their text puts pressure on the
+ * garbage collector. The times are stored in columns and the text as UTF-8,
+ * both in direct byte buffers, so a stored subtitle is a handful of objects
+ * to the garbage collector however many entries it has.</p>
+ *
+ * <p>Strings are only created when the text of an entry is asked for, and
+ * are not kept. Looking up times, like {@link #indexAt(long)}, creates no
+ * objects at all.</p>
+ *
+ * <p>On Java 21 and later the memory is allocated in a shared
+ * <code>Arena</code> of the foreign memory API, and freed as soon as the
+ * subtitle is closed, not when the garbage collector gets to it. On earlier
+ * versions it is freed by the garbage collector after the subtitle is
+ * closed.</p>
+ *
+ * <p>The entries can be read by several threads at once. A closed subtitle
+ * can no longer be read: reading it throws an
+ * <code>IllegalStateException</code>, also when it is closed by another
+ * thread during the read. Memory is never freed while it is being read.</p>
+ *
+ * @author Casper van Battum
+ *
+ */
+public final class SRTOffHeapSubtitle implements Closeable {
+	
+	//Every entry: start, end, maximum end up to it, text offset, line count
+	private static final int ENTRY_BYTES = 8 + 8 + 8 + 4 + 4;
+	private static final int START = 0;
+	private static final int END = 8;
+	private static final int MAX_END = 16;
+	private static final int TEXT = 24;
+	private static final int LINES = 28;
+	
+	//Arena.ofShared(), Arena.allocate(long, long) and MemorySegment.asByteBuffer()
+	//of the foreign memory API, or null before Java 21
+	private static final Method OF_SHARED;
+	private static final Method ALLOCATE;
+	private static final Method AS_BYTE_BUFFER;
+	
+	static {
+		Method ofShared = null;
+		Method allocate = null;
+		Method asByteBuffer = null;
+		try {
+			Class<?> arena = Class.forName("java.lang.foreign.Arena");
+			ofShared = arena.getMethod("ofShared");
+			allocate = arena.getMethod("allocate", long.class, long.class);
+			asByteBuffer = Class.forName("java.lang.foreign.MemorySegment").getMethod("asByteBuffer");
+			
+		}
+		catch (ReflectiveOperationException | RuntimeException e) {
+			//Before Java 21: the memory is freed by the garbage collector after
+			//the buffers are no longer referenced
+			ofShared = null;
+			allocate = null;
+			asByteBuffer = null;
+			
+		}
+		
+		OF_SHARED = ofShared;
+		ALLOCATE = allocate;
+		AS_BYTE_BUFFER = asByteBuffer;
+		
+	}
+	
+	private final int size;
+	//The arena of the buffers, or null when they are freed by the garbage
+	//collector
+	private final AutoCloseable arena;
+	private volatile ByteBuffer entries;
+	private volatile ByteBuffer text;
+	
+	private SRTOffHeapSubtitle(int size, AutoCloseable arena, ByteBuffer entries, ByteBuffer text) {
+		this.size = size;
+		this.arena = arena;
+		this.entries = entries;
+		this.text = text;
+		
+	}
+	
+	/**
+	 * Stores a copy of a subtitle outside of the heap.
+	 *
+	 * @param subtitle The subtitle to store.
+	 * @return The stored copy.
+	 */
+	public static SRTOffHeapSubtitle create(SRTSubtitle subtitle) {
+		final int size = subtitle.size();
+		String[][] text = new String[size][];
+		long[] times = new long[2 * size];
+		for (int i = 0; i < size; i++) {
+			SRTEntry e = subtitle.get(i);
+			times[2 * i] = e.getStartTime();
+			times[2 * i + 1] = e.getEndTime();
+			text[i] = e.getText();
+			
+		}
+		
+		return create(times, text);
+		
+	}
+	
+	/**
+	 * Stores a copy of a snapshot outside of the heap.
+	 *
+	 * @param snapshot The snapshot to store.
+	 * @return The stored copy.
+	 */
+	public static SRTOffHeapSubtitle create(SRTSnapshot snapshot) {
+		final int size = snapshot.size();
+		String[][] text = new String[size][];
+		long[] times = new long[2 * size];
+		for (int i = 0; i < size; i++) {
+			times[2 * i] = snapshot.getStartTime(i);
+			times[2 * i + 1] = snapshot.getEndTime(i);
+			text[i] = snapshot.getText(i);
+			
+		}
+		
+		return create(times, text);
+		
+	}
+	
+	/*
+	 * Measures the UTF-8 text first, so it can be encoded straight into a
+	 * buffer of the right size without a copy on the heap.
+	 */
+	private static SRTOffHeapSubtitle create(long[] times, String[][] text) {
+		final int size = text.length;
+		long textBytes = 0;
+		for (String[] lines : text) {
+			if (lines != null) {
+				for (String line : lines) {
+					textBytes += utf8Length(line) + 1;
+					
+				}
+				
+			}
+			
+		}
+		if (textBytes > Integer.MAX_VALUE || (long) size * ENTRY_BYTES > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("subtitle is too large to store in one buffer");
+			
+		}
+		
+		AutoCloseable arena = createArena();
+		try {
+			ByteBuffer entries = allocate(arena, size * ENTRY_BYTES);
+			ByteBuffer textBuffer = allocate(arena, (int) textBytes);
+			store(times, text, entries, textBuffer);
+			return new SRTOffHeapSubtitle(size, arena, entries, textBuffer);
+			
+		}
+		catch (RuntimeException e) {
+			close(arena);
+			throw e;
+			
+		}
+		
+	}
+	
+	private static void store(long[] times, String[][] text, ByteBuffer entries, ByteBuffer textBuffer) {
+		final int size = text.length;
+		CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+		encoder.onMalformedInput(CodingErrorAction.REPLACE);
+		
+		long maxEnd = Long.MIN_VALUE;
+		for (int i = 0; i < size; i++) {
+			final int at = i * ENTRY_BYTES;
+			maxEnd = Math.max(maxEnd, times[2 * i + 1]);
+			entries.putLong(at + START, times[2 * i]);
+			entries.putLong(at + END, times[2 * i + 1]);
+			entries.putLong(at + MAX_END, maxEnd);
+			entries.putInt(at + TEXT, textBuffer.position());
+			entries.putInt(at + LINES, (text[i] == null) ? -1 : text[i].length);
+			
+			if (text[i] != null) {
+				for (String line : text[i]) {
+					if (line != null) {
+						encoder.reset();
+						CoderResult result = encoder.encode(CharBuffer.wrap(line), textBuffer, true);
+						if (! result.isUnderflow()) {
+							throw new IllegalArgumentException("line cannot be encoded: " + line);
+							
+						}
+						encoder.flush(textBuffer);
+						
+					}
+					textBuffer.put((byte) '\n');
+					
+				}
+				
+			}
+			
+		}
+		
+	}
+	
+	//The length of a line in UTF-8, counting an unpaired surrogate as the
+	//single '?' the encoder writes instead
+	private static int utf8Length(String line) {
+		if (line == null) {
+			return 0;
+			
+		}
+		
+		int length = 0;
+		for (int i = 0; i < line.length(); i++) {
+			char c = line.charAt(i);
+			if (c < 0x80) {
+				length++;
+				
+			}
+			else if (c < 0x800) {
+				length += 2;
+				
+			}
+			else if (Character.isHighSurrogate(c) && i + 1 < line.length() && Character.isLowSurrogate(line.charAt(i + 1))) {
+				length += 4;
+				i++;
+				
+			}
+			else if (Character.isSurrogate(c)) {
+				length++;
+				
+			}
+			else {
+				length += 3;
+				
+			}
+			
+		}
+		
+		return length;
+		
+	}
+	
+	/**
+	 * @return The amount of entries.
+	 */
+	public int size() {
+		return this.size;
+		
+	}
+	
+	/**
+	 * @param index The index of the entry.
+	 * @return The start time of the entry in milliseconds.
+	 */
+	public long getStartTime(int index) {
+		return entries(index).getLong(index * ENTRY_BYTES + START);
+		
+	}
+	
+	/**
+	 * @param index The index of the entry.
+	 * @return The end time of the entry in milliseconds.
+	 */
+	public long getEndTime(int index) {
+		return entries(index).getLong(index * ENTRY_BYTES + END);
+		
+	}
+	
+	/**
+	 * Returns the lines of text of an entry, decoded into new strings.
+	 *
+	 * @param index The index of the entry.
+	 * @return The lines of the entry.
+	 */
+	public String[] getText(int index) {
+		ByteBuffer e = entries(index);
+		ByteBuffer t = text;
+		if (t == null) {
+			throw new IllegalStateException("subtitle is closed");
+			
+		}
+		
+		final int at = index * ENTRY_BYTES;
+		int lines = e.getInt(at + LINES);
+		if (lines < 0) {
+			return null;
+			
+		}
+		
+		int from = e.getInt(at + TEXT);
+		int to = (index + 1 < size) ? e.getInt(at + ENTRY_BYTES + TEXT) : t.capacity();
+		byte[] bytes = new byte[to - from];
+		ByteBuffer view = t.duplicate();
+		view.position(from);
+		view.get(bytes);
+		
+		String[] result = new String[lines];
+		int start = 0;
+		for (int l = 0; l < lines; l++) {
+			int end = start;
+			while (bytes[end] != '\n') {
+				end++;
+				
+			}
+			result[l] = new String(bytes, start, end - start, StandardCharsets.UTF_8);
+			start = end + 1;
+			
+		}
+		
+		return result;
+		
+	}
+	
+	/**
+	 * Returns a new {@link SRTEntry} with the times and text of an entry.
+	 *
+	 * @param index The index of the entry.
+	 * @return A new entry equal to the stored entry.
+	 */
+	public SRTEntry getEntry(int index) {
+		return new SRTEntry(getStartTime(index), getEndTime(index), getText(index));
+		
+	}
+	
+	/**
+	 * Returns the index of the entry that is shown at the given time, like
+	 * {@link SRTSnapshot#indexAt(long)}. The entries have to be sorted by
+	 * start time.
+	 *
+	 * @param time The time in milliseconds.
+	 * @return The index of the entry shown at the given time, or
+	 * 			<code>-1</code> if no entry is shown at that time.
+	 */
+	public int indexAt(long time) {
+		ByteBuffer e = entries(0);
+		
+		//The last entry starting at or before the time
+		int lo = 0;
+		int hi = size;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (e.getLong(mid * ENTRY_BYTES + START) <= time) {
+				lo = mid + 1;
+				
+			}
+			else {
+				hi = mid;
+				
+			}
+			
+		}
+		
+		//Walk back until no earlier entry can still be shown at this time
+		for (int i = lo - 1; i >= 0; i--) {
+			final int at = i * ENTRY_BYTES;
+			if (e.getLong(at + MAX_END) <= time) {
+				return -1;
+				
+			}
+			if (e.getLong(at + END) > time) {
+				return i;
+				
+			}
+			
+		}
+		
+		return -1;
+		
+	}
+	
+	/**
+	 * Copies all entries back onto the heap.
+	 *
+	 * @return A new subtitle with all entries.
+	 */
+	public SRTSubtitle toSubtitle() {
+		SRTSubtitle subtitle = new SRTSubtitle();
+		subtitle.ensureCapacity(size);
+		for (int i = 0; i < size; i++) {
+			subtitle.add(getEntry(i));
+			
+		}
+		subtitle.publish();
+		
+		return subtitle;
+		
+	}
+	
+	/**
+	 * @return The bytes of memory used outside of the heap, or 0 when closed.
+	 */
+	public long getMemoryUsage() {
+		ByteBuffer e = entries;
+		ByteBuffer t = text;
+		return (e == null || t == null) ? 0 : (long) e.capacity() + t.capacity();
+		
+	}
+	
+	/**
+	 * @return Whether this subtitle has been closed.
+	 */
+	public boolean isClosed() {
+		return entries == null;
+		
+	}
+	
+	/**
+	 * Frees the memory of this subtitle. Reads by other threads that are
+	 * still going on fail with an <code>IllegalStateException</code>.
+	 * Closing a closed subtitle has no effect.
+	 */
+	@Override
+	public synchronized void close() {
+		if (entries == null) {
+			return;
+			
+		}
+		
+		entries = null;
+		text = null;
+		close(arena);
+		
+	}
+	
+	private ByteBuffer entries(int index) {
+		ByteBuffer e = entries;
+		if (e == null) {
+			throw new IllegalStateException("subtitle is closed");
+			
+		}
+		if (index < 0 || (index >= size && size > 0)) {
+			throw new IndexOutOfBoundsException("index: " + index + ", size: " + size);
+			
+		}
+		
+		return e;
+		
+	}
+	
+	//A new shared arena, or null before Java 21
+	private static AutoCloseable createArena() {
+		if (OF_SHARED == null) {
+			return null;
+			
+		}
+		
+		try {
+			return (AutoCloseable) OF_SHARED.invoke(null);
+			
+		}
+		catch (ReflectiveOperationException e) {
+			throw new IllegalStateException("cannot create an arena", e);
+			
+		}
+		
+	}
+	
+	private static ByteBuffer allocate(AutoCloseable arena, int bytes) {
+		if (arena == null) {
+			return ByteBuffer.allocateDirect(bytes);
+			
+		}
+		
+		try {
+			return (ByteBuffer) AS_BYTE_BUFFER.invoke(ALLOCATE.invoke(arena, (long) bytes, 8L));
+			
+		}
+		catch (ReflectiveOperationException e) {
+			throw new IllegalStateException("cannot allocate " + bytes + " bytes", e);
+			
+		}
+		
+	}
+	
+	/*
+	 * Closing a shared arena waits for the single reads going on in other
+	 * threads, and makes the reads after it throw an IllegalStateException.
+	 * It fails while another thread is copying a range, like the text of an
+	 * entry, so it is retried: the copies are short, and no new ones start
+	 * once the buffers are no longer handed out.
+	 */
+	private static void close(AutoCloseable arena) {
+		if (arena == null) {
+			return;
+			
+		}
+		
+		while (true) {
+			try {
+				arena.close();
+				return;
+				
+			}
+			catch (IllegalStateException e) {
+				//Acquired by a copy in another thread
+				Thread.onSpinWait();
+				
+			}
+			catch (Exception e) {
+				throw new IllegalStateException("cannot free the memory", e);
+				
+			}
+			
+		}
+		
+	}
+	
+}
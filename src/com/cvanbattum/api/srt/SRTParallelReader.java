@@ -0,0 +1,527 @@
+package com.cvanbattum.api.srt;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * <p>Reads a single large SRT file on several threads. The file is divided
+ * into chunks at block boundaries, every chunk is parsed on its own thread,
+ * and the entries of the chunks are put together in their order in the
+ * file. The result is the same as that of {@link SRTReader#read(File)}.</p>
+ *
+ * <p>A chunk starts at a block following a blank line: an index line of
+ * digits followed by a line containing <code>--&gt;</code>. Text that only
+ * looks like the start of a block, like a line of digits after a blank
+ * line, does not end a chunk unless a time line follows it.</p>
+ *
+ * <p>The file is mapped into memory chunk by chunk, and the chunks are parsed
+ * from their bytes: {@link SRTByteScanner} finds the chunk boundaries, the
+ * line breaks and the time arrows many bytes at a time, the times are
+ * parsed from the bytes and only the text lines are decoded. Files smaller
+ * than {@link #MINIMUM_CHUNK_SIZE} and files in an encoding in which a line
+ * break is not a single byte (like UTF-16) are read by {@link SRTReader} on
+ * the calling thread.</p>
+ *
+ * @author Casper van Battum
+ *
+ */
+public class SRTParallelReader {
+	
+	/**
+	 * The minimum size of a chunk in bytes (1 MB). Smaller chunks cost more
+	 * to hand to another thread than they take to parse.
+	 */
+	public static final long MINIMUM_CHUNK_SIZE = 1024 * 1024;
+	
+	private static final long MAXIMUM_CHUNK_SIZE = 1024 * 1024 * 1024;
+	//Chunks per thread, so a thread with a slow chunk does not hold up the rest
+	private static final int CHUNKS_PER_THREAD = 4;
+	//Bytes searched for a block boundary at a time
+	private static final int SEARCH_WINDOW = 64 * 1024;
+	private static final String ARROW = "-->";
+	
+	private static final SRTByteScanner SCANNER = SRTByteScanner.get();
+	
+	private final int threads;
+	private SRTTextPool textPool;
+	
+	/**
+	 * Creates a new <code>SRTParallelReader</code> using as many threads as
+	 * there are processors.
+	 */
+	public SRTParallelReader() {
+		this(Runtime.getRuntime().availableProcessors());
+		
+	}
+	
+	/**
+	 * Creates a new <code>SRTParallelReader</code>.
+	 *
+	 * @param threads
+	 * 			The amount of threads used to parse a file.
+	 */
+	public SRTParallelReader(int threads) {
+		if (threads < 1) {
+			throw new IllegalArgumentException("threads must be at least 1");
+			
+		}
+		
+		this.threads = threads;
+		
+	}
+	
+	/**
+	 * Sets the {@link SRTTextPool} used by all entries read.
+	 *
+	 * @param textPool
+	 * 			The pool for the text of the entries, or <code>null</code>
+	 * 			for no pooling.
+	 */
+	public void setTextPool(SRTTextPool textPool) {
+		this.textPool = textPool;
+		
+	}
+	
+	/**
+	 * @return The pool for the text of the entries, or <code>null</code>.
+	 */
+	public SRTTextPool getTextPool() {
+		return this.textPool;
+		
+	}
+	
+	/**
+	 * @return The amount of threads used to parse a file.
+	 */
+	public int getThreads() {
+		return this.threads;
+		
+	}
+	
+	/**
+	 * Reads an SRT file, detecting its character encoding.
+	 *
+	 * @param file The file to read.
+	 * @return A new subtitle containing all entries of the file.
+	 * @throws IOException When the file cannot be read or is not valid SRT.
+	 */
+	public SRTSubtitle read(File file) throws IOException {
+		final SRTTextPool pool = textPool;
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+			final FileChannel channel = raf.getChannel();
+			final long size = channel.size();
+			
+			byte[] sample = new byte[(int) Math.min(size, SRTEncoding.SAMPLE_SIZE)];
+			channel.read(ByteBuffer.wrap(sample), 0);
+			SRTEncoding encoding = SRTEncoding.detect(sample, 0, sample.length);
+			final Charset charset = encoding.getCharset();
+			
+			//A chunk is mapped as a whole, so it has to stay below 2 GB
+			long wanted = Math.max((long) threads * CHUNKS_PER_THREAD, size / MAXIMUM_CHUNK_SIZE + 1);
+			int parts = (int) Math.min(wanted, size / MINIMUM_CHUNK_SIZE);
+			if (threads == 1 || parts < 2 || "\n".getBytes(charset).length != 1) {
+				return SRTReader.read(file, pool);
+				
+			}
+			
+			final long[] bounds = findChunks(channel, encoding.getBomLength(), size, parts);
+			final int chunks = bounds.length - 1;
+			ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, chunks));
+			try {
+				ArrayList<Future<ArrayList<SRTEntry>>> results = new ArrayList<>(chunks);
+				for (int c = 0; c < chunks; c++) {
+					final long from = bounds[c];
+					final long to = bounds[c + 1];
+					results.add(executor.submit(new Callable<ArrayList<SRTEntry>>() {
+						
+						@Override
+						public ArrayList<SRTEntry> call() throws IOException {
+							return parse(channel.map(FileChannel.MapMode.READ_ONLY, from, to - from), charset, pool);
+							
+						}
+						
+					}));
+					
+				}
+				
+				//Put the chunks together in the order of the file
+				ArrayList<ArrayList<SRTEntry>> parsed = new ArrayList<>(chunks);
+				int entries = 0;
+				for (int c = 0; c < chunks; c++) {
+					try {
+						parsed.add(results.get(c).get());
+						entries += parsed.get(c).size();
+						
+					}
+					catch (ExecutionException e) {
+						throw chunkFailed(channel, bounds[c], e.getCause());
+						
+					}
+					
+				}
+				
+				SRTSubtitle subtitle = new SRTSubtitle();
+				subtitle.ensureCapacity(entries);
+				for (ArrayList<SRTEntry> chunk : parsed) {
+					subtitle.addAll(chunk);
+					
+				}
+				subtitle.publish();
+				
+				return subtitle;
+				
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException("Interrupted while reading " + file, e);
+				
+			}
+			finally {
+				executor.shutdownNow();
+				
+			}
+			
+		}
+		
+	}
+	
+	/*
+	 * Divides the file into the given amount of chunks of about the same
+	 * size, moving every boundary forward to the next block. Boundaries that
+	 * end up at the same block are merged, so fewer chunks may be returned.
+	 */
+	private static long[] findChunks(FileChannel channel, long start, long size, int parts) throws IOException {
+		long[] bounds = new long[parts + 1];
+		bounds[0] = start;
+		int count = 1;
+		for (int p = 1; p < parts; p++) {
+			long target = Math.max(start + size * p / parts, bounds[count - 1]);
+			long bound = findBlockStart(channel, target, size);
+			if (bound < 0) {
+				break;
+				
+			}
+			if (bound > bounds[count - 1]) {
+				bounds[count++] = bound;
+				
+			}
+			
+		}
+		bounds[count++] = size;
+		
+		long[] result = new long[count];
+		System.arraycopy(bounds, 0, result, 0, count);
+		return result;
+		
+	}
+	
+	//Finds the first block starting after the given position, or -1
+	private static long findBlockStart(FileChannel channel, long position, long size) throws IOException {
+		long from = position;
+		while (from < size) {
+			int length = (int) Math.min(SEARCH_WINDOW, size - from);
+			MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, from, length);
+			int found = findBlockStart(window, 0, from + length == size);
+			if (found >= 0) {
+				return from + found;
+				
+			}
+			if (from + length == size) {
+				return -1;
+				
+			}
+			
+			//Search the next window again from a few lines back, so a
+			//boundary across the two windows is still found
+			from += Math.max(1, length - 512);
+			
+		}
+		
+		return -1;
+		
+	}
+	
+	/*
+	 * Finds the start of the first block after a blank line from the given
+	 * index, or -1. A block only counts when its index line and time line are
+	 * complete within the buffer, unless the buffer ends at the end of the
+	 * file.
+	 */
+	static int findBlockStart(ByteBuffer b, int from, boolean endOfFile) {
+		final int limit = b.limit();
+		int i = SCANNER.indexOf(b, (byte) '\n', from, limit);
+		while (i >= 0) {
+			//The line after the line break has to be blank
+			int blank = skipSpaces(b, i + 1, limit);
+			if (blank < limit && b.get(blank) == '\n') {
+				//Any more blank lines, then the index line
+				int index = blank + 1;
+				int next = skipSpaces(b, index, limit);
+				while (next < limit && b.get(next) == '\n') {
+					index = next + 1;
+					next = skipSpaces(b, index, limit);
+					
+				}
+				
+				int timeLine = indexLineEnd(b, index, limit);
+				if (timeLine > 0) {
+					int timeEnd = SCANNER.indexOf(b, (byte) '\n', timeLine, limit);
+					if (timeEnd < 0 && endOfFile) {
+						timeEnd = limit;
+						
+					}
+					if (timeEnd >= 0 && SCANNER.indexOfArrow(b, timeLine, timeEnd) >= 0) {
+						return index;
+						
+					}
+					
+				}
+				i = SCANNER.indexOf(b, (byte) '\n', blank, limit);
+				
+			}
+			else {
+				i = SCANNER.indexOf(b, (byte) '\n', i + 1, limit);
+				
+			}
+			
+		}
+		
+		return -1;
+		
+	}
+	
+	//The index of the first byte from from that is not a space, tab or \r
+	private static int skipSpaces(ByteBuffer b, int from, int limit) {
+		int i = from;
+		while (i < limit) {
+			byte c = b.get(i);
+			if (c != ' ' && c != '\t' && c != '\r') {
+				break;
+				
+			}
+			i++;
+			
+		}
+		
+		return i;
+		
+	}
+	
+	//The start of the line after a line of only digits at from, or -1
+	private static int indexLineEnd(ByteBuffer b, int from, int limit) {
+		int i = from;
+		while (i < limit && b.get(i) >= '0' && b.get(i) <= '9') {
+			i++;
+			
+		}
+		if (i == from) {
+			return -1;
+			
+		}
+		
+		i = skipSpaces(b, i, limit);
+		return (i < limit && b.get(i) == '\n') ? i + 1 : -1;
+		
+	}
+	
+	/*
+	 * Parses the blocks of a chunk from its bytes, like SRTReader.readEntry()
+	 * does from its lines. Line numbers start at the chunk.
+	 */
+	static ArrayList<SRTEntry> parse(ByteBuffer bytes, Charset charset, SRTTextPool pool) throws SRTParseException {
+		return new ChunkParser(bytes, charset, pool).parse();
+		
+	}
+	
+	/*
+	 * Turns the failure of a chunk into an IOException. The line numbers of
+	 * a parse exception start at the chunk, so the lines before it are
+	 * added.
+	 */
+	private static IOException chunkFailed(FileChannel channel, long chunkStart, Throwable cause) throws IOException {
+		if (cause instanceof SRTParseException) {
+			SRTParseException e = (SRTParseException) cause;
+			long lines = 0;
+			for (long from = 0; from < chunkStart; from += SEARCH_WINDOW) {
+				int length = (int) Math.min(SEARCH_WINDOW, chunkStart - from);
+				MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, from, length);
+				lines += SCANNER.count(window, (byte) '\n', 0, length);
+				
+			}
+			
+			String message = e.getMessage();
+			message = message.substring(message.indexOf(": ") + 2);
+			return new SRTParseException(message, (int) (e.getLineNumber() + lines), e);
+			
+		}
+		if (cause instanceof IOException) {
+			return (IOException) cause;
+			
+		}
+		if (cause instanceof RuntimeException) {
+			throw (RuntimeException) cause;
+			
+		}
+		return new IOException(cause);
+		
+	}
+	
+	/*
+	 * Splits a chunk into lines with the scanner. The times are parsed from
+	 * the bytes, so only text lines are decoded. Only works for encodings
+	 * that keep ASCII as single bytes, like all encodings with single byte
+	 * line breaks SRTEncoding detects.
+	 */
+	private static final class ChunkParser {
+		
+		private final ByteBuffer b;
+		private final int limit;
+		private final Charset charset;
+		private final SRTTextPool pool;
+		private final ArrayList<String> lines = new ArrayList<>(4);
+		private byte[] copy = new byte[256];
+		
+		//The line read last, and the start of the line after it
+		private int lineStart;
+		private int lineEnd;
+		private int position;
+		private int lineNumber;
+		
+		private ChunkParser(ByteBuffer b, Charset charset, SRTTextPool pool) {
+			this.b = b;
+			this.limit = b.limit();
+			this.charset = charset;
+			this.pool = pool;
+			
+		}
+		
+		private ArrayList<SRTEntry> parse() throws SRTParseException {
+			ArrayList<SRTEntry> entries = new ArrayList<>();
+			while (true) {
+				//Skip the blank lines before the block
+				boolean more = nextLine();
+				while (more && isBlank()) {
+					more = nextLine();
+					
+				}
+				if (! more) {
+					return entries;
+					
+				}
+				
+				//The index line is optional
+				int arrow = SCANNER.indexOfArrow(b, lineStart, lineEnd);
+				if (arrow < 0) {
+					more = nextLine();
+					arrow = more ? SCANNER.indexOfArrow(b, lineStart, lineEnd) : -1;
+					if (arrow < 0) {
+						throw new SRTParseException("expected a time line containing '" + ARROW + "'", lineNumber);
+						
+					}
+					
+				}
+				
+				final int timeLine = lineNumber;
+				long startTime = SRTReader.parseTime(b, lineStart, arrow);
+				long endTime = SRTReader.parseTime(b, arrow + ARROW.length(), lineEnd);
+				if (startTime < 0 || endTime < 0) {
+					throw new SRTParseException("invalid time line '" + decodeLine() + "'", timeLine);
+					
+				}
+				
+				//Everything up to the next blank line is text
+				lines.clear();
+				more = nextLine();
+				while (more && ! isBlank()) {
+					lines.add(decodeLine());
+					more = nextLine();
+					
+				}
+				
+				try {
+					SRTEntry entry = new SRTEntry(startTime, endTime, lines.toArray(new String[lines.size()]));
+					entry.setTextPoolInPlace(pool);
+					entries.add(entry);
+					
+				}
+				catch (IllegalArgumentException e) {
+					throw new SRTParseException(e.getMessage(), timeLine, e);
+					
+				}
+				
+			}
+			
+		}
+		
+		//Reads the next line ended by \n, \r or \r\n, like BufferedReader
+		private boolean nextLine() {
+			if (position >= limit) {
+				return false;
+				
+			}
+			
+			lineStart = position;
+			int end = SCANNER.indexOfLineBreak(b, position, limit);
+			if (end < 0) {
+				lineEnd = limit;
+				position = limit;
+				
+			}
+			else {
+				lineEnd = end;
+				position = end + 1;
+				if (b.get(end) == '\r' && position < limit && b.get(position) == '\n') {
+					position++;
+					
+				}
+				
+			}
+			lineNumber++;
+			
+			return true;
+			
+		}
+		
+		private boolean isBlank() {
+			for (int i = lineStart; i < lineEnd; i++) {
+				if ((b.get(i) & 0xFF) > ' ') {
+					return false;
+					
+				}
+				
+			}
+			
+			return true;
+			
+		}
+		
+		private String decodeLine() {
+			final int length = lineEnd - lineStart;
+			if (b.hasArray()) {
+				return new String(b.array(), b.arrayOffset() + lineStart, length, charset);
+				
+			}
+			
+			if (copy.length < length) {
+				copy = new byte[Math.max(length, copy.length * 2)];
+				
+			}
+			b.get(lineStart, copy, 0, length);
+			return new String(copy, 0, length, charset);
+			
+		}
+		
+	}
+	
+}
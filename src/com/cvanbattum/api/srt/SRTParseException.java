@@ -0,0 +1,60 @@
+package com.cvanbattum.api.srt;
+
+import java.io.IOException;
+
+/**
+ * Thrown by {@link SRTReader} when the input is not a valid SRT file. The
+ * line number at which the problem was found is part of the message and can
+ * be retrieved using {@link #getLineNumber()}.
+ *
+ * @author Casper van Battum
+ *
+ */
+public class SRTParseException extends IOException {
+	
+	private static final long serialVersionUID = 1L;
+	
+	private final int lineNumber;
+	
+	/**
+	 * Creates a new <code>SRTParseException</code>.
+	 *
+	 * @param message
+	 * 			The description of the problem
+	 * @param lineNumber
+	 * 			The line (starting at 1) where the problem was found
+	 */
+	public SRTParseException(String message, int lineNumber) {
+		super("line " + lineNumber + ": " + message);
+		
+		this.lineNumber = lineNumber;
+		
+	}
+	
+	/**
+	 * Creates a new <code>SRTParseException</code> caused by another
+	 * exception, for example an invalid time given to {@link SRTEntry}.
+	 *
+	 * @param message
+	 * 			The description of the problem
+	 * @param lineNumber
+	 * 			The line (starting at 1) where the problem was found
+	 * @param cause
+	 * 			The exception that caused this one
+	 */
+	public SRTParseException(String message, int lineNumber, Throwable cause) {
+		super("line " + lineNumber + ": " + message, cause);
+		
+		this.lineNumber = lineNumber;
+		
+	}
+	
+	/**
+	 * @return The line (starting at 1) where the problem was found.
+	 */
+	public int getLineNumber() {
+		return this.lineNumber;
+		
+	}
+	
+}
@@ -0,0 +1,480 @@
+package com.cvanbattum.api.srt;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * <p>Reads SRT files into {@link SRTEntry} and {@link SRTSubtitle} objects.
+ * The input is read as a stream: {@link #readEntry()} only reads as much of
+ * the input as it needs for the next entry, so large files do not have to be
+ * in memory as a whole.</p>
+ *
+ * <p>An SRT file consists of blocks separated by blank lines. Every block
+ * has an index line, a time line and one or more lines of text:</p>
+ *
+ * <pre>
+ * 1
+ * 00:00:01,600 --&gt; 00:00:04,200
+ * First line
+ * Second line
+ * </pre>
+ *
+ * <p>The reader is lenient where it does not matter: the index line may be
+ * missing, milliseconds may be separated by a dot instead of a comma and
+ * anything after the end time (like position coordinates) is ignored.</p>
+ *
+ * <p>If a {@link SRTTextPool} is given, every entry read will use it, see
+ * {@link SRTEntry#setTextPool(SRTTextPool)}.</p>
+ *
+ * <p>When reading from an <code>InputStream</code> or a file, the character
+ * encoding is detected from the start of the input, see 
+ * {@link SRTEncoding}. The bytes are decoded straight into the buffer the 
+ * lines are read from.</p>
+ *
+ * @author Casper van Battum
+ *
+ */
+public class SRTReader implements Closeable {
+	
+	private static final String ARROW = "-->";
+	
+	//Decoders of the files read by this thread, see read(File, SRTTextPool)
+	private static final ThreadLocal<HashMap<Charset, CharsetDecoder>> DECODERS = new ThreadLocal<HashMap<Charset, CharsetDecoder>>() {
+		
+		@Override
+		protected HashMap<Charset, CharsetDecoder> initialValue() {
+			return new HashMap<>();
+			
+		}
+		
+	};
+	
+	private final BufferedReader in;
+	private final SRTTextPool textPool;
+	private final SRTEncoding encoding;
+	private final ArrayList<String> lines = new ArrayList<>(4);
+	
+	private int lineNumber;
+	
+	/**
+	 * Creates a new <code>SRTReader</code> reading from the given
+	 * <code>Reader</code>, without pooling the text of the entries.
+	 *
+	 * @param in The <code>Reader</code> to read the SRT data from.
+	 */
+	public SRTReader(Reader in) {
+		this(in, null);
+		
+	}
+	
+	/**
+	 * Creates a new <code>SRTReader</code> reading from the given
+	 * <code>Reader</code>. All entries read will use the given
+	 * {@link SRTTextPool}.
+	 *
+	 * @param in
+	 * 			The <code>Reader</code> to read the SRT data from.
+	 * @param textPool
+	 * 			The pool for the text of the entries, or <code>null</code>
+	 * 			for no pooling.
+	 */
+	public SRTReader(Reader in, SRTTextPool textPool) {
+		this.in = (in instanceof BufferedReader) ? (BufferedReader) in : new BufferedReader(in);
+		this.textPool = textPool;
+		this.encoding = null;
+		
+	}
+	
+	/**
+	 * Creates a new <code>SRTReader</code> reading from the given
+	 * <code>InputStream</code>. The character encoding is detected from the
+	 * first bytes of the stream, see {@link SRTEncoding}. All entries read 
+	 * will use the given {@link SRTTextPool}.
+	 *
+	 * @param in
+	 * 			The <code>InputStream</code> to read the SRT data from.
+	 * @param textPool
+	 * 			The pool for the text of the entries, or <code>null</code>
+	 * 			for no pooling.
+	 * @throws IOException When reading the start of the stream fails.
+	 */
+	public SRTReader(InputStream in, SRTTextPool textPool) throws IOException {
+		this(new BufferedInputStream(in, SRTEncoding.SAMPLE_SIZE), textPool, false);
+		
+	}
+	
+	private SRTReader(BufferedInputStream in, SRTTextPool textPool, boolean reuseDecoder) throws IOException {
+		this.encoding = SRTEncoding.detect(in);
+		this.textPool = textPool;
+		
+		Charset charset = encoding.getCharset();
+		CharsetDecoder decoder;
+		if (reuseDecoder) {
+			HashMap<Charset, CharsetDecoder> decoders = DECODERS.get();
+			decoder = decoders.get(charset);
+			if (decoder == null) {
+				decoder = charset.newDecoder();
+				decoders.put(charset, decoder);
+				
+			}
+			decoder.reset();
+			
+		}
+		else {
+			decoder = charset.newDecoder();
+			
+		}
+		
+		//A wrongly detected encoding should not make the file unreadable
+		decoder.onMalformedInput(CodingErrorAction.REPLACE);
+		decoder.onUnmappableCharacter(CodingErrorAction.REPLACE);
+		this.in = new BufferedReader(new InputStreamReader(in, decoder));
+		
+	}
+	
+	/**
+	 * Reads the next entry from the input.
+	 *
+	 * @return The next entry, or <code>null</code> if the end of the input
+	 * 			has been reached.
+	 * @throws SRTParseException When the input is not valid SRT.
+	 * @throws IOException When reading from the input fails.
+	 */
+	public SRTEntry readEntry() throws IOException {
+		//Skip the blank lines before the block
+		String line = nextLine();
+		while (line != null && isBlank(line)) {
+			line = nextLine();
+			
+		}
+		if (line == null) {
+			return null;
+			
+		}
+		
+		//The index line is optional, the numbering is done by SRTSubtitle
+		int arrow = line.indexOf(ARROW);
+		if (arrow < 0) {
+			line = nextLine();
+			arrow = (line == null) ? -1 : line.indexOf(ARROW);
+			if (arrow < 0) {
+				throw new SRTParseException("expected a time line containing '" + ARROW + "'", lineNumber);
+				
+			}
+			
+		}
+		
+		final int timeLine = lineNumber;
+		long startTime = parseTime(line, 0, arrow);
+		long endTime = parseTime(line, arrow + ARROW.length(), line.length());
+		if (startTime < 0 || endTime < 0) {
+			throw new SRTParseException("invalid time line '" + line + "'", timeLine);
+			
+		}
+		
+		//Everything up to the next blank line is text
+		lines.clear();
+		line = nextLine();
+		while (line != null && ! isBlank(line)) {
+			lines.add(line);
+			line = nextLine();
+			
+		}
+		
+		try {
+			SRTEntry entry = new SRTEntry(startTime, endTime, lines.toArray(new String[lines.size()]));
+			entry.setTextPoolInPlace(textPool);
+			return entry;
+			
+		}
+		catch (IllegalArgumentException e) {
+			throw new SRTParseException(e.getMessage(), timeLine, e);
+			
+		}
+		
+	}
+	
+	/**
+	 * Reads all remaining entries from the input into a new
+	 * {@link SRTSubtitle}. The subtitle is published, so its
+	 * {@link SRTSubtitle#snapshot()} contains the entries that were read.
+	 *
+	 * @return A new subtitle containing all entries that were read.
+	 * @throws SRTParseException When the input is not valid SRT.
+	 * @throws IOException When reading from the input fails.
+	 */
+	public SRTSubtitle readSubtitle() throws IOException {
+		SRTSubtitle subtitle = new SRTSubtitle();
+		
+		SRTEntry entry;
+		while ((entry = readEntry()) != null) {
+			subtitle.add(entry);
+			
+		}
+		subtitle.publish();
+		
+		return subtitle;
+		
+	}
+	
+	/**
+	 * @return The encoding detected when reading from an 
+	 * 			<code>InputStream</code> or a file, or <code>null</code> when
+	 * 			reading from a <code>Reader</code>.
+	 */
+	public SRTEncoding getEncoding() {
+		return this.encoding;
+		
+	}
+	
+	/**
+	 * @return The number of the last line that was read, starting at 1.
+	 */
+	public int getLineNumber() {
+		return this.lineNumber;
+		
+	}
+	
+	@Override
+	public void close() throws IOException {
+		in.close();
+		
+	}
+	
+	/**
+	 * Reads an SRT file, detecting its character encoding.
+	 *
+	 * @param file The file to read.
+	 * @return A new subtitle containing all entries of the file.
+	 * @throws IOException When the file cannot be read or is not valid SRT.
+	 */
+	public static SRTSubtitle read(File file) throws IOException {
+		return read(file, null);
+		
+	}
+	
+	/**
+	 * Reads an SRT file, detecting its character encoding, using the given 
+	 * {@link SRTTextPool} for the text of all entries.
+	 *
+	 * @param file
+	 * 			The file to read.
+	 * @param textPool
+	 * 			The pool for the text of the entries, or <code>null</code>
+	 * 			for no pooling.
+	 * @return A new subtitle containing all entries of the file.
+	 * @throws IOException When the file cannot be read or is not valid SRT.
+	 */
+	public static SRTSubtitle read(File file, SRTTextPool textPool) throws IOException {
+		//The reader is closed before this method returns, so the decoder can be
+		//used again by the next file read on this thread
+		try (InputStream fileIn = new FileInputStream(file);
+				SRTReader reader = new SRTReader(new BufferedInputStream(fileIn, SRTEncoding.SAMPLE_SIZE), textPool, true)) {
+			return reader.readSubtitle();
+			
+		}
+		
+	}
+	
+	//Reads the next line and strips the byte order mark from the first line
+	private String nextLine() throws IOException {
+		String line = in.readLine();
+		if (line != null) {
+			if (lineNumber == 0 && line.length() > 0 && line.charAt(0) == '\uFEFF') {
+				line = line.substring(1);
+				
+			}
+			lineNumber++;
+			
+		}
+		
+		return line;
+		
+	}
+	
+	private static boolean isBlank(String line) {
+		for (int i = 0; i < line.length(); i++) {
+			if (line.charAt(i) > ' ') {
+				return false;
+				
+			}
+			
+		}
+		
+		return true;
+		
+	}
+	
+	/*
+	 * Parses a time in the format hh:mm:ss,MMM (mm:ss,MMM is accepted too)
+	 * between from and to, and returns it in milliseconds. Leading whitespace
+	 * is skipped and anything after the first whitespace following the time is
+	 * ignored. The milliseconds may be separated by a dot and may have less
+	 * than three digits. Returns -1 if the text is not a valid time.
+	 */
+	static long parseTime(CharSequence s, int from, int to) {
+		int i = from;
+		while (i < to && s.charAt(i) <= ' ') {
+			i++;
+			
+		}
+		
+		//Hours, minutes and seconds
+		long seconds = 0;
+		int fields = 0;
+		while (true) {
+			final int start = i;
+			long n = 0;
+			while (i < to && s.charAt(i) >= '0' && s.charAt(i) <= '9') {
+				n = n * 10 + (s.charAt(i) - '0');
+				i++;
+				
+			}
+			if (i == start) {
+				return -1;
+				
+			}
+			
+			seconds = seconds * 60 + n;
+			fields++;
+			
+			if (fields < 3 && i < to && s.charAt(i) == ':') {
+				i++;
+				
+			}
+			else break;
+			
+		}
+		if (fields < 2) {
+			return -1;
+			
+		}
+		
+		//Milliseconds
+		long millis = 0;
+		if (i < to && (s.charAt(i) == ',' || s.charAt(i) == '.')) {
+			i++;
+			
+			int digits = 0;
+			while (i < to && s.charAt(i) >= '0' && s.charAt(i) <= '9') {
+				if (digits < 3) {
+					millis = millis * 10 + (s.charAt(i) - '0');
+					digits++;
+					
+				}
+				i++;
+				
+			}
+			if (digits == 0) {
+				return -1;
+				
+			}
+			while (digits < 3) {
+				millis *= 10;
+				digits++;
+				
+			}
+			
+		}
+		
+		if (i < to && s.charAt(i) > ' ') {
+			return -1;
+			
+		}
+		
+		return seconds * 1000 + millis;
+		
+	}
+	
+	//parseTime(CharSequence, int, int) on the bytes of an encoding that keeps
+	//ASCII as single bytes, so time lines need not be decoded
+	static long parseTime(ByteBuffer b, int from, int to) {
+		int i = from;
+		while (i < to && (b.get(i) & 0xFF) <= ' ') {
+			i++;
+			
+		}
+		
+		//Hours, minutes and seconds
+		long seconds = 0;
+		int fields = 0;
+		while (true) {
+			final int start = i;
+			long n = 0;
+			int c;
+			while (i < to && (c = b.get(i) - '0') >= 0 && c <= 9) {
+				n = n * 10 + c;
+				i++;
+				
+			}
+			if (i == start) {
+				return -1;
+				
+			}
+			
+			seconds = seconds * 60 + n;
+			fields++;
+			
+			if (fields < 3 && i < to && b.get(i) == ':') {
+				i++;
+				
+			}
+			else break;
+			
+		}
+		if (fields < 2) {
+			return -1;
+			
+		}
+		
+		//Milliseconds
+		long millis = 0;
+		if (i < to && (b.get(i) == ',' || b.get(i) == '.')) {
+			i++;
+			
+			int digits = 0;
+			int c;
+			while (i < to && (c = b.get(i) - '0') >= 0 && c <= 9) {
+				if (digits < 3) {
+					millis = millis * 10 + c;
+					digits++;
+					
+				}
+				i++;
+				
+			}
+			if (digits == 0) {
+				return -1;
+				
+			}
+			while (digits < 3) {
+				millis *= 10;
+				digits++;
+				
+			}
+			
+		}
+		
+		if (i < to && (b.get(i) & 0xFF) > ' ') {
+			return -1;
+			
+		}
+		
+		return seconds * 1000 + millis;
+		
+	}
+	
+}
@@ -0,0 +1,584 @@
+package com.cvanbattum.api.srt;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * <p>Re-wraps the text of entries into lines of at most a given width, as
+ * required by most broadcast specifications, regardless of how the source
+ * split the text. The width is counted in characters, or in any other unit
+ * a {@link Measure} set by {@link #setMeasure(Measure)} measures, such as
+ * the pixels of a font.</p>
+ *
+ * <p>The text is put on a single line when it fits. Otherwise it is put on
+ * the least amount of lines it fits on, up to {@link #getMaxLines()}, with
+ * the breaks chosen by dynamic programming to minimize the raggedness: the
+ * sum of the squared space left on every line. This balances the lines,
+ * instead of filling the first line and leaving a single word on the
+ * second. Text that does not fit on the maximum amount of lines is not cut,
+ * the lines then run over the width as little as possible. The words of a
+ * line are separated by a single space, whatever whitespace separated them
+ * in the source.</p>
+ *
+ * <p>A subtitle is reflowed on several threads at once: the calling thread
+ * and the threads of this reflow, which are started when first needed and
+ * kept for the next subtitles. Each thread reuses its buffers for all
+ * entries it reflows, and entries that are already wrapped correctly are
+ * left untouched, so reflowing a subtitle creates little more than the new
+ * lines.</p>
+ *
+ * @author Casper van Battum
+ *
+ */
+public class SRTReflow {
+	
+	/**
+	 * The default maximum amount of lines of an entry.
+	 */
+	public static final int DEFAULT_MAX_LINES = 2;
+	
+	//Cost of every character or pixel a line runs over the width, more than
+	//any amount of space left on the lines can cost
+	private static final long OVERFLOW = 1L << 40;
+	
+	//Entries reflowed per thread, below which no more threads are used
+	private static final int MINIMUM_PART_SIZE = 1024;
+	
+	private static final char[] SPACE = { ' ' };
+	
+	private final int maxWidth;
+	private final int threads;
+	private int maxLines = DEFAULT_MAX_LINES;
+	private Measure measure;
+	private ExecutorService executor;
+	
+	/**
+	 * Creates a new <code>SRTReflow</code> counting the width in characters,
+	 * using as many threads as there are processors to reflow subtitles.
+	 *
+	 * @param maxWidth
+	 * 			The maximum width of a line.
+	 */
+	public SRTReflow(int maxWidth) {
+		this(maxWidth, Runtime.getRuntime().availableProcessors());
+		
+	}
+	
+	/**
+	 * Creates a new <code>SRTReflow</code> counting the width in characters.
+	 *
+	 * @param maxWidth
+	 * 			The maximum width of a line.
+	 * @param threads
+	 * 			The amount of threads used to reflow subtitles.
+	 */
+	public SRTReflow(int maxWidth, int threads) {
+		if (maxWidth < 1) {
+			throw new IllegalArgumentException("maximum width must be at least 1");
+			
+		}
+		if (threads < 1) {
+			throw new IllegalArgumentException("threads must be at least 1");
+			
+		}
+		
+		this.maxWidth = maxWidth;
+		this.threads = threads;
+		
+	}
+	
+	/**
+	 * Sets the maximum amount of lines of an entry. The default is
+	 * {@value #DEFAULT_MAX_LINES}.
+	 *
+	 * @param maxLines The maximum amount of lines.
+	 */
+	public void setMaxLines(int maxLines) {
+		if (maxLines < 1) {
+			throw new IllegalArgumentException("maximum lines must be at least 1");
+			
+		}
+		this.maxLines = maxLines;
+		
+	}
+	
+	/**
+	 * @return The maximum amount of lines of an entry.
+	 */
+	public int getMaxLines() {
+		return this.maxLines;
+		
+	}
+	
+	/**
+	 * @return The maximum width of a line.
+	 */
+	public int getMaxWidth() {
+		return this.maxWidth;
+		
+	}
+	
+	/**
+	 * Sets how the width of the text is measured. The maximum width is then
+	 * in the unit of the measure instead of in characters.
+	 *
+	 * @param measure
+	 * 			The measure, or <code>null</code> to count characters.
+	 */
+	public void setMeasure(Measure measure) {
+		this.measure = measure;
+		
+	}
+	
+	/**
+	 * @return The measure of the width, or <code>null</code> if characters
+	 * 			are counted.
+	 */
+	public Measure getMeasure() {
+		return this.measure;
+		
+	}
+	
+	/**
+	 * Re-wraps lines of text.
+	 *
+	 * @param text
+	 * 			The lines of text.
+	 * @return The new lines, or the given array itself if the text was
+	 * 			already wrapped this way, or has no words.
+	 */
+	public String[] reflow(String... text) {
+		return new Workspace().reflow(text);
+		
+	}
+	
+	/**
+	 * Re-wraps the text of an entry. Changing the text removes the word
+	 * timing of the entry, see {@link SRTEntry#setText(String...)}.
+	 *
+	 * @param entry
+	 * 			The entry to reflow.
+	 * @return Whether the text of the entry changed.
+	 */
+	public boolean reflow(SRTEntry entry) {
+		return new Workspace().reflow(entry);
+		
+	}
+	
+	/**
+	 * Re-wraps the text of all entries of a subtitle, divided over the
+	 * calling thread and the threads of this reflow.
+	 *
+	 * @param subtitle
+	 * 			The subtitle to reflow.
+	 * @return The amount of entries of which the text changed.
+	 */
+	public int reflow(final SRTSubtitle subtitle) {
+		final int size = subtitle.size();
+		int parts = Math.max(1, Math.min(threads, size / MINIMUM_PART_SIZE));
+		if (parts == 1) {
+			return reflow(subtitle, 0, size);
+			
+		}
+		
+		ExecutorService executor = executor();
+		ArrayList<Future<Integer>> results = new ArrayList<>(parts - 1);
+		try {
+			//The last part is reflowed by the calling thread
+			for (int p = 0; p < parts - 1; p++) {
+				final int from = (int) ((long) size * p / parts);
+				final int to = (int) ((long) size * (p + 1) / parts);
+				results.add(executor.submit(new Callable<Integer>() {
+					
+					@Override
+					public Integer call() {
+						return reflow(subtitle, from, to);
+						
+					}
+					
+				}));
+				
+			}
+			
+			int changed = reflow(subtitle, (int) ((long) size * (parts - 1) / parts), size);
+			for (Future<Integer> f : results) {
+				changed += f.get();
+				
+			}
+			
+			return changed;
+			
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while reflowing", e);
+			
+		}
+		catch (ExecutionException e) {
+			throw new IllegalStateException("Reflowing failed", e.getCause());
+			
+		}
+		finally {
+			//Stops the other parts when one failed, the threads are kept for
+			//the next subtitle
+			for (Future<Integer> f : results) {
+				f.cancel(true);
+				
+			}
+			
+		}
+		
+	}
+	
+	//The threads reflowing parts of subtitles, started when first needed
+	private synchronized ExecutorService executor() {
+		if (executor == null) {
+			executor = Executors.newFixedThreadPool(threads - 1, new ThreadFactory() {
+				
+				private int count;
+				
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, "SRTReflow-" + (++count));
+					thread.setDaemon(true);
+					return thread;
+					
+				}
+				
+			});
+			
+		}
+		
+		return executor;
+		
+	}
+	
+	private int reflow(SRTSubtitle subtitle, int from, int to) {
+		Workspace workspace = new Workspace();
+		int changed = 0;
+		for (int i = from; i < to; i++) {
+			if (workspace.reflow(subtitle.get(i))) {
+				changed++;
+				
+			}
+			
+		}
+		
+		return changed;
+		
+	}
+	
+	/*
+	 * The buffers for reflowing one text at a time, grown when needed and
+	 * reused for the next text.
+	 */
+	private final class Workspace {
+		
+		//The text, and the start and end of every word in it
+		private char[] chars = new char[256];
+		private int[] wordStart = new int[64];
+		private int[] wordEnd = new int[64];
+		private int words;
+		//prefix[i] is the width of the first i words, without spaces
+		private long[] prefix = new long[65];
+		//best[l * (words + 1) + j] is the lowest cost of putting the first j
+		//words on l lines, and breakAt the first word of the last of those lines
+		private long[] best = new long[(DEFAULT_MAX_LINES + 1) * 65];
+		private int[] breakAt = new int[(DEFAULT_MAX_LINES + 1) * 65];
+		//The first word of every line chosen
+		private int[] lineStart = new int[DEFAULT_MAX_LINES + 1];
+		//A line chosen, its words separated by single spaces
+		private char[] line = new char[128];
+		
+		private boolean reflow(SRTEntry entry) {
+			String[] text = entry.getText();
+			String[] result = reflow(text);
+			if (result == text) {
+				return false;
+				
+			}
+			
+			entry.setText(result);
+			return true;
+			
+		}
+		
+		private String[] reflow(String[] text) {
+			if (text == null || ! split(text)) {
+				return text;
+				
+			}
+			
+			final int lines = breakLines();
+			if (equalsLines(text, lines)) {
+				return text;
+				
+			}
+			
+			String[] result = new String[lines];
+			for (int l = 0; l < lines; l++) {
+				result[l] = new String(line, 0, join(l));
+				
+			}
+			
+			return result;
+			
+		}
+		
+		/*
+		 * Copies the text into the buffer, with a space between the lines, and
+		 * finds the words. Returns false if there are no words.
+		 */
+		private boolean split(String[] text) {
+			int length = text.length;
+			for (String line : text) {
+				length += (line == null) ? 0 : line.length();
+				
+			}
+			if (chars.length < length) {
+				chars = new char[Math.max(length, 2 * chars.length)];
+				
+			}
+			
+			int at = 0;
+			for (String line : text) {
+				if (line != null) {
+					line.getChars(0, line.length(), chars, at);
+					at += line.length();
+					
+				}
+				chars[at++] = ' ';
+				
+			}
+			
+			words = 0;
+			int i = 0;
+			while (i < at) {
+				while (i < at && Character.isWhitespace(chars[i])) {
+					i++;
+					
+				}
+				if (i == at) {
+					break;
+					
+				}
+				
+				int start = i;
+				while (i < at && ! Character.isWhitespace(chars[i])) {
+					i++;
+					
+				}
+				addWord(start, i);
+				
+			}
+			
+			return words > 0;
+			
+		}
+		
+		private void addWord(int start, int end) {
+			if (words == wordStart.length) {
+				int capacity = 2 * words;
+				wordStart = Arrays.copyOf(wordStart, capacity);
+				wordEnd = Arrays.copyOf(wordEnd, capacity);
+				prefix = new long[capacity + 1];
+				
+			}
+			
+			wordStart[words] = start;
+			wordEnd[words] = end;
+			words++;
+			
+		}
+		
+		/*
+		 * Chooses the breaks, filling lineStart with the first word of every
+		 * line and the amount of words after the last line. Returns the
+		 * amount of lines.
+		 */
+		private int breakLines() {
+			final Measure m = measure;
+			final long space = (m == null) ? 1 : m.width(SPACE, 0, 1);
+			for (int w = 0; w < words; w++) {
+				int length = wordEnd[w] - wordStart[w];
+				prefix[w + 1] = prefix[w] + ((m == null) ? length : m.width(chars, wordStart[w], length));
+				
+			}
+			
+			final int maxL = Math.min(maxLines, words);
+			final int stride = words + 1;
+			if (best.length < (maxL + 1) * stride) {
+				best = new long[(maxL + 1) * stride];
+				breakAt = new int[(maxL + 1) * stride];
+				
+			}
+			if (lineStart.length < maxL + 1) {
+				lineStart = new int[maxL + 1];
+				
+			}
+			
+			//The least amount of lines the text fits on, or else the amount
+			//of lines running over the width the least
+			int lines = 0;
+			long lowest = Long.MAX_VALUE;
+			best[0] = 0;
+			for (int j = 1; j < stride; j++) {
+				best[j] = Long.MAX_VALUE;
+				
+			}
+			for (int l = 1; l <= maxL; l++) {
+				final int row = l * stride;
+				final int previous = row - stride;
+				for (int j = 0; j < stride; j++) {
+					long min = Long.MAX_VALUE;
+					int argMin = 0;
+					for (int i = l - 1; i < j; i++) {
+						if (best[previous + i] == Long.MAX_VALUE) {
+							continue;
+							
+						}
+						
+						long cost = best[previous + i] + cost(prefix[j] - prefix[i] + (j - i - 1) * space);
+						if (cost < min) {
+							min = cost;
+							argMin = i;
+							
+						}
+						
+					}
+					best[row + j] = min;
+					breakAt[row + j] = argMin;
+					
+				}
+				
+				long total = best[row + words];
+				if (total < lowest) {
+					lowest = total;
+					lines = l;
+					
+				}
+				if (total < OVERFLOW) {
+					break;
+					
+				}
+				
+			}
+			
+			int j = words;
+			lineStart[lines] = words;
+			for (int l = lines; l > 0; l--) {
+				j = breakAt[l * stride + j];
+				lineStart[l - 1] = j;
+				
+			}
+			
+			return lines;
+			
+		}
+		
+		private long cost(long width) {
+			if (width > maxWidth) {
+				return OVERFLOW * (width - maxWidth);
+				
+			}
+			
+			long left = maxWidth - width;
+			return left * left;
+			
+		}
+		
+		/*
+		 * Puts the words of a chosen line in the line buffer, separated by a
+		 * single space as measured. Returns the length of the line.
+		 */
+		private int join(int l) {
+			final int first = lineStart[l];
+			final int last = lineStart[l + 1];
+			int length = last - first - 1;
+			for (int w = first; w < last; w++) {
+				length += wordEnd[w] - wordStart[w];
+				
+			}
+			if (line.length < length) {
+				line = new char[Math.max(length, 2 * line.length)];
+				
+			}
+			
+			int at = 0;
+			for (int w = first; w < last; w++) {
+				if (w > first) {
+					line[at++] = ' ';
+					
+				}
+				System.arraycopy(chars, wordStart[w], line, at, wordEnd[w] - wordStart[w]);
+				at += wordEnd[w] - wordStart[w];
+				
+			}
+			
+			return length;
+			
+		}
+		
+		//Whether the text already has the chosen lines
+		private boolean equalsLines(String[] text, int lines) {
+			if (text.length != lines) {
+				return false;
+				
+			}
+			
+			for (int l = 0; l < lines; l++) {
+				String source = text[l];
+				int length = join(l);
+				if (source == null || source.length() != length) {
+					return false;
+					
+				}
+				for (int i = 0; i < length; i++) {
+					if (source.charAt(i) != line[i]) {
+						return false;
+						
+					}
+					
+				}
+				
+			}
+			
+			return true;
+			
+		}
+		
+	}
+	
+	/**
+	 * <p>Measures the width of text for a {@link SRTReflow}, for example in
+	 * pixels of a font: <code>metrics.charsWidth(chars, offset, length)</code>
+	 * of <code>java.awt.FontMetrics</code>.</p>
+	 *
+	 * @author Casper van Battum
+	 *
+	 */
+	public interface Measure {
+		
+		/**
+		 * Measures a word, or a single space. Called by several threads at
+		 * once when a subtitle is reflowed.
+		 *
+		 * @param chars
+		 * 			The text.
+		 * @param offset
+		 * 			The index of the first character to measure.
+		 * @param length
+		 * 			The amount of characters to measure.
+		 * @return The width of the characters.
+		 */
+		long width(char[] chars, int offset, int length);
+		
+	}
+	
+}
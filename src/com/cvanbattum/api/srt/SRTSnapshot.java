@@ -0,0 +1,572 @@
+package com.cvanbattum.api.srt;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+/**
+ * <p>An immutable, versioned copy of the entries of a {@link SRTSubtitle}.
+ * Snapshots are published by the thread editing the subtitle using
+ * {@link SRTSubtitle#publish()}, and can be read by any amount of other
+ * threads (a player, a renderer, an exporter) using
+ * {@link SRTSubtitle#snapshot()} without any locking. A snapshot never
+ * changes after it has been published, so readers always see a consistent
+ * version of the subtitle, even while it is being edited.</p>
+ *
+ * <p>The entries are stored in chunks of at most {@value #CHUNK_SIZE}
+ * entries. When a new version is published, every chunk of the previous
+ * version that did not change is shared with the new version instead of
+ * copied, so publishing after a small edit only copies the chunks around
+ * that edit. Adjacent chunks that together fit in one chunk are merged, so
+ * many small edits do not leave a snapshot of many tiny chunks. A snapshot
+ * does not refer to the entries it was copied from, so keeping an old
+ * snapshot does not keep the entries of the subtitle reachable.</p>
+ *
+ * <p>Next to the entries, a snapshot contains a time index to look up the
+ * entry shown at a given time (see {@link #indexAt(long)}). The time index
+ * assumes that the entries are sorted by their start time, which is the case
+ * for normal SRT files.</p>
+ *
+ * @author Casper van Battum
+ *
+ */
+public final class SRTSnapshot {
+	
+	/**
+	 * The maximum amount of entries in a chunk.
+	 */
+	public static final int CHUNK_SIZE = 64;
+	
+	/**
+	 * A snapshot without any entries, version 0.
+	 */
+	public static final SRTSnapshot EMPTY = new SRTSnapshot(new Chunk[0], 0);
+	
+	private final long version;
+	private final int size;
+	private final Chunk[] chunks;
+	
+	//Index of the first entry of each chunk, with the total size at the end
+	private final int[] offsets;
+	//The time index: the first start time of each chunk, and the maximum end
+	//time of all entries up to and including each chunk
+	private final long[] firstStart;
+	private final long[] prefixMaxEnd;
+	
+	private SRTSnapshot(Chunk[] chunks, long version) {
+		this.version = version;
+		this.chunks = chunks;
+		this.offsets = new int[chunks.length + 1];
+		this.firstStart = new long[chunks.length];
+		this.prefixMaxEnd = new long[chunks.length];
+		
+		long maxEnd = Long.MIN_VALUE;
+		for (int c = 0; c < chunks.length; c++) {
+			offsets[c + 1] = offsets[c] + chunks[c].length;
+			firstStart[c] = chunks[c].start[0];
+			maxEnd = Math.max(maxEnd, chunks[c].runMaxEnd[chunks[c].length - 1]);
+			prefixMaxEnd[c] = maxEnd;
+			
+		}
+		this.size = offsets[chunks.length];
+		
+	}
+	
+	/**
+	 * Returns the version of this snapshot. Every time a subtitle publishes a
+	 * new snapshot, the version is increased by one.
+	 *
+	 * @return The version of this snapshot.
+	 */
+	public long getVersion() {
+		return this.version;
+		
+	}
+	
+	/**
+	 * @return The amount of entries in this snapshot.
+	 */
+	public int size() {
+		return this.size;
+		
+	}
+	
+	/**
+	 * @param index The index of the entry.
+	 * @return The start time of the entry in milliseconds.
+	 */
+	public long getStartTime(int index) {
+		int c = chunkOf(index);
+		return chunks[c].start[index - offsets[c]];
+		
+	}
+	
+	/**
+	 * @param index The index of the entry.
+	 * @return The end time of the entry in milliseconds.
+	 */
+	public long getEndTime(int index) {
+		int c = chunkOf(index);
+		return chunks[c].end[index - offsets[c]];
+		
+	}
+	
+	/**
+	 * Returns the lines of text of an entry. As a snapshot cannot be changed,
+	 * a copy of the lines is returned.
+	 *
+	 * @param index The index of the entry.
+	 * @return A copy of the lines of the entry.
+	 */
+	public String[] getText(int index) {
+		int c = chunkOf(index);
+		String[] text = chunks[c].text[index - offsets[c]];
+		return (text == null) ? null : text.clone();
+		
+	}
+	
+	/**
+	 * Returns a new {@link SRTEntry} with the times and text of an entry in
+	 * this snapshot. Changing the returned entry does not change this
+	 * snapshot or the subtitle it was published by.
+	 *
+	 * @param index The index of the entry.
+	 * @return A new entry equal to the entry at the given index.
+	 */
+	public SRTEntry getEntry(int index) {
+		int c = chunkOf(index);
+		int k = index - offsets[c];
+		String[] text = chunks[c].text[k];
+		return new SRTEntry(chunks[c].start[k], chunks[c].end[k], (text == null) ? null : text.clone());
+		
+	}
+	
+	/**
+	 * Returns the index of the entry that is shown at the given time. An entry
+	 * is shown from its start time (inclusive) up to its end time
+	 * (exclusive). If more than one entry is shown at that time, the one that
+	 * started last is returned.
+	 *
+	 * @param time The time in milliseconds.
+	 * @return The index of the entry shown at the given time, or
+	 * 			<code>-1</code> if no entry is shown at that time.
+	 */
+	public int indexAt(long time) {
+		int c = lastChunkStartingAtOrBefore(time);
+		if (c < 0) {
+			return -1;
+			
+		}
+		int k = chunks[c].lastStartingAtOrBefore(time);
+		
+		//Walk back until no earlier entry can still be shown at this time
+		while (c >= 0) {
+			Chunk chunk = chunks[c];
+			long before = (c == 0) ? Long.MIN_VALUE : prefixMaxEnd[c - 1];
+			for (; k >= 0; k--) {
+				if (chunk.end[k] > time && chunk.start[k] <= time) {
+					return offsets[c] + k;
+					
+				}
+				if (Math.max(before, chunk.runMaxEnd[k]) <= time) {
+					return -1;
+					
+				}
+				
+			}
+			
+			c--;
+			if (c >= 0) {
+				k = chunks[c].length - 1;
+				
+			}
+			
+		}
+		
+		return -1;
+		
+	}
+	
+	/**
+	 * Returns the index of the first entry that starts after the given time.
+	 * This is the next entry to show when playing from that time on.
+	 *
+	 * @param time The time in milliseconds.
+	 * @return The index of the first entry starting after the given time, or
+	 * 			{@link #size()} if there is no such entry.
+	 */
+	public int nextIndex(long time) {
+		int c = lastChunkStartingAtOrBefore(time);
+		if (c < 0) {
+			return 0;
+			
+		}
+		
+		return offsets[c] + chunks[c].lastStartingAtOrBefore(time) + 1;
+		
+	}
+	
+	/**
+	 * Returns the content of this snapshot in the SRT format, in the same way
+	 * as {@link SRTSubtitle#toString()}.
+	 */
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder(size() * 80);
+		
+		int index = 1;
+		for (Chunk chunk : chunks) {
+			for (int k = 0; k < chunk.length; k++) {
+				sb.append(index++).append('\n');
+				SRTSubtitle.appendTime(sb, chunk.start[k]);
+				sb.append(" --> ");
+				SRTSubtitle.appendTime(sb, chunk.end[k]);
+				sb.append('\n');
+				if (chunk.text[k] != null) {
+					for (String s : chunk.text[k]) {
+						sb.append(s).append('\n');
+						
+					}
+					
+				}
+				sb.append('\n');
+				
+			}
+			
+		}
+		
+		return sb.toString();
+		
+	}
+	
+	/*
+	 * The amount of chunks the entries are stored in.
+	 */
+	int getChunkCount() {
+		return this.chunks.length;
+		
+	}
+	
+	//Gives the chunk containing the entry at the given index
+	private int chunkOf(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+			
+		}
+		
+		int lo = 0;
+		int hi = chunks.length - 1;
+		while (lo < hi) {
+			int mid = (lo + hi + 1) >>> 1;
+			if (offsets[mid] <= index) {
+				lo = mid;
+				
+			}
+			else {
+				hi = mid - 1;
+				
+			}
+			
+		}
+		
+		return lo;
+		
+	}
+	
+	//Gives the last chunk of which the first entry starts at or before the
+	//given time, or -1 if there is none
+	private int lastChunkStartingAtOrBefore(long time) {
+		int lo = 0;
+		int hi = chunks.length - 1;
+		int result = -1;
+		while (lo <= hi) {
+			int mid = (lo + hi) >>> 1;
+			if (firstStart[mid] <= time) {
+				result = mid;
+				lo = mid + 1;
+				
+			}
+			else {
+				hi = mid - 1;
+				
+			}
+			
+		}
+		
+		return result;
+		
+	}
+	
+	/*
+	 * A part of a snapshot. Holds the times and a copy of the text of the
+	 * entries.
+	 */
+	private static final class Chunk {
+		
+		final int length;
+		final long[] start;
+		final long[] end;
+		final String[][] text;
+		//Maximum end time of the entries in this chunk up to each index
+		final long[] runMaxEnd;
+		
+		Chunk(List<SRTEntry> entries, int from, int to) {
+			length = to - from;
+			start = new long[length];
+			end = new long[length];
+			text = new String[length][];
+			runMaxEnd = new long[length];
+			
+			long maxEnd = Long.MIN_VALUE;
+			for (int k = 0; k < length; k++) {
+				SRTEntry e = entries.get(from + k);
+				String[] t = e.getText();
+				
+				start[k] = e.getStartTime();
+				end[k] = e.getEndTime();
+				text[k] = (t == null) ? null : t.clone();
+				maxEnd = Math.max(maxEnd, end[k]);
+				runMaxEnd[k] = maxEnd;
+				
+			}
+			
+		}
+		
+		//Merges two adjacent chunks into one, the text is shared as it is
+		//never changed
+		Chunk(Chunk first, Chunk second) {
+			length = first.length + second.length;
+			start = concat(first.start, second.start);
+			end = concat(first.end, second.end);
+			text = new String[length][];
+			System.arraycopy(first.text, 0, text, 0, first.length);
+			System.arraycopy(second.text, 0, text, first.length, second.length);
+			runMaxEnd = new long[length];
+			
+			long maxEnd = Long.MIN_VALUE;
+			for (int k = 0; k < length; k++) {
+				maxEnd = Math.max(maxEnd, end[k]);
+				runMaxEnd[k] = maxEnd;
+				
+			}
+			
+		}
+		
+		//Checks whether this chunk, copied from the given entries, still
+		//equals the entries starting at from
+		boolean matches(List<SRTEntry> entries, int from, SRTEntry[] source) {
+			if (from + length > entries.size()) {
+				return false;
+				
+			}
+			
+			for (int k = 0; k < length; k++) {
+				SRTEntry e = entries.get(from + k);
+				if (e != source[k] || e.getStartTime() != start[k] || e.getEndTime() != end[k] || ! sameLines(e.getText(), text[k])) {
+					return false;
+					
+				}
+				
+			}
+			
+			return true;
+			
+		}
+		
+		//Gives the last index in this chunk starting at or before the given
+		//time, or -1 if there is none
+		int lastStartingAtOrBefore(long time) {
+			int lo = 0;
+			int hi = length - 1;
+			int result = -1;
+			while (lo <= hi) {
+				int mid = (lo + hi) >>> 1;
+				if (start[mid] <= time) {
+					result = mid;
+					lo = mid + 1;
+					
+				}
+				else {
+					hi = mid - 1;
+					
+				}
+				
+			}
+			
+			return result;
+			
+		}
+		
+		private static long[] concat(long[] a, long[] b) {
+			long[] result = new long[a.length + b.length];
+			System.arraycopy(a, 0, result, 0, a.length);
+			System.arraycopy(b, 0, result, a.length, b.length);
+			return result;
+			
+		}
+		
+		//Compares the lines by reference, as a changed line is a new String
+		private static boolean sameLines(String[] a, String[] b) {
+			if (a == null || b == null) {
+				return a == b;
+				
+			}
+			if (a.length != b.length) {
+				return false;
+				
+			}
+			for (int i = 0; i < a.length; i++) {
+				if (a[i] != b[i]) {
+					return false;
+					
+				}
+				
+			}
+			
+			return true;
+			
+		}
+		
+	}
+	
+	/*
+	 * Publishes the versions of one subtitle. For every chunk of the last
+	 * version, the publisher remembers the entries it was copied from, so the
+	 * chunks that did not change can be reused by the next version. These
+	 * entries are kept here, by the subtitle, and not in the snapshots.
+	 */
+	static final class Publisher {
+		
+		private SRTSnapshot last = EMPTY;
+		//The entries each chunk of the last version was copied from
+		private SRTEntry[][] sources = new SRTEntry[0][];
+		
+		/*
+		 * Creates the next version from the current entries of the subtitle.
+		 * Chunks of the last version are reused when all of their entries are
+		 * still in the list, in the same order and with the same times and
+		 * text. The entries in between are copied into new chunks, after
+		 * which adjacent chunks that fit in one chunk are merged.
+		 */
+		SRTSnapshot publish(List<SRTEntry> entries) {
+			//Look up the chunks of the last version by their first entry
+			IdentityHashMap<SRTEntry, Integer> reusable = new IdentityHashMap<>(sources.length * 2);
+			for (int c = 0; c < sources.length; c++) {
+				reusable.put(sources[c][0], c);
+				
+			}
+			
+			final int n = entries.size();
+			ArrayList<Chunk> chunks = new ArrayList<>(n / CHUNK_SIZE + 1);
+			ArrayList<SRTEntry[]> chunkSources = new ArrayList<>(n / CHUNK_SIZE + 1);
+			int pending = 0;
+			int p = 0;
+			while (p < n) {
+				Integer c = reusable.get(entries.get(p));
+				if (c != null && last.chunks[c].matches(entries, p, sources[c])) {
+					addChunks(chunks, chunkSources, entries, pending, p);
+					addChunk(chunks, chunkSources, last.chunks[c], sources[c]);
+					p += last.chunks[c].length;
+					pending = p;
+					
+				}
+				else {
+					p++;
+					
+				}
+				
+			}
+			addChunks(chunks, chunkSources, entries, pending, n);
+			
+			return next(chunks, chunkSources);
+			
+		}
+		
+		/*
+		 * Creates the next version when only the entries from (inclusive) to
+		 * (exclusive) were changed, added or removed since the last version.
+		 * The chunks of the last version entirely before and after that range
+		 * are reused without checking their entries, so this takes time in the
+		 * amount of chunks and the entries in the range only. When the range
+		 * cannot hold the entries added since the last version, it is not the
+		 * range of the edits, and every entry is checked after all.
+		 */
+		SRTSnapshot publish(List<SRTEntry> entries, int from, int to) {
+			final int n = entries.size();
+			final int oldSize = last.size;
+			//The entries after the range are the last ones of the last version
+			final int after = n - to;
+			if (from + after > oldSize) {
+				return publish(entries);
+				
+			}
+			
+			final int count = last.chunks.length;
+			ArrayList<Chunk> chunks = new ArrayList<>(n / CHUNK_SIZE + 1);
+			ArrayList<SRTEntry[]> chunkSources = new ArrayList<>(n / CHUNK_SIZE + 1);
+			int head = 0;
+			while (head < count && last.offsets[head + 1] <= from) {
+				addChunk(chunks, chunkSources, last.chunks[head], sources[head]);
+				head++;
+				
+			}
+			
+			//The first chunk of the last version entirely after the range
+			int tail = count;
+			while (tail > head && last.offsets[tail - 1] >= oldSize - after) {
+				tail--;
+				
+			}
+			
+			addChunks(chunks, chunkSources, entries, last.offsets[head], last.offsets[tail] - oldSize + n);
+			for (int c = tail; c < count; c++) {
+				addChunk(chunks, chunkSources, last.chunks[c], sources[c]);
+				
+			}
+			
+			return next(chunks, chunkSources);
+			
+		}
+		
+		//Publishes the chunks as the next version
+		private SRTSnapshot next(List<Chunk> chunks, List<SRTEntry[]> chunkSources) {
+			last = new SRTSnapshot(chunks.toArray(new Chunk[chunks.size()]), last.version + 1);
+			sources = chunkSources.toArray(new SRTEntry[chunkSources.size()][]);
+			return last;
+			
+		}
+		
+		//Copies the entries from (inclusive) to (exclusive) into new chunks
+		private static void addChunks(List<Chunk> chunks, List<SRTEntry[]> chunkSources, List<SRTEntry> entries, int from, int to) {
+			for (int i = from; i < to; i += CHUNK_SIZE) {
+				int j = Math.min(to, i + CHUNK_SIZE);
+				addChunk(chunks, chunkSources, new Chunk(entries, i, j), entries.subList(i, j).toArray(new SRTEntry[j - i]));
+				
+			}
+			
+		}
+		
+		//Adds a chunk, merging it with the previous one if both fit in one
+		private static void addChunk(List<Chunk> chunks, List<SRTEntry[]> chunkSources, Chunk chunk, SRTEntry[] source) {
+			int last = chunks.size() - 1;
+			if (last >= 0 && chunks.get(last).length + chunk.length <= CHUNK_SIZE) {
+				SRTEntry[] previous = chunkSources.get(last);
+				SRTEntry[] merged = Arrays.copyOf(previous, previous.length + source.length);
+				System.arraycopy(source, 0, merged, previous.length, source.length);
+				
+				chunks.set(last, new Chunk(chunks.get(last), chunk));
+				chunkSources.set(last, merged);
+				
+			}
+			else {
+				chunks.add(chunk);
+				chunkSources.add(source);
+				
+			}
+			
+		}
+		
+	}
+	
+}
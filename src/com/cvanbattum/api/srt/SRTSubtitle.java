@@ -1,9 +1,19 @@
 package com.cvanbattum.api.srt;
 
 import java.util.ArrayList;
-import java.util.concurrent.TimeUnit;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
 
 /**
+ * <p>A list of {@link SRTEntry} objects, forming a complete subtitle.</p>
+ * 
+ * <p>Like any <code>ArrayList</code>, a subtitle should only be changed by 
+ * one thread at a time. Other threads that need to read the subtitle while it
+ * is being edited, use {@link #snapshot()} to get an immutable 
+ * {@link SRTSnapshot} of the last version published by the editing thread 
+ * using {@link #publish()}.</p>
  * 
  * @author Casper van Battum
  *
@@ -12,7 +22,20 @@ public class SRTSubtitle extends ArrayList<SRTEntry> {
 	
 	private static final long serialVersionUID = -2522062504183812033L;
 	
-	private long[][] timetable = new long[Integer.MAX_VALUE - 8][2];
+	//Orders merge heads by start time, then by subtitle
+	private static final Comparator<long[]> HEAD_ORDER = new Comparator<long[]>() {
+		
+		@Override
+		public int compare(long[] h1, long[] h2) {
+			int c = Long.compare(h1[0], h2[0]);
+			return (c != 0) ? c : Long.compare(h1[1], h2[1]);
+			
+		}
+		
+	};
+	
+	private transient volatile SRTSnapshot snapshot = SRTSnapshot.EMPTY;
+	private transient SRTSnapshot.Publisher publisher;
 	
 	/**
 	 * Creates a new, empty instance of <code>SRTSubtitle</code>.
@@ -36,6 +59,8 @@ public class SRTSubtitle extends ArrayList<SRTEntry> {
 			
 		}
 		
+		publish();
+		
 	}
 	
 	/**
@@ -43,11 +68,8 @@ public class SRTSubtitle extends ArrayList<SRTEntry> {
 	 * list above will be increased. The entries will be inserted at exactly
 	 * the given index. The entry currently at that index will be pushed 
 	 * upwards in the list.
-	 * <br>
-	 * <br>
-	 * <b>Warning:</b> inserting in large arrays can take very long.
 	 * 
-	 * @param i
+	 * @param index
 	 * 		The index o insert the entries.
 	 * @param entries
 	 * 		The entries to insert.
@@ -57,78 +79,401 @@ public class SRTSubtitle extends ArrayList<SRTEntry> {
 			throw new IllegalArgumentException("index may not be larger than the array's size or smaller than zero");
 			
 		}
-		//Given index may be at the precise end. Use more simple method instead and quit directly
-		else if (index == size()) {
-			for (SRTEntry e : entries) {
-				add(e);
+		
+		//Moves the entries after the index up at once, instead of rebuilding
+		//the whole list
+		addAll(index, Arrays.asList(entries));
+		
+	}
+	
+	/**
+	 * Shifts the start and end times of the entries from 
+	 * <code>fromIndex</code> (inclusive) to <code>toIndex</code> (exclusive) 
+	 * by the given offset. A positive offset makes the entries show later, a 
+	 * negative offset makes them show earlier. The times are checked before 
+	 * anything is changed, so either all entries are shifted or none are.
+	 * 
+	 * @param fromIndex
+	 * 		The index of the first entry to shift.
+	 * @param toIndex
+	 * 		The index after the last entry to shift.
+	 * @param offset
+	 * 		The offset in milliseconds.
+	 * @throws IllegalArgumentException
+	 * 		When an entry would start before zero.
+	 */
+	public void shiftTimes(int fromIndex, int toIndex, long offset) {
+		if (fromIndex < 0 || toIndex > size() || fromIndex > toIndex) {
+			throw new IndexOutOfBoundsException("fromIndex: " + fromIndex + ", toIndex: " + toIndex + ", size: " + size());
+			
+		}
+		
+		for (int i = fromIndex; i < toIndex; i++) {
+			if (get(i).getStartTime() + offset < 0) {
+				throw new IllegalArgumentException("Starting time cannot be smaller than zero after shifting");
 				
 			}
-			return;
 			
 		}
 		
-		//Normal method
-		ArrayList<SRTEntry> al = new ArrayList<>();
+		for (int i = fromIndex; i < toIndex; i++) {
+			SRTEntry e = get(i);
+			e.setTimes(e.getStartTime() + offset, e.getEndTime() + offset);
+			
+		}
 		
-		//Loop over entries until i < index (entries up to (not including) the
-		//index of the new item) and add them to the new list
-		int i = 0;
-		while (i < index) {
-			al.add(get(i));
-			i++;
+	}
+	
+	/**
+	 * Sets the {@link SRTTextPool} of every entry in this subtitle, see
+	 * {@link SRTEntry#setTextPool(SRTTextPool)}. Using the same pool for
+	 * several subtitles deduplicates their lines across all of them.
+	 *
+	 * @param textPool
+	 * 		The pool to use, or <code>null</code> for no pooling.
+	 */
+	public void setTextPool(SRTTextPool textPool) {
+		for (SRTEntry entry : this) {
+			entry.setTextPool(textPool);
 			
 		}
 		
-		//Add the new entries
-		for (SRTEntry e : entries) {
-			al.add(e);
+	}
+	
+	/**
+	 * Splits this subtitle at the given times, for example into one subtitle
+	 * per chapter. An entry goes to the part in which it starts, so an entry
+	 * crossing a split time is not cut. The entries have to be sorted by
+	 * start time.<br>
+	 * <br>
+	 * The entries are not copied: the parts contain the same 
+	 * {@link SRTEntry} objects as this subtitle, so changing an entry changes
+	 * it in both.
+	 * 
+	 * @param times
+	 * 		The increasing times at which to split, in milliseconds.
+	 * @return <code>times.length + 1</code> parts, some of which may be
+	 * 		empty.
+	 * @throws IllegalArgumentException
+	 * 		When the times are not increasing.
+	 */
+	public List<SRTSubtitle> split(long... times) {
+		ArrayList<SRTSubtitle> parts = new ArrayList<>(times.length + 1);
+		
+		int from = 0;
+		for (int t = 0; t <= times.length; t++) {
+			if (t > 0 && t < times.length && times[t] <= times[t - 1]) {
+				throw new IllegalArgumentException("split times must be increasing");
+				
+			}
+			
+			int to = (t == times.length) ? size() : firstStartingAt(times[t], from);
+			SRTSubtitle part = new SRTSubtitle();
+			part.addAll(subList(from, to));
+			part.publish();
+			parts.add(part);
+			from = to;
 			
 		}
 		
-		//Now add the remaining entries of the original list.
-		i = 0;
-		while (i < size() - index) {
-			//Use the index variable as offset.
-			al.add(get(i + index));
-			i++;
+		return parts;
+		
+	}
+	
+	//Binary search for the first entry from fromIndex on starting at or 
+	//after the time
+	private int firstStartingAt(long time, int fromIndex) {
+		int lo = fromIndex;
+		int hi = size();
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (get(mid).getStartTime() < time) {
+				lo = mid + 1;
+				
+			}
+			else {
+				hi = mid;
+				
+			}
 			
 		}
 		
-		//Clear the current list to add the new list to it
-		clear();
-		for (SRTEntry e : al) {
-			add(e);
+		return lo;
+		
+	}
+	
+	/**
+	 * Merges several subtitles sorted by start time into one, for example 
+	 * dialogue, signs and lyrics into a single track. See 
+	 * {@link #merge(boolean, SRTSubtitle...)}, this method does not stack 
+	 * overlapping entries.
+	 * 
+	 * @param subtitles
+	 * 		The subtitles to merge.
+	 * @return A new subtitle with the entries of all subtitles.
+	 */
+	public static SRTSubtitle merge(SRTSubtitle... subtitles) {
+		return merge(false, subtitles);
+		
+	}
+	
+	/**
+	 * <p>Merges several subtitles sorted by start time into one, for example 
+	 * dialogue, signs and lyrics into a single track. Entries with the same 
+	 * start time are ordered by the order of the subtitles. The subtitles are
+	 * merged in one pass, taking the earliest next entry of all subtitles each
+	 * time, in <code>O(n log k)</code> for <code>k</code> subtitles.</p>
+	 * 
+	 * <p>Without stacking, the merged subtitle contains the same 
+	 * {@link SRTEntry} objects as the given subtitles, so overlapping entries
+	 * stay overlapping. With stacking, the time during which entries overlap
+	 * becomes a new entry with the lines of all entries shown at that time, 
+	 * so players that show only one entry at a time still show all text.
+	 * Entries that do not overlap others are still shared.</p>
+	 * 
+	 * @param stack
+	 * 		Whether to stack overlapping entries into one entry.
+	 * @param subtitles
+	 * 		The subtitles to merge.
+	 * @return A new subtitle with the entries of all subtitles.
+	 */
+	public static SRTSubtitle merge(boolean stack, SRTSubtitle... subtitles) {
+		int total = 0;
+		//The position in each subtitle, ordered by the start time of the 
+		//entry at that position
+		PriorityQueue<long[]> heads = new PriorityQueue<>(Math.max(1, subtitles.length), HEAD_ORDER);
+		for (int i = 0; i < subtitles.length; i++) {
+			total += subtitles[i].size();
+			if (! subtitles[i].isEmpty()) {
+				heads.add(new long[] {subtitles[i].get(0).getStartTime(), i, 0});
+				
+			}
 			
 		}
 		
+		SRTSubtitle merged = new SRTSubtitle();
+		merged.ensureCapacity(total);
+		while (! heads.isEmpty()) {
+			long[] head = heads.poll();
+			SRTSubtitle subtitle = subtitles[(int) head[1]];
+			int index = (int) head[2];
+			merged.add(subtitle.get(index));
+			
+			if (++index < subtitle.size()) {
+				//Reuse the head, the queue only holds one per subtitle
+				head[0] = subtitle.get(index).getStartTime();
+				head[2] = index;
+				heads.add(head);
+				
+			}
+			
+		}
+		
+		SRTSubtitle result = stack ? stack(merged) : merged;
+		result.publish();
+		return result;
+		
+	}
+	
+	/*
+	 * Sweeps over the entries sorted by start time, keeping the entries shown
+	 * at the current time. Every time an entry starts or ends, the time since
+	 * the previous change becomes an entry with the lines of all entries 
+	 * shown, or the original entry if it was shown alone for its whole 
+	 * duration.
+	 */
+	private static SRTSubtitle stack(SRTSubtitle sorted) {
+		SRTSubtitle stacked = new SRTSubtitle();
+		ArrayList<SRTEntry> active = new ArrayList<>();
+		ArrayList<String> lines = new ArrayList<>();
+		
+		final int size = sorted.size();
+		int i = 0;
+		long time = 0;
+		while (i < size || ! active.isEmpty()) {
+			if (active.isEmpty()) {
+				time = sorted.get(i).getStartTime();
+				
+			}
+			while (i < size && sorted.get(i).getStartTime() <= time) {
+				active.add(sorted.get(i++));
+				
+			}
+			
+			//The next time an entry starts or ends
+			long next = (i < size) ? sorted.get(i).getStartTime() : Long.MAX_VALUE;
+			for (SRTEntry e : active) {
+				next = Math.min(next, e.getEndTime());
+				
+			}
+			
+			SRTEntry first = active.get(0);
+			if (active.size() == 1 && first.getStartTime() == time && first.getEndTime() == next) {
+				stacked.add(first);
+				
+			}
+			else {
+				lines.clear();
+				//Line by line, addAll would copy every text first
+				for (SRTEntry e : active) {
+					String[] text = e.getText();
+					if (text != null) {
+						for (String line : text) {
+							lines.add(line);
+							
+						}
+						
+					}
+					
+				}
+				stacked.add(new SRTEntry(time, next, lines.toArray(new String[lines.size()])));
+				
+			}
+			
+			time = next;
+			for (int a = active.size() - 1; a >= 0; a--) {
+				if (active.get(a).getEndTime() <= time) {
+					active.remove(a);
+					
+				}
+				
+			}
+			
+		}
+		
+		return stacked;
+		
+	}
+	
+	/**
+	 * Publishes the current state of this subtitle as a new 
+	 * {@link SRTSnapshot}, which is returned by {@link #snapshot()} from now 
+	 * on. This method has to be called by the thread that edits this subtitle
+	 * once an edit is complete, readers on other threads will not see the 
+	 * edit before that. <br>
+	 * <br>
+	 * Parts of the previous snapshot that were not changed are shared with 
+	 * the new snapshot, so only the changed entries are copied. As entries 
+	 * can be changed without this subtitle knowing, every entry is compared 
+	 * to the previous snapshot to find the changes. An editor that knows 
+	 * which entries it changed can use {@link #publish(int, int)} instead.
+	 * 
+	 * @return The newly published snapshot.
+	 */
+	public synchronized SRTSnapshot publish() {
+		SRTSnapshot s = publisher().publish(this);
+		snapshot = s;
+		return s;
+		
+	}
+	
+	/**
+	 * Publishes the current state of this subtitle like {@link #publish()}, 
+	 * when only the entries from <code>fromIndex</code> (inclusive) to 
+	 * <code>toIndex</code> (exclusive) were changed since the last version 
+	 * was published. Entries may also have been added or removed there, the 
+	 * indexes are those of the entries as they are now. Only the entries in
+	 * that range are compared and copied, so publishing a small edit of a 
+	 * large subtitle does not take time in its size. Entries changed outside
+	 * the range are not published, until they are part of the range of a 
+	 * later publish or {@link #publish()} is used.
+	 * 
+	 * @param fromIndex
+	 * 		The index of the first entry changed.
+	 * @param toIndex
+	 * 		The index after the last entry changed, equal to 
+	 * 		<code>fromIndex</code> when entries were only removed.
+	 * @return The newly published snapshot.
+	 */
+	public synchronized SRTSnapshot publish(int fromIndex, int toIndex) {
+		if (fromIndex < 0 || toIndex > size() || fromIndex > toIndex) {
+			throw new IndexOutOfBoundsException("fromIndex: " + fromIndex + ", toIndex: " + toIndex + ", size: " + size());
+			
+		}
+		
+		SRTSnapshot s = publisher().publish(this, fromIndex, toIndex);
+		snapshot = s;
+		return s;
+		
+	}
+	
+	//Created when first needed, as a deserialized subtitle has no publisher
+	private SRTSnapshot.Publisher publisher() {
+		if (publisher == null) {
+			publisher = new SRTSnapshot.Publisher();
+			
+		}
+		
+		return publisher;
+		
+	}
+	
+	/**
+	 * Returns the last snapshot published by {@link #publish()}. This method 
+	 * never blocks and can be called from any thread at any time, even while 
+	 * this subtitle is being edited.
+	 * 
+	 * @return The last published snapshot of this subtitle.
+	 */
+	public SRTSnapshot snapshot() {
+		SRTSnapshot s = snapshot;
+		//A deserialized subtitle has not published anything yet
+		return (s == null) ? SRTSnapshot.EMPTY : s;
+		
 	}
 	
 	@Override
 	public String toString() {
-		StringBuilder sb = new StringBuilder();
+		//About 40 characters per entry for the index and time line
+		StringBuilder sb = new StringBuilder(size() * 80);
 		
+		int index = 1;
 		for (SRTEntry entry : this) {
-			sb.append((indexOf(entry) + 1) + "\n");
-			sb.append(String.format("%s --> %s\n", formatTime(entry.getStartTime()), formatTime(entry.getEndTime())));
-			for (String s : entry.getText()) {
-				sb.append(s + "\n");
+			sb.append(index++).append('\n');
+			appendTime(sb, entry.getStartTime());
+			sb.append(" --> ");
+			appendTime(sb, entry.getEndTime());
+			sb.append('\n');
+			String[] text = entry.getText();
+			if (text != null) {
+				for (String s : text) {
+					sb.append(s).append('\n');
+					
+				}
 				
 			}
-			sb.append("\n");
+			sb.append('\n');
 			
 		}
 		
 		return sb.toString();
 	}
 	
-	//Gives a formatted time String in the format hh:mm:ss:MMM (where mm are 
+	//Gives a formatted time String in the format hh:mm:ss,MMM (where mm are 
 	//minutes and MMM are milliseconds)
-	private String formatTime(long timeMillis) {
-		final long hr = TimeUnit.MILLISECONDS.toHours(timeMillis);
-        	final long min = TimeUnit.MILLISECONDS.toMinutes(timeMillis - TimeUnit.HOURS.toMillis(hr));
-        	final long sec = TimeUnit.MILLISECONDS.toSeconds(timeMillis - TimeUnit.HOURS.toMillis(hr) - TimeUnit.MINUTES.toMillis(min));
-        	final long ms = TimeUnit.MILLISECONDS.toMillis(timeMillis - TimeUnit.HOURS.toMillis(hr) - TimeUnit.MINUTES.toMillis(min) - TimeUnit.SECONDS.toMillis(sec));
-        	return String.format("%02d:%02d:%02d,%03d", hr, min, sec, ms);
+	static String formatTime(long timeMillis) {
+		StringBuilder sb = new StringBuilder(12);
+		appendTime(sb, timeMillis);
+		return sb.toString();
+		
+	}
+	
+	//Appends a time in the format of formatTime(long), without formatting 
+	//the fields through String.format
+	static void appendTime(StringBuilder sb, long timeMillis) {
+		final long hr = timeMillis / 3600000;
+		final int min = (int) (timeMillis / 60000 % 60);
+		final int sec = (int) (timeMillis / 1000 % 60);
+		final int ms = (int) (timeMillis % 1000);
+		
+		if (hr < 10) {
+			sb.append('0');
+			
+		}
+		sb.append(hr).append(':');
+		sb.append((char) ('0' + min / 10)).append((char) ('0' + min % 10)).append(':');
+		sb.append((char) ('0' + sec / 10)).append((char) ('0' + sec % 10)).append(',');
+		sb.append((char) ('0' + ms / 100)).append((char) ('0' + ms / 10 % 10)).append((char) ('0' + ms % 10));
 		
 	}
 	
@@ -0,0 +1,408 @@
+package com.cvanbattum.api.srt;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * <p>A cache of parsed subtitle files, so a file opened again is not read and
+ * parsed again. The cache holds {@link SRTSnapshot}s, which are immutable,
+ * so the same snapshot can be given to any amount of readers on any
+ * thread.</p>
+ *
+ * <p>A file is identified by its path, last modification time and length,
+ * so a changed file is read again. Only one version of a file is cached: a
+ * version replaces the cached one only if it was modified later, so a slow
+ * read of an outdated version cannot evict a newer one. When the estimated
+ * size of the cached snapshots exceeds the maximum, the least recently used
+ * snapshots are evicted. When several threads ask for the same file at the
+ * same time, the file is read only once and all threads get the same
+ * snapshot.</p>
+ *
+ * <p>{@link #getShared()} returns a cache shared by the whole process.</p>
+ *
+ * @author Casper van Battum
+ *
+ */
+public class SRTSubtitleCache {
+	
+	/**
+	 * The default maximum size of a cache in bytes (64 MB).
+	 */
+	public static final long DEFAULT_MAXIMUM_SIZE = 64L * 1024 * 1024;
+	
+	private static final SRTSubtitleCache SHARED = new SRTSubtitleCache(DEFAULT_MAXIMUM_SIZE);
+	
+	//Estimated size of an entry in a snapshot without its text: the times,
+	//the source entry and the references to them
+	private static final long ENTRY_SIZE = 16 + 8 + 40 + 16;
+	
+	private final long maximumSize;
+	
+	//In access order, so the eldest entry is the least recently used
+	private final LinkedHashMap<Key, Cached> cache = new LinkedHashMap<>(16, 0.75f, true);
+	//The key of the cached version of every path, to drop outdated versions
+	private final HashMap<String, Key> currentKeys = new HashMap<>();
+	private final HashMap<Key, FutureTask<Cached>> loading = new HashMap<>();
+	private long size;
+	
+	private long hits;
+	private long misses;
+	private long evictions;
+	private long loadTime;
+	
+	/**
+	 * Creates a new, empty <code>SRTSubtitleCache</code>.
+	 *
+	 * @param maximumSize
+	 * 			The maximum estimated size in bytes of the cached snapshots.
+	 */
+	public SRTSubtitleCache(long maximumSize) {
+		if (maximumSize < 0) {
+			throw new IllegalArgumentException("maximum size cannot be smaller than zero");
+			
+		}
+		
+		this.maximumSize = maximumSize;
+		
+	}
+	
+	/**
+	 * @return The cache shared by the whole process, with the default
+	 * 			maximum size.
+	 */
+	public static SRTSubtitleCache getShared() {
+		return SHARED;
+		
+	}
+	
+	/**
+	 * Returns the snapshot of a subtitle file, reading the file only if it
+	 * is not cached or has changed since it was cached.
+	 *
+	 * @param file The SRT file.
+	 * @return The snapshot of the file.
+	 * @throws IOException When the file cannot be read or is not valid SRT.
+	 */
+	public SRTSnapshot get(final File file) throws IOException {
+		final Key key = new Key(file.getCanonicalPath(), file.lastModified(), file.length());
+		
+		FutureTask<Cached> task;
+		boolean load = false;
+		synchronized (this) {
+			Cached cached = cache.get(key);
+			if (cached != null) {
+				hits++;
+				return cached.snapshot;
+				
+			}
+			
+			//Wait for another thread already reading the file
+			task = loading.get(key);
+			if (task == null) {
+				task = new FutureTask<>(new Callable<Cached>() {
+					
+					@Override
+					public Cached call() throws IOException {
+						return load(file);
+						
+					}
+					
+				});
+				loading.put(key, task);
+				load = true;
+				misses++;
+				
+			}
+			else {
+				hits++;
+				
+			}
+			
+		}
+		
+		if (load) {
+			task.run();
+			
+		}
+		
+		try {
+			Cached cached = task.get();
+			if (load) {
+				synchronized (this) {
+					loading.remove(key);
+					loadTime += cached.loadTime;
+					put(key, cached);
+					
+				}
+				
+			}
+			return cached.snapshot;
+			
+		}
+		catch (ExecutionException e) {
+			if (load) {
+				synchronized (this) {
+					loading.remove(key);
+					
+				}
+				
+			}
+			
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+				
+			}
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+				
+			}
+			throw new IOException(cause);
+			
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("interrupted while waiting for " + file, e);
+			
+		}
+		
+	}
+	
+	/**
+	 * Removes a file from the cache, if it is cached.
+	 *
+	 * @param file The file to remove.
+	 * @throws IOException When the path of the file cannot be resolved.
+	 */
+	public synchronized void remove(File file) throws IOException {
+		Key key = currentKeys.remove(file.getCanonicalPath());
+		if (key != null) {
+			size -= cache.remove(key).size;
+			
+		}
+		
+	}
+	
+	/**
+	 * Removes all files from the cache. The statistics are kept.
+	 */
+	public synchronized void clear() {
+		cache.clear();
+		currentKeys.clear();
+		size = 0;
+		
+	}
+	
+	/**
+	 * @return The amount of cached files.
+	 */
+	public synchronized int getFileCount() {
+		return cache.size();
+		
+	}
+	
+	/**
+	 * @return The estimated size in bytes of the cached snapshots.
+	 */
+	public synchronized long getSize() {
+		return this.size;
+		
+	}
+	
+	/**
+	 * @return The maximum estimated size in bytes of the cached snapshots.
+	 */
+	public long getMaximumSize() {
+		return this.maximumSize;
+		
+	}
+	
+	/**
+	 * @return The amount of requests that did not read the file, including
+	 * 			requests that waited for another thread reading it.
+	 */
+	public synchronized long getHits() {
+		return this.hits;
+		
+	}
+	
+	/**
+	 * @return The amount of requests that read the file.
+	 */
+	public synchronized long getMisses() {
+		return this.misses;
+		
+	}
+	
+	/**
+	 * @return The share of requests that did not read the file, between 0
+	 * 			and 1.
+	 */
+	public synchronized double getHitRate() {
+		long requests = hits + misses;
+		return (requests == 0) ? 0 : (double) hits / requests;
+		
+	}
+	
+	/**
+	 * @return The amount of snapshots evicted to stay below the maximum
+	 * 			size.
+	 */
+	public synchronized long getEvictions() {
+		return this.evictions;
+		
+	}
+	
+	/**
+	 * @return The total time spent reading and parsing files, in
+	 * 			nanoseconds.
+	 */
+	public synchronized long getLoadTime() {
+		return this.loadTime;
+		
+	}
+	
+	/**
+	 * @return The average time spent reading and parsing a file, in
+	 * 			nanoseconds.
+	 */
+	public synchronized long getAverageLoadTime() {
+		return (misses == 0) ? 0 : loadTime / misses;
+		
+	}
+	
+	@Override
+	public synchronized String toString() {
+		return "SRTSubtitleCache[files=" + cache.size() + ", size=" + size + ", hits=" + hits + ", misses=" + misses + ", evictions=" + evictions + "]";
+		
+	}
+	
+	//Must hold the lock
+	private void put(Key key, Cached cached) {
+		Key old = currentKeys.get(key.path);
+		if (old != null && ! old.equals(key)) {
+			//A slow load of an older version must not replace a newer one,
+			//so only a newer version of the file replaces the cached one
+			if (key.lastModified <= old.lastModified) {
+				return;
+				
+			}
+			
+			//Drop the version of the file cached before it changed
+			Cached removed = cache.remove(old);
+			if (removed != null) {
+				size -= removed.size;
+				
+			}
+			
+		}
+		currentKeys.put(key.path, key);
+		
+		Cached replaced = cache.put(key, cached);
+		if (replaced != null) {
+			size -= replaced.size;
+			
+		}
+		size += cached.size;
+		
+		//Evict the least recently used files, but keep the one just read
+		Iterator<Map.Entry<Key, Cached>> it = cache.entrySet().iterator();
+		while (size > maximumSize && it.hasNext()) {
+			Map.Entry<Key, Cached> eldest = it.next();
+			if (eldest.getKey().equals(key)) {
+				continue;
+				
+			}
+			
+			it.remove();
+			size -= eldest.getValue().size;
+			currentKeys.remove(eldest.getKey().path);
+			evictions++;
+			
+		}
+		
+	}
+	
+	private static Cached load(File file) throws IOException {
+		long start = System.nanoTime();
+		SRTSubtitle subtitle = SRTReader.read(file);
+		
+		long size = 0;
+		for (SRTEntry entry : subtitle) {
+			size += ENTRY_SIZE;
+			String[] text = entry.getText();
+			if (text != null) {
+				size += 16 + 4L * text.length;
+				for (String line : text) {
+					if (line != null) {
+						size += SRTTextPool.estimateSize(line);
+						
+					}
+					
+				}
+				
+			}
+			
+		}
+		
+		SRTSnapshot snapshot = subtitle.snapshot();
+		return new Cached(snapshot, size, System.nanoTime() - start);
+		
+	}
+	
+	private static final class Key {
+		
+		private final String path;
+		private final long lastModified;
+		private final long length;
+		
+		private Key(String path, long lastModified, long length) {
+			this.path = path;
+			this.lastModified = lastModified;
+			this.length = length;
+			
+		}
+		
+		@Override
+		public boolean equals(Object obj) {
+			if (! (obj instanceof Key)) {
+				return false;
+				
+			}
+			
+			Key other = (Key) obj;
+			return path.equals(other.path) && lastModified == other.lastModified && length == other.length;
+			
+		}
+		
+		@Override
+		public int hashCode() {
+			return 31 * (31 * path.hashCode() + Long.hashCode(lastModified)) + Long.hashCode(length);
+			
+		}
+		
+	}
+	
+	private static final class Cached {
+		
+		private final SRTSnapshot snapshot;
+		private final long size;
+		private final long loadTime;
+		
+		private Cached(SRTSnapshot snapshot, long size, long loadTime) {
+			this.snapshot = snapshot;
+			this.size = size;
+			this.loadTime = loadTime;
+			
+		}
+		
+	}
+	
+}
@@ -0,0 +1,231 @@
+package com.cvanbattum.api.srt;
+
+import java.lang.ref.WeakReference;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * <p>A pool of subtitle lines, used to deduplicate the strings stored in
+ * {@link SRTEntry} instances. Subtitle files repeat lines a lot (music notes,
+ * speaker names, "[MUSIC]"), and every repeated line would otherwise be a
+ * separate <code>String</code> in memory.</p>
+ *
+ * <p>A pool can be used for a single file or be shared by all subtitles that
+ * are loaded in a batch. To make sure a long-running program does not keep
+ * every line it has ever seen, a pool is created with an eviction policy:
+ * either bounded ({@link #createBounded(int)}, least recently used lines are
+ * dropped) or weak ({@link #createWeak()}, lines are dropped as soon as no
+ * entry uses them anymore).</p>
+ *
+ * <p>All methods of this class are thread safe.</p>
+ *
+ * @author Casper van Battum
+ *
+ */
+public class SRTTextPool {
+	
+	private final boolean weak;
+	private final int maximumSize;
+	private final Map<String, Object> pool;
+	
+	private long lookups;
+	private long hits;
+	private long bytesSaved;
+	
+	private SRTTextPool(boolean weak, final int maximumSize) {
+		this.weak = weak;
+		this.maximumSize = maximumSize;
+		
+		if (weak) {
+			this.pool = new WeakHashMap<>();
+			
+		}
+		else {
+			//Access ordered, so the eldest entry is the least recently used one
+			this.pool = new LinkedHashMap<String, Object>(16, 0.75f, true) {
+				
+				private static final long serialVersionUID = 1L;
+				
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<String, Object> eldest) {
+					return size() > maximumSize;
+					
+				}
+				
+			};
+			
+		}
+		
+	}
+	
+	/**
+	 * Creates a new pool that holds at most <code>maximumSize</code> distinct
+	 * lines. When the pool is full, the line that was least recently looked up
+	 * is removed from the pool.
+	 *
+	 * @param maximumSize
+	 * 			The maximum amount of distinct lines in the pool.
+	 * @return A new, empty bounded pool.
+	 * @throws IllegalArgumentException
+	 * 			When <code>maximumSize</code> is smaller than one.
+	 */
+	public static SRTTextPool createBounded(int maximumSize) {
+		if (maximumSize < 1) {
+			throw new IllegalArgumentException("maximum size must be at least one");
+			
+		}
+		
+		return new SRTTextPool(false, maximumSize);
+		
+	}
+	
+	/**
+	 * Creates a new pool that only references its lines weakly. A line is
+	 * removed from the pool by the garbage collector once no entry uses it
+	 * anymore, so the pool never holds on to memory by itself.
+	 *
+	 * @return A new, empty weak pool.
+	 */
+	public static SRTTextPool createWeak() {
+		return new SRTTextPool(true, Integer.MAX_VALUE);
+		
+	}
+	
+	/**
+	 * Returns the pooled instance of the given line. If an equal line is
+	 * already in the pool, that instance is returned and the given one can be
+	 * garbage collected. Otherwise the given line is added to the pool and
+	 * returned.
+	 *
+	 * @param line
+	 * 			The line to look up, may be <code>null</code>.
+	 * @return The pooled instance of the line, or <code>null</code> if the
+	 * 			line was <code>null</code>.
+	 */
+	public synchronized String intern(String line) {
+		if (line == null) {
+			return null;
+			
+		}
+		
+		lookups++;
+		
+		Object value = pool.get(line);
+		String pooled = null;
+		if (value != null) {
+			//A weak reference may already be cleared, the line is then added again
+			pooled = (String) (weak ? ((WeakReference<?>) value).get() : value);
+			
+		}
+		
+		if (pooled != null) {
+			if (pooled != line) {
+				hits++;
+				bytesSaved += estimateSize(line);
+				
+			}
+			return pooled;
+			
+		}
+		
+		pool.put(line, weak ? new WeakReference<>(line) : line);
+		return line;
+		
+	}
+	
+	/**
+	 * Replaces every line in the given array with its pooled instance. The
+	 * array itself is changed and returned, no copy is made.
+	 *
+	 * @param lines
+	 * 			The lines to look up, may be <code>null</code>.
+	 * @return The same array, now containing pooled lines.
+	 */
+	public String[] intern(String[] lines) {
+		if (lines != null) {
+			for (int i = 0; i < lines.length; i++) {
+				lines[i] = intern(lines[i]);
+				
+			}
+			
+		}
+		
+		return lines;
+		
+	}
+	
+	/**
+	 * Returns the estimated amount of bytes saved by this pool so far. Each
+	 * time a line is replaced by an equal, pooled line, the size of the
+	 * replaced <code>String</code> is counted as saved.
+	 *
+	 * @return The estimated amount of bytes saved.
+	 */
+	public synchronized long getBytesSaved() {
+		return this.bytesSaved;
+		
+	}
+	
+	/**
+	 * @return The amount of lines that have been looked up in this pool.
+	 */
+	public synchronized long getLookups() {
+		return this.lookups;
+		
+	}
+	
+	/**
+	 * @return The amount of lookups that were replaced by a pooled line.
+	 */
+	public synchronized long getHits() {
+		return this.hits;
+		
+	}
+	
+	/**
+	 * Returns the amount of distinct lines currently in this pool. For a weak
+	 * pool, this may include lines that are about to be garbage collected.
+	 *
+	 * @return The amount of distinct lines in this pool.
+	 */
+	public synchronized int size() {
+		return pool.size();
+		
+	}
+	
+	/**
+	 * @return The maximum size of this pool, or {@link Integer#MAX_VALUE} for
+	 * 			a weak pool.
+	 */
+	public int getMaximumSize() {
+		return this.maximumSize;
+		
+	}
+	
+	/**
+	 * @return <code>true</code> if this pool references its lines weakly.
+	 */
+	public boolean isWeak() {
+		return this.weak;
+		
+	}
+	
+	/**
+	 * Removes all lines from this pool. The statistics are kept.
+	 */
+	public synchronized void clear() {
+		pool.clear();
+		
+	}
+	
+	//Estimates the heap size of a String: object header and fields (24 bytes)
+	//plus the backing array (16 bytes header, at most two bytes per char),
+	//aligned to 8 bytes.
+	static long estimateSize(String s) {
+		long size = 24 + 16 + 2L * s.length();
+		return (size + 7) & ~7L;
+		
+	}
+	
+}
@@ -0,0 +1,192 @@
+package com.cvanbattum.api.srt;
+
+import java.util.Arrays;
+
+/**
+ * <p>A piecewise linear mapping of subtitle times, used to correct the
+ * timing of a subtitle. The mapping is defined by a list of points: a time
+ * <code>from[i]</code> of the subtitle is mapped to <code>to[i]</code>, and
+ * times between two points are interpolated linearly. Times before the first
+ * or after the last point are shifted by the same offset as that point.
+ * The mapping never goes back in time, so the order of the entries is kept
+ * when it is applied.</p>
+ *
+ * <p>A mapping is usually computed by {@link SRTAligner}, but can also be
+ * created directly, for example to convert a subtitle between frame rates
+ * (two points are enough for a linear mapping).</p>
+ *
+ * @author Casper van Battum
+ *
+ */
+public final class SRTTimeMapping {
+	
+	private final long[] from;
+	private final long[] to;
+	private final double confidence;
+	
+	/**
+	 * Creates a new mapping from a list of points. The <code>from</code>
+	 * times have to be increasing, and the <code>to</code> times may not
+	 * decrease.
+	 *
+	 * @param from
+	 * 			The original times in milliseconds.
+	 * @param to
+	 * 			The new times in milliseconds.
+	 * @throws IllegalArgumentException
+	 * 			When the arrays differ in length, the <code>from</code> times
+	 * 			are not increasing or the <code>to</code> times decrease.
+	 */
+	public SRTTimeMapping(long[] from, long[] to) {
+		this(from.clone(), to.clone(), 1);
+		
+	}
+	
+	SRTTimeMapping(long[] from, long[] to, double confidence) {
+		if (from.length != to.length) {
+			throw new IllegalArgumentException("from and to must have the same length");
+			
+		}
+		for (int i = 1; i < from.length; i++) {
+			if (from[i] <= from[i - 1]) {
+				throw new IllegalArgumentException("from times must be increasing");
+				
+			}
+			if (to[i] < to[i - 1]) {
+				throw new IllegalArgumentException("to times may not decrease");
+				
+			}
+			
+		}
+		
+		this.from = from;
+		this.to = to;
+		this.confidence = confidence;
+		
+	}
+	
+	/**
+	 * Creates a mapping that shifts every time by the same offset.
+	 *
+	 * @param offset The offset in milliseconds.
+	 * @return A new mapping.
+	 */
+	public static SRTTimeMapping createOffset(long offset) {
+		return new SRTTimeMapping(new long[] {0}, new long[] {offset}, 1);
+		
+	}
+	
+	/**
+	 * Maps a time of the subtitle to the corrected time.
+	 *
+	 * @param time The time in milliseconds.
+	 * @return The corrected time in milliseconds, never smaller than zero.
+	 */
+	public long map(long time) {
+		if (from.length == 0) {
+			return time;
+			
+		}
+		
+		int i = Arrays.binarySearch(from, time);
+		long result;
+		if (i >= 0) {
+			result = to[i];
+			
+		}
+		else {
+			i = -i - 1;
+			if (i == 0) {
+				result = time + (to[0] - from[0]);
+				
+			}
+			else if (i == from.length) {
+				result = time + (to[i - 1] - from[i - 1]);
+				
+			}
+			else {
+				//Interpolate between the points before and after the time
+				double f = (double) (time - from[i - 1]) / (from[i] - from[i - 1]);
+				result = to[i - 1] + Math.round(f * (to[i] - to[i - 1]));
+				
+			}
+			
+		}
+		
+		return Math.max(0, result);
+		
+	}
+	
+	/**
+	 * Applies this mapping to all entries of the subtitle. When this mapping
+	 * is a single offset, the entries are shifted using
+	 * {@link SRTSubtitle#shiftTimes(int, int, long)}. Entries that would end
+	 * up with a duration of zero are made one millisecond long.
+	 *
+	 * @param subtitle The subtitle to change.
+	 */
+	public void apply(SRTSubtitle subtitle) {
+		if (from.length == 1) {
+			long offset = to[0] - from[0];
+			long firstStart = Long.MAX_VALUE;
+			for (SRTEntry e : subtitle) {
+				firstStart = Math.min(firstStart, e.getStartTime());
+				
+			}
+			
+			//Entries that would start before zero are clamped one by one below
+			if (subtitle.isEmpty() || firstStart + offset >= 0) {
+				subtitle.shiftTimes(0, subtitle.size(), offset);
+				return;
+				
+			}
+			
+		}
+		
+		for (SRTEntry e : subtitle) {
+			long start = map(e.getStartTime());
+			long end = Math.max(start + 1, map(e.getEndTime()));
+			e.setTimes(start, end);
+			
+		}
+		
+	}
+	
+	/**
+	 * Returns how sure {@link SRTAligner} is about this mapping, as a number
+	 * between 0 and 1. It is the average share of the cues in the subtitle
+	 * that matched cues in the reference. Mappings created directly have a
+	 * confidence of 1.
+	 *
+	 * @return The confidence of this mapping.
+	 */
+	public double getConfidence() {
+		return this.confidence;
+		
+	}
+	
+	/**
+	 * @return The amount of points defining this mapping.
+	 */
+	public int getPointCount() {
+		return from.length;
+		
+	}
+	
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder("SRTTimeMapping[");
+		for (int i = 0; i < from.length; i++) {
+			if (i > 0) {
+				sb.append(", ");
+				
+			}
+			sb.append(from[i]).append("->").append(to[i]);
+			
+		}
+		
+		return sb.append(']').toString();
+		
+	}
+	
+}
@@ -0,0 +1,430 @@
+package com.cvanbattum.api.srt;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * <p>Checks the timing of a complete subtitle and repairs it if asked to.
+ * {@link #validate(SRTSubtitle)} finds overlapping entries, entries out of
+ * order, entries shown too short or with too much text to read in time,
+ * duplicate entries and gaps too small to notice, and reports them as
+ * {@link SRTDiagnostic}s. Duplicates are looked for among the entries next
+ * to each other with the same start time, which in a sorted subtitle are all
+ * of them.</p>
+ *
+ * <p>All checks are done in one pass over the entries, so validating is
+ * cheap enough to do after every edit.</p>
+ *
+ * @author Casper van Battum
+ *
+ */
+public class SRTValidator {
+	
+	/**
+	 * Sorts the entries by their start time.
+	 */
+	public static final int FIX_SORT = 0b0001;
+	/**
+	 * Removes duplicate entries, and merges overlapping or touching entries
+	 * with the same text into one.
+	 */
+	public static final int FIX_MERGE = 0b0010;
+	/**
+	 * Ends entries earlier so they do not overlap the next entry. Entries
+	 * starting at the same time are shown one after the other instead,
+	 * dividing the time they are shown together.
+	 */
+	public static final int FIX_CLAMP = 0b0100;
+	/**
+	 * Makes entries that are too short longer, as far as the next entry
+	 * allows.
+	 */
+	public static final int FIX_EXTEND = 0b1000;
+	/**
+	 * All fixes.
+	 */
+	public static final int FIX_ALL = FIX_SORT | FIX_MERGE | FIX_CLAMP | FIX_EXTEND;
+	
+	private static final Comparator<SRTEntry> START_ORDER = new Comparator<SRTEntry>() {
+		
+		@Override
+		public int compare(SRTEntry e1, SRTEntry e2) {
+			return Long.compare(e1.getStartTime(), e2.getStartTime());
+			
+		}
+		
+	};
+	
+	private long minDuration = 700;
+	private long minGap = 0;
+	private double maxCharsPerSecond = 21;
+	
+	/**
+	 * Creates a new <code>SRTValidator</code> with the default limits: a
+	 * minimum duration of 700 ms, no minimum gap and at most 21 characters per
+	 * second.
+	 */
+	public SRTValidator() {
+		super();
+		
+	}
+	
+	/**
+	 * @param minDuration
+	 * 			The minimum time an entry is shown in milliseconds.
+	 */
+	public void setMinDuration(long minDuration) {
+		this.minDuration = minDuration;
+		
+	}
+	
+	/**
+	 * @param minGap
+	 * 			The minimum time between the end of an entry and the start of
+	 * 			the next in milliseconds, or zero to allow entries to follow
+	 * 			each other directly.
+	 */
+	public void setMinGap(long minGap) {
+		this.minGap = minGap;
+		
+	}
+	
+	/**
+	 * @param maxCharsPerSecond
+	 * 			The maximum amount of characters per second that can be read.
+	 * 			Formatting tags are not counted.
+	 */
+	public void setMaxCharsPerSecond(double maxCharsPerSecond) {
+		this.maxCharsPerSecond = maxCharsPerSecond;
+		
+	}
+	
+	/**
+	 * Checks the subtitle and returns the problems found, ordered by the
+	 * index of the entry.
+	 *
+	 * @param subtitle The subtitle to check.
+	 * @return The problems found, an empty list if there are none.
+	 */
+	public List<SRTDiagnostic> validate(SRTSubtitle subtitle) {
+		ArrayList<SRTDiagnostic> diagnostics = new ArrayList<>();
+		
+		//The latest end and start of all entries so far, and the entries they
+		//belong to
+		long maxEnd = Long.MIN_VALUE;
+		int maxEndIndex = -1;
+		long maxStart = Long.MIN_VALUE;
+		int maxStartIndex = -1;
+		
+		//The first of the entries before this one with the same start time
+		final int size = subtitle.size();
+		int runStart = 0;
+		long previousStart = Long.MIN_VALUE;
+		
+		for (int i = 0; i < size; i++) {
+			SRTEntry e = subtitle.get(i);
+			final long start = e.getStartTime();
+			final long end = e.getEndTime();
+			final long duration = end - start;
+			
+			if (start < maxStart) {
+				diagnostics.add(new SRTDiagnostic(SRTDiagnostic.OUT_OF_ORDER, i, maxStartIndex, maxStart - start));
+				
+			}
+			
+			if (start != previousStart) {
+				runStart = i;
+				previousStart = start;
+				
+			}
+			int duplicate = findDuplicate(subtitle, runStart, i);
+			
+			if (duplicate >= 0) {
+				diagnostics.add(new SRTDiagnostic(SRTDiagnostic.DUPLICATE, i, duplicate, 0));
+				
+			}
+			else if (start < maxEnd) {
+				diagnostics.add(new SRTDiagnostic(SRTDiagnostic.OVERLAP, i, maxEndIndex, Math.min(maxEnd, end) - start));
+				
+			}
+			else if (maxEndIndex >= 0 && start - maxEnd < minGap) {
+				diagnostics.add(new SRTDiagnostic(SRTDiagnostic.GAP_TOO_SMALL, i, maxEndIndex, start - maxEnd));
+				
+			}
+			
+			if (duration < minDuration) {
+				diagnostics.add(new SRTDiagnostic(SRTDiagnostic.TOO_SHORT, i, -1, duration));
+				
+			}
+			
+			//Tags are not counted, so the length of the text is enough as
+			//long as it can be read in time
+			String[] text = e.getText();
+			final double readable = maxCharsPerSecond * duration;
+			int chars = length(text);
+			if (chars * 1000.0 > readable && (chars = countCharacters(text)) * 1000.0 > readable) {
+				diagnostics.add(new SRTDiagnostic(SRTDiagnostic.READING_SPEED, i, -1, Math.round(chars * 1000.0 / duration)));
+				
+			}
+			
+			if (end > maxEnd) {
+				maxEnd = end;
+				maxEndIndex = i;
+				
+			}
+			if (start > maxStart) {
+				maxStart = start;
+				maxStartIndex = i;
+				
+			}
+			
+		}
+		
+		return diagnostics;
+		
+	}
+	
+	/**
+	 * Repairs the subtitle in place and checks it again. The fixes are done
+	 * in the order sort, merge, clamp and extend, and only change the times
+	 * of entries or remove entries; text is never changed. Problems that
+	 * cannot be fixed automatically, like a too high reading speed, are
+	 * returned.<br>
+	 * <br>
+	 * The subtitle is not published, call {@link SRTSubtitle#publish()}
+	 * afterwards to make the changes visible to readers.
+	 *
+	 * @param subtitle
+	 * 			The subtitle to repair.
+	 * @param fixes
+	 * 			The fixes to apply, a combination of the <code>FIX_</code>
+	 * 			constants.
+	 * @return The problems left after repairing.
+	 */
+	public List<SRTDiagnostic> fix(SRTSubtitle subtitle, int fixes) {
+		if ((fixes & FIX_SORT) != 0 && ! isSorted(subtitle)) {
+			//Stable, so entries with the same start keep their order
+			Collections.sort(subtitle, START_ORDER);
+			
+		}
+		
+		if ((fixes & FIX_MERGE) != 0) {
+			merge(subtitle);
+			
+		}
+		
+		final int size = subtitle.size();
+		if ((fixes & (FIX_CLAMP | FIX_EXTEND)) != 0) {
+			for (int i = 0; i < size; i++) {
+				if ((fixes & FIX_CLAMP) != 0) {
+					stagger(subtitle, i);
+					
+				}
+				
+				SRTEntry e = subtitle.get(i);
+				final long start = e.getStartTime();
+				long end = e.getEndTime();
+				//The latest this entry may end without touching the next
+				long limit = (i + 1 < size) ? subtitle.get(i + 1).getStartTime() - minGap : Long.MAX_VALUE;
+				
+				if ((fixes & FIX_CLAMP) != 0 && end > limit && limit > start) {
+					end = limit;
+					
+				}
+				
+				if ((fixes & FIX_EXTEND) != 0 && end - start < minDuration) {
+					end = Math.max(end, Math.min(start + minDuration, limit));
+					
+				}
+				
+				if (end != e.getEndTime()) {
+					e.setEndTime(end);
+					
+				}
+				
+			}
+			
+		}
+		
+		return validate(subtitle);
+		
+	}
+	
+	/*
+	 * Shows the entries starting at the same time as the entry at the given
+	 * index (or too shortly after it to end it before them) one after the
+	 * other. The time from the start to the latest end of these entries, up
+	 * to the next entry, is divided equally between them. When there is too
+	 * little time to divide, nothing is changed.
+	 */
+	private void stagger(SRTSubtitle subtitle, int index) {
+		final int size = subtitle.size();
+		final long start = subtitle.get(index).getStartTime();
+		
+		int next = index + 1;
+		long end = subtitle.get(index).getEndTime();
+		while (next < size && subtitle.get(next).getStartTime() - minGap <= start) {
+			end = Math.max(end, subtitle.get(next).getEndTime());
+			next++;
+			
+		}
+		
+		final int count = next - index;
+		if (count == 1) {
+			return;
+			
+		}
+		if (next < size) {
+			end = Math.min(end, subtitle.get(next).getStartTime() - minGap);
+			
+		}
+		
+		final long slot = (end - start) / count;
+		if (slot <= minGap) {
+			return;
+			
+		}
+		
+		for (int k = 0; k < count; k++) {
+			long s = start + k * slot;
+			long e = (k == count - 1) ? end : s + slot - minGap;
+			subtitle.get(index + k).setTimes(s, e);
+			
+		}
+		
+	}
+	
+	/*
+	 * Removes duplicates and merges entries with the same text that overlap
+	 * or touch, keeping the first entry and extending its end. Entries are
+	 * compacted in place, so the whole pass is linear.
+	 */
+	private static void merge(SRTSubtitle subtitle) {
+		final int size = subtitle.size();
+		if (size < 2) {
+			return;
+			
+		}
+		
+		int kept = 0;
+		for (int i = 1; i < size; i++) {
+			SRTEntry last = subtitle.get(kept);
+			SRTEntry e = subtitle.get(i);
+			if (e.getStartTime() <= last.getEndTime() && e.getStartTime() >= last.getStartTime() && Arrays.equals(last.getText(), e.getText())) {
+				if (e.getEndTime() > last.getEndTime()) {
+					last.setEndTime(e.getEndTime());
+					
+				}
+				
+			}
+			else {
+				subtitle.set(++kept, e);
+				
+			}
+			
+		}
+		
+		subtitle.subList(kept + 1, size).clear();
+		
+	}
+	
+	private static boolean isSorted(SRTSubtitle subtitle) {
+		for (int i = 1; i < subtitle.size(); i++) {
+			if (subtitle.get(i).getStartTime() < subtitle.get(i - 1).getStartTime()) {
+				return false;
+				
+			}
+			
+		}
+		
+		return true;
+		
+	}
+	
+	//Gives the nearest earlier entry of the run of entries with the same start
+	//time that is a duplicate of the entry at the given index, or -1 if there
+	//is none. Most runs are one entry long, so nothing is compared
+	private static int findDuplicate(SRTSubtitle subtitle, int runStart, int index) {
+		if (runStart == index) {
+			return -1;
+			
+		}
+		
+		SRTEntry e = subtitle.get(index);
+		for (int k = index - 1; k >= runStart; k--) {
+			if (isDuplicate(subtitle.get(k), e)) {
+				return k;
+				
+			}
+			
+		}
+		
+		return -1;
+		
+	}
+	
+	private static boolean isDuplicate(SRTEntry e1, SRTEntry e2) {
+		return e1.getStartTime() == e2.getStartTime() && e1.getEndTime() == e2.getEndTime() && Arrays.equals(e1.getText(), e2.getText());
+		
+	}
+	
+	//The length of the lines, at least the amount of characters shown
+	private static int length(String[] text) {
+		if (text == null) {
+			return 0;
+			
+		}
+		
+		int length = 0;
+		for (String line : text) {
+			if (line != null) {
+				length += line.length();
+				
+			}
+			
+		}
+		
+		return length;
+		
+	}
+	
+	//Counts the characters shown, without formatting tags and line breaks
+	private static int countCharacters(String[] text) {
+		if (text == null) {
+			return 0;
+			
+		}
+		
+		int count = 0;
+		for (String line : text) {
+			if (line == null) {
+				continue;
+				
+			}
+			
+			final int length = line.length();
+			for (int i = 0; i < length; i++) {
+				char c = line.charAt(i);
+				if (c == '<' || c == '{') {
+					int close = line.indexOf(c == '<' ? '>' : '}', i + 1);
+					if (close > 0) {
+						i = close;
+						continue;
+						
+					}
+					
+				}
+				count++;
+				
+			}
+			
+		}
+		
+		return count;
+		
+	}
+	
+}
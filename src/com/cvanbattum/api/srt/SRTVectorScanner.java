@@ -0,0 +1,168 @@
+package com.cvanbattum.api.srt;
+
+import java.nio.ByteBuffer;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * <p>The {@link SRTByteScanner} using the Vector API: compares as many bytes
+ * at once as the processor has in a vector register, 16 to 64. Only loaded
+ * by {@link SRTByteScanner#get()} when the incubator module
+ * <code>jdk.incubator.vector</code> is there.</p>
+ *
+ * <p>The vectors are loaded from arrays, which works the same on every JDK
+ * version with the module. The bytes of a direct or mapped buffer are copied
+ * into an array first, which only pays off for longer ranges: the first
+ * bytes are searched by {@link SRTByteScanner#SWAR}, and the rest is copied
+ * a few vectors at a time, growing while nothing is found.</p>
+ *
+ * @author Casper van Battum
+ *
+ */
+final class SRTVectorScanner extends SRTByteScanner {
+	
+	private static final VectorSpecies<Byte> SPECIES = ByteVector.SPECIES_PREFERRED;
+	private static final int LENGTH = SPECIES.length();
+	
+	//Bytes of a direct buffer searched without copying, most lines are shorter
+	private static final int SWAR_SEARCH = 128;
+	//The first and largest amount of bytes copied from a direct buffer
+	private static final int FIRST_COPY = 4 * LENGTH;
+	private static final int COPY_SIZE = 8192;
+	
+	private static final ThreadLocal<byte[]> COPIES = new ThreadLocal<byte[]>() {
+		
+		@Override
+		protected byte[] initialValue() {
+			return new byte[COPY_SIZE];
+			
+		}
+		
+	};
+	
+	//Only created by SRTByteScanner
+	SRTVectorScanner() {
+		super();
+		
+	}
+	
+	@Override
+	int indexOf(ByteBuffer b, byte value, int from, int to) {
+		return find(b, value, value, from, to);
+		
+	}
+	
+	@Override
+	int indexOfLineBreak(ByteBuffer b, int from, int to) {
+		return find(b, (byte) '\n', (byte) '\r', from, to);
+		
+	}
+	
+	@Override
+	int count(ByteBuffer b, byte value, int from, int to) {
+		if (b.hasArray()) {
+			return count(b.array(), b.arrayOffset(), value, from, to);
+			
+		}
+		
+		byte[] copy = COPIES.get();
+		int count = 0;
+		for (int i = from; i < to; i += COPY_SIZE) {
+			int n = Math.min(COPY_SIZE, to - i);
+			b.get(i, copy, 0, n);
+			count += count(copy, 0, value, 0, n);
+			
+		}
+		
+		return count;
+		
+	}
+	
+	@Override
+	public String toString() {
+		return "vector" + (LENGTH * 8);
+		
+	}
+	
+	//The first byte equal to either value
+	private static int find(ByteBuffer b, byte value, byte other, int from, int to) {
+		if (b.hasArray()) {
+			int found = find(b.array(), b.arrayOffset() + from, value, other, to - from);
+			return (found < 0) ? -1 : from + found;
+			
+		}
+		
+		int end = Math.min(to, from + SWAR_SEARCH);
+		int found = (value == other) ? SWAR.indexOf(b, value, from, end) : SWAR.indexOfLineBreak(b, from, end);
+		if (found >= 0 || end == to) {
+			return found;
+			
+		}
+		
+		//Copy a little first and more while not found
+		byte[] copy = COPIES.get();
+		int size = FIRST_COPY;
+		for (int i = end; i < to; i += size, size = Math.min(COPY_SIZE, size * 2)) {
+			int n = Math.min(size, to - i);
+			b.get(i, copy, 0, n);
+			found = find(copy, 0, value, other, n);
+			if (found >= 0) {
+				return i + found;
+				
+			}
+			
+		}
+		
+		return -1;
+		
+	}
+	
+	//The index after offset of the first byte equal to either value
+	private static int find(byte[] a, int offset, byte value, byte other, int length) {
+		int i = 0;
+		for (int bound = SPECIES.loopBound(length); i < bound; i += LENGTH) {
+			ByteVector v = ByteVector.fromArray(SPECIES, a, offset + i);
+			VectorMask<Byte> found = v.eq(value).or(v.eq(other));
+			if (found.anyTrue()) {
+				return i + found.firstTrue();
+				
+			}
+			
+		}
+		
+		for (; i < length; i++) {
+			byte c = a[offset + i];
+			if (c == value || c == other) {
+				return i;
+				
+			}
+			
+		}
+		
+		return -1;
+		
+	}
+	
+	private static int count(byte[] a, int offset, byte value, int from, int to) {
+		int count = 0;
+		int i = from;
+		for (int bound = from + SPECIES.loopBound(to - from); i < bound; i += LENGTH) {
+			count += ByteVector.fromArray(SPECIES, a, offset + i).eq(value).trueCount();
+			
+		}
+		
+		for (; i < to; i++) {
+			if (a[offset + i] == value) {
+				count++;
+				
+			}
+			
+		}
+		
+		return count;
+		
+	}
+	
+}
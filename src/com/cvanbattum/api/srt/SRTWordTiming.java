@@ -0,0 +1,363 @@
+package com.cvanbattum.api.srt;
+
+import java.util.Arrays;
+
+/**
+ * <p>The timing of the separate words (or syllables) of an
+ * {@link SRTEntry}, for karaoke style lyrics where every word is highlighted
+ * when it is sung. Each word is a range of characters in the text of the
+ * entry and a start and end time relative to the start of the entry.</p>
+ *
+ * <p>Character offsets count through all lines of the entry as if they were
+ * joined by a single line break, so the first character of the second line
+ * is at the length of the first line plus one. The words are stored in two
+ * packed arrays, ordered by start time, and a timing is immutable.</p>
+ *
+ * @author Casper van Battum
+ *
+ */
+public final class SRTWordTiming {
+	
+	//Begin and end character offset of every word
+	private final int[] offsets;
+	//Start and end time of every word, relative to the entry
+	private final int[] times;
+	
+	/**
+	 * Creates a new <code>SRTWordTiming</code> from packed arrays. For word
+	 * <code>i</code>, <code>offsets[2i]</code> and <code>offsets[2i + 1]</code>
+	 * are the begin (inclusive) and end (exclusive) character offsets, and
+	 * <code>times[2i]</code> and <code>times[2i + 1]</code> the start and end
+	 * time in milliseconds after the start of the entry.
+	 *
+	 * @param offsets
+	 * 			The character offsets of the words.
+	 * @param times
+	 * 			The times of the words, ordered by start time.
+	 * @throws IllegalArgumentException
+	 * 			When the arrays do not have the same even length, a word
+	 * 			ends before it begins or the words are not ordered by start
+	 * 			time.
+	 */
+	public SRTWordTiming(int[] offsets, int[] times) {
+		if (offsets.length != times.length || (offsets.length & 1) != 0) {
+			throw new IllegalArgumentException("offsets and times must have the same, even length");
+			
+		}
+		for (int i = 0; i < offsets.length; i += 2) {
+			if (offsets[i] < 0 || offsets[i + 1] < offsets[i]) {
+				throw new IllegalArgumentException("invalid character offsets of word " + (i / 2));
+				
+			}
+			if (times[i] < 0 || times[i + 1] < times[i]) {
+				throw new IllegalArgumentException("invalid times of word " + (i / 2));
+				
+			}
+			if (i > 0 && times[i] < times[i - 2]) {
+				throw new IllegalArgumentException("words must be ordered by start time");
+				
+			}
+			
+		}
+		
+		this.offsets = offsets.clone();
+		this.times = times.clone();
+		
+	}
+	
+	/**
+	 * Creates a timing for the words of the text, dividing the duration over
+	 * the words by their amount of characters. Useful when no word timing is
+	 * known, to still show the progress through the lines.
+	 *
+	 * @param duration
+	 * 			The duration of the entry in milliseconds.
+	 * @param text
+	 * 			The lines of the entry.
+	 * @return The timing of the words.
+	 */
+	public static SRTWordTiming createEven(long duration, String... text) {
+		int[] offsets = new int[8];
+		int words = 0;
+		int characters = 0;
+		
+		int base = 0;
+		for (String line : text) {
+			int i = 0;
+			while (i < line.length()) {
+				while (i < line.length() && Character.isWhitespace(line.charAt(i))) {
+					i++;
+					
+				}
+				int begin = i;
+				while (i < line.length() && ! Character.isWhitespace(line.charAt(i))) {
+					i++;
+					
+				}
+				
+				if (i > begin) {
+					if (2 * words + 2 > offsets.length) {
+						offsets = Arrays.copyOf(offsets, offsets.length * 2);
+						
+					}
+					offsets[2 * words] = base + begin;
+					offsets[2 * words + 1] = base + i;
+					characters += i - begin;
+					words++;
+					
+				}
+				
+			}
+			base += line.length() + 1;
+			
+		}
+		
+		offsets = Arrays.copyOf(offsets, 2 * words);
+		int[] times = new int[2 * words];
+		int done = 0;
+		for (int w = 0; w < words; w++) {
+			times[2 * w] = (int) (duration * done / characters);
+			done += offsets[2 * w + 1] - offsets[2 * w];
+			times[2 * w + 1] = (int) (duration * done / characters);
+			
+		}
+		
+		return new SRTWordTiming(offsets, times);
+		
+	}
+	
+	/**
+	 * <p>Reads the karaoke tags of an entry, like those of ASS subtitles:
+	 * <code>{\k50}Twin{\k30}kle</code> means "Twin" is sung for 50
+	 * hundredths of a second, followed by "kle" for 30 hundredths. The tags
+	 * <code>\K</code>, <code>\kf</code> and <code>\ko</code> are read the
+	 * same way.</p>
+	 *
+	 * <p>The tags are removed from the text of the entry, and the timing is
+	 * set on the entry. Entries without karaoke tags are not changed.</p>
+	 *
+	 * @param entry
+	 * 			The entry to read the tags of.
+	 * @return The timing of the entry, or <code>null</code> if it has no
+	 * 			karaoke tags.
+	 */
+	public static SRTWordTiming parseKaraoke(SRTEntry entry) {
+		String[] text = entry.getText();
+		if (text == null) {
+			return null;
+			
+		}
+		
+		String[] stripped = new String[text.length];
+		int[] offsets = new int[8];
+		int[] times = new int[8];
+		int words = 0;
+		
+		StringBuilder sb = new StringBuilder();
+		int base = 0;
+		int time = 0;
+		for (int l = 0; l < text.length; l++) {
+			String line = text[l];
+			if (line == null) {
+				//Counts as an empty line
+				base++;
+				continue;
+				
+			}
+			sb.setLength(0);
+			
+			//The syllable being read, ended by the next tag or the line end
+			int begin = -1;
+			int duration = 0;
+			int i = 0;
+			while (i <= line.length()) {
+				int close = -1;
+				int centiseconds = -1;
+				if (i < line.length() && line.charAt(i) == '{') {
+					close = line.indexOf('}', i);
+					if (close > 0) {
+						centiseconds = karaokeDuration(line, i + 1, close);
+						
+					}
+					
+				}
+				
+				if (i == line.length() || centiseconds >= 0) {
+					if (begin >= 0) {
+						if (2 * words + 2 > offsets.length) {
+							offsets = Arrays.copyOf(offsets, offsets.length * 2);
+							times = Arrays.copyOf(times, times.length * 2);
+							
+						}
+						offsets[2 * words] = base + begin;
+						offsets[2 * words + 1] = base + sb.length();
+						times[2 * words] = time;
+						times[2 * words + 1] = time + duration;
+						time += duration;
+						words++;
+						
+					}
+					if (i == line.length()) {
+						break;
+						
+					}
+					
+					begin = sb.length();
+					duration = centiseconds * 10;
+					i = close + 1;
+					
+				}
+				else {
+					sb.append(line.charAt(i++));
+					
+				}
+				
+			}
+			
+			stripped[l] = sb.toString();
+			base += sb.length() + 1;
+			
+		}
+		
+		if (words == 0) {
+			return null;
+			
+		}
+		
+		SRTWordTiming timing = new SRTWordTiming(Arrays.copyOf(offsets, 2 * words), Arrays.copyOf(times, 2 * words));
+		entry.setText(stripped);
+		entry.setWordTiming(timing);
+		return timing;
+		
+	}
+	
+	//Reads the duration of a {\kNN} tag between from and to, or -1
+	private static int karaokeDuration(String s, int from, int to) {
+		int i = s.indexOf("\\k", from);
+		if (i < 0 || i >= to) {
+			i = s.indexOf("\\K", from);
+			
+		}
+		if (i < 0 || i >= to) {
+			return -1;
+			
+		}
+		
+		i += 2;
+		if (i < to && (s.charAt(i) == 'f' || s.charAt(i) == 'o')) {
+			i++;
+			
+		}
+		
+		int value = 0;
+		int digits = 0;
+		while (i < to && s.charAt(i) >= '0' && s.charAt(i) <= '9') {
+			value = value * 10 + (s.charAt(i++) - '0');
+			digits++;
+			
+		}
+		
+		return (digits == 0) ? -1 : value;
+		
+	}
+	
+	/**
+	 * @return The amount of words.
+	 */
+	public int getWordCount() {
+		return offsets.length / 2;
+		
+	}
+	
+	/**
+	 * @param word The index of the word.
+	 * @return The offset of the first character of the word.
+	 */
+	public int getBegin(int word) {
+		return offsets[2 * word];
+		
+	}
+	
+	/**
+	 * @param word The index of the word.
+	 * @return The offset after the last character of the word.
+	 */
+	public int getEnd(int word) {
+		return offsets[2 * word + 1];
+		
+	}
+	
+	/**
+	 * @param word The index of the word.
+	 * @return The start time of the word in milliseconds after the start of
+	 * 			the entry.
+	 */
+	public int getStartTime(int word) {
+		return times[2 * word];
+		
+	}
+	
+	/**
+	 * @param word The index of the word.
+	 * @return The end time of the word in milliseconds after the start of
+	 * 			the entry.
+	 */
+	public int getEndTime(int word) {
+		return times[2 * word + 1];
+		
+	}
+	
+	/**
+	 * Returns the last word started at the given time.
+	 *
+	 * @param time
+	 * 			The time in milliseconds after the start of the entry.
+	 * @return The index of the word, or <code>-1</code> if no word has
+	 * 			started yet.
+	 */
+	public int wordAt(long time) {
+		int lo = 0;
+		int hi = offsets.length / 2;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (times[2 * mid] <= time) {
+				lo = mid + 1;
+				
+			}
+			else {
+				hi = mid;
+				
+			}
+			
+		}
+		
+		return lo - 1;
+		
+	}
+	
+	/**
+	 * Returns how far the given word has been sung at the given time.
+	 *
+	 * @param word
+	 * 			The index of the word.
+	 * @param time
+	 * 			The time in milliseconds after the start of the entry.
+	 * @return A number from 0 (not started) to 1 (finished).
+	 */
+	public float getProgress(int word, long time) {
+		int start = times[2 * word];
+		int end = times[2 * word + 1];
+		if (time <= start) {
+			return 0;
+			
+		}
+		if (time >= end) {
+			return 1;
+			
+		}
+		
+		return (float) (time - start) / (end - start);
+		
+	}
+	
+}
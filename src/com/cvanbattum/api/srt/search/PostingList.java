@@ -0,0 +1,158 @@
+package com.cvanbattum.api.srt.search;
+
+import java.util.Arrays;
+
+/*
+ * The entries containing a term, with the positions of the term in each
+ * entry. The list is stored as variable length integers in a byte array:
+ * for every entry the difference with the previous entry id, the amount of
+ * positions, and the differences between the positions. Entry ids have to be
+ * added in increasing order.
+ */
+final class PostingList {
+	
+	private byte[] data = new byte[8];
+	private int length;
+	private int count;
+	private int lastId = -1;
+	
+	void add(int id, int[] positions, int positionCount) {
+		if (id <= lastId) {
+			throw new IllegalArgumentException("ids must be added in increasing order");
+			
+		}
+		
+		writeVarInt(id - lastId);
+		writeVarInt(positionCount);
+		int last = 0;
+		for (int i = 0; i < positionCount; i++) {
+			writeVarInt(positions[i] - last);
+			last = positions[i];
+			
+		}
+		
+		lastId = id;
+		count++;
+		
+	}
+	
+	//The amount of entries in this list
+	int count() {
+		return count;
+		
+	}
+	
+	//The size of the encoded list in bytes
+	int byteSize() {
+		return length;
+		
+	}
+	
+	Reader reader() {
+		return new Reader();
+		
+	}
+	
+	private void writeVarInt(int value) {
+		if (length + 5 > data.length) {
+			data = Arrays.copyOf(data, data.length * 2);
+			
+		}
+		
+		while ((value & ~0x7F) != 0) {
+			data[length++] = (byte) ((value & 0x7F) | 0x80);
+			value >>>= 7;
+			
+		}
+		data[length++] = (byte) value;
+		
+	}
+	
+	/*
+	 * Reads the list from the start. Call next() to move to the next entry,
+	 * after which id() and the positions are valid.
+	 */
+	final class Reader {
+		
+		private int offset;
+		private int id = -1;
+		private int[] positions = new int[4];
+		private int positionCount;
+		
+		boolean next() {
+			if (offset >= length) {
+				id = Integer.MAX_VALUE;
+				return false;
+				
+			}
+			
+			id += readVarInt();
+			positionCount = readVarInt();
+			if (positionCount > positions.length) {
+				positions = new int[Math.max(positionCount, positions.length * 2)];
+				
+			}
+			int last = 0;
+			for (int i = 0; i < positionCount; i++) {
+				last += readVarInt();
+				positions[i] = last;
+				
+			}
+			
+			return true;
+			
+		}
+		
+		//Moves to the first entry with an id of at least target
+		boolean advance(int target) {
+			while (id < target) {
+				if (! next()) {
+					return false;
+					
+				}
+				
+			}
+			
+			return true;
+			
+		}
+		
+		int id() {
+			return id;
+			
+		}
+		
+		boolean hasPosition(int position) {
+			return Arrays.binarySearch(positions, 0, positionCount, position) >= 0;
+			
+		}
+		
+		int positionCount() {
+			return positionCount;
+			
+		}
+		
+		int position(int i) {
+			return positions[i];
+			
+		}
+		
+		private int readVarInt() {
+			int value = 0;
+			int shift = 0;
+			byte b;
+			do {
+				b = data[offset++];
+				value |= (b & 0x7F) << shift;
+				shift += 7;
+				
+			}
+			while (b < 0);
+			
+			return value;
+			
+		}
+		
+	}
+	
+}
@@ -0,0 +1,1017 @@
+package com.cvanbattum.api.srt.search;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.cvanbattum.api.srt.SRTEntry;
+import com.cvanbattum.api.srt.SRTReader;
+import com.cvanbattum.api.srt.SRTSubtitle;
+
+/**
+ * <p>A persistent search index over a library of SRT files, used to find
+ * which file and which time contains a quote. The index is stored in a
+ * directory and maps every term (see {@link SRTTokenizer}) to the entries
+ * containing it, as (file, entry, start time, end time).</p>
+ *
+ * <p>The index consists of segments. Every call to {@link #update(Collection)}
+ * parses only the new and changed files, in parallel, and writes them to a
+ * new segment. A changed file gets a new id, so the entries of changed or
+ * deleted files in older segments are skipped when searching, and are
+ * removed when the segments are merged (which happens automatically when
+ * there are more than {@value #MAX_SEGMENTS} segments). Segments are memory
+ * mapped when the index is opened, so searching reads directly from the file
+ * system cache. As a mapped file cannot always be deleted, the segments
+ * replaced by a merge are deleted the next time the index is opened.</p>
+ *
+ * <p>Searching can be done by several threads at once, but not while the
+ * index is being updated.</p>
+ *
+ * @author Casper van Battum
+ *
+ */
+public class SRTLibraryIndex implements Closeable {
+	
+	/**
+	 * The maximum amount of segments before they are merged into one.
+	 */
+	public static final int MAX_SEGMENTS = 8;
+	
+	private static final int MANIFEST_MAGIC = 0x5352544D;	//"SRTM"
+	private static final int SEGMENT_MAGIC = 0x53525449;	//"SRTI"
+	private static final int FORMAT_VERSION = 2;
+	private static final String MANIFEST = "manifest";
+	
+	private final File directory;
+	private final int threads;
+	
+	private int nextSegment;
+	private int nextFileId;
+	private final ArrayList<Segment> segments = new ArrayList<>();
+	//Segments replaced by a merge, deleted when the index is opened again
+	private final ArrayList<Integer> obsolete = new ArrayList<>();
+	//Indexed files by path, and by id for the files that are still current
+	private final LinkedHashMap<String, FileRecord> files = new LinkedHashMap<>();
+	private final HashMap<Integer, FileRecord> filesById = new HashMap<>();
+	
+	/**
+	 * Opens the index stored in the given directory, or creates a new, empty
+	 * index if the directory does not contain one. Files are parsed by as
+	 * many threads as there are processors.
+	 *
+	 * @param directory The directory of the index.
+	 * @throws IOException When the index cannot be read.
+	 */
+	public SRTLibraryIndex(File directory) throws IOException {
+		this(directory, Runtime.getRuntime().availableProcessors());
+		
+	}
+	
+	/**
+	 * Opens the index stored in the given directory, or creates a new, empty
+	 * index if the directory does not contain one.
+	 *
+	 * @param directory
+	 * 			The directory of the index.
+	 * @param threads
+	 * 			The amount of threads used to parse files.
+	 * @throws IOException When the index cannot be read.
+	 */
+	public SRTLibraryIndex(File directory, int threads) throws IOException {
+		if (threads < 1) {
+			throw new IllegalArgumentException("at least one thread is needed");
+			
+		}
+		
+		this.directory = directory;
+		this.threads = threads;
+		
+		if (! directory.isDirectory() && ! directory.mkdirs()) {
+			throw new IOException("Cannot create index directory " + directory);
+			
+		}
+		
+		File manifest = new File(directory, MANIFEST);
+		if (manifest.exists()) {
+			readManifest(manifest);
+			if (deleteObsolete()) {
+				writeManifest();
+				
+			}
+			
+		}
+		
+	}
+	
+	//--------\\
+	//INDEXING\\
+	
+	/**
+	 * Brings the index up to date with the given files. Files that are not
+	 * in the index yet, or that have changed since they were indexed (their
+	 * size or modification time differs), are parsed and written to a new
+	 * segment. Indexed files that no longer exist are removed from the index.
+	 * Files that cannot be parsed are skipped.
+	 *
+	 * @param library The SRT files that should be in the index.
+	 * @return The amount of files that were (re)indexed.
+	 * @throws IOException When the index cannot be written.
+	 */
+	public int update(Collection<File> library) throws IOException {
+		//Find what has to be parsed
+		ArrayList<File> changed = new ArrayList<>();
+		for (File f : library) {
+			FileRecord r = files.get(f.getAbsolutePath());
+			if (r == null || r.modified != f.lastModified() || r.length != f.length()) {
+				changed.add(f);
+				
+			}
+			
+		}
+		
+		boolean removedAny = false;
+		Iterator<FileRecord> it = files.values().iterator();
+		while (it.hasNext()) {
+			FileRecord r = it.next();
+			if (! new File(r.path).exists()) {
+				filesById.remove(r.id);
+				it.remove();
+				removedAny = true;
+				
+			}
+			
+		}
+		
+		if (! changed.isEmpty()) {
+			writeSegment(parse(changed));
+			
+		}
+		else if (removedAny) {
+			writeManifest();
+			
+		}
+		
+		if (segments.size() > MAX_SEGMENTS) {
+			merge();
+			
+		}
+		
+		return changed.size();
+		
+	}
+	
+	/**
+	 * Removes a file from the index.
+	 *
+	 * @param file The file to remove.
+	 * @throws IOException When the index cannot be written.
+	 */
+	public void remove(File file) throws IOException {
+		FileRecord r = files.remove(file.getAbsolutePath());
+		if (r != null) {
+			filesById.remove(r.id);
+			writeManifest();
+			
+		}
+		
+	}
+	
+	/**
+	 * Merges all segments into one, leaving out the entries of files that
+	 * were changed or removed. The files of the old segments are still
+	 * mapped, they are deleted the next time the index is opened.
+	 *
+	 * @throws IOException When the index cannot be written.
+	 */
+	public void merge() throws IOException {
+		if (segments.isEmpty()) {
+			return;
+			
+		}
+		
+		SegmentWriter writer = new SegmentWriter();
+		TermCursor[] cursors = new TermCursor[segments.size()];
+		for (int i = 0; i < cursors.length; i++) {
+			cursors[i] = new TermCursor(segments.get(i));
+			
+		}
+		
+		//All segments are sorted by term, so merge them term by term
+		while (true) {
+			byte[] term = null;
+			for (TermCursor c : cursors) {
+				if (c.hasTerm() && (term == null || compare(c.term(), term) < 0)) {
+					term = c.term();
+					
+				}
+				
+			}
+			if (term == null) {
+				break;
+				
+			}
+			
+			Postings merged = new Postings();
+			for (TermCursor c : cursors) {
+				if (c.hasTerm() && compare(c.term(), term) == 0) {
+					c.copyLivePostings(merged);
+					c.nextTerm();
+					
+				}
+				
+			}
+			if (merged.size > 0) {
+				writer.add(term, merged);
+				
+			}
+			
+		}
+		
+		for (Segment s : segments) {
+			obsolete.add(s.id);
+			
+		}
+		segments.clear();
+		writeSegment(writer);
+		
+	}
+	
+	//Deletes the segment files replaced by a merge, returns whether any were
+	//deleted. Files that cannot be deleted yet are tried again next time.
+	private boolean deleteObsolete() {
+		boolean deleted = false;
+		Iterator<Integer> it = obsolete.iterator();
+		while (it.hasNext()) {
+			File f = segmentFile(it.next());
+			if (! f.exists() || f.delete()) {
+				it.remove();
+				deleted = true;
+				
+			}
+			
+		}
+		
+		return deleted;
+		
+	}
+	
+	//Parses the files in parallel and collects their postings
+	private SegmentWriter parse(List<File> changed) throws IOException {
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, changed.size()));
+		try {
+			ArrayList<Future<SRTSubtitle>> results = new ArrayList<>(changed.size());
+			for (final File f : changed) {
+				results.add(executor.submit(new Callable<SRTSubtitle>() {
+					
+					@Override
+					public SRTSubtitle call() throws IOException {
+						return SRTReader.read(f);
+						
+					}
+					
+				}));
+				
+			}
+			
+			//Add the postings in a fixed order, so they are sorted by file id
+			SegmentWriter writer = new SegmentWriter();
+			for (int i = 0; i < changed.size(); i++) {
+				File f = changed.get(i);
+				String path = f.getAbsolutePath();
+				
+				SRTSubtitle subtitle;
+				try {
+					subtitle = results.get(i).get();
+					
+				}
+				catch (ExecutionException e) {
+					//Unreadable files are left out, an older version is kept
+					continue;
+					
+				}
+				
+				FileRecord old = files.remove(path);
+				if (old != null) {
+					filesById.remove(old.id);
+					
+				}
+				
+				FileRecord r = new FileRecord(nextFileId++, path, f.lastModified(), f.length());
+				files.put(path, r);
+				filesById.put(r.id, r);
+				
+				for (int e = 0; e < subtitle.size(); e++) {
+					SRTEntry entry = subtitle.get(e);
+					for (String term : new HashSet<>(SRTTokenizer.tokenize(entry.getText()))) {
+						writer.add(term, r.id, e, entry.getStartTime(), entry.getEndTime());
+						
+					}
+					
+				}
+				
+			}
+			
+			return writer;
+			
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while indexing", e);
+			
+		}
+		finally {
+			executor.shutdownNow();
+			
+		}
+		
+	}
+	
+	//---------\\
+	//SEARCHING\\
+	
+	/**
+	 * Returns all entries in the library containing every word of the
+	 * query, in any order.
+	 *
+	 * @param query The words to search for.
+	 * @return The matching entries, sorted by file and start time.
+	 */
+	public List<Hit> search(String query) {
+		ArrayList<Hit> result = new ArrayList<>();
+		LinkedHashSet<String> terms = new LinkedHashSet<>(SRTTokenizer.tokenize(query));
+		if (terms.isEmpty()) {
+			return result;
+			
+		}
+		
+		byte[][] keys = new byte[terms.size()][];
+		int i = 0;
+		for (String term : terms) {
+			keys[i++] = term.getBytes(StandardCharsets.UTF_8);
+			
+		}
+		
+		//All entries of a file are in the same segment, so every segment can
+		//be searched on its own
+		for (Segment s : segments) {
+			s.search(keys, result);
+			
+		}
+		
+		Collections.sort(result, new Comparator<Hit>() {
+			
+			@Override
+			public int compare(Hit a, Hit b) {
+				int c = a.file.compareTo(b.file);
+				if (c == 0) {
+					c = Long.compare(a.startTime, b.startTime);
+					
+				}
+				return (c != 0) ? c : Integer.compare(a.entry, b.entry);
+				
+			}
+			
+		});
+		
+		return result;
+		
+	}
+	
+	/**
+	 * @return The amount of files in the index.
+	 */
+	public int getFileCount() {
+		return files.size();
+		
+	}
+	
+	/**
+	 * @return The amount of segments the index consists of.
+	 */
+	public int getSegmentCount() {
+		return segments.size();
+		
+	}
+	
+	/**
+	 * Closes the index. The memory mapped segments are released once they are
+	 * garbage collected.
+	 */
+	@Override
+	public void close() {
+		segments.clear();
+		
+	}
+	
+	//--------------------\\
+	//MANIFEST AND SEGMENTS\\
+	
+	private void readManifest(File manifest) throws IOException {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(manifest)))) {
+			if (in.readInt() != MANIFEST_MAGIC || in.readInt() != FORMAT_VERSION) {
+				throw new IOException("Not a supported index: " + directory);
+				
+			}
+			
+			nextSegment = in.readInt();
+			nextFileId = in.readInt();
+			
+			int segmentCount = in.readInt();
+			for (int i = 0; i < segmentCount; i++) {
+				segments.add(new Segment(in.readInt()));
+				
+			}
+			
+			int obsoleteCount = in.readInt();
+			for (int i = 0; i < obsoleteCount; i++) {
+				obsolete.add(in.readInt());
+				
+			}
+			
+			int fileCount = in.readInt();
+			for (int i = 0; i < fileCount; i++) {
+				FileRecord r = new FileRecord(in.readInt(), in.readUTF(), in.readLong(), in.readLong());
+				files.put(r.path, r);
+				filesById.put(r.id, r);
+				
+			}
+			
+		}
+		
+	}
+	
+	//Writes the manifest to a temporary file first, so a crash never leaves
+	//a half written manifest behind
+	private void writeManifest() throws IOException {
+		File temp = new File(directory, MANIFEST + ".tmp");
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+			out.writeInt(MANIFEST_MAGIC);
+			out.writeInt(FORMAT_VERSION);
+			out.writeInt(nextSegment);
+			out.writeInt(nextFileId);
+			
+			out.writeInt(segments.size());
+			for (Segment s : segments) {
+				out.writeInt(s.id);
+				
+			}
+			
+			out.writeInt(obsolete.size());
+			for (int id : obsolete) {
+				out.writeInt(id);
+				
+			}
+			
+			out.writeInt(files.size());
+			for (FileRecord r : files.values()) {
+				out.writeInt(r.id);
+				out.writeUTF(r.path);
+				out.writeLong(r.modified);
+				out.writeLong(r.length);
+				
+			}
+			
+		}
+		
+		Files.move(temp.toPath(), new File(directory, MANIFEST).toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		
+	}
+	
+	private void writeSegment(SegmentWriter writer) throws IOException {
+		int id = nextSegment++;
+		writer.write(segmentFile(id));
+		segments.add(new Segment(id));
+		writeManifest();
+		
+	}
+	
+	private File segmentFile(int id) {
+		return new File(directory, "segment-" + id + ".idx");
+		
+	}
+	
+	//Compares UTF-8 encoded terms as unsigned bytes, which is the order of
+	//the terms in a segment
+	private static int compare(byte[] a, byte[] b) {
+		int n = Math.min(a.length, b.length);
+		for (int i = 0; i < n; i++) {
+			int c = (a[i] & 0xFF) - (b[i] & 0xFF);
+			if (c != 0) {
+				return c;
+				
+			}
+			
+		}
+		
+		return a.length - b.length;
+		
+	}
+	
+	/**
+	 * An entry found by {@link SRTLibraryIndex#search(String)}.
+	 */
+	public static final class Hit {
+		
+		private final String file;
+		private final int entry;
+		private final long startTime;
+		private final long endTime;
+		
+		Hit(String file, int entry, long startTime, long endTime) {
+			this.file = file;
+			this.entry = entry;
+			this.startTime = startTime;
+			this.endTime = endTime;
+			
+		}
+		
+		/**
+		 * @return The absolute path of the file containing the entry.
+		 */
+		public String getFile() {
+			return this.file;
+			
+		}
+		
+		/**
+		 * @return The index of the entry in the file, starting at 0.
+		 */
+		public int getEntry() {
+			return this.entry;
+			
+		}
+		
+		/**
+		 * @return The start time of the entry in milliseconds.
+		 */
+		public long getStartTime() {
+			return this.startTime;
+			
+		}
+		
+		/**
+		 * @return The end time of the entry in milliseconds.
+		 */
+		public long getEndTime() {
+			return this.endTime;
+			
+		}
+		
+		@Override
+		public boolean equals(Object o) {
+			if (! (o instanceof Hit)) {
+				return false;
+				
+			}
+			
+			Hit h = (Hit) o;
+			return entry == h.entry && file.equals(h.file);
+			
+		}
+		
+		@Override
+		public int hashCode() {
+			return file.hashCode() * 31 + entry;
+			
+		}
+		
+		@Override
+		public String toString() {
+			return file + " #" + (entry + 1) + " @ " + startTime + "-" + endTime;
+			
+		}
+		
+	}
+	
+	private static final class FileRecord {
+		
+		final int id;
+		final String path;
+		final long modified;
+		final long length;
+		
+		FileRecord(int id, String path, long modified, long length) {
+			this.id = id;
+			this.path = path;
+			this.modified = modified;
+			this.length = length;
+			
+		}
+		
+	}
+	
+	/*
+	 * A memory mapped segment file. The layout is:
+	 *
+	 *		int magic, int version, int termCount
+	 *		int[termCount] offsets of the terms, sorted by term
+	 *		for every term:
+	 *			short length, byte[length] UTF-8 term
+	 *			int count
+	 *			count * (int fileId, int entry, long startTime, int duration)
+	 *
+	 * The postings of a term are sorted by file id and entry.
+	 */
+	private final class Segment {
+		
+		static final int POSTING_SIZE = 20;
+		
+		final int id;
+		final File file;
+		final MappedByteBuffer buffer;
+		final int termCount;
+		
+		Segment(int id) throws IOException {
+			this.id = id;
+			this.file = segmentFile(id);
+			
+			try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+				buffer = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+				
+			}
+			
+			if (buffer.getInt(0) != SEGMENT_MAGIC || buffer.getInt(4) != FORMAT_VERSION) {
+				throw new IOException("Not a supported segment: " + file);
+				
+			}
+			termCount = buffer.getInt(8);
+			
+		}
+		
+		int termOffset(int i) {
+			return buffer.getInt(12 + 4 * i);
+			
+		}
+		
+		//Gives the offset of the term, or -1 if this segment does not have it
+		int find(byte[] key) {
+			int lo = 0;
+			int hi = termCount - 1;
+			while (lo <= hi) {
+				int mid = (lo + hi) >>> 1;
+				int c = compareAt(termOffset(mid), key);
+				if (c < 0) {
+					lo = mid + 1;
+					
+				}
+				else if (c > 0) {
+					hi = mid - 1;
+					
+				}
+				else {
+					return termOffset(mid);
+					
+				}
+				
+			}
+			
+			return -1;
+			
+		}
+		
+		/*
+		 * Adds the entries containing all terms to the result. The posting
+		 * lists are intersected starting with the shortest one, looking up
+		 * each of its postings in the other lists. As the lists are sorted,
+		 * a lookup only searches forward from the previous one.
+		 */
+		void search(byte[][] keys, List<Hit> result) {
+			final int n = keys.length;
+			int[] lists = new int[n];
+			int[] counts = new int[n];
+			for (int i = 0; i < n; i++) {
+				int offset = find(keys[i]);
+				if (offset < 0) {
+					return;
+					
+				}
+				int p = offset + 2 + keys[i].length;
+				counts[i] = buffer.getInt(p);
+				lists[i] = p + 4;
+				
+			}
+			
+			//Sort the lists by length, shortest first
+			for (int i = 1; i < n; i++) {
+				for (int k = i; k > 0 && counts[k] < counts[k - 1]; k--) {
+					swap(counts, k, k - 1);
+					swap(lists, k, k - 1);
+					
+				}
+				
+			}
+			
+			int[] from = new int[n];
+			outer:
+			for (int k = 0; k < counts[0]; k++) {
+				int p = lists[0] + k * POSTING_SIZE;
+				FileRecord r = filesById.get(buffer.getInt(p));
+				if (r == null) {
+					//Changed files get a new id, so the entries of the old
+					//version of a file are skipped here
+					continue;
+					
+				}
+				
+				long key = keyAt(p);
+				for (int i = 1; i < n; i++) {
+					from[i] = seek(lists[i], counts[i], from[i], key);
+					if (from[i] == counts[i]) {
+						return;
+						
+					}
+					if (keyAt(lists[i] + from[i] * POSTING_SIZE) != key) {
+						continue outer;
+						
+					}
+					
+				}
+				
+				long start = buffer.getLong(p + 8);
+				result.add(new Hit(r.path, buffer.getInt(p + 4), start, start + buffer.getInt(p + 16)));
+				
+			}
+			
+		}
+		
+		//Gives the file id and entry of the posting at p as one sortable key
+		private long keyAt(int p) {
+			return ((long) buffer.getInt(p) << 32) | (buffer.getInt(p + 4) & 0xFFFFFFFFL);
+			
+		}
+		
+		//Gives the index of the first posting from the given index on with a
+		//key of at least the given key, or count if there is none. The step
+		//doubles until the key is passed, followed by a binary search.
+		private int seek(int list, int count, int from, long key) {
+			int step = 1;
+			int hi = from;
+			while (hi < count && keyAt(list + hi * POSTING_SIZE) < key) {
+				from = hi + 1;
+				hi += step;
+				step <<= 1;
+				
+			}
+			hi = Math.min(hi, count);
+			
+			while (from < hi) {
+				int mid = (from + hi) >>> 1;
+				if (keyAt(list + mid * POSTING_SIZE) < key) {
+					from = mid + 1;
+					
+				}
+				else {
+					hi = mid;
+					
+				}
+				
+			}
+			
+			return from;
+			
+		}
+		
+		private void swap(int[] a, int i, int k) {
+			int t = a[i];
+			a[i] = a[k];
+			a[k] = t;
+			
+		}
+		
+		//Compares the term at the offset with the key, without copying it
+		private int compareAt(int offset, byte[] key) {
+			int length = buffer.getShort(offset) & 0xFFFF;
+			int n = Math.min(length, key.length);
+			for (int i = 0; i < n; i++) {
+				int c = (buffer.get(offset + 2 + i) & 0xFF) - (key[i] & 0xFF);
+				if (c != 0) {
+					return c;
+					
+				}
+				
+			}
+			
+			return length - key.length;
+			
+		}
+		
+	}
+	
+	//Walks through the terms of a segment in order, used for merging
+	private final class TermCursor {
+		
+		private final Segment segment;
+		private int index;
+		private byte[] term;
+		
+		TermCursor(Segment segment) {
+			this.segment = segment;
+			load();
+			
+		}
+		
+		boolean hasTerm() {
+			return term != null;
+			
+		}
+		
+		byte[] term() {
+			return term;
+			
+		}
+		
+		void nextTerm() {
+			index++;
+			load();
+			
+		}
+		
+		void copyLivePostings(Postings target) {
+			MappedByteBuffer b = segment.buffer;
+			int p = segment.termOffset(index) + 2 + term.length;
+			int count = b.getInt(p);
+			p += 4;
+			for (int i = 0; i < count; i++, p += Segment.POSTING_SIZE) {
+				FileRecord r = filesById.get(b.getInt(p));
+				if (r != null) {
+					target.add(r.id, b.getInt(p + 4), b.getLong(p + 8), b.getInt(p + 16));
+					
+				}
+				
+			}
+			
+		}
+		
+		private void load() {
+			if (index >= segment.termCount) {
+				term = null;
+				return;
+				
+			}
+			
+			int offset = segment.termOffset(index);
+			term = new byte[segment.buffer.getShort(offset) & 0xFFFF];
+			for (int i = 0; i < term.length; i++) {
+				term[i] = segment.buffer.get(offset + 2 + i);
+				
+			}
+			
+		}
+		
+	}
+	
+	//A growing list of postings of one term
+	private static final class Postings {
+		
+		int size;
+		int[] fileIds = new int[4];
+		int[] entries = new int[4];
+		long[] startTimes = new long[4];
+		int[] durations = new int[4];
+		
+		void add(int fileId, int entry, long startTime, int duration) {
+			if (size == fileIds.length) {
+				fileIds = Arrays.copyOf(fileIds, size * 2);
+				entries = Arrays.copyOf(entries, size * 2);
+				startTimes = Arrays.copyOf(startTimes, size * 2);
+				durations = Arrays.copyOf(durations, size * 2);
+				
+			}
+			
+			fileIds[size] = fileId;
+			entries[size] = entry;
+			startTimes[size] = startTime;
+			durations[size] = duration;
+			size++;
+			
+		}
+		
+	}
+	
+	//Collects the postings of a new segment in memory and writes them sorted
+	private static final class SegmentWriter {
+		
+		private final HashMap<String, Postings> terms = new HashMap<>();
+		private final ArrayList<byte[]> mergedTerms = new ArrayList<>();
+		private final ArrayList<Postings> mergedPostings = new ArrayList<>();
+		
+		void add(String term, int fileId, int entry, long startTime, long endTime) {
+			Postings p = terms.get(term);
+			if (p == null) {
+				p = new Postings();
+				terms.put(term, p);
+				
+			}
+			p.add(fileId, entry, startTime, (int) Math.min(Integer.MAX_VALUE, endTime - startTime));
+			
+		}
+		
+		//Used when merging, the terms are given in order
+		void add(byte[] term, Postings postings) {
+			mergedTerms.add(term);
+			mergedPostings.add(postings);
+			
+		}
+		
+		void write(File file) throws IOException {
+			final ArrayList<byte[]> keys = new ArrayList<>(mergedTerms);
+			final ArrayList<Postings> values = new ArrayList<>(mergedPostings);
+			
+			if (! terms.isEmpty()) {
+				final HashMap<byte[], Postings> byKey = new HashMap<>();
+				for (Map.Entry<String, Postings> e : terms.entrySet()) {
+					byte[] key = e.getKey().getBytes(StandardCharsets.UTF_8);
+					if (key.length > 0xFFFF) {
+						continue;
+						
+					}
+					keys.add(key);
+					byKey.put(key, e.getValue());
+					
+				}
+				Collections.sort(keys, new Comparator<byte[]>() {
+					
+					@Override
+					public int compare(byte[] a, byte[] b) {
+						return SRTLibraryIndex.compare(a, b);
+						
+					}
+					
+				});
+				for (byte[] key : keys) {
+					values.add(byKey.get(key));
+					
+				}
+				
+			}
+			
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16))) {
+				out.writeInt(SEGMENT_MAGIC);
+				out.writeInt(FORMAT_VERSION);
+				out.writeInt(keys.size());
+				
+				//Offsets of the terms
+				long offset = 12 + 4L * keys.size();
+				for (int i = 0; i < keys.size(); i++) {
+					if (offset > Integer.MAX_VALUE) {
+						throw new IOException("Segment too large");
+						
+					}
+					out.writeInt((int) offset);
+					offset += 2 + keys.get(i).length + 4 + (long) Segment.POSTING_SIZE * values.get(i).size;
+					
+				}
+				
+				for (int i = 0; i < keys.size(); i++) {
+					byte[] key = keys.get(i);
+					Postings p = values.get(i);
+					
+					out.writeShort(key.length);
+					out.write(key);
+					out.writeInt(p.size);
+					for (int k = 0; k < p.size; k++) {
+						out.writeInt(p.fileIds[k]);
+						out.writeInt(p.entries[k]);
+						out.writeLong(p.startTimes[k]);
+						out.writeInt(p.durations[k]);
+						
+					}
+					
+				}
+				
+			}
+			
+		}
+		
+	}
+	
+}
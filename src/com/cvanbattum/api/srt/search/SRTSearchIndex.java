@@ -0,0 +1,674 @@
+package com.cvanbattum.api.srt.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import com.cvanbattum.api.srt.SRTEntry;
+import com.cvanbattum.api.srt.SRTSubtitle;
+
+/**
+ * <p>A full-text index over the text of the entries of a
+ * {@link SRTSubtitle}. The index maps every term (see {@link SRTTokenizer})
+ * to a compressed list of the entries containing it, so searching does not
+ * have to go through the text of every entry.</p>
+ *
+ * <p>Three kinds of queries are supported: entries containing all given
+ * words ({@link #search(String)}), entries containing the words as a phrase
+ * ({@link #searchPhrase(String)}) and entries containing a word starting
+ * with a prefix ({@link #searchPrefix(String)}). Every query can be limited
+ * to the entries shown in a time range. Results are sorted by start
+ * time.</p>
+ *
+ * <p>The index is kept up to date with the subtitle using
+ * {@link #add(SRTEntry)}, {@link #remove(SRTEntry)} and
+ * {@link #update(SRTEntry)} for single edits, or {@link #refresh()} to find
+ * all changes at once. Only the changed entries are indexed again.</p>
+ *
+ * <p>The index also keeps the times of the entries, as they were when the
+ * entries were indexed, to find the entries shown in a time range without
+ * going through the posting lists. When the times of entries are changed,
+ * call {@link #update(SRTEntry)} or {@link #refresh()} for the time ranges
+ * to see the change.</p>
+ *
+ * @author Casper van Battum
+ *
+ */
+public class SRTSearchIndex {
+	
+	//Rebuild the index when more ids are unused than this, and more than used
+	private static final int COMPACT_THRESHOLD = 1024;
+	
+	private final SRTSubtitle subtitle;
+	
+	private final TreeMap<String, PostingList> terms = new TreeMap<>();
+	private final IdentityHashMap<SRTEntry, Integer> ids = new IdentityHashMap<>();
+	//Entries and the text they were indexed with, by id. Ids of removed or
+	//changed entries are never reused until the index is compacted.
+	private final ArrayList<SRTEntry> entries = new ArrayList<>();
+	private final ArrayList<String[]> indexedText = new ArrayList<>();
+	private final BitSet removed = new BitSet();
+	private int removedCount;
+	//Times of the entries when they were indexed, by id
+	private long[] startTimes = new long[16];
+	private long[] endTimes = new long[16];
+	private long maxDuration;
+	
+	//The time index: the ids of all entries sorted by start time, with their
+	//start times. Built on the first time range query after a change.
+	private int[] idsByStart;
+	private long[] sortedStarts;
+	
+	private int[] positions = new int[16];
+	
+	/**
+	 * Creates a new index containing all entries of the given subtitle.
+	 *
+	 * @param subtitle The subtitle to index.
+	 */
+	public SRTSearchIndex(SRTSubtitle subtitle) {
+		this.subtitle = subtitle;
+		
+		for (SRTEntry entry : subtitle) {
+			add(entry);
+			
+		}
+		
+	}
+	
+	//-------\\
+	//UPDATES\\
+	
+	/**
+	 * Adds an entry that was added to the subtitle to this index. Adding an
+	 * entry that is already in the index has the same effect as
+	 * {@link #update(SRTEntry)}.
+	 *
+	 * @param entry The entry to add.
+	 */
+	public void add(SRTEntry entry) {
+		if (ids.containsKey(entry)) {
+			update(entry);
+			return;
+			
+		}
+		
+		index(entry);
+		
+	}
+	
+	/**
+	 * Removes an entry that was removed from the subtitle from this index.
+	 *
+	 * @param entry The entry to remove.
+	 */
+	public void remove(SRTEntry entry) {
+		Integer id = ids.remove(entry);
+		if (id != null) {
+			markRemoved(id);
+			compactIfNeeded();
+			
+		}
+		
+	}
+	
+	/**
+	 * Indexes the text of an entry again, after it has been changed.
+	 *
+	 * @param entry The entry of which the text was changed.
+	 */
+	public void update(SRTEntry entry) {
+		Integer id = ids.remove(entry);
+		if (id != null) {
+			markRemoved(id);
+			
+		}
+		
+		index(entry);
+		compactIfNeeded();
+		
+	}
+	
+	/**
+	 * Compares the index with the current content of the subtitle, and
+	 * indexes only what has changed: new entries are added, removed entries
+	 * are removed and entries with changed text are indexed again.
+	 */
+	public void refresh() {
+		IdentityHashMap<SRTEntry, Boolean> present = new IdentityHashMap<>(subtitle.size() * 2);
+		for (SRTEntry entry : subtitle) {
+			present.put(entry, Boolean.TRUE);
+			
+			Integer id = ids.get(entry);
+			if (id == null) {
+				index(entry);
+				
+			}
+			else if (! sameLines(entry.getText(), indexedText.get(id))) {
+				update(entry);
+				
+			}
+			else if (entry.getStartTime() != startTimes[id] || entry.getEndTime() != endTimes[id]) {
+				setTimes(id, entry);
+				
+			}
+			
+		}
+		
+		Iterator<Map.Entry<SRTEntry, Integer>> it = ids.entrySet().iterator();
+		while (it.hasNext()) {
+			Map.Entry<SRTEntry, Integer> e = it.next();
+			if (! present.containsKey(e.getKey())) {
+				markRemoved(e.getValue());
+				it.remove();
+				
+			}
+			
+		}
+		
+		compactIfNeeded();
+		
+	}
+	
+	//-------\\
+	//QUERIES\\
+	
+	/**
+	 * Returns all entries containing every word of the query, in any order.
+	 *
+	 * @param query The words to search for.
+	 * @return The matching entries, sorted by start time.
+	 */
+	public List<SRTEntry> search(String query) {
+		return search(query, Long.MIN_VALUE, Long.MAX_VALUE);
+		
+	}
+	
+	/**
+	 * Returns all entries shown between <code>fromTime</code> (inclusive)
+	 * and <code>toTime</code> (exclusive) containing every word of the query,
+	 * in any order.
+	 *
+	 * @param query
+	 * 			The words to search for.
+	 * @param fromTime
+	 * 			The start of the time range in milliseconds.
+	 * @param toTime
+	 * 			The end of the time range in milliseconds.
+	 * @return The matching entries, sorted by start time.
+	 */
+	public List<SRTEntry> search(String query, long fromTime, long toTime) {
+		return intersect(SRTTokenizer.tokenize(query), false, fromTime, toTime);
+		
+	}
+	
+	/**
+	 * Returns all entries containing the words of the query next to each
+	 * other and in the same order.
+	 *
+	 * @param phrase The phrase to search for.
+	 * @return The matching entries, sorted by start time.
+	 */
+	public List<SRTEntry> searchPhrase(String phrase) {
+		return searchPhrase(phrase, Long.MIN_VALUE, Long.MAX_VALUE);
+		
+	}
+	
+	/**
+	 * Returns all entries shown between <code>fromTime</code> (inclusive)
+	 * and <code>toTime</code> (exclusive) containing the words of the query
+	 * next to each other and in the same order.
+	 *
+	 * @param phrase
+	 * 			The phrase to search for.
+	 * @param fromTime
+	 * 			The start of the time range in milliseconds.
+	 * @param toTime
+	 * 			The end of the time range in milliseconds.
+	 * @return The matching entries, sorted by start time.
+	 */
+	public List<SRTEntry> searchPhrase(String phrase, long fromTime, long toTime) {
+		return intersect(SRTTokenizer.tokenize(phrase), true, fromTime, toTime);
+		
+	}
+	
+	/**
+	 * Returns all entries containing a word that starts with the given
+	 * prefix.
+	 *
+	 * @param prefix The start of the word to search for.
+	 * @return The matching entries, sorted by start time.
+	 */
+	public List<SRTEntry> searchPrefix(String prefix) {
+		return searchPrefix(prefix, Long.MIN_VALUE, Long.MAX_VALUE);
+		
+	}
+	
+	/**
+	 * Returns all entries shown between <code>fromTime</code> (inclusive)
+	 * and <code>toTime</code> (exclusive) containing a word that starts with
+	 * the given prefix.
+	 *
+	 * @param prefix
+	 * 			The start of the word to search for.
+	 * @param fromTime
+	 * 			The start of the time range in milliseconds.
+	 * @param toTime
+	 * 			The end of the time range in milliseconds.
+	 * @return The matching entries, sorted by start time.
+	 */
+	public List<SRTEntry> searchPrefix(String prefix, long fromTime, long toTime) {
+		String p = SRTTokenizer.normalize(prefix);
+		SortedMap<String, PostingList> range = p.isEmpty() ? terms : terms.subMap(p, p + Character.MAX_VALUE);
+		
+		//Check the text of the entries in the time range if there are fewer
+		//of them than postings to go through
+		int[] shown = shownBetween(fromTime, toTime);
+		if (shown != null && shown.length < countPostings(range.values(), shown.length)) {
+			ArrayList<SRTEntry> result = new ArrayList<>();
+			for (int id : shown) {
+				for (String token : SRTTokenizer.tokenize(indexedText.get(id))) {
+					if (token.startsWith(p)) {
+						result.add(entries.get(id));
+						break;
+						
+					}
+					
+				}
+				
+			}
+			return result;
+			
+		}
+		
+		BitSet matches = new BitSet(entries.size());
+		for (PostingList list : range.values()) {
+			PostingList.Reader reader = list.reader();
+			while (reader.next()) {
+				matches.set(reader.id());
+				
+			}
+			
+		}
+		
+		ArrayList<SRTEntry> result = new ArrayList<>();
+		for (int id = matches.nextSetBit(0); id >= 0; id = matches.nextSetBit(id + 1)) {
+			addIfShown(result, id, fromTime, toTime);
+			
+		}
+		return sortByTime(result);
+		
+	}
+	
+	/**
+	 * @return The amount of distinct terms in this index.
+	 */
+	public int getTermCount() {
+		return terms.size();
+		
+	}
+	
+	/**
+	 * @return The amount of entries in this index.
+	 */
+	public int size() {
+		return ids.size();
+		
+	}
+	
+	/**
+	 * @return The subtitle indexed by this index.
+	 */
+	public SRTSubtitle getSubtitle() {
+		return this.subtitle;
+		
+	}
+	
+	//Finds the entries containing all terms, and if phrase is true, in order
+	private List<SRTEntry> intersect(List<String> query, boolean phrase, long fromTime, long toTime) {
+		ArrayList<SRTEntry> result = new ArrayList<>();
+		if (query.isEmpty()) {
+			return result;
+			
+		}
+		
+		PostingList.Reader[] readers = new PostingList.Reader[query.size()];
+		int rarest = Integer.MAX_VALUE;
+		for (int i = 0; i < readers.length; i++) {
+			PostingList list = terms.get(query.get(i));
+			if (list == null) {
+				return result;
+				
+			}
+			readers[i] = list.reader();
+			rarest = Math.min(rarest, list.count());
+			
+		}
+		
+		//Check the text of the entries in the time range if there are fewer
+		//of them than entries containing the rarest term
+		int[] shown = shownBetween(fromTime, toTime);
+		if (shown != null && shown.length < rarest) {
+			for (int id : shown) {
+				List<String> tokens = SRTTokenizer.tokenize(indexedText.get(id));
+				if (phrase ? Collections.indexOfSubList(tokens, query) >= 0 : tokens.containsAll(query)) {
+					result.add(entries.get(id));
+					
+				}
+				
+			}
+			return result;
+			
+		}
+		
+		//Move all readers to the same id, which then contains all terms
+		if (! readers[0].next()) {
+			return result;
+			
+		}
+		int candidate = readers[0].id();
+		while (true) {
+			boolean all = true;
+			for (PostingList.Reader r : readers) {
+				if (! r.advance(candidate)) {
+					return sortByTime(result);
+					
+				}
+				if (r.id() > candidate) {
+					candidate = r.id();
+					all = false;
+					break;
+					
+				}
+				
+			}
+			
+			if (all) {
+				if (! phrase || isPhrase(readers)) {
+					addIfShown(result, candidate, fromTime, toTime);
+					
+				}
+				candidate++;
+				
+			}
+			
+		}
+		
+	}
+	
+	//Checks whether the terms of the readers follow each other in the entry
+	//the readers are at
+	private static boolean isPhrase(PostingList.Reader[] readers) {
+		PostingList.Reader first = readers[0];
+		for (int i = 0; i < first.positionCount(); i++) {
+			int start = first.position(i);
+			
+			boolean match = true;
+			for (int k = 1; k < readers.length && match; k++) {
+				match = readers[k].hasPosition(start + k);
+				
+			}
+			if (match) {
+				return true;
+				
+			}
+			
+		}
+		
+		return false;
+		
+	}
+	
+	private void addIfShown(List<SRTEntry> result, int id, long fromTime, long toTime) {
+		if (! removed.get(id) && startTimes[id] < toTime && endTimes[id] > fromTime) {
+			result.add(entries.get(id));
+			
+		}
+		
+	}
+	
+	//Gives the ids of the entries shown between the times, sorted by start
+	//time, or null if the range contains all times
+	private int[] shownBetween(long fromTime, long toTime) {
+		if (fromTime == Long.MIN_VALUE && toTime == Long.MAX_VALUE) {
+			return null;
+			
+		}
+		if (idsByStart == null) {
+			buildTimeIndex();
+			
+		}
+		
+		//No entry is longer than maxDuration, so an entry still shown at
+		//fromTime cannot start before fromTime - maxDuration
+		long earliest = (fromTime < Long.MIN_VALUE + maxDuration) ? Long.MIN_VALUE : fromTime - maxDuration;
+		int from = firstStartingAfter(earliest);
+		int to = (toTime == Long.MIN_VALUE) ? 0 : firstStartingAfter(toTime - 1);
+		
+		int[] shown = new int[Math.max(0, to - from)];
+		int count = 0;
+		for (int i = from; i < to; i++) {
+			int id = idsByStart[i];
+			if (endTimes[id] > fromTime) {
+				shown[count++] = id;
+				
+			}
+			
+		}
+		
+		return Arrays.copyOf(shown, count);
+		
+	}
+	
+	//Gives the position in the time index of the first entry starting after
+	//the given time
+	private int firstStartingAfter(long time) {
+		int lo = 0;
+		int hi = sortedStarts.length;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (sortedStarts[mid] <= time) {
+				lo = mid + 1;
+				
+			}
+			else {
+				hi = mid;
+				
+			}
+			
+		}
+		
+		return lo;
+		
+	}
+	
+	private void buildTimeIndex() {
+		Integer[] live = ids.values().toArray(new Integer[ids.size()]);
+		Arrays.sort(live, new Comparator<Integer>() {
+			
+			@Override
+			public int compare(Integer a, Integer b) {
+				return Long.compare(startTimes[a], startTimes[b]);
+				
+			}
+			
+		});
+		
+		idsByStart = new int[live.length];
+		sortedStarts = new long[live.length];
+		for (int i = 0; i < live.length; i++) {
+			idsByStart[i] = live[i];
+			sortedStarts[i] = startTimes[live[i]];
+			
+		}
+		
+	}
+	
+	//Counts the postings of the lists, stopping once the limit is reached
+	private static int countPostings(Iterable<PostingList> lists, int limit) {
+		int count = 0;
+		for (PostingList list : lists) {
+			count += list.count();
+			if (count >= limit) {
+				break;
+				
+			}
+			
+		}
+		
+		return count;
+		
+	}
+	
+	private static List<SRTEntry> sortByTime(List<SRTEntry> result) {
+		Collections.sort(result, new Comparator<SRTEntry>() {
+			
+			@Override
+			public int compare(SRTEntry a, SRTEntry b) {
+				return Long.compare(a.getStartTime(), b.getStartTime());
+				
+			}
+			
+		});
+		
+		return result;
+		
+	}
+	
+	//--------\\
+	//INDEXING\\
+	
+	//Gives the entry a new id and adds its terms to the posting lists
+	private void index(SRTEntry entry) {
+		final int id = entries.size();
+		String[] text = entry.getText();
+		
+		entries.add(entry);
+		indexedText.add((text == null) ? null : text.clone());
+		ids.put(entry, id);
+		if (id == startTimes.length) {
+			startTimes = Arrays.copyOf(startTimes, id * 2);
+			endTimes = Arrays.copyOf(endTimes, id * 2);
+			
+		}
+		setTimes(id, entry);
+		
+		//Group the positions of each term
+		List<String> tokens = SRTTokenizer.tokenize(text);
+		HashMap<String, int[]> termPositions = new HashMap<>();
+		for (int p = 0; p < tokens.size(); p++) {
+			int[] list = termPositions.get(tokens.get(p));
+			if (list == null) {
+				//First element is the amount of positions
+				list = new int[4];
+				termPositions.put(tokens.get(p), list);
+				
+			}
+			else if (list[0] + 1 == list.length) {
+				list = Arrays.copyOf(list, list.length * 2);
+				termPositions.put(tokens.get(p), list);
+				
+			}
+			list[++list[0]] = p;
+			
+		}
+		
+		for (Map.Entry<String, int[]> e : termPositions.entrySet()) {
+			int[] list = e.getValue();
+			if (positions.length < list[0]) {
+				positions = new int[list.length];
+				
+			}
+			System.arraycopy(list, 1, positions, 0, list[0]);
+			
+			PostingList postings = terms.get(e.getKey());
+			if (postings == null) {
+				postings = new PostingList();
+				terms.put(e.getKey(), postings);
+				
+			}
+			postings.add(id, positions, list[0]);
+			
+		}
+		
+	}
+	
+	private void setTimes(int id, SRTEntry entry) {
+		startTimes[id] = entry.getStartTime();
+		endTimes[id] = entry.getEndTime();
+		maxDuration = Math.max(maxDuration, endTimes[id] - startTimes[id]);
+		idsByStart = null;
+		
+	}
+	
+	private void markRemoved(int id) {
+		removed.set(id);
+		entries.set(id, null);
+		indexedText.set(id, null);
+		removedCount++;
+		idsByStart = null;
+		
+	}
+	
+	//Rebuilds the index when most ids belong to removed entries, so the
+	//posting lists do not keep growing while editing
+	private void compactIfNeeded() {
+		if (removedCount > COMPACT_THRESHOLD && removedCount > ids.size()) {
+			ArrayList<SRTEntry> live = new ArrayList<>(ids.size());
+			for (SRTEntry e : entries) {
+				if (e != null) {
+					live.add(e);
+					
+				}
+				
+			}
+			
+			terms.clear();
+			ids.clear();
+			entries.clear();
+			indexedText.clear();
+			removed.clear();
+			removedCount = 0;
+			maxDuration = 0;
+			
+			for (SRTEntry e : live) {
+				index(e);
+				
+			}
+			
+		}
+		
+	}
+	
+	//Compares the lines by reference, as a changed line is a new String
+	private static boolean sameLines(String[] a, String[] b) {
+		if (a == null || b == null) {
+			return a == b;
+			
+		}
+		if (a.length != b.length) {
+			return false;
+			
+		}
+		for (int i = 0; i < a.length; i++) {
+			if (a[i] != b[i]) {
+				return false;
+				
+			}
+			
+		}
+		
+		return true;
+		
+	}
+	
+}
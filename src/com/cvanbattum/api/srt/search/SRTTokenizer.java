@@ -0,0 +1,136 @@
+package com.cvanbattum.api.srt.search;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * <p>Splits subtitle text into normalized search terms. A term is a
+ * sequence of letters and digits, converted to lower case and stripped of
+ * accents, so searching for "cafe" also finds "Caf&eacute;". Formatting tags used in
+ * SRT files (like <code>&lt;i&gt;</code> and <code>{\an8}</code>) are
+ * skipped.</p>
+ *
+ * <p>The same tokenizer has to be used for indexing and for searching, so
+ * the query terms are normalized in the same way as the indexed text.</p>
+ *
+ * @author Casper van Battum
+ *
+ */
+public final class SRTTokenizer {
+	
+	private SRTTokenizer() {
+		//Only static methods
+		
+	}
+	
+	/**
+	 * Splits the lines of an entry into terms. The terms of all lines are
+	 * returned in order, as if the lines were one text.
+	 *
+	 * @param lines The lines of text, may contain <code>null</code>.
+	 * @return The terms in the lines.
+	 */
+	public static List<String> tokenize(String... lines) {
+		ArrayList<String> terms = new ArrayList<>();
+		if (lines != null) {
+			StringBuilder sb = new StringBuilder();
+			for (String line : lines) {
+				if (line != null) {
+					tokenize(line, sb, terms);
+					
+				}
+				
+			}
+			
+		}
+		
+		return terms;
+		
+	}
+	
+	/**
+	 * Normalizes a single word in the same way as the terms returned by
+	 * {@link #tokenize(String...)}, without splitting it. Used for prefix
+	 * queries, where the query is not a complete term.
+	 *
+	 * @param word The word to normalize.
+	 * @return The normalized word.
+	 */
+	public static String normalize(String word) {
+		boolean ascii = true;
+		for (int i = 0; i < word.length(); i++) {
+			if (word.charAt(i) > 0x7F) {
+				ascii = false;
+				break;
+				
+			}
+			
+		}
+		
+		if (ascii) {
+			return word.toLowerCase(Locale.ROOT);
+			
+		}
+		
+		//Decompose accented characters and drop the accents
+		String decomposed = Normalizer.normalize(word, Normalizer.Form.NFD);
+		StringBuilder sb = new StringBuilder(decomposed.length());
+		for (int i = 0; i < decomposed.length(); i++) {
+			char c = decomposed.charAt(i);
+			if (Character.getType(c) != Character.NON_SPACING_MARK) {
+				sb.append(c);
+				
+			}
+			
+		}
+		
+		return sb.toString().toLowerCase(Locale.ROOT);
+		
+	}
+	
+	private static void tokenize(String line, StringBuilder sb, List<String> terms) {
+		sb.setLength(0);
+		
+		int i = 0;
+		while (i < line.length()) {
+			char c = line.charAt(i);
+			
+			//Skip formatting tags
+			if (c == '<' || c == '{') {
+				int close = line.indexOf(c == '<' ? '>' : '}', i + 1);
+				if (close > 0) {
+					addTerm(sb, terms);
+					i = close + 1;
+					continue;
+					
+				}
+				
+			}
+			
+			if (Character.isLetterOrDigit(c) || (sb.length() > 0 && Character.getType(c) == Character.NON_SPACING_MARK)) {
+				sb.append(c);
+				
+			}
+			else {
+				addTerm(sb, terms);
+				
+			}
+			i++;
+			
+		}
+		addTerm(sb, terms);
+		
+	}
+	
+	private static void addTerm(StringBuilder sb, List<String> terms) {
+		if (sb.length() > 0) {
+			terms.add(normalize(sb.toString()));
+			sb.setLength(0);
+			
+		}
+		
+	}
+	
+}
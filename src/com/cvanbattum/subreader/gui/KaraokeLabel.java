@@ -0,0 +1,263 @@
+package com.cvanbattum.subreader.gui;
+
+import java.awt.Color;
+import java.awt.DisplayMode;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.GraphicsEnvironment;
+import java.awt.HeadlessException;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.Shape;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+
+import javax.swing.JComponent;
+import javax.swing.Timer;
+
+import com.cvanbattum.api.srt.SRTEntry;
+import com.cvanbattum.api.srt.SRTWordTiming;
+
+/**
+ * <p>Shows the lines of an {@link SRTEntry} with {@link SRTWordTiming},
+ * highlighting every word from left to right while it is sung. Used by
+ * {@link SubtitlePanel} for karaoke entries.</p>
+ *
+ * <p>The highlight is animated by a Swing <code>Timer</code> running at the
+ * refresh rate of the screen. On every tick only the words whose highlight
+ * changed since the previous tick are repainted, not the whole
+ * component.</p>
+ *
+ * @author Casper van Battum
+ *
+ */
+class KaraokeLabel extends JComponent {
+	
+	private static final long serialVersionUID = 1L;
+	
+	private final Timer timer;
+	
+	private String[] text = new String[0];
+	private SRTWordTiming timing;
+	private Color highlight = Color.GREEN;
+	
+	//When the entry started, in System.nanoTime() terms
+	private long startNanos;
+	//The entry time painted last, in milliseconds
+	private long paintedTime;
+	
+	//The bounds of every word, computed when the text or size changes
+	private Rectangle[] wordBounds = new Rectangle[0];
+	private int layoutWidth = -1;
+	private int layoutHeight = -1;
+	
+	KaraokeLabel() {
+		super();
+		
+		setOpaque(false);
+		timer = new Timer(1000 / refreshRate(), new ActionListener() {
+			
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				tick();
+				
+			}
+			
+		});
+		timer.setCoalesce(true);
+		
+	}
+	
+	/*
+	 * Shows the entry, as if it started the given amount of milliseconds ago,
+	 * and starts the highlight.
+	 */
+	void play(SRTEntry entry, long elapsedMillis) {
+		this.text = entry.getText();
+		this.timing = entry.getWordTiming();
+		this.startNanos = System.nanoTime() - elapsedMillis * 1000000L;
+		this.paintedTime = elapsedMillis;
+		this.layoutWidth = -1;
+		
+		repaint();
+		if (timing != null && timing.getWordCount() > 0) {
+			timer.restart();
+			
+		}
+		
+	}
+	
+	void stop() {
+		timer.stop();
+		
+	}
+	
+	@Override
+	public void setFont(Font font) {
+		super.setFont(font);
+		layoutWidth = -1;
+		
+	}
+	
+	void setHighlight(Color highlight) {
+		this.highlight = highlight;
+		repaint();
+		
+	}
+	
+	//Repaints the words of which the highlight changed since the last tick
+	private void tick() {
+		long now = (System.nanoTime() - startNanos) / 1000000L;
+		long last = paintedTime;
+		paintedTime = now;
+		
+		int words = timing.getWordCount();
+		if (now >= timing.getEndTime(words - 1)) {
+			timer.stop();
+			
+		}
+		
+		layout(getFontMetrics(getFont()));
+		for (int w = 0; w < words; w++) {
+			int start = timing.getStartTime(w);
+			if (start > now) {
+				//Words are ordered by start time
+				break;
+				
+			}
+			if (timing.getEndTime(w) >= last && wordBounds[w] != null) {
+				Rectangle r = wordBounds[w];
+				repaint(r.x, r.y, r.width, r.height);
+				
+			}
+			
+		}
+		
+	}
+	
+	@Override
+	protected void paintComponent(Graphics g) {
+		Graphics2D g2 = (Graphics2D) g.create();
+		g2.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+		g2.setFont(getFont());
+		FontMetrics fm = g2.getFontMetrics();
+		layout(fm);
+		
+		//The lines in the normal color
+		g2.setColor(getForeground());
+		int baseline = firstBaseline(fm);
+		for (String line : text) {
+			g2.drawString(line, (getWidth() - fm.stringWidth(line)) / 2, baseline);
+			baseline += fm.getHeight();
+			
+		}
+		
+		if (timing == null) {
+			g2.dispose();
+			return;
+			
+		}
+		
+		//The sung part of every word again, in the highlight color, clipped
+		//to the part of the word that has been sung
+		long now = paintedTime;
+		Shape clip = g2.getClip();
+		g2.setColor(highlight);
+		for (int w = 0; w < timing.getWordCount(); w++) {
+			float progress = timing.getProgress(w, now);
+			Rectangle r = wordBounds[w];
+			if (progress <= 0 || r == null) {
+				continue;
+				
+			}
+			
+			g2.setClip(clip);
+			g2.clipRect(r.x, r.y, Math.round(r.width * progress), r.height);
+			int line = lineOf(timing.getBegin(w));
+			g2.drawString(text[line], (getWidth() - fm.stringWidth(text[line])) / 2, firstBaseline(fm) + line * fm.getHeight());
+			
+		}
+		
+		g2.dispose();
+		
+	}
+	
+	private int firstBaseline(FontMetrics fm) {
+		return (getHeight() - text.length * fm.getHeight()) / 2 + fm.getAscent();
+		
+	}
+	
+	//The line containing the character offset, see SRTWordTiming
+	private int lineOf(int offset) {
+		int base = 0;
+		for (int l = 0; l < text.length; l++) {
+			if (offset <= base + text[l].length()) {
+				return l;
+				
+			}
+			base += text[l].length() + 1;
+			
+		}
+		
+		return text.length - 1;
+		
+	}
+	
+	private void layout(FontMetrics fm) {
+		if (layoutWidth == getWidth() && layoutHeight == getHeight()) {
+			return;
+			
+		}
+		layoutWidth = getWidth();
+		layoutHeight = getHeight();
+		
+		int words = (timing == null) ? 0 : timing.getWordCount();
+		wordBounds = new Rectangle[words];
+		for (int w = 0; w < words; w++) {
+			int line = lineOf(timing.getBegin(w));
+			int base = 0;
+			for (int l = 0; l < line; l++) {
+				base += text[l].length() + 1;
+				
+			}
+			
+			String s = text[line];
+			int begin = Math.min(s.length(), timing.getBegin(w) - base);
+			int end = Math.min(s.length(), timing.getEnd(w) - base);
+			int lineX = (getWidth() - fm.stringWidth(s)) / 2;
+			int x = lineX + fm.stringWidth(s.substring(0, begin));
+			int width = fm.stringWidth(s.substring(begin, end));
+			int y = firstBaseline(fm) + line * fm.getHeight() - fm.getAscent();
+			
+			//A pixel extra on each side for antialiasing
+			wordBounds[w] = new Rectangle(x - 1, y, width + 2, fm.getHeight());
+			
+		}
+		
+	}
+	
+	//The refresh rate of the screen, or 60 if it is not known
+	private static int refreshRate() {
+		try {
+			if (! GraphicsEnvironment.isHeadless()) {
+				int rate = GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice().getDisplayMode().getRefreshRate();
+				if (rate != DisplayMode.REFRESH_RATE_UNKNOWN && rate > 0) {
+					return rate;
+					
+				}
+				
+			}
+			
+		}
+		catch (HeadlessException e) {
+			//Fall back to the default below
+			
+		}
+		
+		return 60;
+		
+	}
+	
+}
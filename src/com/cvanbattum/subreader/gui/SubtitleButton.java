@@ -22,14 +22,13 @@ import javax.swing.Icon;
 import javax.swing.JButton;
 import javax.swing.JFrame;
 
-import com.cvanbattum.subreader.functional.SubtitleReaderProgram;
 import com.cvanbattum.subreader.gui.colorscheme.ColorScheme;
 import com.cvanbattum.subreader.gui.colorscheme.Colorizable;
 import com.cvanbattum.subreader.gui.colorscheme.SchemeManager;
 
 /**
  * <code>SubtitleButton</code> is an implementation of JButton, fitting the 
- * needs of the {@link SubtitleReaderProgram} look and feel. 
+ * needs of the <code>SubtitleReaderProgram</code> look and feel. 
  * <code>SubtitleButton</code> implements the {@link Colorizable} interface to 
  * make it compatible with color schemes.
  * 
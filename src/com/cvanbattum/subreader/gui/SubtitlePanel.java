@@ -31,6 +31,7 @@ public class SubtitlePanel extends JPanel implements Colorizable {
 	private String[] text;
 	private Font f;
 	private JLabel label;
+	private KaraokeLabel karaoke;
 	
 	/**
 	 * Creates a new instance of <code>SubtitlePanel</code> with no starting 
@@ -92,6 +93,7 @@ public class SubtitlePanel extends JPanel implements Colorizable {
 	public void setText(String... str) {
 		this.text = str;
 		label.setText(createLabelText(str));
+		showLabel();
 		
 	}
 	
@@ -99,15 +101,67 @@ public class SubtitlePanel extends JPanel implements Colorizable {
 	 * Sets the text using a <code>SRTEnry</code>. It uses the text from this 
 	 * entry, but no other information is used. Each element of the entry's 
 	 * text array is displayed as a separate line. The onscreen text is 
-	 * immediately changed when this method is called.
+	 * immediately changed when this method is called. If the entry has a 
+	 * word timing, the words are highlighted while they are sung, starting 
+	 * now.
 	 * 
 	 * @param entry 
 	 * 		A <code>SRTEntry</code> of which the text will be used as the new 
 	 * 		text of this <code>SubtitlePanel</code>.
 	 */
 	public void setTextFromEntry(SRTEntry entry) {
+		setTextFromEntry(entry, 0);
+		
+	}
+	
+	/**
+	 * Sets the text using a <code>SRTEnry</code>, like 
+	 * {@link #setTextFromEntry(SRTEntry)}, for an entry that started some 
+	 * time ago. The highlight of an entry with a word timing continues from 
+	 * that time, for example after seeking.
+	 * 
+	 * @param entry 
+	 * 		A <code>SRTEntry</code> of which the text will be used as the new 
+	 * 		text of this <code>SubtitlePanel</code>.
+	 * @param elapsedMillis
+	 * 		The time since the start of the entry in milliseconds.
+	 */
+	public void setTextFromEntry(SRTEntry entry, long elapsedMillis) {
 		this.text = entry.getText();
-		label.setText(createLabelText(this.text));
+		if (entry.getWordTiming() == null) {
+			label.setText(createLabelText(this.text));
+			showLabel();
+			
+		}
+		else {
+			karaoke.play(entry, elapsedMillis);
+			showKaraoke();
+			
+		}
+		
+	}
+	
+	//Shows the label instead of the karaoke highlight
+	private void showLabel() {
+		if (karaoke.getParent() == this) {
+			karaoke.stop();
+			remove(karaoke);
+			add(label, BorderLayout.CENTER);
+			revalidate();
+			repaint();
+			
+		}
+		
+	}
+	
+	private void showKaraoke() {
+		if (label.getParent() == this) {
+			remove(label);
+			add(karaoke, BorderLayout.CENTER);
+			revalidate();
+			repaint();
+			
+		}
 		
 	}
 	
@@ -121,7 +175,7 @@ public class SubtitlePanel extends JPanel implements Colorizable {
 		}
 		
 		//TODO: Make font setting
-		f = new Font("Verdana", Font.BOLD, 26);
+		f = createFont();
 		scheme = SchemeManager.getPreferredScheme();
 		
 		setLayout(new BorderLayout());
@@ -138,13 +192,27 @@ public class SubtitlePanel extends JPanel implements Colorizable {
 		label.setText(createLabelText(text));
 		add(label, BorderLayout.CENTER);
 		
+		karaoke = new KaraokeLabel();
+		karaoke.setFont(f);
+		
 		setColors();
 		
 	}
 	
+	/*
+	 * The font subtitles are shown in, also used by SubtitleRenderer so
+	 * rendered subtitles look the same as on screen
+	 */
+	static Font createFont() {
+		return new Font("Verdana", Font.BOLD, 26);
+		
+	}
+	
 	private void setColors() {
 		setBackground(scheme.getBackground());
 		label.setForeground(scheme.getText());
+		karaoke.setForeground(scheme.getText());
+		karaoke.setHighlight(scheme.getForeground());
 		
 	}
 	
@@ -164,13 +232,16 @@ public class SubtitlePanel extends JPanel implements Colorizable {
 	 * 
 	 */
 	private String createLabelText(String... str) {
-		StringBuilder sb = new StringBuilder();
+		StringBuilder sb = new StringBuilder(64 + 40 * str.length);
 		sb.append("<html><div style=\"text-align:center\">");
-		for (String s : str) {
-			sb.append(s + "<br>");
+		for (int i = 0; i < str.length; i++) {
+			if (i > 0) {
+				sb.append("<br>");
+				
+			}
+			sb.append(str[i]);
 			
 		}
-		sb.delete(sb.length() - 4, sb.length());
 		sb.append("</div></html>");
 		
 		return sb.toString();
@@ -0,0 +1,512 @@
+package com.cvanbattum.subreader.gui;
+
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.font.GlyphVector;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import com.cvanbattum.api.srt.SRTEntry;
+import com.cvanbattum.api.srt.SRTSnapshot;
+import com.cvanbattum.subreader.gui.colorscheme.ColorScheme;
+import com.cvanbattum.subreader.gui.colorscheme.Colorizable;
+import com.cvanbattum.subreader.gui.colorscheme.SchemeManager;
+
+/**
+ * <p>Draws subtitles into images instead of onto the screen, for example for
+ * preview thumbnails or to burn subtitles into video frames. No window is
+ * needed, so this works on a server running with
+ * <code>-Djava.awt.headless=true</code>.</p>
+ *
+ * <p>The text is laid out like in a {@link SubtitlePanel}: the same font and
+ * colors, every line centered, and the lines together centered vertically.
+ * Formatting tags like <code>&lt;i&gt;</code> are left out.</p>
+ *
+ * <p>A renderer can be used by several threads at once. Every thread draws
+ * on its own image with its own <code>Graphics2D</code>, and keeps the
+ * glyphs of the lines it drew last, as subtitles repeat the same line over
+ * many frames. {@link #renderFrames(SRTSnapshot, long[], FrameHandler)}
+ * uses this to draw a sequence of frames on all processors, with threads
+ * kept by the renderer between calls so they keep their glyphs.</p>
+ *
+ * @author Casper van Battum
+ *
+ */
+public class SubtitleRenderer implements Colorizable {
+	
+	//Lines of which each thread keeps the glyphs
+	private static final int GLYPH_CACHE_SIZE = 256;
+	
+	private final int width;
+	private final int height;
+	private final int threads;
+	
+	private volatile Font font;
+	private volatile ColorScheme scheme;
+	private volatile boolean transparent;
+	
+	private final ThreadLocal<Canvas> canvases = new ThreadLocal<>();
+	//Kept between runs of frames, so the threads keep their glyphs
+	private ExecutorService executor;
+	
+	/**
+	 * Creates a new <code>SubtitleRenderer</code> for images of the given
+	 * size, using as many threads as there are processors to render frames.
+	 *
+	 * @param width
+	 * 			The width of the images in pixels.
+	 * @param height
+	 * 			The height of the images in pixels.
+	 */
+	public SubtitleRenderer(int width, int height) {
+		this(width, height, Runtime.getRuntime().availableProcessors());
+		
+	}
+	
+	/**
+	 * Creates a new <code>SubtitleRenderer</code> for images of the given
+	 * size.
+	 *
+	 * @param width
+	 * 			The width of the images in pixels.
+	 * @param height
+	 * 			The height of the images in pixels.
+	 * @param threads
+	 * 			The amount of threads used to render frames.
+	 */
+	public SubtitleRenderer(int width, int height, int threads) {
+		if (width < 1 || height < 1) {
+			throw new IllegalArgumentException("width and height must be at least 1");
+			
+		}
+		if (threads < 1) {
+			throw new IllegalArgumentException("threads must be at least 1");
+			
+		}
+		
+		this.width = width;
+		this.height = height;
+		this.threads = threads;
+		this.font = SubtitlePanel.createFont();
+		this.scheme = SchemeManager.getPreferredScheme();
+		
+	}
+	
+	/**
+	 * Renders the given lines into a new image.
+	 *
+	 * @param text The lines to render.
+	 * @return A new image with the rendered lines.
+	 */
+	public BufferedImage render(String... text) {
+		int[] pixels = new int[width * height];
+		render(text, pixels);
+		
+		BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+		image.setRGB(0, 0, width, height, pixels, 0, width);
+		return image;
+		
+	}
+	
+	/**
+	 * Renders the text of an entry into a new image.
+	 *
+	 * @param entry The entry to render.
+	 * @return A new image with the text of the entry.
+	 */
+	public BufferedImage render(SRTEntry entry) {
+		return render(entry.getText());
+		
+	}
+	
+	/**
+	 * Renders the entry shown at the given time into a new image. If no
+	 * entry is shown at that time, the image only has the background.
+	 *
+	 * @param snapshot
+	 * 			The subtitle to render.
+	 * @param time
+	 * 			The time in milliseconds.
+	 * @return A new image with the entry shown at the time.
+	 */
+	public BufferedImage render(SRTSnapshot snapshot, long time) {
+		int index = snapshot.indexAt(time);
+		return render(index < 0 ? new String[0] : snapshot.getText(index));
+		
+	}
+	
+	/**
+	 * Renders the given lines into an array of ARGB pixels, row by row. No
+	 * image is created, so this is the fastest way to render.
+	 *
+	 * @param text
+	 * 			The lines to render.
+	 * @param pixels
+	 * 			The array to render into, of at least <code>width *
+	 * 			height</code> elements.
+	 */
+	public void render(String[] text, int[] pixels) {
+		if (pixels.length < width * height) {
+			throw new IllegalArgumentException("pixel array is smaller than " + width + "x" + height);
+			
+		}
+		
+		Canvas canvas = canvas();
+		canvas.draw(text);
+		System.arraycopy(canvas.pixels, 0, pixels, 0, width * height);
+		
+	}
+	
+	/**
+	 * Renders the entries shown at each of the given times, and hands every
+	 * frame to the handler as soon as it is drawn. The frames are divided
+	 * over the threads of this renderer, so the handler is called by several
+	 * threads at once; the frames of one thread are handed over in order.
+	 * Each entry is drawn only once per run of frames showing it, the
+	 * following frames are handed over without drawing again.
+	 * 
+	 * <p>No pixels are allocated per frame: the handler gets the pixels the
+	 * thread draws on, so it must copy what it needs before it returns and
+	 * must not change them. This method returns when all frames have been
+	 * handled.</p>
+	 *
+	 * @param snapshot
+	 * 			The subtitle to render.
+	 * @param times
+	 * 			The time of each frame in milliseconds.
+	 * @param handler
+	 * 			Gets the pixels of every frame.
+	 * @throws IllegalStateException When rendering or handling a frame
+	 * 			failed, or the thread was interrupted.
+	 */
+	public void renderFrames(final SRTSnapshot snapshot, final long[] times, final FrameHandler handler) {
+		final int frames = times.length;
+		if (frames == 0) {
+			return;
+			
+		}
+		
+		int parts = Math.min(threads, frames);
+		ExecutorService executor = executor();
+		ArrayList<Future<?>> results = new ArrayList<>(parts);
+		try {
+			for (int p = 0; p < parts; p++) {
+				final int from = (int) ((long) frames * p / parts);
+				final int to = (int) ((long) frames * (p + 1) / parts);
+				results.add(executor.submit(new Callable<Void>() {
+					
+					@Override
+					public Void call() {
+						Canvas canvas = canvas();
+						int drawn = 0;
+						for (int i = from; i < to; i++) {
+							int index = snapshot.indexAt(times[i]);
+							if (i == from || index != drawn) {
+								canvas.draw(index < 0 ? null : snapshot.getText(index));
+								drawn = index;
+								
+							}
+							handler.frame(i, canvas.pixels);
+							
+						}
+						
+						return null;
+						
+					}
+					
+				}));
+				
+			}
+			
+			for (Future<?> f : results) {
+				f.get();
+				
+			}
+			
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while rendering", e);
+			
+		}
+		catch (ExecutionException e) {
+			throw new IllegalStateException("Rendering failed", e.getCause());
+			
+		}
+		finally {
+			//Stop the other parts when one failed
+			for (Future<?> f : results) {
+				f.cancel(true);
+				
+			}
+			
+		}
+		
+	}
+	
+	/**
+	 * Stops the threads used by {@link #renderFrames(SRTSnapshot, long[],
+	 * FrameHandler)}. They are started again when frames are rendered
+	 * again. The threads do not keep the JVM running, so this is only
+	 * needed to free them earlier.
+	 */
+	public synchronized void shutdown() {
+		if (executor != null) {
+			executor.shutdown();
+			executor = null;
+			
+		}
+		
+	}
+	
+	/**
+	 * Sets the font of the rendered text. The default is the font of a
+	 * {@link SubtitlePanel}.
+	 *
+	 * @param font The new font.
+	 */
+	public void setFont(Font font) {
+		this.font = font;
+		
+	}
+	
+	/**
+	 * @return The font of the rendered text.
+	 */
+	public Font getFont() {
+		return this.font;
+		
+	}
+	
+	/**
+	 * Sets whether the background is left transparent instead of filled with
+	 * the background color of the color scheme, for drawing the subtitle
+	 * over a video frame.
+	 *
+	 * @param transparent Whether the background is transparent.
+	 */
+	public void setTransparent(boolean transparent) {
+		this.transparent = transparent;
+		
+	}
+	
+	/**
+	 * @return Whether the background is transparent.
+	 */
+	public boolean isTransparent() {
+		return this.transparent;
+		
+	}
+	
+	/**
+	 * @return The width of the images in pixels.
+	 */
+	public int getWidth() {
+		return this.width;
+		
+	}
+	
+	/**
+	 * @return The height of the images in pixels.
+	 */
+	public int getHeight() {
+		return this.height;
+		
+	}
+	
+	@Override
+	public void setColorScheme(ColorScheme scheme) {
+		this.scheme = scheme;
+		
+	}
+	
+	@Override
+	public ColorScheme getColorScheme() {
+		return this.scheme;
+		
+	}
+	
+	//The threads rendering frames, started when first needed
+	private synchronized ExecutorService executor() {
+		if (executor == null) {
+			executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+				
+				private int count;
+				
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, "SubtitleRenderer-" + (++count));
+					thread.setDaemon(true);
+					return thread;
+					
+				}
+				
+			});
+			
+		}
+		
+		return executor;
+		
+	}
+	
+	//The canvas of this thread, created again when the settings changed
+	private Canvas canvas() {
+		Font f = font;
+		ColorScheme s = scheme;
+		boolean t = transparent;
+		
+		Canvas canvas = canvases.get();
+		if (canvas == null || canvas.font != f || canvas.scheme != s || canvas.transparent != t) {
+			if (canvas != null) {
+				canvas.graphics.dispose();
+				
+			}
+			canvas = new Canvas(f, s, t);
+			canvases.set(canvas);
+			
+		}
+		
+		return canvas;
+		
+	}
+	
+	//Removes formatting tags like <i> and {\an8} from a line
+	private static String stripTags(String line) {
+		if (line.indexOf('<') < 0 && line.indexOf('{') < 0) {
+			return line;
+			
+		}
+		
+		StringBuilder sb = new StringBuilder(line.length());
+		for (int i = 0; i < line.length(); i++) {
+			char c = line.charAt(i);
+			if (c == '<' || c == '{') {
+				int close = line.indexOf(c == '<' ? '>' : '}', i + 1);
+				if (close > 0) {
+					i = close;
+					continue;
+					
+				}
+				
+			}
+			sb.append(c);
+			
+		}
+		
+		return sb.toString();
+		
+	}
+	
+	/*
+	 * The image, graphics and glyphs of one thread, for one combination of
+	 * font, color scheme and transparency.
+	 */
+	private final class Canvas {
+		
+		private final Font font;
+		private final ColorScheme scheme;
+		private final boolean transparent;
+		
+		private final Graphics2D graphics;
+		private final int[] pixels;
+		private final FontMetrics metrics;
+		private final int background;
+		
+		private final LinkedHashMap<String, GlyphVector> glyphs = new LinkedHashMap<String, GlyphVector>(64, 0.75f, true) {
+			
+			private static final long serialVersionUID = 1L;
+			
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, GlyphVector> eldest) {
+				return size() > GLYPH_CACHE_SIZE;
+				
+			}
+			
+		};
+		
+		private Canvas(Font font, ColorScheme scheme, boolean transparent) {
+			this.font = font;
+			this.scheme = scheme;
+			this.transparent = transparent;
+			
+			BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+			this.pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+			this.graphics = image.createGraphics();
+			graphics.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+			graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+			graphics.setFont(font);
+			graphics.setColor(scheme.getText());
+			this.metrics = graphics.getFontMetrics();
+			this.background = transparent ? 0 : scheme.getBackground().getRGB();
+			
+		}
+		
+		private void draw(String[] text) {
+			Arrays.fill(pixels, background);
+			
+			int lines = (text == null) ? 0 : text.length;
+			if (lines == 0) {
+				return;
+				
+			}
+			
+			//Center the block of lines, and every line within it
+			final int lineHeight = metrics.getHeight();
+			int baseline = (height - lines * lineHeight) / 2 + metrics.getAscent();
+			for (String line : text) {
+				if (line != null && ! line.isEmpty()) {
+					GlyphVector gv = glyphs.get(line);
+					if (gv == null) {
+						gv = font.createGlyphVector(graphics.getFontRenderContext(), stripTags(line));
+						glyphs.put(line, gv);
+						
+					}
+					
+					float x = (float) (width - gv.getLogicalBounds().getWidth()) / 2;
+					graphics.drawGlyphVector(gv, x, baseline);
+					
+				}
+				baseline += lineHeight;
+				
+			}
+			
+		}
+		
+	}
+	
+	/**
+	 * <p>Gets the frames rendered by {@link SubtitleRenderer#renderFrames(
+	 * SRTSnapshot, long[], FrameHandler)}, for example to encode them or to
+	 * draw them over video frames.</p>
+	 *
+	 * @author Casper van Battum
+	 *
+	 */
+	public interface FrameHandler {
+		
+		/**
+		 * Handles a rendered frame. Called by several threads at once.
+		 *
+		 * @param frame
+		 * 			The index of the frame in the array of times.
+		 * @param pixels
+		 * 			The ARGB pixels of the frame, row by row. Only valid
+		 * 			until this method returns, and must not be changed.
+		 */
+		void frame(int frame, int[] pixels);
+		
+	}
+	
+}
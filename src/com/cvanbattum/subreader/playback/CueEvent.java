@@ -0,0 +1,151 @@
+package com.cvanbattum.subreader.playback;
+
+import java.util.Arrays;
+
+/**
+ * <p>A change in what is shown during the playback of a subtitle, as
+ * published by a {@link CuePublisher}. Every event has a type and the
+ * position of the playback it happened at. The events of type
+ * {@link #SHOWN} and {@link #HIDDEN} also have the index of the cue, and
+ * shown events its times and text.</p>
+ *
+ * <p>Events are immutable, so one event can be passed to any amount of
+ * subscribers.</p>
+ *
+ * @author Casper van Battum
+ *
+ */
+public final class CueEvent {
+	
+	/**
+	 * A cue is shown.
+	 */
+	public static final int SHOWN = 0;
+	
+	/**
+	 * The cue shown is hidden. When the next cue starts right when it ends,
+	 * only a {@link #SHOWN} event is published.
+	 */
+	public static final int HIDDEN = 1;
+	
+	/**
+	 * The playback was moved to another position.
+	 */
+	public static final int SEEK = 2;
+	
+	/**
+	 * The playback passed the end of the last cue.
+	 */
+	public static final int END = 3;
+	
+	private static final String[] TYPE_NAMES = { "SHOWN", "HIDDEN", "SEEK", "END" };
+	
+	private final int type;
+	private final long position;
+	private final int index;
+	private final long startTime;
+	private final long endTime;
+	private final String[] text;
+	
+	private CueEvent(int type, long position, int index, long startTime, long endTime, String[] text) {
+		this.type = type;
+		this.position = position;
+		this.index = index;
+		this.startTime = startTime;
+		this.endTime = endTime;
+		this.text = text;
+		
+	}
+	
+	static CueEvent shown(long position, int index, long startTime, long endTime, String[] text) {
+		return new CueEvent(SHOWN, position, index, startTime, endTime, text);
+		
+	}
+	
+	static CueEvent hidden(long position, int index) {
+		return new CueEvent(HIDDEN, position, index, -1, -1, null);
+		
+	}
+	
+	static CueEvent seek(long position) {
+		return new CueEvent(SEEK, position, -1, -1, -1, null);
+		
+	}
+	
+	static CueEvent end(long position) {
+		return new CueEvent(END, position, -1, -1, -1, null);
+		
+	}
+	
+	/**
+	 * @return The type of this event, one of {@link #SHOWN},
+	 * 			{@link #HIDDEN}, {@link #SEEK} or {@link #END}.
+	 */
+	public int getType() {
+		return this.type;
+		
+	}
+	
+	/**
+	 * @return The position of the playback when this event happened, in
+	 * 			milliseconds.
+	 */
+	public long getPosition() {
+		return this.position;
+		
+	}
+	
+	/**
+	 * @return The index of the cue shown or hidden, or <code>-1</code> for
+	 * 			other events.
+	 */
+	public int getIndex() {
+		return this.index;
+		
+	}
+	
+	/**
+	 * @return The start time of the cue shown in milliseconds, or
+	 * 			<code>-1</code> for other events.
+	 */
+	public long getStartTime() {
+		return this.startTime;
+		
+	}
+	
+	/**
+	 * @return The end time of the cue shown in milliseconds, or
+	 * 			<code>-1</code> for other events.
+	 */
+	public long getEndTime() {
+		return this.endTime;
+		
+	}
+	
+	/**
+	 * @return A copy of the lines of the cue shown, or <code>null</code> for
+	 * 			other events.
+	 */
+	public String[] getText() {
+		return (text == null) ? null : text.clone();
+		
+	}
+	
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder(64);
+		sb.append(TYPE_NAMES[type]).append('@').append(position);
+		if (index >= 0) {
+			sb.append(" #").append(index);
+			
+		}
+		if (text != null) {
+			sb.append(' ').append(Arrays.toString(text));
+			
+		}
+		
+		return sb.toString();
+		
+	}
+	
+}
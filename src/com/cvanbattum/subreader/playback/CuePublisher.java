@@ -0,0 +1,609 @@
+package com.cvanbattum.subreader.playback;
+
+import java.io.Closeable;
+import java.util.ArrayDeque;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import com.cvanbattum.api.srt.SRTSnapshot;
+import com.cvanbattum.api.srt.SRTSubtitle;
+
+/**
+ * <p>Plays a subtitle and publishes a {@link CueEvent} every time the cue
+ * shown changes, to any amount of <code>Flow</code> subscribers. The
+ * playback is controlled with {@link #play()}, {@link #pause()} and
+ * {@link #seek(long)}, and starts paused at position 0.</p>
+ *
+ * <p>Between changes, the playback is scheduled on a {@link TimingWheel},
+ * so it holds no thread of its own. Events are delivered to every
+ * subscriber on the executor given to the constructor, and only as many as
+ * the subscriber requested. Events that are not requested yet are buffered
+ * per subscriber, and a subscriber that does not keep up loses events
+ * rather than holding up the playback or the other subscribers:</p>
+ *
+ * <ul>
+ * <li>{@link #DROP_OLDEST}: when the buffer is full, the oldest event in it
+ * is dropped.</li>
+ * <li>{@link #LATEST_ONLY}: next to the events requested, only the newest
+ * event is kept, so a subscriber that requests again gets the latest state
+ * instead of the changes it missed.</li>
+ * </ul>
+ *
+ * <p>A subscriber that subscribes while a cue is shown first gets a
+ * {@link CueEvent#SHOWN} event for that cue. Closing the publisher stops
+ * the playback and completes all subscribers.</p>
+ *
+ * @author Casper van Battum
+ *
+ */
+public class CuePublisher implements Flow.Publisher<CueEvent>, Closeable {
+	
+	/**
+	 * Drop the oldest event buffered when the buffer of a subscriber is full.
+	 */
+	public static final int DROP_OLDEST = 0;
+	
+	/**
+	 * Keep only the newest event that was not requested yet.
+	 */
+	public static final int LATEST_ONLY = 1;
+	
+	/**
+	 * The default amount of events buffered for a subscriber.
+	 */
+	public static final int DEFAULT_BUFFER_SIZE = 256;
+	
+	private final TimingWheel wheel;
+	private final boolean ownWheel;
+	private final Executor executor;
+	private final CopyOnWriteArrayList<CueSubscription> subscriptions = new CopyOnWriteArrayList<>();
+	
+	//Guarded by this
+	private SRTSnapshot snapshot;
+	private long basePosition;
+	private long baseNanos;
+	private boolean paused = true;
+	private boolean seeked;
+	private boolean closed;
+	private TimingWheel.Timeout timeout;
+	private SRTSnapshot shownSnapshot;
+	private int shown = -1;
+	private CueEvent current;
+	private boolean ended;
+	
+	/**
+	 * Creates a new <code>CuePublisher</code> with its own timing wheel,
+	 * delivering events on the common <code>ForkJoinPool</code>.
+	 *
+	 * @param subtitle The subtitle to play.
+	 */
+	public CuePublisher(SRTSubtitle subtitle) {
+		this(subtitle, null, ForkJoinPool.commonPool());
+		
+	}
+	
+	/**
+	 * Creates a new <code>CuePublisher</code>.
+	 *
+	 * @param subtitle
+	 * 			The subtitle to play.
+	 * @param wheel
+	 * 			The timing wheel to schedule the playback on, shared with
+	 * 			other publishers, or <code>null</code> for a wheel of its own.
+	 * @param executor
+	 * 			The executor to deliver events to subscribers on.
+	 */
+	public CuePublisher(SRTSubtitle subtitle, TimingWheel wheel, Executor executor) {
+		if (executor == null) {
+			throw new IllegalArgumentException("executor cannot be null");
+			
+		}
+		
+		this.snapshot = subtitle.publish();
+		this.ownWheel = (wheel == null);
+		this.wheel = ownWheel ? new TimingWheel(1, TimeUnit.MILLISECONDS, null) : wheel;
+		this.executor = executor;
+		
+	}
+	
+	/**
+	 * Subscribes to the events of this publisher, dropping the oldest events
+	 * when more than {@value #DEFAULT_BUFFER_SIZE} are not requested yet.
+	 */
+	@Override
+	public void subscribe(Flow.Subscriber<? super CueEvent> subscriber) {
+		subscribe(subscriber, DROP_OLDEST, DEFAULT_BUFFER_SIZE);
+		
+	}
+	
+	/**
+	 * Subscribes to the events of this publisher.
+	 *
+	 * @param subscriber
+	 * 			The subscriber.
+	 * @param policy
+	 * 			What to do when the subscriber does not keep up, either
+	 * 			{@link #DROP_OLDEST} or {@link #LATEST_ONLY}.
+	 * @param bufferSize
+	 * 			The maximum amount of events buffered for the subscriber.
+	 */
+	public void subscribe(Flow.Subscriber<? super CueEvent> subscriber, int policy, int bufferSize) {
+		if (subscriber == null) {
+			throw new NullPointerException("subscriber cannot be null");
+			
+		}
+		if (policy != DROP_OLDEST && policy != LATEST_ONLY) {
+			throw new IllegalArgumentException("unknown policy: " + policy);
+			
+		}
+		if (bufferSize < 1) {
+			throw new IllegalArgumentException("bufferSize must be at least 1");
+			
+		}
+		
+		CueSubscription subscription = new CueSubscription(subscriber, policy, bufferSize);
+		synchronized (this) {
+			if (closed) {
+				subscription.complete();
+				return;
+				
+			}
+			
+			subscriptions.add(subscription);
+			if (current != null) {
+				subscription.offer(current);
+				
+			}
+			else {
+				//Delivers onSubscribe
+				subscription.signal();
+				
+			}
+			
+		}
+		
+	}
+	
+	/**
+	 * @return The amount of subscribers that did not cancel yet.
+	 */
+	public int getSubscriberCount() {
+		return subscriptions.size();
+		
+	}
+	
+	/**
+	 * Resumes the playback.
+	 */
+	public synchronized void play() {
+		if (paused && ! closed) {
+			baseNanos = System.nanoTime();
+			paused = false;
+			update();
+			
+		}
+		
+	}
+	
+	/**
+	 * Pauses the playback. The cue shown stays shown.
+	 */
+	public synchronized void pause() {
+		if (! paused && ! closed) {
+			basePosition = position();
+			paused = true;
+			update();
+			
+		}
+		
+	}
+	
+	/**
+	 * Moves the playback to another position, publishing a
+	 * {@link CueEvent#SEEK} event followed by a {@link CueEvent#SHOWN} event
+	 * for the cue shown at that position, also when it was shown before the
+	 * seek. When no cue is shown at that position, the seek is followed by a
+	 * {@link CueEvent#HIDDEN} event if a cue was shown before.
+	 *
+	 * @param position The position in milliseconds.
+	 */
+	public synchronized void seek(long position) {
+		if (position < 0) {
+			throw new IllegalArgumentException("position cannot be negative");
+			
+		}
+		
+		if (! closed) {
+			basePosition = position;
+			baseNanos = System.nanoTime();
+			seeked = true;
+			update();
+			
+		}
+		
+	}
+	
+	/**
+	 * @return The position of the playback in milliseconds.
+	 */
+	public synchronized long getPosition() {
+		return position();
+		
+	}
+	
+	/**
+	 * @return Whether the playback is paused.
+	 */
+	public synchronized boolean isPaused() {
+		return this.paused;
+		
+	}
+	
+	/**
+	 * Replaces the subtitle played, for example after it was edited. The
+	 * playback continues at its position with the new cues.
+	 *
+	 * @param subtitle The new subtitle.
+	 */
+	public synchronized void setSubtitle(SRTSubtitle subtitle) {
+		this.snapshot = subtitle.publish();
+		if (! closed) {
+			update();
+			
+		}
+		
+	}
+	
+	/**
+	 * Stops the playback and completes all subscribers after they got the
+	 * events they requested. Events buffered but not requested are dropped.
+	 */
+	@Override
+	public void close() {
+		synchronized (this) {
+			if (closed) {
+				return;
+				
+			}
+			closed = true;
+			if (timeout != null) {
+				timeout.cancel();
+				
+			}
+			
+		}
+		
+		if (ownWheel) {
+			wheel.close();
+			
+		}
+		for (CueSubscription subscription : subscriptions) {
+			subscription.complete();
+			
+		}
+		
+	}
+	
+	/*
+	 * Publishes the events for the current position, and schedules the next
+	 * update for when the cue shown changes. Running it again without a
+	 * change publishes nothing, so an update that was already due when
+	 * another one ran does no harm.
+	 */
+	private synchronized void update() {
+		if (closed) {
+			return;
+			
+		}
+		
+		final long position = position();
+		final boolean seek = seeked;
+		if (seek) {
+			publish(CueEvent.seek(position));
+			seeked = false;
+			ended = false;
+			
+		}
+		
+		//A seek shows its cue again, like a subscriber subscribing
+		int index = snapshot.indexAt(position);
+		if (index != shown || snapshot != shownSnapshot || seek) {
+			if (index >= 0) {
+				current = CueEvent.shown(position, index, snapshot.getStartTime(index), snapshot.getEndTime(index), snapshot.getText(index));
+				publish(current);
+				
+			}
+			else if (shown >= 0) {
+				current = null;
+				publish(CueEvent.hidden(position, shown));
+				
+			}
+			shown = index;
+			shownSnapshot = snapshot;
+			
+		}
+		
+		//The next time the cue shown changes
+		int next = snapshot.nextIndex(position);
+		long change = (next < snapshot.size()) ? snapshot.getStartTime(next) : Long.MAX_VALUE;
+		if (index >= 0) {
+			change = Math.min(change, snapshot.getEndTime(index));
+			
+		}
+		if (change == Long.MAX_VALUE && index < 0 && ! ended) {
+			publish(CueEvent.end(position));
+			ended = true;
+			
+		}
+		
+		if (timeout != null) {
+			timeout.cancel();
+			timeout = null;
+			
+		}
+		if (! paused && change != Long.MAX_VALUE) {
+			timeout = wheel.schedule(new Runnable() {
+				
+				@Override
+				public void run() {
+					update();
+					
+				}
+				
+			}, Math.max(0, change - position), TimeUnit.MILLISECONDS);
+			
+		}
+		
+	}
+	
+	private void publish(CueEvent event) {
+		for (CueSubscription subscription : subscriptions) {
+			subscription.offer(event);
+			
+		}
+		
+	}
+	
+	//Must hold the lock
+	private long position() {
+		return paused ? basePosition : basePosition + (System.nanoTime() - baseNanos) / 1000000L;
+		
+	}
+	
+	/**
+	 * The subscription of one subscriber to a {@link CuePublisher}. Events
+	 * are buffered until they are requested, and delivered one at a time on
+	 * the executor of the publisher.
+	 *
+	 * @author Casper van Battum
+	 *
+	 */
+	public final class CueSubscription implements Flow.Subscription, Runnable {
+		
+		private final Flow.Subscriber<? super CueEvent> subscriber;
+		private final int policy;
+		private final int bufferSize;
+		
+		//Guarded by this
+		private final ArrayDeque<CueEvent> buffer;
+		private long demand;
+		private long dropped;
+		private boolean subscribed;
+		private boolean completed;
+		private boolean cancelled;
+		private boolean draining;
+		private IllegalArgumentException error;
+		
+		private CueSubscription(Flow.Subscriber<? super CueEvent> subscriber, int policy, int bufferSize) {
+			this.subscriber = subscriber;
+			this.policy = policy;
+			this.bufferSize = bufferSize;
+			this.buffer = new ArrayDeque<>(Math.min(bufferSize, 16));
+			
+		}
+		
+		@Override
+		public void request(long n) {
+			synchronized (this) {
+				if (cancelled) {
+					return;
+					
+				}
+				
+				if (n <= 0) {
+					error = new IllegalArgumentException("non-positive request: " + n);
+					
+				}
+				else {
+					demand = (demand + n < 0) ? Long.MAX_VALUE : demand + n;
+					
+				}
+				
+			}
+			signal();
+			
+		}
+		
+		@Override
+		public void cancel() {
+			synchronized (this) {
+				cancelled = true;
+				buffer.clear();
+				
+			}
+			subscriptions.remove(this);
+			
+		}
+		
+		/**
+		 * @return The policy for events that are not requested in time.
+		 */
+		public int getPolicy() {
+			return this.policy;
+			
+		}
+		
+		/**
+		 * @return The amount of events dropped because the subscriber did
+		 * 			not request them in time.
+		 */
+		public synchronized long getDroppedCount() {
+			return this.dropped;
+			
+		}
+		
+		/*
+		 * Buffers an event, making room by dropping one according to the
+		 * policy. Never blocks, as it is called by the playback.
+		 */
+		private void offer(CueEvent event) {
+			synchronized (this) {
+				if (cancelled || completed) {
+					return;
+					
+				}
+				
+				//Only the events within the demand are sure to be delivered
+				int limit = bufferSize;
+				if (policy == LATEST_ONLY) {
+					limit = (int) Math.min(demand, bufferSize - 1) + 1;
+					
+				}
+				if (buffer.size() >= limit) {
+					if (policy == LATEST_ONLY) {
+						buffer.pollLast();
+						
+					}
+					else {
+						buffer.pollFirst();
+						
+					}
+					dropped++;
+					
+				}
+				buffer.add(event);
+				
+			}
+			signal();
+			
+		}
+		
+		private void complete() {
+			synchronized (this) {
+				completed = true;
+				
+			}
+			signal();
+			
+		}
+		
+		//Makes sure a task delivering the signals is running
+		private void signal() {
+			synchronized (this) {
+				if (draining || cancelled) {
+					return;
+					
+				}
+				draining = true;
+				
+			}
+			
+			try {
+				executor.execute(this);
+				
+			}
+			catch (RejectedExecutionException e) {
+				cancel();
+				
+			}
+			
+		}
+		
+		/*
+		 * Delivers the signals to the subscriber, one at a time, until there
+		 * is nothing left that it requested.
+		 */
+		@Override
+		public void run() {
+			while (true) {
+				CueEvent event = null;
+				Throwable failure = null;
+				boolean subscribe = false;
+				boolean complete = false;
+				synchronized (this) {
+					if (cancelled) {
+						draining = false;
+						return;
+						
+					}
+					
+					if (! subscribed) {
+						subscribed = true;
+						subscribe = true;
+						
+					}
+					else if (error != null) {
+						failure = error;
+						
+					}
+					else if (demand > 0 && ! buffer.isEmpty()) {
+						event = buffer.poll();
+						if (demand != Long.MAX_VALUE) {
+							demand--;
+							
+						}
+						
+					}
+					else if (completed) {
+						//Events that were not requested are not delivered anymore
+						dropped += buffer.size();
+						buffer.clear();
+						complete = true;
+						
+					}
+					else {
+						draining = false;
+						return;
+						
+					}
+					
+				}
+				
+				try {
+					if (subscribe) {
+						subscriber.onSubscribe(this);
+						
+					}
+					else if (failure != null) {
+						cancel();
+						subscriber.onError(failure);
+						
+					}
+					else if (complete) {
+						cancel();
+						subscriber.onComplete();
+						
+					}
+					else {
+						subscriber.onNext(event);
+						
+					}
+					
+				}
+				catch (RuntimeException e) {
+					//A subscriber must not throw, it is no longer served
+					cancel();
+					
+				}
+				
+			}
+			
+		}
+		
+	}
+	
+}
@@ -0,0 +1,450 @@
+package com.cvanbattum.subreader.playback;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Schedules a large amount of short tasks, like the start and end of the
+ * cues of thousands of playback sessions, on a single driver thread. Time is
+ * divided into ticks, and a task runs on the first tick at or after its
+ * deadline, so it runs up to one tick late.</p>
+ *
+ * <p>Tasks are kept in a hierarchical timing wheel: four wheels of slots,
+ * the first with a slot per tick and every next one with a slot per turn of
+ * the wheel before it. A task is put in a slot of the wheel matching how far
+ * away it is, and moves to a finer wheel when its slot comes around.
+ * Scheduling and cancelling take constant time however many tasks are
+ * pending, unlike a <code>ScheduledThreadPoolExecutor</code>, whose queue
+ * takes logarithmic time.</p>
+ *
+ * <p>Every task due is handed to the executor given to the constructor on
+ * its own, so a task that blocks, like a write to a slow client, does not
+ * hold up the other tasks due at the same tick. Tasks run on the driver
+ * thread itself if no executor is given, so they should then be short.</p>
+ *
+ * @author Casper van Battum
+ *
+ */
+public final class TimingWheel implements Closeable {
+	
+	//The first wheel has 256 slots of one tick, the others 64 slots each
+	private static final int FIRST_BITS = 8;
+	private static final int LEVEL_BITS = 6;
+	private static final int LEVELS = 4;
+	//The ticks covered by all wheels together, 2^26
+	private static final long RANGE = 1L << (FIRST_BITS + (LEVELS - 1) * LEVEL_BITS);
+	
+	private final long tickNanos;
+	private final Executor executor;
+	private final Thread driver;
+	private final long startNanos;
+	
+	//Every slot is the head of a doubly linked list of timeouts, see Timeout
+	private final Timeout[][] wheels = new Timeout[LEVELS][];
+	
+	//Guarded by this
+	private long currentTick;
+	private int pending;
+	private boolean closed;
+	
+	/**
+	 * Creates a new <code>TimingWheel</code> and starts its driver thread.
+	 *
+	 * @param tick
+	 * 			The length of a tick.
+	 * @param unit
+	 * 			The unit of the length of a tick.
+	 * @param executor
+	 * 			The executor to run the tasks on, or <code>null</code> to run
+	 * 			them on the driver thread.
+	 */
+	public TimingWheel(long tick, TimeUnit unit, Executor executor) {
+		if (tick < 1) {
+			throw new IllegalArgumentException("tick must be at least 1");
+			
+		}
+		
+		this.tickNanos = unit.toNanos(tick);
+		this.executor = executor;
+		this.wheels[0] = new Timeout[1 << FIRST_BITS];
+		for (int l = 1; l < LEVELS; l++) {
+			this.wheels[l] = new Timeout[1 << LEVEL_BITS];
+			
+		}
+		
+		this.startNanos = System.nanoTime();
+		this.driver = new Thread(new Runnable() {
+			
+			@Override
+			public void run() {
+				drive();
+				
+			}
+			
+		}, "TimingWheel");
+		driver.setDaemon(true);
+		driver.start();
+		
+	}
+	
+	/**
+	 * Schedules a task to run once after the given delay.
+	 *
+	 * @param task
+	 * 			The task to run.
+	 * @param delay
+	 * 			The time from now to run the task after, rounded up to whole
+	 * 			ticks.
+	 * @param unit
+	 * 			The unit of the delay.
+	 * @return The timeout, to cancel the task with.
+	 * @throws IllegalStateException When this wheel has been closed.
+	 */
+	public Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+		long now = System.nanoTime() - startNanos;
+		long delayNanos = Math.max(0, unit.toNanos(delay));
+		long deadline = (now + delayNanos + tickNanos - 1) / tickNanos;
+		
+		Timeout timeout = new Timeout(this, task, deadline);
+		synchronized (this) {
+			if (closed) {
+				throw new IllegalStateException("timing wheel is closed");
+				
+			}
+			
+			if (pending == 0) {
+				//Nothing is in the wheels, so they can jump to now
+				currentTick = Math.max(currentTick, now / tickNanos);
+				
+			}
+			
+			add(timeout, currentTick + 1);
+			pending++;
+			if (pending == 1) {
+				//The driver waits while there is nothing to do
+				notifyAll();
+				
+			}
+			
+		}
+		
+		return timeout;
+		
+	}
+	
+	/**
+	 * @return The amount of tasks that have not run or been cancelled yet.
+	 */
+	public synchronized int getPendingCount() {
+		return this.pending;
+		
+	}
+	
+	/**
+	 * @return The length of a tick in nanoseconds.
+	 */
+	public long getTickNanos() {
+		return this.tickNanos;
+		
+	}
+	
+	/**
+	 * Stops the driver thread. Pending tasks do not run anymore.
+	 */
+	@Override
+	public void close() {
+		synchronized (this) {
+			closed = true;
+			notifyAll();
+			
+		}
+		driver.interrupt();
+		
+	}
+	
+	/*
+	 * Puts the timeout in the slot of the wheel matching how far away its
+	 * deadline is, but not before the earliest tick: the next tick for a new
+	 * timeout, since the slot of the current tick was already taken, and the
+	 * current tick for a timeout moved down while advancing to it. Timeouts
+	 * further away than all wheels together go in the slot of the last wheel
+	 * visited last, and are put back when it comes around. Must hold the
+	 * lock.
+	 */
+	private void add(Timeout timeout, long earliest) {
+		long deadline = Math.max(timeout.deadline, earliest);
+		long delta = deadline - currentTick;
+		if (delta >= RANGE) {
+			deadline = currentTick + RANGE - 1;
+			delta = RANGE - 1;
+			
+		}
+		
+		int level = 0;
+		int shift = 0;
+		int bits = FIRST_BITS;
+		while (delta >= (1L << (shift + bits)) && level < LEVELS - 1) {
+			shift += bits;
+			bits = LEVEL_BITS;
+			level++;
+			
+		}
+		
+		Timeout[] wheel = wheels[level];
+		int slot = (int) ((deadline >>> shift) & (wheel.length - 1));
+		timeout.wheel = wheel;
+		timeout.slot = slot;
+		timeout.previous = null;
+		timeout.next = wheel[slot];
+		if (wheel[slot] != null) {
+			wheel[slot].previous = timeout;
+			
+		}
+		wheel[slot] = timeout;
+		
+	}
+	
+	//Must hold the lock
+	private void remove(Timeout timeout) {
+		if (timeout.previous != null) {
+			timeout.previous.next = timeout.next;
+			
+		}
+		else {
+			timeout.wheel[timeout.slot] = timeout.next;
+			
+		}
+		if (timeout.next != null) {
+			timeout.next.previous = timeout.previous;
+			
+		}
+		
+		timeout.wheel = null;
+		timeout.previous = null;
+		timeout.next = null;
+		
+	}
+	
+	/*
+	 * Advances one tick: moves the timeouts of the coarser wheels whose slot
+	 * came around to finer wheels, then takes the timeouts of the current
+	 * slot of the first wheel, including those just moved there because
+	 * their deadline is this tick. Must hold the lock.
+	 */
+	private Timeout advance() {
+		long tick = ++currentTick;
+		
+		int shift = FIRST_BITS;
+		long mask = (1L << FIRST_BITS) - 1;
+		for (int l = 1; l < LEVELS && (tick & mask) == 0; l++) {
+			Timeout[] wheel = wheels[l];
+			int slot = (int) ((tick >>> shift) & (wheel.length - 1));
+			Timeout t = wheel[slot];
+			wheel[slot] = null;
+			while (t != null) {
+				Timeout next = t.next;
+				add(t, tick);
+				t = next;
+				
+			}
+			
+			shift += LEVEL_BITS;
+			mask = (1L << shift) - 1;
+			
+		}
+		
+		Timeout[] first = wheels[0];
+		int slot = (int) (tick & (first.length - 1));
+		Timeout expired = first[slot];
+		first[slot] = null;
+		for (Timeout t = expired; t != null; t = t.next) {
+			t.wheel = null;
+			t.state = Timeout.EXPIRED;
+			pending--;
+			
+		}
+		
+		return expired;
+		
+	}
+	
+	private void drive() {
+		ArrayList<Timeout> batch = new ArrayList<>();
+		while (true) {
+			synchronized (this) {
+				while (pending == 0 && ! closed) {
+					try {
+						wait();
+						
+					}
+					catch (InterruptedException e) {
+						return;
+						
+					}
+					
+				}
+				if (closed) {
+					return;
+					
+				}
+				
+				long nowTick = (System.nanoTime() - startNanos) / tickNanos;
+				while (currentTick < nowTick && pending > 0) {
+					for (Timeout t = advance(); t != null; t = t.next) {
+						batch.add(t);
+						
+					}
+					
+				}
+				if (pending == 0) {
+					currentTick = Math.max(currentTick, nowTick);
+					
+				}
+				
+			}
+			
+			run(batch);
+			batch.clear();
+			
+			long nextTick = (System.nanoTime() - startNanos) / tickNanos + 1;
+			long sleep = startNanos + nextTick * tickNanos - System.nanoTime();
+			if (sleep > 0) {
+				try {
+					TimeUnit.NANOSECONDS.sleep(sleep);
+					
+				}
+				catch (InterruptedException e) {
+					return;
+					
+				}
+				
+			}
+			
+		}
+		
+	}
+	
+	private void run(ArrayList<Timeout> expired) {
+		final int size = expired.size();
+		if (executor == null) {
+			for (int i = 0; i < size; i++) {
+				expired.get(i).run();
+				
+			}
+			return;
+			
+		}
+		
+		for (int i = 0; i < size; i++) {
+			final Timeout t = expired.get(i);
+			executor.execute(new Runnable() {
+				
+				@Override
+				public void run() {
+					t.run();
+					
+				}
+				
+			});
+			
+		}
+		
+	}
+	
+	/**
+	 * A task scheduled on a {@link TimingWheel}, which can be cancelled
+	 * before it runs.
+	 *
+	 * @author Casper van Battum
+	 *
+	 */
+	public static final class Timeout {
+		
+		private static final int PENDING = 0;
+		private static final int EXPIRED = 1;
+		private static final int CANCELLED = 2;
+		
+		private final TimingWheel owner;
+		private final Runnable task;
+		private final long deadline;
+		
+		//Guarded by the lock of the owner
+		private int state;
+		private Timeout[] wheel;
+		private int slot;
+		private Timeout previous;
+		private Timeout next;
+		
+		private Timeout(TimingWheel owner, Runnable task, long deadline) {
+			this.owner = owner;
+			this.task = task;
+			this.deadline = deadline;
+			
+		}
+		
+		/**
+		 * Cancels the task, if it has not run yet.
+		 *
+		 * @return Whether the task was cancelled, <code>false</code> if it
+		 * 			already ran or was cancelled before.
+		 */
+		public boolean cancel() {
+			synchronized (owner) {
+				if (state != PENDING) {
+					return false;
+					
+				}
+				
+				state = CANCELLED;
+				if (wheel != null) {
+					owner.remove(this);
+					owner.pending--;
+					
+				}
+				return true;
+				
+			}
+			
+		}
+		
+		/**
+		 * @return Whether the task was cancelled.
+		 */
+		public boolean isCancelled() {
+			synchronized (owner) {
+				return state == CANCELLED;
+				
+			}
+			
+		}
+		
+		/**
+		 * @return Whether the task is due, it has run or is about to run.
+		 */
+		public boolean isExpired() {
+			synchronized (owner) {
+				return state == EXPIRED;
+				
+			}
+			
+		}
+		
+		private void run() {
+			try {
+				task.run();
+				
+			}
+			catch (RuntimeException e) {
+				//One failing task must not stop the others run by the driver
+				Thread t = Thread.currentThread();
+				t.getUncaughtExceptionHandler().uncaughtException(t, e);
+				
+			}
+			
+		}
+		
+	}
+	
+}
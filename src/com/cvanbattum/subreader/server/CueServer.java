@@ -0,0 +1,363 @@
+package com.cvanbattum.subreader.server;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import com.cvanbattum.api.srt.SRTSnapshot;
+import com.cvanbattum.api.srt.SRTSubtitle;
+import com.cvanbattum.subreader.playback.TimingWheel;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * <p>An embedded HTTP server streaming the cues of a subtitle to any amount
+ * of clients, like browser overlays or second screen apps. Every client has
+ * its own playback session with its own position, which it can seek, pause
+ * and resume.</p>
+ *
+ * <p>A client opens a session with <code>GET /events</code>, optionally
+ * with <code>?position=</code> the position to start at in milliseconds and
+ * <code>&amp;paused</code> to start paused. The response is a stream of
+ * Server-Sent Events:</p>
+ *
+ * <pre>
+ * event: session     data: the id of the session
+ * event: cue         data: {"index":3,"start":61200,"end":63900,"text":["..."]}
+ * event: clear       data: the position at which no cue is shown
+ * event: seek        data: the position seeked to
+ * event: end         data: the position after the last cue
+ * </pre>
+ *
+ * <p>The index of a cue starts at 0. The session is controlled with
+ * <code>/control?session=</code> the id, and one of
+ * <code>&amp;seek=</code> a position, <code>&amp;pause</code> or
+ * <code>&amp;play</code>. The session ends when the client disconnects.</p>
+ *
+ * <p>There is no authentication: any page of any origin may open a session,
+ * and the random id of a session is the only thing needed to control it.
+ * The server therefore listens on the loopback address unless it is given
+ * another address.</p>
+ *
+ * <p>The cue shown is looked up in the time index of an
+ * {@link SRTSnapshot}, so all sessions read the subtitle without locking.
+ * Sessions do not hold a thread while they wait for their cue to change:
+ * they are scheduled on a single {@link TimingWheel}, which hands the
+ * sessions that are due to the threads of the server. These are virtual
+ * threads when the JVM has them (Java 21 and later), and platform threads
+ * otherwise.</p>
+ *
+ * @author Casper van Battum
+ *
+ */
+public class CueServer {
+	
+	private static final int BACKLOG = 4096;
+	private static final SecureRandom RANDOM = new SecureRandom();
+	
+	private final HttpServer server;
+	private final ExecutorService executor;
+	private final TimingWheel wheel;
+	private final ConcurrentHashMap<String, CueSession> sessions = new ConcurrentHashMap<>();
+	
+	private volatile SRTSnapshot snapshot;
+	
+	/**
+	 * Creates a new <code>CueServer</code> for a subtitle, listening on the
+	 * loopback address only, so it cannot be reached from other machines.
+	 * The server does not accept clients before {@link #start()} is
+	 * called.
+	 *
+	 * @param subtitle
+	 * 			The subtitle to serve.
+	 * @param port
+	 * 			The port to listen on, or 0 for any free port.
+	 * @throws IOException When the port cannot be opened.
+	 */
+	public CueServer(SRTSubtitle subtitle, int port) throws IOException {
+		this(subtitle, new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+		
+	}
+	
+	/**
+	 * Creates a new <code>CueServer</code> for a subtitle. The server does
+	 * not accept clients before {@link #start()} is called.
+	 *
+	 * @param subtitle
+	 * 			The subtitle to serve.
+	 * @param address
+	 * 			The address to listen on. A wildcard address serves clients
+	 * 			on other machines too, see the class documentation.
+	 * @throws IOException When the address cannot be opened.
+	 */
+	public CueServer(SRTSubtitle subtitle, InetSocketAddress address) throws IOException {
+		this.snapshot = subtitle.publish();
+		this.server = HttpServer.create(address, BACKLOG);
+		this.executor = createExecutor();
+		this.wheel = new TimingWheel(1, TimeUnit.MILLISECONDS, executor);
+		
+		server.setExecutor(executor);
+		server.createContext("/events", new HttpHandler() {
+			
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				openSession(exchange);
+				
+			}
+			
+		});
+		server.createContext("/control", new HttpHandler() {
+			
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				control(exchange);
+				
+			}
+			
+		});
+		
+	}
+	
+	/*
+	 * Executors.newVirtualThreadPerTaskExecutor() if this JVM has virtual
+	 * threads. Looked up by reflection, so this compiles and runs on older
+	 * versions too.
+	 */
+	private static ExecutorService createExecutor() {
+		try {
+			Method m = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return (ExecutorService) m.invoke(null);
+			
+		}
+		catch (ReflectiveOperationException | RuntimeException e) {
+			//Platform threads, reused after their task ends
+			return Executors.newCachedThreadPool();
+			
+		}
+		
+	}
+	
+	/**
+	 * Starts accepting clients.
+	 */
+	public void start() {
+		server.start();
+		
+	}
+	
+	/**
+	 * Ends all sessions and stops the server.
+	 */
+	public void stop() {
+		for (CueSession session : sessions.values()) {
+			session.close();
+			
+		}
+		server.stop(0);
+		wheel.close();
+		executor.shutdownNow();
+		
+		try {
+			executor.awaitTermination(5, TimeUnit.SECONDS);
+			
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			
+		}
+		
+	}
+	
+	/**
+	 * @return The port the server listens on.
+	 */
+	public int getPort() {
+		return server.getAddress().getPort();
+		
+	}
+	
+	/**
+	 * @return The amount of open sessions.
+	 */
+	public int getSessionCount() {
+		return sessions.size();
+		
+	}
+	
+	/**
+	 * Replaces the subtitle served, for example after it was edited. All
+	 * sessions continue at their position with the new cues.
+	 *
+	 * @param subtitle The new subtitle.
+	 */
+	public void setSubtitle(SRTSubtitle subtitle) {
+		this.snapshot = subtitle.publish();
+		for (CueSession session : sessions.values()) {
+			session.wake();
+			
+		}
+		
+	}
+	
+	SRTSnapshot getSnapshot() {
+		return this.snapshot;
+		
+	}
+	
+	void sessionClosed(CueSession session) {
+		sessions.remove(session.getId());
+		
+	}
+	
+	private void openSession(HttpExchange exchange) throws IOException {
+		Map<String, String> query = parseQuery(exchange);
+		long position = parsePosition(query.get("position"), 0);
+		
+		String id = Long.toHexString(RANDOM.nextLong() & Long.MAX_VALUE);
+		exchange.getResponseHeaders().set("Content-Type", "text/event-stream; charset=utf-8");
+		exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+		exchange.getResponseHeaders().set("Access-Control-Allow-Origin", "*");
+		exchange.sendResponseHeaders(200, 0);
+		
+		//The exchange stays open after this returns, until the session closes
+		CueSession session = new CueSession(this, wheel, id, exchange, position, query.containsKey("paused"));
+		sessions.put(id, session);
+		session.start();
+		
+	}
+	
+	private void control(HttpExchange exchange) throws IOException {
+		Map<String, String> query = parseQuery(exchange);
+		String id = query.get("session");
+		CueSession session = (id == null) ? null : sessions.get(id);
+		
+		int status = 204;
+		if (session == null) {
+			status = 404;
+			
+		}
+		else if (query.containsKey("seek")) {
+			long position = parsePosition(query.get("seek"), -1);
+			if (position < 0) {
+				status = 400;
+				
+			}
+			else {
+				session.seek(position);
+				
+			}
+			
+		}
+		else if (query.containsKey("pause")) {
+			session.pause();
+			
+		}
+		else if (query.containsKey("play")) {
+			session.play();
+			
+		}
+		else {
+			status = 400;
+			
+		}
+		
+		exchange.getResponseHeaders().set("Access-Control-Allow-Origin", "*");
+		exchange.sendResponseHeaders(status, -1);
+		exchange.close();
+		
+	}
+	
+	private static long parsePosition(String value, long defaultValue) {
+		if (value == null) {
+			return defaultValue;
+			
+		}
+		
+		try {
+			long position = Long.parseLong(value);
+			return (position < 0) ? defaultValue : position;
+			
+		}
+		catch (NumberFormatException e) {
+			return defaultValue;
+			
+		}
+		
+	}
+	
+	private static Map<String, String> parseQuery(HttpExchange exchange) throws UnsupportedEncodingException {
+		HashMap<String, String> result = new HashMap<>();
+		String query = exchange.getRequestURI().getRawQuery();
+		if (query == null) {
+			return result;
+			
+		}
+		
+		for (String pair : query.split("&")) {
+			int eq = pair.indexOf('=');
+			String name = (eq < 0) ? pair : pair.substring(0, eq);
+			String value = (eq < 0) ? "" : pair.substring(eq + 1);
+			result.put(URLDecoder.decode(name, "UTF-8"), URLDecoder.decode(value, "UTF-8"));
+			
+		}
+		
+		return result;
+		
+	}
+	
+	//Appends the string as a JSON string literal
+	static void appendJson(StringBuilder sb, String s) {
+		sb.append('"');
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			switch (c) {
+			case '"':
+				sb.append("\\\"");
+				break;
+			case '\\':
+				sb.append("\\\\");
+				break;
+			case '\n':
+				sb.append("\\n");
+				break;
+			case '\r':
+				sb.append("\\r");
+				break;
+			case '\t':
+				sb.append("\\t");
+				break;
+			default:
+				if (c < ' ') {
+					sb.append(String.format("\\u%04x", (int) c));
+					
+				}
+				else {
+					sb.append(c);
+					
+				}
+				
+			}
+			
+		}
+		sb.append('"');
+		
+	}
+	
+	static byte[] utf8(CharSequence s) {
+		return s.toString().getBytes(StandardCharsets.UTF_8);
+		
+	}
+	
+}
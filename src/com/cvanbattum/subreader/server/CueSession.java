@@ -0,0 +1,294 @@
+package com.cvanbattum.subreader.server;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+import com.cvanbattum.api.srt.SRTSnapshot;
+import com.cvanbattum.subreader.playback.TimingWheel;
+import com.sun.net.httpserver.HttpExchange;
+
+/**
+ * <p>The playback of one client of a {@link CueServer}. The session keeps
+ * the position of the client, and sends an event every time the cue shown at
+ * that position changes. Between changes, the session does not hold a
+ * thread: it is scheduled on the {@link TimingWheel} of the server for the
+ * time the next cue starts or the current one ends.</p>
+ *
+ * @author Casper van Battum
+ *
+ */
+final class CueSession implements Runnable {
+	
+	//A comment is sent when nothing else was sent for this long, so a client
+	//that disconnected is noticed
+	private static final long HEARTBEAT = 15000;
+	
+	private final CueServer server;
+	private final TimingWheel wheel;
+	private final String id;
+	private final HttpExchange exchange;
+	private final OutputStream out;
+	
+	//The position is basePosition plus the time since baseNanos when playing
+	private long basePosition;
+	private long baseNanos;
+	private boolean paused;
+	private boolean seeked;
+	//Set when the session has to be updated before its next change
+	private boolean dirty;
+	private boolean closed;
+	private TimingWheel.Timeout timeout;
+	
+	//Only used by update(), which holds the update lock
+	private final Object updateLock = new Object();
+	private final StringBuilder sb = new StringBuilder(256);
+	private SRTSnapshot shownSnapshot;
+	private int shown = -2;
+	private boolean ended;
+	private long lastWrite = System.nanoTime();
+	
+	CueSession(CueServer server, TimingWheel wheel, String id, HttpExchange exchange, long position, boolean paused) {
+		this.server = server;
+		this.wheel = wheel;
+		this.id = id;
+		this.exchange = exchange;
+		this.out = exchange.getResponseBody();
+		this.basePosition = position;
+		this.baseNanos = System.nanoTime();
+		this.paused = paused;
+		
+	}
+	
+	String getId() {
+		return this.id;
+		
+	}
+	
+	//Sends the first events
+	void start() {
+		synchronized (updateLock) {
+			appendEvent(sb, "session").append(id).append("\n\n");
+			
+		}
+		update();
+		
+	}
+	
+	//Run by the timing wheel
+	@Override
+	public void run() {
+		update();
+		
+	}
+	
+	/*
+	 * Sends the events for the current position, and schedules the next
+	 * update for when the cue shown changes.
+	 */
+	private void update() {
+		synchronized (updateLock) {
+			final SRTSnapshot snapshot = server.getSnapshot();
+			final long position;
+			final boolean seek;
+			synchronized (this) {
+				if (closed) {
+					return;
+					
+				}
+				position = position();
+				seek = seeked;
+				seeked = false;
+				dirty = false;
+				
+			}
+			
+			if (seek) {
+				appendEvent(sb, "seek").append(position).append("\n\n");
+				ended = false;
+				
+			}
+			
+			int index = snapshot.indexAt(position);
+			if (index != shown || snapshot != shownSnapshot || seek) {
+				if (index >= 0) {
+					appendCue(sb, snapshot, index);
+					
+				}
+				else if (shown >= 0 || seek || shown == -2) {
+					appendEvent(sb, "clear").append(position).append("\n\n");
+					
+				}
+				shown = index;
+				shownSnapshot = snapshot;
+				
+			}
+			
+			//The next time the cue shown changes
+			int next = snapshot.nextIndex(position);
+			long change = (next < snapshot.size()) ? snapshot.getStartTime(next) : Long.MAX_VALUE;
+			if (index >= 0) {
+				change = Math.min(change, snapshot.getEndTime(index));
+				
+			}
+			if (change == Long.MAX_VALUE && index < 0 && ! ended) {
+				appendEvent(sb, "end").append(position).append("\n\n");
+				ended = true;
+				
+			}
+			
+			long now = System.nanoTime();
+			if (sb.length() == 0 && now - lastWrite >= HEARTBEAT * 1000000L) {
+				sb.append(":\n\n");
+				
+			}
+			if (sb.length() > 0) {
+				try {
+					out.write(CueServer.utf8(sb));
+					out.flush();
+					
+				}
+				catch (IOException e) {
+					//The client disconnected
+					close();
+					return;
+					
+				}
+				sb.setLength(0);
+				lastWrite = now;
+				
+			}
+			
+			synchronized (this) {
+				//A seek, pause, play or new subtitle already scheduled an update
+				if (closed || dirty || snapshot != server.getSnapshot()) {
+					return;
+					
+				}
+				
+				long delay = paused ? HEARTBEAT : Math.min(HEARTBEAT, change - position());
+				schedule(Math.max(0, delay));
+				
+			}
+			
+		}
+		
+	}
+	
+	synchronized void seek(long position) {
+		basePosition = position;
+		baseNanos = System.nanoTime();
+		seeked = true;
+		updateNow();
+		
+	}
+	
+	synchronized void pause() {
+		if (! paused) {
+			basePosition = position();
+			paused = true;
+			updateNow();
+			
+		}
+		
+	}
+	
+	synchronized void play() {
+		if (paused) {
+			baseNanos = System.nanoTime();
+			paused = false;
+			updateNow();
+			
+		}
+		
+	}
+	
+	//Updates the session to look at a new subtitle
+	synchronized void wake() {
+		updateNow();
+		
+	}
+	
+	//Ends the session and its response
+	void close() {
+		synchronized (this) {
+			if (closed) {
+				return;
+				
+			}
+			closed = true;
+			if (timeout != null) {
+				timeout.cancel();
+				
+			}
+			
+		}
+		
+		server.sessionClosed(this);
+		exchange.close();
+		
+	}
+	
+	//Must hold the lock
+	private void updateNow() {
+		if (! closed) {
+			dirty = true;
+			schedule(0);
+			
+		}
+		
+	}
+	
+	//Must hold the lock
+	private void schedule(long delay) {
+		if (timeout != null) {
+			timeout.cancel();
+			
+		}
+		
+		try {
+			timeout = wheel.schedule(this, delay, TimeUnit.MILLISECONDS);
+			
+		}
+		catch (IllegalStateException e) {
+			//The server is stopping
+			timeout = null;
+			
+		}
+		
+	}
+	
+	//Must hold the lock
+	private long position() {
+		return paused ? basePosition : basePosition + (System.nanoTime() - baseNanos) / 1000000L;
+		
+	}
+	
+	private static StringBuilder appendEvent(StringBuilder sb, String event) {
+		return sb.append("event: ").append(event).append("\ndata: ");
+		
+	}
+	
+	private static void appendCue(StringBuilder sb, SRTSnapshot snapshot, int index) {
+		appendEvent(sb, "cue");
+		sb.append("{\"index\":").append(index);
+		sb.append(",\"start\":").append(snapshot.getStartTime(index));
+		sb.append(",\"end\":").append(snapshot.getEndTime(index));
+		sb.append(",\"text\":[");
+		String[] text = snapshot.getText(index);
+		if (text != null) {
+			for (int l = 0; l < text.length; l++) {
+				if (l > 0) {
+					sb.append(',');
+					
+				}
+				CueServer.appendJson(sb, (text[l] == null) ? "" : text[l]);
+				
+			}
+			
+		}
+		sb.append("]}\n\n");
+		
+	}
+	
+}
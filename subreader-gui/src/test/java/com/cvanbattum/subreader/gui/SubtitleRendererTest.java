@@ -0,0 +1,124 @@
+package com.cvanbattum.subreader.gui;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+
+import com.cvanbattum.api.srt.SRTEntry;
+import com.cvanbattum.api.srt.SRTSnapshot;
+import com.cvanbattum.api.srt.SRTSubtitle;
+
+/**
+ * 
+ * @author Casper van Battum
+ *
+ */
+public class SubtitleRendererTest {
+	
+	private static final int WIDTH = 160;
+	private static final int HEIGHT = 48;
+	
+	@Test
+	public void renderFramesHandsOverEveryFrame() {
+		final SubtitleRenderer renderer = new SubtitleRenderer(WIDTH, HEIGHT, 3);
+		SRTSnapshot snapshot = createSnapshot();
+		long[] times = new long[40];
+		for (int i = 0; i < times.length; i++) {
+			times[i] = i * 100;
+			
+		}
+		
+		final int[][] frames = new int[times.length][];
+		renderer.renderFrames(snapshot, times, new SubtitleRenderer.FrameHandler() {
+			
+			@Override
+			public void frame(int frame, int[] pixels) {
+				frames[frame] = pixels.clone();
+				
+			}
+			
+		});
+		
+		int[] expected = new int[WIDTH * HEIGHT];
+		for (int i = 0; i < times.length; i++) {
+			int index = snapshot.indexAt(times[i]);
+			renderer.render(index < 0 ? new String[0] : snapshot.getText(index), expected);
+			assertArrayEquals(expected, frames[i], "frame " + i);
+			
+		}
+		
+		renderer.shutdown();
+		
+	}
+	
+	@Test
+	public void renderFramesKeepsThreads() {
+		SubtitleRenderer renderer = new SubtitleRenderer(WIDTH, HEIGHT, 2);
+		SRTSnapshot snapshot = createSnapshot();
+		long[] times = { 0, 500, 1000, 1500, 2000, 2500, 3000, 3500 };
+		
+		final Set<Thread> threads = Collections.synchronizedSet(new HashSet<Thread>());
+		SubtitleRenderer.FrameHandler handler = new SubtitleRenderer.FrameHandler() {
+			
+			@Override
+			public void frame(int frame, int[] pixels) {
+				threads.add(Thread.currentThread());
+				
+			}
+			
+		};
+		for (int run = 0; run < 5; run++) {
+			renderer.renderFrames(snapshot, times, handler);
+			
+		}
+		
+		assertTrue(threads.size() <= 2, "threads: " + threads);
+		renderer.shutdown();
+		
+	}
+	
+	@Test
+	public void renderFramesReportsFailure() {
+		final SubtitleRenderer renderer = new SubtitleRenderer(WIDTH, HEIGHT, 2);
+		final SRTSnapshot snapshot = createSnapshot();
+		
+		IllegalStateException e = assertThrows(IllegalStateException.class, new Executable() {
+			
+			@Override
+			public void execute() {
+				renderer.renderFrames(snapshot, new long[] { 0, 1000, 2000 }, new SubtitleRenderer.FrameHandler() {
+					
+					@Override
+					public void frame(int frame, int[] pixels) {
+						throw new UnsupportedOperationException("frame " + frame);
+						
+					}
+					
+				});
+				
+			}
+			
+		});
+		assertEquals(UnsupportedOperationException.class, e.getCause().getClass());
+		renderer.shutdown();
+		
+	}
+	
+	/* Two entries with a gap between them. */
+	private static SRTSnapshot createSnapshot() {
+		return new SRTSubtitle(new SRTEntry[] {
+			new SRTEntry(500, 1500, "Hello there"),
+			new SRTEntry(2000, 3200, "General", "Kenobi")
+		}).publish();
+		
+	}
+	
+}
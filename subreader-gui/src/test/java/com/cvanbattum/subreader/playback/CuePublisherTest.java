@@ -0,0 +1,140 @@
+package com.cvanbattum.subreader.playback;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+
+import org.junit.jupiter.api.Test;
+
+import com.cvanbattum.api.srt.SRTEntry;
+import com.cvanbattum.api.srt.SRTSubtitle;
+
+/**
+ *
+ * @author Casper van Battum
+ *
+ */
+public class CuePublisherTest {
+	
+	//Delivers on the publishing thread, so every event is there once seek returns
+	private static final Executor DIRECT = new Executor() {
+		
+		@Override
+		public void execute(Runnable command) {
+			command.run();
+			
+		}
+		
+	};
+	
+	@Test
+	public void seekPublishesCueShownAtPosition() {
+		CuePublisher publisher = createPublisher();
+		Recorder recorder = new Recorder(Long.MAX_VALUE);
+		publisher.subscribe(recorder);
+		
+		publisher.seek(1500);
+		publisher.seek(1600);
+		publisher.seek(2500);
+		publisher.seek(2600);
+		publisher.close();
+		
+		assertEquals("SEEK SHOWN 0 SEEK SHOWN 0 SEEK HIDDEN 0 SEEK", recorder.toString());
+		
+	}
+	
+	@Test
+	public void dropOldestKeepsNewestEvents() {
+		CuePublisher publisher = createPublisher();
+		Recorder recorder = new Recorder(0);
+		publisher.subscribe(recorder, CuePublisher.DROP_OLDEST, 2);
+		
+		publisher.seek(1500);
+		publisher.seek(3500);
+		recorder.subscription.request(10);
+		
+		assertEquals("SEEK SHOWN 1", recorder.toString());
+		assertEquals(2, ((CuePublisher.CueSubscription) recorder.subscription).getDroppedCount());
+		publisher.close();
+		
+	}
+	
+	@Test
+	public void latestOnlyKeepsLatestEvent() {
+		CuePublisher publisher = createPublisher();
+		Recorder recorder = new Recorder(0);
+		publisher.subscribe(recorder, CuePublisher.LATEST_ONLY, 4);
+		
+		publisher.seek(1500);
+		publisher.seek(3500);
+		recorder.subscription.request(10);
+		
+		assertEquals("SHOWN 1", recorder.toString());
+		assertEquals(3, ((CuePublisher.CueSubscription) recorder.subscription).getDroppedCount());
+		publisher.close();
+		
+	}
+	
+	private static CuePublisher createPublisher() {
+		SRTSubtitle subtitle = new SRTSubtitle(new SRTEntry(1000, 2000, "A"), new SRTEntry(3000, 4000, "B"));
+		return new CuePublisher(subtitle, null, DIRECT);
+		
+	}
+	
+	/*
+	 * Records the type and index of the events it gets.
+	 */
+	private static final class Recorder implements Flow.Subscriber<CueEvent> {
+		
+		private static final String[] TYPES = { "SHOWN", "HIDDEN", "SEEK", "END" };
+		
+		private final long initialRequest;
+		private final List<String> events = new ArrayList<>();
+		private Flow.Subscription subscription;
+		
+		private Recorder(long initialRequest) {
+			this.initialRequest = initialRequest;
+			
+		}
+		
+		@Override
+		public void onSubscribe(Flow.Subscription subscription) {
+			this.subscription = subscription;
+			if (initialRequest > 0) {
+				subscription.request(initialRequest);
+				
+			}
+			
+		}
+		
+		@Override
+		public void onNext(CueEvent event) {
+			String type = TYPES[event.getType()];
+			events.add((event.getType() == CueEvent.SHOWN || event.getType() == CueEvent.HIDDEN) ? type + " " + event.getIndex() : type);
+			
+		}
+		
+		@Override
+		public void onError(Throwable throwable) {
+			events.add("ERROR");
+			
+		}
+		
+		@Override
+		public void onComplete() {
+			//Completion is not an event
+			
+		}
+		
+		@Override
+		public String toString() {
+			return String.join(" ", events);
+			
+		}
+		
+	}
+	
+}
@@ -0,0 +1,155 @@
+package com.cvanbattum.subreader.playback;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ *
+ * @author Casper van Battum
+ *
+ */
+public class TimingWheelTest {
+	
+	private static final long TICK = TimeUnit.MILLISECONDS.toNanos(4);
+	
+	//The first tick at which the second wheel moves its timeouts to the first
+	private static final int BOUNDARY = 256;
+	
+	/*
+	 * A timeout due exactly on the tick the second wheel comes around is
+	 * moved to the first wheel at that tick, and must run at that tick
+	 * rather than the one after. Running a tick late cannot happen before
+	 * the next tick has begun, so that is asserted, and tried a few times in
+	 * case the driver thread is not scheduled in time.
+	 */
+	@Test
+	public void timeoutOnWheelBoundaryRunsOnTime() throws InterruptedException {
+		boolean onTime = false;
+		for (int attempt = 0; attempt < 3 && ! onTime; attempt++) {
+			long before = System.nanoTime();
+			TimingWheel wheel = new TimingWheel(TICK, TimeUnit.NANOSECONDS, null);
+			try {
+				final AtomicLong ran = new AtomicLong();
+				final CountDownLatch done = new CountDownLatch(1);
+				//Half a tick before the boundary, rounded up to it
+				long delay = before + BOUNDARY * TICK - TICK / 2 - System.nanoTime();
+				wheel.schedule(new Runnable() {
+					
+					@Override
+					public void run() {
+						ran.set(System.nanoTime());
+						done.countDown();
+						
+					}
+					
+				}, delay, TimeUnit.NANOSECONDS);
+				
+				assertTrue(done.await(5, TimeUnit.SECONDS));
+				onTime = ran.get() < before + (BOUNDARY + 1) * TICK;
+				
+			}
+			finally {
+				wheel.close();
+				
+			}
+			
+		}
+		
+		assertTrue(onTime);
+		
+	}
+	
+	//A task that blocks must not hold up another task due at the same tick
+	@Test
+	public void blockedTaskDoesNotDelayOthers() throws InterruptedException {
+		ExecutorService executor = Executors.newCachedThreadPool();
+		TimingWheel wheel = new TimingWheel(1, TimeUnit.MILLISECONDS, executor);
+		final CountDownLatch release = new CountDownLatch(1);
+		final CountDownLatch others = new CountDownLatch(10);
+		try {
+			final Runnable other = new Runnable() {
+				
+				@Override
+				public void run() {
+					others.countDown();
+					
+				}
+				
+			};
+			//Others due at the same tick before and after it, whichever order they run in
+			for (int i = 0; i < 5; i++) {
+				wheel.schedule(other, 20, TimeUnit.MILLISECONDS);
+				
+			}
+			wheel.schedule(new Runnable() {
+				
+				@Override
+				public void run() {
+					try {
+						release.await();
+						
+					}
+					catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						
+					}
+					
+				}
+				
+			}, 20, TimeUnit.MILLISECONDS);
+			for (int i = 0; i < 5; i++) {
+				wheel.schedule(other, 20, TimeUnit.MILLISECONDS);
+				
+			}
+			
+			assertTrue(others.await(5, TimeUnit.SECONDS));
+			
+		}
+		finally {
+			release.countDown();
+			wheel.close();
+			executor.shutdown();
+			
+		}
+		
+	}
+	
+	@Test
+	public void cancelledTaskDoesNotRun() throws InterruptedException {
+		TimingWheel wheel = new TimingWheel(1, TimeUnit.MILLISECONDS, null);
+		try {
+			final CountDownLatch ran = new CountDownLatch(1);
+			TimingWheel.Timeout timeout = wheel.schedule(new Runnable() {
+				
+				@Override
+				public void run() {
+					ran.countDown();
+					
+				}
+				
+			}, 50, TimeUnit.MILLISECONDS);
+			
+			assertTrue(timeout.cancel());
+			assertFalse(timeout.cancel());
+			assertTrue(timeout.isCancelled());
+			assertEquals(0, wheel.getPendingCount());
+			assertFalse(ran.await(200, TimeUnit.MILLISECONDS));
+			
+		}
+		finally {
+			wheel.close();
+			
+		}
+		
+	}
+	
+}
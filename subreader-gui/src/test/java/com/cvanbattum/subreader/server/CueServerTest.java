@@ -0,0 +1,160 @@
+package com.cvanbattum.subreader.server;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.cvanbattum.api.srt.SRTEntry;
+import com.cvanbattum.api.srt.SRTSubtitle;
+
+/**
+ *
+ * @author Casper van Battum
+ *
+ */
+public class CueServerTest {
+	
+	//Long enough for a loaded machine, short enough to notice a hang
+	private static final int TIMEOUT = 5000;
+	
+	private CueServer server;
+	private HttpURLConnection events;
+	
+	@BeforeEach
+	public void setUp() throws IOException {
+		SRTSubtitle subtitle = new SRTSubtitle(
+				new SRTEntry(300, 1000, "One"),
+				new SRTEntry(1200, 1500, "Say \"two\"", "twice"));
+		server = new CueServer(subtitle, 0);
+		server.start();
+		
+	}
+	
+	@AfterEach
+	public void tearDown() {
+		if (events != null) {
+			events.disconnect();
+			
+		}
+		server.stop();
+		
+	}
+	
+	@Test
+	public void streamsCuesUntilTheEnd() throws IOException {
+		BufferedReader in = open("/events");
+		
+		String[] session = readEvent(in);
+		assertEquals("session", session[0]);
+		assertEquals(1, server.getSessionCount());
+		assertEquals("clear", readEvent(in)[0]);
+		assertEquals("cue {\"index\":0,\"start\":300,\"end\":1000,\"text\":[\"One\"]}", String.join(" ", readEvent(in)));
+		assertEquals("clear", readEvent(in)[0]);
+		assertEquals("cue {\"index\":1,\"start\":1200,\"end\":1500,\"text\":[\"Say \\\"two\\\"\",\"twice\"]}", String.join(" ", readEvent(in)));
+		assertEquals("clear", readEvent(in)[0]);
+		assertEquals("end", readEvent(in)[0]);
+		
+	}
+	
+	@Test
+	public void controlSeeksTheSession() throws IOException {
+		BufferedReader in = open("/events?position=0&paused");
+		String id = readEvent(in)[1];
+		assertEquals("clear 0", String.join(" ", readEvent(in)));
+		
+		assertEquals(204, control("?session=" + id + "&seek=500"));
+		assertEquals("seek 500", String.join(" ", readEvent(in)));
+		assertEquals("cue", readEvent(in)[0]);
+		
+		assertEquals(204, control("?session=" + id + "&seek=2000"));
+		assertEquals("seek 2000", String.join(" ", readEvent(in)));
+		assertEquals("clear 2000", String.join(" ", readEvent(in)));
+		assertEquals("end 2000", String.join(" ", readEvent(in)));
+		
+	}
+	
+	@Test
+	public void controlRejectsUnknownSessionsAndBadRequests() throws IOException {
+		BufferedReader in = open("/events?paused");
+		String id = readEvent(in)[1];
+		
+		assertEquals(404, control("?seek=100"));
+		assertEquals(404, control("?session=unknown&seek=100"));
+		assertEquals(400, control("?session=" + id + "&seek=soon"));
+		assertEquals(400, control("?session=" + id + "&seek=-1"));
+		assertEquals(400, control("?session=" + id));
+		assertEquals(204, control("?session=" + id + "&play"));
+		
+	}
+	
+	/* Opens a session and returns its stream of events. */
+	private BufferedReader open(String path) throws IOException {
+		events = connect(path);
+		assertEquals(200, events.getResponseCode());
+		assertEquals("text/event-stream; charset=utf-8", events.getContentType());
+		return new BufferedReader(new InputStreamReader(events.getInputStream(), StandardCharsets.UTF_8));
+		
+	}
+	
+	/* Sends a control request and returns its status. */
+	private int control(String query) throws IOException {
+		HttpURLConnection connection = connect("/control" + query);
+		try {
+			return connection.getResponseCode();
+			
+		}
+		finally {
+			connection.disconnect();
+			
+		}
+		
+	}
+	
+	private HttpURLConnection connect(String path) throws IOException {
+		URL url = new URL("http", InetAddress.getLoopbackAddress().getHostAddress(), server.getPort(), path);
+		HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+		connection.setConnectTimeout(TIMEOUT);
+		connection.setReadTimeout(TIMEOUT);
+		return connection;
+		
+	}
+	
+	/*
+	 * Reads the next event of the stream as its name and data, skipping
+	 * heartbeat comments.
+	 */
+	private static String[] readEvent(BufferedReader in) throws IOException {
+		String event = null;
+		String data = null;
+		String line;
+		while ((line = in.readLine()) != null) {
+			if (line.startsWith("event: ")) {
+				event = line.substring(7);
+				
+			}
+			else if (line.startsWith("data: ")) {
+				data = line.substring(6);
+				
+			}
+			else if (line.isEmpty() && event != null) {
+				return new String[] { event, data };
+				
+			}
+			
+		}
+		
+		throw new IOException("stream ended before an event");
+		
+	}
+	
+}